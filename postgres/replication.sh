@@ -0,0 +1,3 @@
+#!/bin/sh
+# Разрешает потоковую репликацию для docker-compose.replica.yml; выполняется только при создании тома
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -1,13 +1,68 @@
 package ru.netology;
 
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.netology.service.BulkImporter;
+import ru.netology.service.FilesPartitionMigrator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 @SpringBootApplication
 public class NetologyDiplomApplication {
 
 	public static void main(String[] args) {
+		if (Arrays.asList(args).contains("--import")) {
+			System.exit(runImport(args));
+		}
+		if (Arrays.asList(args).contains("--partition-files")) {
+			System.exit(runPartitionFiles(args));
+		}
 		SpringApplication.run(NetologyDiplomApplication.class, args);
 		System.out.println("Hello world!");
 	}
+
+	// Импорт каталога без веб-сервера и фоновых задач: --import --import.source=/data --import.user=login
+	private static int runImport(String[] args) {
+		ConfigurableApplicationContext context = startTask(args);
+		int exitCode;
+		try {
+			exitCode = context.getBean(BulkImporter.class).run() ? 0 : 1;
+		} catch (Exception e) {
+			LoggerFactory.getLogger(NetologyDiplomApplication.class).error("Import failed", e);
+			exitCode = 2;
+		}
+		int result = exitCode;
+		return SpringApplication.exit(context, () -> result);
+	}
+
+	// Онлайн-перенос files в секции (V11), пока основные узлы продолжают работать
+	private static int runPartitionFiles(String[] args) {
+		ConfigurableApplicationContext context = startTask(args, "--partition.files=true");
+		int exitCode;
+		try {
+			context.getBean(FilesPartitionMigrator.class).run();
+			exitCode = 0;
+		} catch (Exception e) {
+			LoggerFactory.getLogger(NetologyDiplomApplication.class).error("Partitioning of files failed", e);
+			exitCode = 2;
+		}
+		int result = exitCode;
+		return SpringApplication.exit(context, () -> result);
+	}
+
+	private static ConfigurableApplicationContext startTask(String[] args, String... extraArgs) {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		arguments.add("--cloud.scrub.enabled=false");
+		arguments.add("--cloud.storage.rebalance.enabled=false");
+		arguments.addAll(Arrays.asList(extraArgs));
+
+		SpringApplication application = new SpringApplication(NetologyDiplomApplication.class);
+		application.setWebApplicationType(WebApplicationType.NONE);
+		return application.run(arguments.toArray(new String[0]));
+	}
 }
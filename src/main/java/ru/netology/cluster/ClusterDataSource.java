@@ -0,0 +1,60 @@
+package ru.netology.cluster;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+@Component
+public class ClusterDataSource {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterDataSource.class);
+
+    private final HikariDataSource dataSource;
+
+    public ClusterDataSource(DataSourceProperties dataSourceProperties,
+                             @Value("${cloud.cluster.enabled:false}") boolean enabled,
+                             @Value("${cloud.cluster.pool-size:16}") int poolSize,
+                             @Value("${cloud.cluster.lock-timeout-ms:30000}") long lockTimeoutMs) {
+        if (!enabled) {
+            this.dataSource = null;
+            return;
+        }
+
+        // Отдельный пул: сессионные advisory-блокировки держат соединение на время операции с файлом
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("cluster-coordination");
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setConnectionInitSql("SET lock_timeout = " + lockTimeoutMs);
+        logger.info("Cluster coordination enabled (pool size {})", poolSize);
+    }
+
+    public boolean isEnabled() {
+        return dataSource != null;
+    }
+
+    public Connection getConnection() throws SQLException {
+        if (dataSource == null) {
+            throw new IllegalStateException("Cluster coordination is disabled");
+        }
+        return dataSource.getConnection();
+    }
+
+    public void evict(Connection connection) {
+        dataSource.evictConnection(connection);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (dataSource != null) {
+            dataSource.close();
+        }
+    }
+}
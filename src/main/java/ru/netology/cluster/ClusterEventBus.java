@@ -0,0 +1,150 @@
+package ru.netology.cluster;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+@Component
+public class ClusterEventBus {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterEventBus.class);
+
+    public static final String CHANNEL = "cloud_events";
+    // Полезная нагрузка, означающая «сбросить всё»: приходит после переподключения слушателя
+    public static final String ALL = "*";
+
+    private final ClusterDataSource clusterDataSource;
+    private final String nodeId;
+    private final Map<String, List<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread listener;
+
+    public ClusterEventBus(ClusterDataSource clusterDataSource,
+                           @Value("${cloud.cluster.node-id:}") String nodeId) {
+        this.clusterDataSource = clusterDataSource;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!clusterDataSource.isEnabled()) {
+            return;
+        }
+        running = true;
+        listener = Thread.ofPlatform()
+                .name("cluster-event-listener")
+                .daemon()
+                .start(this::listen);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (listener != null) {
+            listener.join(5000);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void subscribe(String topic, Consumer<String> subscriber) {
+        subscribers.computeIfAbsent(topic, key -> new CopyOnWriteArrayList<>()).add(subscriber);
+    }
+
+    public void publish(String topic, String payload) {
+        dispatch(topic, payload);
+        if (!clusterDataSource.isEnabled()) {
+            return;
+        }
+
+        try (Connection connection = clusterDataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT pg_notify(?, ?)")) {
+            statement.setString(1, CHANNEL);
+            statement.setString(2, nodeId + "|" + topic + "|" + payload);
+            statement.execute();
+        } catch (SQLException e) {
+            logger.warn("Could not broadcast '{}' event: {}", topic, e.getMessage());
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = clusterDataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                // Пока слушателя не было, события могли потеряться
+                dispatchAll();
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(1000);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        handle(notification.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                logger.warn("Cluster event listener disconnected: {}", e.getMessage());
+                sleepBeforeReconnect();
+            }
+        }
+    }
+
+    private void handle(String message) {
+        String[] parts = message.split("\\|", 3);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        dispatch(parts[1], parts[2]);
+    }
+
+    private void dispatchAll() {
+        for (String topic : subscribers.keySet()) {
+            dispatch(topic, ALL);
+        }
+    }
+
+    private void dispatch(String topic, String payload) {
+        List<Consumer<String>> topicSubscribers = subscribers.get(topic);
+        if (topicSubscribers == null) {
+            return;
+        }
+        for (Consumer<String> subscriber : topicSubscribers) {
+            try {
+                subscriber.accept(payload);
+            } catch (RuntimeException e) {
+                logger.error("Cluster event subscriber for '{}' failed", topic, e);
+            }
+        }
+    }
+
+    private void sleepBeforeReconnect() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package ru.netology.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+@Component
+public class ClusterLockService {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterLockService.class);
+
+    private final ClusterDataSource clusterDataSource;
+
+    public ClusterLockService(ClusterDataSource clusterDataSource) {
+        this.clusterDataSource = clusterDataSource;
+    }
+
+    public boolean isEnabled() {
+        return clusterDataSource.isEnabled();
+    }
+
+    public Lease acquire(Integer userId, String filename) {
+        if (!isEnabled()) {
+            return null;
+        }
+        return acquireKeys(userId, new int[]{filename.hashCode()});
+    }
+
+    public Lease acquire(Integer userId, String filename, String otherFilename) {
+        if (!isEnabled()) {
+            return null;
+        }
+        int first = filename.hashCode();
+        int second = otherFilename.hashCode();
+        if (first == second) {
+            return acquireKeys(userId, new int[]{first});
+        }
+        // Единый порядок захвата на всех узлах
+        return acquireKeys(userId, new int[]{Math.min(first, second), Math.max(first, second)});
+    }
+
+    // Фоновая задача, которая должна идти на одном узле кластера. Пусто, если её уже выполняет другой узел;
+    // без кластера блокировка не нужна и возвращается пустая аренда
+    public Optional<Lease> tryAcquire(String task) {
+        if (!isEnabled()) {
+            return Optional.of(new Lease(null, null, new int[0]));
+        }
+        Connection connection;
+        try {
+            connection = clusterDataSource.getConnection();
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not obtain cluster lock connection", e);
+        }
+
+        // Ключ из одного числа не пересекается с парами (пользователь, файл)
+        int key = task.hashCode();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, key);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next() && resultSet.getBoolean(1)) {
+                    return Optional.of(new Lease(connection, null, new int[]{key}));
+                }
+            }
+            closeQuietly(connection);
+            return Optional.empty();
+        } catch (SQLException e) {
+            clusterDataSource.evict(connection);
+            throw new RuntimeException("Could not acquire cluster lock for " + task, e);
+        }
+    }
+
+    private Lease acquireKeys(Integer userId, int[] keys) {
+        Connection connection;
+        try {
+            connection = clusterDataSource.getConnection();
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not obtain cluster lock connection", e);
+        }
+
+        int acquired = 0;
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_lock(?, ?)")) {
+            for (int key : keys) {
+                statement.setInt(1, userId);
+                statement.setInt(2, key);
+                statement.execute();
+                acquired++;
+            }
+            return new Lease(connection, userId, keys);
+        } catch (SQLException e) {
+            if (acquired > 0) {
+                clusterDataSource.evict(connection);
+            } else {
+                closeQuietly(connection);
+            }
+            throw new RuntimeException("Could not acquire cluster lock for user " + userId, e);
+        }
+    }
+
+    private void release(Connection connection, Integer userId, int[] keys) {
+        if (connection == null) {
+            return;
+        }
+        if (userId == null) {
+            releaseTask(connection, keys[0]);
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?, ?)")) {
+            for (int i = keys.length - 1; i >= 0; i--) {
+                statement.setInt(1, userId);
+                statement.setInt(2, keys[i]);
+                statement.execute();
+            }
+            connection.close();
+        } catch (SQLException e) {
+            // Закрытие физического соединения гарантированно снимает сессионные блокировки
+            logger.warn("Could not release cluster lock for user {}, evicting connection", userId, e);
+            clusterDataSource.evict(connection);
+        }
+    }
+
+    private void releaseTask(Connection connection, int key) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, key);
+            statement.execute();
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Could not release cluster task lock {}, evicting connection", key, e);
+            clusterDataSource.evict(connection);
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.debug("Could not close cluster lock connection", e);
+        }
+    }
+
+    public final class Lease implements AutoCloseable {
+        private final Connection connection;
+        private final Integer userId;
+        private final int[] keys;
+
+        private Lease(Connection connection, Integer userId, int[] keys) {
+            this.connection = connection;
+            this.userId = userId;
+            this.keys = keys;
+        }
+
+        @Override
+        public void close() {
+            release(connection, userId, keys);
+        }
+    }
+}
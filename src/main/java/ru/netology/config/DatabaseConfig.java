@@ -1,11 +1,14 @@
 package ru.netology.config;
 
 import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.flyway.FlywayMigrationInitializer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+// С выключенным Flyway (нагрузочный тест на H2, схема от Hibernate) бина Flyway нет
 @Configuration
+@ConditionalOnProperty(name = "spring.flyway.enabled", matchIfMissing = true)
 public class DatabaseConfig {
 
     @Bean
@@ -0,0 +1,52 @@
+package ru.netology.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import ru.netology.replica.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+
+// С репликой (cloud.replica.url) пул приложения собирается здесь вместо автоконфигурации Spring Boot
+@Configuration
+@ConditionalOnExpression("!'${cloud.replica.url:}'.isBlank()")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties,
+                                 Environment environment,
+                                 @Value("${cloud.replica.url}") String url,
+                                 @Value("${cloud.replica.username:${spring.datasource.username:}}") String username,
+                                 @Value("${cloud.replica.password:${spring.datasource.password:}}") String password,
+                                 @Value("${cloud.replica.pool-size:10}") int poolSize,
+                                 @Value("${cloud.replica.connection-timeout-ms:1000}") long connectionTimeoutMs,
+                                 @Value("${cloud.replica.retry-after-ms:5000}") long retryAfterMs) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+
+        HikariDataSource replica = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        replica.setPoolName("replica");
+        replica.setMaximumPoolSize(poolSize);
+        replica.setReadOnly(true);
+        // Недоступная при старте или позже реплика не мешает работе: чтения уходят в основную базу
+        replica.setConnectionTimeout(connectionTimeoutMs);
+        replica.setInitializationFailTimeout(-1);
+
+        return new ReplicaRoutingDataSource(primary, replica, retryAfterMs);
+    }
+}
@@ -0,0 +1,131 @@
+package ru.netology.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import ru.netology.dto.FileResponse;
+import ru.netology.dto.ReconcileStatusDto;
+import ru.netology.dto.ScrubStatusDto;
+import ru.netology.dto.SlowRequestDto;
+import ru.netology.dto.SqlStatsDto;
+import ru.netology.service.AuthService;
+import ru.netology.service.IntegrityScrubber;
+import ru.netology.service.StorageReconciler;
+import ru.netology.sql.SqlStatistics;
+import ru.netology.trace.RequestTracer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+// Доступ только с ролью ADMIN, см. SecurityConfig
+@RestController
+public class AdminController {
+    private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+
+    private final IntegrityScrubber integrityScrubber;
+    private final Optional<StorageReconciler> storageReconciler;
+    private final AuthService authService;
+    private final SqlStatistics sqlStatistics;
+    private final RequestTracer requestTracer;
+
+    public AdminController(IntegrityScrubber integrityScrubber,
+                           Optional<StorageReconciler> storageReconciler,
+                           AuthService authService,
+                           SqlStatistics sqlStatistics,
+                           RequestTracer requestTracer) {
+        this.integrityScrubber = integrityScrubber;
+        this.storageReconciler = storageReconciler;
+        this.authService = authService;
+        this.sqlStatistics = sqlStatistics;
+        this.requestTracer = requestTracer;
+    }
+
+    @GetMapping("/admin/scrub")
+    public ResponseEntity<ScrubStatusDto> getScrubStatus() {
+        return ResponseEntity.ok(integrityScrubber.getStatus());
+    }
+
+    @DeleteMapping("/admin/scrub/quarantine")
+    public ResponseEntity<FileResponse> releaseFile(@RequestParam Integer id) {
+        boolean released;
+        try {
+            released = integrityScrubber.release(id);
+        } catch (Exception e) {
+            logger.error("Error releasing file from quarantine: {}", id, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error releasing file");
+        }
+        if (!released) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found: " + id);
+        }
+        return ResponseEntity.ok(new FileResponse("File released from quarantine"));
+    }
+
+    @GetMapping("/admin/reconcile")
+    public ResponseEntity<ReconcileStatusDto> getReconcileStatus() {
+        return ResponseEntity.ok(requireReconciler().getStatus());
+    }
+
+    // По умолчанию только отчёт; repair=true удаляет файлы без строк и строки без файлов
+    @PostMapping("/admin/reconcile")
+    public ResponseEntity<ReconcileStatusDto> startReconcile(@RequestParam(defaultValue = "false") boolean repair) {
+        StorageReconciler reconciler = requireReconciler();
+        if (!reconciler.start(repair)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Reconciliation is already running");
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reconciler.getStatus());
+    }
+
+    // Число и время SQL-запросов по эндпоинтам с момента запуска или последнего сброса
+    @GetMapping("/admin/sql")
+    public ResponseEntity<SqlStatsDto> getSqlStats() {
+        return ResponseEntity.ok(sqlStatistics.getStats());
+    }
+
+    @DeleteMapping("/admin/sql")
+    public ResponseEntity<FileResponse> resetSqlStats() {
+        sqlStatistics.reset();
+        return ResponseEntity.ok(new FileResponse("SQL statistics reset"));
+    }
+
+    // Последние запросы дольше cloud.trace.slow-threshold-ms с временем этапов, самые медленные сначала
+    @GetMapping("/admin/slow-requests")
+    public ResponseEntity<List<SlowRequestDto>> getSlowRequests() {
+        return ResponseEntity.ok(requestTracer.getSlowRequests());
+    }
+
+    @DeleteMapping("/admin/slow-requests")
+    public ResponseEntity<FileResponse> clearSlowRequests() {
+        requestTracer.clear();
+        return ResponseEntity.ok(new FileResponse("Slow requests cleared"));
+    }
+
+    // Отзыв украденного токена до истечения срока: тело {"token": "..."}
+    @PostMapping("/admin/tokens/revoke")
+    public ResponseEntity<FileResponse> revokeToken(@RequestBody Map<String, String> request) {
+        String token = request.get("token");
+        if (token == null || token.isBlank()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Token required");
+        }
+        try {
+            if (!authService.revokeToken(token.startsWith("Bearer ") ? token.substring(7) : token)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Token has no id and cannot be revoked");
+            }
+            return ResponseEntity.ok(new FileResponse("Token revoked"));
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error revoking token", e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid token");
+        }
+    }
+
+    private StorageReconciler requireReconciler() {
+        return storageReconciler.orElseThrow(() ->
+                new ResponseStatusException(HttpStatus.BAD_REQUEST, "Reconciliation requires local storage"));
+    }
+}
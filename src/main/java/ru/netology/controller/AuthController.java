@@ -1,12 +1,16 @@
 package ru.netology.controller;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 import ru.netology.service.AuthService;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 public class AuthController {
@@ -26,7 +30,12 @@ public class AuthController {
                     .body(Map.of("message", "Bad credentials"));
         }
 
-        Optional<String> token = authService.authenticate(login, password);
+        Optional<String> token;
+        try {
+            token = authService.authenticate(login, password);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
+        }
         if (token.isPresent()) {
             return ResponseEntity.ok(Map.of("auth-token", token.get()));
         } else {
@@ -34,6 +43,12 @@ public class AuthController {
         }
     }
 
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader("auth-token") String authToken) {
+        authService.logout(authToken);
+        return ResponseEntity.ok().build();
+    }
+
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody Map<String, String> authRequest) {
         String login = authRequest.get("login");
@@ -43,10 +58,23 @@ public class AuthController {
             return ResponseEntity.badRequest().body(Map.of("message", "Login and password required"));
         }
 
-        if (authService.register(login, password)) {
+        boolean registered;
+        try {
+            registered = authService.register(login, password);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
+        }
+        if (registered) {
             return ResponseEntity.ok(Map.of("message", "User registered successfully"));
         } else {
             return ResponseEntity.badRequest().body(Map.of("message", "User already exists"));
         }
     }
+
+    // Очередь проверки паролей заполнена: отказываем сразу, не занимая поток запроса
+    private ResponseEntity<?> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("message", "Too many login attempts, try again later"));
+    }
 }
\ No newline at end of file
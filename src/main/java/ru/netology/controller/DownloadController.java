@@ -0,0 +1,132 @@
+package ru.netology.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import ru.netology.dto.DownloadLinkDto;
+import ru.netology.dto.DownloadTarget;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.repository.UserRepository;
+import ru.netology.security.DownloadUrlSigner;
+import ru.netology.security.JwtTokenUtil;
+import ru.netology.service.FileOperationService;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+// /download/** не проходит цепочку безопасности (SecurityConfig): доступ даёт только подпись ссылки
+@RestController
+public class DownloadController {
+    private static final Logger logger = LoggerFactory.getLogger(DownloadController.class);
+
+    private final FileOperationService fileOperationService;
+    private final DownloadUrlSigner downloadUrlSigner;
+    private final UserRepository userRepository;
+    private final JwtTokenUtil jwtTokenUtil;
+    private final long defaultTtlSeconds;
+    private final long maxTtlSeconds;
+
+    public DownloadController(FileOperationService fileOperationService,
+                              DownloadUrlSigner downloadUrlSigner,
+                              UserRepository userRepository,
+                              JwtTokenUtil jwtTokenUtil,
+                              @Value("${cloud.download.ttl-seconds:300}") long defaultTtlSeconds,
+                              @Value("${cloud.download.max-ttl-seconds:86400}") long maxTtlSeconds) {
+        this.fileOperationService = fileOperationService;
+        this.downloadUrlSigner = downloadUrlSigner;
+        this.userRepository = userRepository;
+        this.jwtTokenUtil = jwtTokenUtil;
+        this.defaultTtlSeconds = defaultTtlSeconds;
+        this.maxTtlSeconds = maxTtlSeconds;
+    }
+
+    private User getUserFromToken(String authToken) {
+        String token = authToken.startsWith("Bearer ") ? authToken.substring(7) : authToken;
+        String username = jwtTokenUtil.getUsernameFromToken(token);
+        return userRepository.findByLogin(username)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
+    }
+
+    @GetMapping("/file/link")
+    public ResponseEntity<DownloadLinkDto> createLink(@RequestHeader("auth-token") String authToken,
+                                                      @RequestParam String filename,
+                                                      @RequestParam(required = false) Long ttl) {
+        try {
+            User user = getUserFromToken(authToken);
+            FileEntity fileEntity = fileOperationService.getFileForDownload(filename, user);
+
+            long seconds = Math.max(1, Math.min(ttl == null ? defaultTtlSeconds : ttl, maxTtlSeconds));
+            // Срок округляется вверх до минуты: ссылки на файл, выданные в одну минуту, совпадают и делят кэш прокси
+            long expires = (Instant.now().getEpochSecond() + seconds + 59) / 60 * 60;
+            // Пользователь в ссылке ограничивает поиск строки одной секцией files
+            String url = ServletUriComponentsBuilder.fromCurrentContextPath()
+                    .path("/download/{id}")
+                    .queryParam("u", user.getId())
+                    .queryParam("v", fileEntity.getVersion())
+                    .queryParam("expires", expires)
+                    .queryParam("signature",
+                            downloadUrlSigner.sign(user.getId(), fileEntity.getId(), fileEntity.getVersion(), expires))
+                    .buildAndExpand(fileEntity.getId())
+                    .toUriString();
+            return ResponseEntity.ok(new DownloadLinkDto(url, expires));
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error creating download link: {}", filename, e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/download/{id}")
+    public ResponseEntity<Resource> download(@PathVariable Integer id,
+                                             @RequestParam("u") Integer userId,
+                                             @RequestParam("v") Long version,
+                                             @RequestParam long expires,
+                                             @RequestParam String signature,
+                                             WebRequest request) {
+        // Подпись проверяется до обращения к БД: подобранные ссылки не нагружают базу
+        if (!downloadUrlSigner.verify(userId, id, version, expires, signature)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Invalid or expired link");
+        }
+        try {
+            DownloadTarget target = fileOperationService.getSignedDownload(userId, id, version)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found"));
+
+            String etag = "\"" + id + "-" + version + "\"";
+            if (request.checkNotModified(etag)) {
+                return null;
+            }
+
+            Resource resource = fileOperationService.openResource(target);
+            if (!resource.exists() || !resource.isReadable()) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found or not readable");
+            }
+            fileOperationService.recordDownload(userId, target);
+
+            long maxAge = Math.max(0, expires - Instant.now().getEpochSecond());
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .cacheControl(CacheControl.maxAge(maxAge, TimeUnit.SECONDS).cachePublic())
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            "attachment; filename=\"" + target.getFilename() + "\"")
+                    .body(resource);
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error downloading file by link: {}", id, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error downloading file");
+        }
+    }
+}
@@ -3,7 +3,7 @@ package ru.netology.controller;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -11,18 +11,26 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.netology.dto.ArchiveRequest;
+import ru.netology.dto.CopyRequest;
 import ru.netology.dto.FileInfoDto;
+import ru.netology.dto.FileListQuery;
 import ru.netology.dto.FileResponse;
+import ru.netology.dto.FileSignatureResponse;
 import ru.netology.dto.RenameRequest;
+import ru.netology.entity.FileEntity;
 import ru.netology.entity.User;
 import ru.netology.security.JwtTokenUtil;
+import ru.netology.service.ArchiveService;
+import ru.netology.service.DeltaSyncService;
 import ru.netology.service.FileOperationService;
 import ru.netology.repository.UserRepository;
+import ru.netology.trace.RequestTrace;
+import ru.netology.trace.TraceStage;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,35 +40,54 @@ public class FileController {
     private static final Logger logger = LoggerFactory.getLogger(FileController.class);
 
     private final FileOperationService fileOperationService;
+    private final ArchiveService archiveService;
+    private final DeltaSyncService deltaSyncService;
     private final UserRepository userRepository;
     private final JwtTokenUtil jwtTokenUtil;
 
     public FileController(FileOperationService fileOperationService,
+                          ArchiveService archiveService,
+                          DeltaSyncService deltaSyncService,
                           UserRepository userRepository,
                           JwtTokenUtil jwtTokenUtil) {
         this.fileOperationService = fileOperationService;
+        this.archiveService = archiveService;
+        this.deltaSyncService = deltaSyncService;
         this.userRepository = userRepository;
         this.jwtTokenUtil = jwtTokenUtil;
     }
 
     private User getUserFromToken(String authToken) {
         String token = authToken.startsWith("Bearer ") ? authToken.substring(7) : authToken;
+        long started = RequestTrace.start();
         String username = jwtTokenUtil.getUsernameFromToken(token);
-        return userRepository.findByLogin(username)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
+        RequestTrace.stop(TraceStage.JWT, started);
+
+        started = RequestTrace.start();
+        try {
+            return userRepository.findByLogin(username)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
+        } finally {
+            RequestTrace.stop(TraceStage.USER_LOOKUP, started);
+        }
     }
 
     @GetMapping("/list")
     public ResponseEntity<List<FileInfoDto>> getFileList(@RequestHeader("auth-token") String authToken,
-                                                         @RequestParam(defaultValue = "10") int limit) {
+                                                         @RequestParam(defaultValue = "10") int limit,
+                                                         FileListQuery query) {
         try {
             User user = getUserFromToken(authToken);
-            List<FileInfoDto> files = fileOperationService.getUserFiles(user, limit);
+            List<FileInfoDto> files = fileOperationService.getUserFiles(user, limit, query);
             return ResponseEntity.ok(files);
 
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         } catch (Exception e) {
             logger.error("Error retrieving file list for user", e);
-            return ResponseEntity.ok(List.of());
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error retrieving file list");
         }
     }
 
@@ -90,27 +117,104 @@ public class FileController {
             User user = getUserFromToken(authToken);
             var fileEntity = fileOperationService.getFileForDownload(filename, user);
 
-            Path filePath = Paths.get(fileEntity.getFilePath());
-            Resource resource = new UrlResource(filePath.toUri());
+            Resource resource = fileOperationService.openResource(fileEntity);
 
             if (!resource.exists() || !resource.isReadable()) {
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found or not readable");
             }
+            fileOperationService.recordDownload(fileEntity);
 
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION,
                             "attachment; filename=\"" + fileEntity.getFilename() + "\"")
                     .body(resource);
 
-        } catch (MalformedURLException e) {
-            logger.warn("Invalid file path for download: {}", filename);
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid file path");
         } catch (Exception e) {
             logger.error("Error downloading file: {}", filename, e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error downloading file");
         }
     }
 
+    @GetMapping("/file/signature")
+    public ResponseEntity<FileSignatureResponse> getFileSignature(@RequestHeader("auth-token") String authToken,
+                                                                  @RequestParam String filename,
+                                                                  @RequestParam(required = false) Integer blockSize) {
+        try {
+            User user = getUserFromToken(authToken);
+            return ResponseEntity.ok(deltaSyncService.getSignature(filename, blockSize, user));
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error computing signature for file: {}", filename, e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/file/delta", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<FileResponse> uploadDelta(@RequestHeader("auth-token") String authToken,
+                                                    @RequestParam String filename,
+                                                    @RequestParam long version,
+                                                    @RequestParam int blockSize,
+                                                    InputStream delta) {
+        try {
+            User user = getUserFromToken(authToken);
+            FileEntity fileEntity = deltaSyncService.applyDelta(filename, version, blockSize, delta, user);
+
+            Map<String, Object> details = new HashMap<>();
+            details.put("size", fileEntity.getSize());
+            details.put("version", fileEntity.getVersion());
+
+            return ResponseEntity.ok(new FileResponse("File updated successfully", details));
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (OptimisticLockingFailureException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        } catch (IOException e) {
+            logger.warn("Delta upload failed: {}", e.getMessage());
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Delta upload failed: " + e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error applying delta to file: {}", filename, e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/archive", produces = "application/zip")
+    public ResponseEntity<StreamingResponseBody> downloadArchive(@RequestHeader("auth-token") String authToken,
+                                                                 @RequestBody ArchiveRequest request) {
+        if (request.getFilenames() == null || request.getFilenames().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No files requested");
+        }
+
+        try {
+            User user = getUserFromToken(authToken);
+            List<FileEntity> files = fileOperationService.getFilesForArchive(request.getFilenames(), user);
+            files.forEach(fileOperationService::recordDownload);
+
+            StreamingResponseBody body = out -> {
+                try {
+                    archiveService.writeArchive(files, out);
+                } catch (IOException | RuntimeException e) {
+                    // Заголовки и часть архива уже отправлены: соединение будет оборвано (GlobalExceptionHandler)
+                    logger.error("Archive of {} files for user {} failed mid-stream, aborting the response",
+                            files.size(), user.getLogin(), e);
+                    throw e;
+                }
+            };
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"archive.zip\"")
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .body(body);
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error preparing archive", e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
     @DeleteMapping("/file")
     public ResponseEntity<FileResponse> deleteFile(@RequestHeader("auth-token") String authToken,
                                                    @RequestParam String filename) {
@@ -148,4 +252,27 @@ public class FileController {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @PostMapping("/file/copy")
+    public ResponseEntity<FileResponse> copyFile(@RequestHeader("auth-token") String authToken,
+                                                 @RequestParam String filename,
+                                                 @RequestBody CopyRequest request) {
+        try {
+            User user = getUserFromToken(authToken);
+            FileEntity copy = fileOperationService.copyFile(filename, request.getFilename(), user);
+
+            Map<String, Object> details = new HashMap<>();
+            details.put("sourceFilename", filename);
+            details.put("filename", copy.getFilename());
+            details.put("size", copy.getSize());
+
+            return ResponseEntity.ok(new FileResponse("File copied successfully", details));
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error copying file: {}", filename, e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package ru.netology.controller;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import ru.netology.dto.FileResponse;
+import ru.netology.dto.FolderContentsDto;
+import ru.netology.dto.FolderDto;
+import ru.netology.dto.FolderFileDto;
+import ru.netology.dto.FolderRequest;
+import ru.netology.entity.User;
+import ru.netology.repository.UserRepository;
+import ru.netology.security.JwtTokenUtil;
+import ru.netology.service.FolderService;
+
+import java.util.List;
+
+@RestController
+public class FolderController {
+    private static final Logger logger = LoggerFactory.getLogger(FolderController.class);
+
+    private final FolderService folderService;
+    private final UserRepository userRepository;
+    private final JwtTokenUtil jwtTokenUtil;
+
+    public FolderController(FolderService folderService,
+                            UserRepository userRepository,
+                            JwtTokenUtil jwtTokenUtil) {
+        this.folderService = folderService;
+        this.userRepository = userRepository;
+        this.jwtTokenUtil = jwtTokenUtil;
+    }
+
+    private User getUserFromToken(String authToken) {
+        String token = authToken.startsWith("Bearer ") ? authToken.substring(7) : authToken;
+        String username = jwtTokenUtil.getUsernameFromToken(token);
+        return userRepository.findByLogin(username)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User not found"));
+    }
+
+    @GetMapping("/folder")
+    public ResponseEntity<FolderContentsDto> getFolder(@RequestHeader("auth-token") String authToken,
+                                                       @RequestParam(required = false) Long id) {
+        try {
+            User user = getUserFromToken(authToken);
+            return ResponseEntity.ok(folderService.getContents(id, user));
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error listing folder: {}", id, e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/folder/tree")
+    public ResponseEntity<List<FolderFileDto>> getFolderTree(@RequestHeader("auth-token") String authToken,
+                                                             @RequestParam Long id) {
+        try {
+            User user = getUserFromToken(authToken);
+            return ResponseEntity.ok(folderService.getSubtreeFiles(id, user));
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error listing folder tree: {}", id, e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PostMapping("/folder")
+    public ResponseEntity<FolderDto> createFolder(@RequestHeader("auth-token") String authToken,
+                                                  @RequestBody FolderRequest request) {
+        try {
+            User user = getUserFromToken(authToken);
+            return ResponseEntity.ok(FolderDto.of(folderService.createFolder(request.getName(), request.getParentId(), user)));
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error creating folder: {}", request.getName(), e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PutMapping("/folder")
+    public ResponseEntity<FolderDto> renameFolder(@RequestHeader("auth-token") String authToken,
+                                                  @RequestParam Long id,
+                                                  @RequestBody FolderRequest request) {
+        try {
+            User user = getUserFromToken(authToken);
+            return ResponseEntity.ok(FolderDto.of(folderService.renameFolder(id, request.getName(), user)));
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error renaming folder: {}", id, e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PutMapping("/folder/move")
+    public ResponseEntity<FolderDto> moveFolder(@RequestHeader("auth-token") String authToken,
+                                                @RequestParam Long id,
+                                                @RequestParam(required = false) Long parentId) {
+        try {
+            User user = getUserFromToken(authToken);
+            return ResponseEntity.ok(FolderDto.of(folderService.moveFolder(id, parentId, user)));
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error moving folder: {}", id, e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/folder")
+    public ResponseEntity<FileResponse> deleteFolder(@RequestHeader("auth-token") String authToken,
+                                                     @RequestParam Long id) {
+        try {
+            User user = getUserFromToken(authToken);
+            folderService.deleteFolder(id, user);
+            return ResponseEntity.ok(new FileResponse("Folder deleted successfully"));
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error deleting folder: {}", id, e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @PutMapping("/folder/file")
+    public ResponseEntity<FileResponse> moveFile(@RequestHeader("auth-token") String authToken,
+                                                 @RequestParam String filename,
+                                                 @RequestParam(required = false) Long folderId) {
+        try {
+            User user = getUserFromToken(authToken);
+            folderService.moveFile(filename, folderId, user);
+            return ResponseEntity.ok(new FileResponse("File moved successfully"));
+
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error moving file: {}", filename, e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
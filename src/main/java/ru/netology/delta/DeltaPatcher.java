@@ -0,0 +1,353 @@
+package ru.netology.delta;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.netology.dto.BlockChecksumDto;
+import ru.netology.storage.BoundedInputStream;
+import ru.netology.storage.StorageBackend;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/*
+ * Формат дельты — последовательность команд в теле запроса:
+ *   0x01 <int блок> <int количество>  — взять блоки из текущей версии файла
+ *   0x02 <int длина> <байты>          — новые данные
+ *   0x00                              — конец дельты
+ * Число команд (после склейки соседних) и объём новых данных ограничены: тело запроса пишется на диск
+ * и разбирается в памяти до захвата блокировки.
+ */
+@Component
+public class DeltaPatcher {
+    public static final int OP_END = 0;
+    public static final int OP_COPY = 1;
+    public static final int OP_DATA = 2;
+    // Временные версии лежат рядом с файлом как <имя>.delta-<uuid>: сверка находит по имени владельца
+    public static final String TEMP_SUFFIX = ".delta-";
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final StorageBackend storageBackend;
+    private final int maxOps;
+    private final long maxBytes;
+
+    public DeltaPatcher(StorageBackend storageBackend,
+                        @Value("${cloud.delta.max-ops:100000}") int maxOps,
+                        @Value("${cloud.delta.max-bytes:1073741824}") long maxBytes) {
+        this.storageBackend = storageBackend;
+        this.maxOps = maxOps;
+        this.maxBytes = maxBytes;
+    }
+
+    public List<BlockChecksumDto> signature(String key, long size, int blockSize) throws IOException {
+        MessageDigest md5 = md5();
+        HexFormat hex = HexFormat.of();
+        List<BlockChecksumDto> blocks = new ArrayList<>((int) ((size + blockSize - 1) / blockSize));
+        byte[] block = new byte[blockSize];
+
+        try (InputStream in = storageBackend.read(key, 0, size)) {
+            int read;
+            while ((read = in.readNBytes(block, 0, blockSize)) > 0) {
+                md5.update(block, 0, read);
+                blocks.add(new BlockChecksumDto(RollingChecksum.of(block, 0, read), hex.formatHex(md5.digest())));
+            }
+        }
+        return blocks;
+    }
+
+    // Дельта принимается целиком до захвата блокировки файла: медленный клиент не задерживает других
+    public Delta receive(InputStream body) throws IOException {
+        Delta delta = new Delta(Files.createTempFile("delta-", ".bin"));
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(body, CHUNK_SIZE));
+            byte[] buffer = new byte[CHUNK_SIZE];
+            try (OutputStream spool = new BufferedOutputStream(Files.newOutputStream(delta.spool), CHUNK_SIZE)) {
+                while (true) {
+                    int op = in.read();
+                    if (op == OP_END) {
+                        break;
+                    }
+                    if (op == OP_COPY) {
+                        int block = in.readInt();
+                        int count = in.readInt();
+                        if (block < 0 || count <= 0) {
+                            throw new IOException("Malformed delta: invalid block range " + block + "+" + count);
+                        }
+                        delta.addCopy(block, count);
+                        checkOps(delta);
+                    } else if (op == OP_DATA) {
+                        int length = in.readInt();
+                        if (length < 0) {
+                            throw new IOException("Malformed delta: negative data length");
+                        }
+                        if (delta.literalBytes + length > maxBytes) {
+                            throw new IOException("Delta carries more than " + maxBytes + " bytes of new data");
+                        }
+                        copyExactly(in, spool, length, buffer);
+                        delta.addData(length);
+                        checkOps(delta);
+                    } else if (op < 0) {
+                        throw new EOFException("Delta ended without end marker");
+                    } else {
+                        throw new IOException("Malformed delta: unknown command " + op);
+                    }
+                }
+            }
+            return delta;
+        } catch (IOException | RuntimeException e) {
+            delta.close();
+            throw e;
+        }
+    }
+
+    // Новая версия собирается рядом со старой, текущий файл не меняется: подменяет его вызывающий под блокировкой
+    public Result apply(String key, long baseSize, int blockSize, Delta delta) throws IOException {
+        List<Segment> segments = delta.resolve(baseSize, blockSize);
+        long newSize = segments.isEmpty() ? 0 : segments.get(segments.size() - 1).end();
+        if (newSize > baseSize + maxBytes) {
+            throw new IOException("Patched file would grow by more than " + maxBytes + " bytes");
+        }
+
+        String newKey = tempKey(key);
+        CRC32C crc = new CRC32C();
+        try (InputStream content = new CheckedInputStream(new SegmentInputStream(key, segments, delta.spool), crc)) {
+            storageBackend.write(newKey, content);
+        } catch (IOException | RuntimeException e) {
+            storageBackend.delete(newKey);
+            throw e;
+        }
+        return new Result(newKey, newSize, crc.getValue());
+    }
+
+    public String tempKey(String key) {
+        return storageBackend.siblingKey(key, Paths.get(key).getFileName() + TEMP_SUFFIX + UUID.randomUUID());
+    }
+
+    private void checkOps(Delta delta) throws IOException {
+        if (delta.ops.size() > maxOps) {
+            throw new IOException("Delta has more than " + maxOps + " commands");
+        }
+    }
+
+    private static void copyExactly(InputStream in, OutputStream out, long length, byte[] buffer) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new EOFException("Delta ended in the middle of a data block");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static final class Delta implements AutoCloseable {
+        private final Path spool;
+        private final List<Op> ops = new ArrayList<>();
+        private long literalBytes;
+
+        private Delta(Path spool) {
+            this.spool = spool;
+        }
+
+        public long getLiteralBytes() {
+            return literalBytes;
+        }
+
+        private void addCopy(int block, int count) {
+            Op last = ops.isEmpty() ? null : ops.get(ops.size() - 1);
+            if (last != null && !last.literal && (long) last.block + last.count == block) {
+                ops.set(ops.size() - 1, Op.copy(last.block, last.count + count));
+            } else {
+                ops.add(Op.copy(block, count));
+            }
+        }
+
+        private void addData(int length) {
+            if (length == 0) {
+                return;
+            }
+            Op last = ops.isEmpty() ? null : ops.get(ops.size() - 1);
+            if (last != null && last.literal) {
+                ops.set(ops.size() - 1, Op.data(last.length + length));
+            } else {
+                ops.add(Op.data(length));
+            }
+            literalBytes += length;
+        }
+
+        private List<Segment> resolve(long baseSize, int blockSize) throws IOException {
+            List<Segment> segments = new ArrayList<>(ops.size());
+            long target = 0;
+            long spoolOffset = 0;
+            for (Op op : ops) {
+                if (op.literal) {
+                    segments.add(new Segment(true, target, spoolOffset, op.length));
+                    spoolOffset += op.length;
+                    target += op.length;
+                    continue;
+                }
+                long source = (long) op.block * blockSize;
+                long lastBlock = (long) op.block + op.count - 1;
+                if (lastBlock * blockSize >= baseSize) {
+                    throw new IOException("Delta references block " + lastBlock + " beyond the end of the file");
+                }
+                long length = Math.min((long) op.count * blockSize, baseSize - source);
+                segments.add(new Segment(false, target, source, length));
+                target += length;
+            }
+            return segments;
+        }
+
+        @Override
+        public void close() throws IOException {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    public static final class Result {
+        private final String key;
+        private final long size;
+        private final long checksum;
+
+        private Result(String key, long size, long checksum) {
+            this.key = key;
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        public String getKey() { return key; }
+
+        public long getSize() { return size; }
+
+        public long getChecksum() { return checksum; }
+    }
+
+    private static final class Op {
+        private final boolean literal;
+        private final int block;
+        private final int count;
+        private final long length;
+
+        private Op(boolean literal, int block, int count, long length) {
+            this.literal = literal;
+            this.block = block;
+            this.count = count;
+            this.length = length;
+        }
+
+        private static Op copy(int block, int count) {
+            return new Op(false, block, count, 0);
+        }
+
+        private static Op data(long length) {
+            return new Op(true, 0, 0, length);
+        }
+    }
+
+    private static final class Segment {
+        private final boolean literal;
+        private final long target;
+        private final long source;
+        private final long length;
+
+        private Segment(boolean literal, long target, long source, long length) {
+            this.literal = literal;
+            this.target = target;
+            this.source = source;
+            this.length = length;
+        }
+
+        private long end() {
+            return target + length;
+        }
+    }
+
+    // Склеивает сегменты новой версии, открывая источники по мере чтения
+    private final class SegmentInputStream extends InputStream {
+        private final String baseKey;
+        private final List<Segment> segments;
+        private final Path spool;
+        private int next;
+        private InputStream current;
+
+        private SegmentInputStream(String baseKey, List<Segment> segments, Path spool) {
+            this.baseKey = baseKey;
+            this.segments = segments;
+            this.spool = spool;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (true) {
+                if (current == null) {
+                    if (next == segments.size()) {
+                        return -1;
+                    }
+                    current = open(segments.get(next++));
+                }
+                int read = current.read(buffer, offset, length);
+                if (read > 0) {
+                    return read;
+                }
+                current.close();
+                current = null;
+            }
+        }
+
+        private InputStream open(Segment segment) throws IOException {
+            if (!segment.literal) {
+                return storageBackend.read(baseKey, segment.source, segment.length);
+            }
+            InputStream in = Files.newInputStream(spool);
+            try {
+                in.skipNBytes(segment.source);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+            return new BoundedInputStream(in, segment.length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+    }
+}
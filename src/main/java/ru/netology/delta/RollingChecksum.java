@@ -0,0 +1,35 @@
+package ru.netology.delta;
+
+// Слабая контрольная сумма rsync: пересчитывается за O(1) при сдвиге окна на байт
+public final class RollingChecksum {
+    private int a;
+    private int b;
+    private int length;
+
+    public static int of(byte[] data, int offset, int length) {
+        RollingChecksum checksum = new RollingChecksum();
+        checksum.reset(data, offset, length);
+        return checksum.value();
+    }
+
+    public void reset(byte[] data, int offset, int length) {
+        this.a = 0;
+        this.b = 0;
+        this.length = length;
+        for (int i = 0; i < length; i++) {
+            int value = data[offset + i] & 0xff;
+            a = (a + value) & 0xffff;
+            b = (b + (length - i) * value) & 0xffff;
+        }
+    }
+
+    public void roll(byte outgoing, byte incoming) {
+        int out = outgoing & 0xff;
+        a = (a - out + (incoming & 0xff)) & 0xffff;
+        b = (b - length * out + a) & 0xffff;
+    }
+
+    public int value() {
+        return (b << 16) | a;
+    }
+}
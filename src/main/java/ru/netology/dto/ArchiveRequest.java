@@ -0,0 +1,21 @@
+package ru.netology.dto;
+
+import java.util.List;
+
+public class ArchiveRequest {
+    private List<String> filenames;
+
+    public ArchiveRequest() {}
+
+    public ArchiveRequest(List<String> filenames) {
+        this.filenames = filenames;
+    }
+
+    public List<String> getFilenames() {
+        return filenames;
+    }
+
+    public void setFilenames(List<String> filenames) {
+        this.filenames = filenames;
+    }
+}
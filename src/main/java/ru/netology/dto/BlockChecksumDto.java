@@ -0,0 +1,29 @@
+package ru.netology.dto;
+
+public class BlockChecksumDto {
+    private int weak;
+    private String strong;
+
+    public BlockChecksumDto() {}
+
+    public BlockChecksumDto(int weak, String strong) {
+        this.weak = weak;
+        this.strong = strong;
+    }
+
+    public int getWeak() {
+        return weak;
+    }
+
+    public void setWeak(int weak) {
+        this.weak = weak;
+    }
+
+    public String getStrong() {
+        return strong;
+    }
+
+    public void setStrong(String strong) {
+        this.strong = strong;
+    }
+}
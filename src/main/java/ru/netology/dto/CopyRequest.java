@@ -0,0 +1,20 @@
+package ru.netology.dto;
+
+public class CopyRequest {
+    private String filename;
+
+    public CopyRequest() {}
+
+    public CopyRequest(String filename) {
+        this.filename = filename;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+}
+
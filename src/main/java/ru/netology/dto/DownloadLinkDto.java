@@ -0,0 +1,27 @@
+package ru.netology.dto;
+
+public class DownloadLinkDto {
+    private String url;
+    private long expires;
+
+    public DownloadLinkDto(String url, long expires) {
+        this.url = url;
+        this.expires = expires;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public long getExpires() {
+        return expires;
+    }
+
+    public void setExpires(long expires) {
+        this.expires = expires;
+    }
+}
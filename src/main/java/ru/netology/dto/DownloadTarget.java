@@ -0,0 +1,68 @@
+package ru.netology.dto;
+
+// Строка files без пользователя: всё, что нужно для отдачи файла по подписанной ссылке
+public class DownloadTarget {
+    private Integer id;
+    private String filename;
+    private String filePath;
+    private Long size;
+    private Long version;
+    private boolean quarantined;
+
+    public DownloadTarget(Integer id, String filename, String filePath, Long size, Long version, boolean quarantined) {
+        this.id = id;
+        this.filename = filename;
+        this.filePath = filePath;
+        this.size = size;
+        this.version = version;
+        this.quarantined = quarantined;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public void setFilePath(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public boolean isQuarantined() {
+        return quarantined;
+    }
+
+    public void setQuarantined(boolean quarantined) {
+        this.quarantined = quarantined;
+    }
+}
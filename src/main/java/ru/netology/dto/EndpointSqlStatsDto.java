@@ -0,0 +1,68 @@
+package ru.netology.dto;
+
+public class EndpointSqlStatsDto {
+    private String endpoint;
+    private long requests;
+    private long statements;
+    private long maxStatements;
+    private double avgStatements;
+    private double totalMs;
+
+    public EndpointSqlStatsDto(String endpoint, long requests, long statements, long maxStatements,
+                               double avgStatements, double totalMs) {
+        this.endpoint = endpoint;
+        this.requests = requests;
+        this.statements = statements;
+        this.maxStatements = maxStatements;
+        this.avgStatements = avgStatements;
+        this.totalMs = totalMs;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public void setStatements(long statements) {
+        this.statements = statements;
+    }
+
+    public long getMaxStatements() {
+        return maxStatements;
+    }
+
+    public void setMaxStatements(long maxStatements) {
+        this.maxStatements = maxStatements;
+    }
+
+    public double getAvgStatements() {
+        return avgStatements;
+    }
+
+    public void setAvgStatements(double avgStatements) {
+        this.avgStatements = avgStatements;
+    }
+
+    public double getTotalMs() {
+        return totalMs;
+    }
+
+    public void setTotalMs(double totalMs) {
+        this.totalMs = totalMs;
+    }
+}
@@ -1,14 +1,30 @@
 package ru.netology.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+
 public class FileInfoDto {
     private String filename;
     private Long size;
+    // Только для /list?stats=true
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long downloads;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LocalDateTime lastAccess;
 
     public FileInfoDto(String filename, Long size) {
         this.filename = filename;
         this.size = size;
     }
 
+    public FileInfoDto(String filename, Long size, Long downloads, LocalDateTime lastAccess) {
+        this.filename = filename;
+        this.size = size;
+        this.downloads = downloads;
+        this.lastAccess = lastAccess;
+    }
+
     public String getFilename() {
         return filename;
     }
@@ -24,7 +40,20 @@ public class FileInfoDto {
     public void setSize(Long size) {
         this.size = size;
     }
-}
 
+    public Long getDownloads() {
+        return downloads;
+    }
+
+    public void setDownloads(Long downloads) {
+        this.downloads = downloads;
+    }
 
+    public LocalDateTime getLastAccess() {
+        return lastAccess;
+    }
 
+    public void setLastAccess(LocalDateTime lastAccess) {
+        this.lastAccess = lastAccess;
+    }
+}
@@ -0,0 +1,117 @@
+package ru.netology.dto;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+public class FileListQuery {
+    public static final String SORT_NAME = "name";
+    public static final String SORT_SIZE = "size";
+    public static final String SORT_DATE = "date";
+
+    private String search;
+    private String prefix;
+    private Long minSize;
+    private Long maxSize;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to;
+    private String sort = SORT_DATE;
+    private String order;
+    // Счётчики скачиваний и время последнего доступа в ответе
+    private boolean stats;
+    // Только файлы, которые не скачивали с этого момента (в том числе ни разу)
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime notAccessedSince;
+
+    public FileListQuery() {}
+
+    public String getSearch() {
+        return search;
+    }
+
+    public void setSearch(String search) {
+        this.search = search;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public Long getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(Long minSize) {
+        this.minSize = minSize;
+    }
+
+    public Long getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(Long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public LocalDateTime getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDateTime from) {
+        this.from = from;
+    }
+
+    public LocalDateTime getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDateTime to) {
+        this.to = to;
+    }
+
+    public String getSort() {
+        return sort;
+    }
+
+    public void setSort(String sort) {
+        this.sort = sort;
+    }
+
+    public String getOrder() {
+        return order;
+    }
+
+    public void setOrder(String order) {
+        this.order = order;
+    }
+
+    public boolean isStats() {
+        return stats;
+    }
+
+    public void setStats(boolean stats) {
+        this.stats = stats;
+    }
+
+    public LocalDateTime getNotAccessedSince() {
+        return notAccessedSince;
+    }
+
+    public void setNotAccessedSince(LocalDateTime notAccessedSince) {
+        this.notAccessedSince = notAccessedSince;
+    }
+
+    // По умолчанию имена по возрастанию, размер и дата — от больших к меньшим
+    public boolean isAscending() {
+        if (order == null || order.isBlank()) {
+            return SORT_NAME.equals(sort);
+        }
+        return "asc".equalsIgnoreCase(order);
+    }
+}
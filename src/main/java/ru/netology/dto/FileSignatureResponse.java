@@ -0,0 +1,59 @@
+package ru.netology.dto;
+
+import java.util.List;
+
+public class FileSignatureResponse {
+    private String filename;
+    private Long version;
+    private Long size;
+    private int blockSize;
+    private List<BlockChecksumDto> blocks;
+
+    public FileSignatureResponse(String filename, Long version, Long size, int blockSize, List<BlockChecksumDto> blocks) {
+        this.filename = filename;
+        this.version = version;
+        this.size = size;
+        this.blockSize = blockSize;
+        this.blocks = blocks;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public List<BlockChecksumDto> getBlocks() {
+        return blocks;
+    }
+
+    public void setBlocks(List<BlockChecksumDto> blocks) {
+        this.blocks = blocks;
+    }
+}
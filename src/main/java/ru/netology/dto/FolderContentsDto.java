@@ -0,0 +1,39 @@
+package ru.netology.dto;
+
+import java.util.List;
+
+public class FolderContentsDto {
+    private FolderDto folder;
+    private List<FolderDto> folders;
+    private List<FileInfoDto> files;
+
+    public FolderContentsDto(FolderDto folder, List<FolderDto> folders, List<FileInfoDto> files) {
+        this.folder = folder;
+        this.folders = folders;
+        this.files = files;
+    }
+
+    public FolderDto getFolder() {
+        return folder;
+    }
+
+    public void setFolder(FolderDto folder) {
+        this.folder = folder;
+    }
+
+    public List<FolderDto> getFolders() {
+        return folders;
+    }
+
+    public void setFolders(List<FolderDto> folders) {
+        this.folders = folders;
+    }
+
+    public List<FileInfoDto> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<FileInfoDto> files) {
+        this.files = files;
+    }
+}
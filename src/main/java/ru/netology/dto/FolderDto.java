@@ -0,0 +1,43 @@
+package ru.netology.dto;
+
+import ru.netology.entity.Folder;
+
+public class FolderDto {
+    private Long id;
+    private String name;
+    private Long parentId;
+
+    public FolderDto(Long id, String name, Long parentId) {
+        this.id = id;
+        this.name = name;
+        this.parentId = parentId;
+    }
+
+    public static FolderDto of(Folder folder) {
+        return new FolderDto(folder.getId(), folder.getName(), folder.getParentId());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Long getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(Long parentId) {
+        this.parentId = parentId;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.netology.dto;
+
+public class FolderFileDto {
+    private String filename;
+    private Long size;
+    private Long folderId;
+
+    public FolderFileDto(String filename, Long size, Long folderId) {
+        this.filename = filename;
+        this.size = size;
+        this.folderId = folderId;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    public Long getFolderId() {
+        return folderId;
+    }
+
+    public void setFolderId(Long folderId) {
+        this.folderId = folderId;
+    }
+}
@@ -0,0 +1,47 @@
+package ru.netology.dto;
+
+public class QuarantinedFileDto {
+    private Integer id;
+    private String login;
+    private String filename;
+    private Long size;
+
+    public QuarantinedFileDto(Integer id, String login, String filename, Long size) {
+        this.id = id;
+        this.login = login;
+        this.filename = filename;
+        this.size = size;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getLogin() {
+        return login;
+    }
+
+    public void setLogin(String login) {
+        this.login = login;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public Long getSize() {
+        return size;
+    }
+
+    public void setSize(Long size) {
+        this.size = size;
+    }
+}
@@ -0,0 +1,142 @@
+package ru.netology.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class ReconcileStatusDto {
+    private boolean running;
+    private boolean repair;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+    private long diskFiles;
+    private long rows;
+    private long matched;
+    private long orphanFiles;
+    private long missingFiles;
+    private long skippedRecent;
+    private long repaired;
+    private List<String> samples;
+
+    public ReconcileStatusDto(boolean running, boolean repair, LocalDateTime startedAt, LocalDateTime finishedAt,
+                              String error, long diskFiles, long rows, long matched, long orphanFiles,
+                              long missingFiles, long skippedRecent, long repaired, List<String> samples) {
+        this.running = running;
+        this.repair = repair;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.error = error;
+        this.diskFiles = diskFiles;
+        this.rows = rows;
+        this.matched = matched;
+        this.orphanFiles = orphanFiles;
+        this.missingFiles = missingFiles;
+        this.skippedRecent = skippedRecent;
+        this.repaired = repaired;
+        this.samples = samples;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void setRunning(boolean running) {
+        this.running = running;
+    }
+
+    public boolean isRepair() {
+        return repair;
+    }
+
+    public void setRepair(boolean repair) {
+        this.repair = repair;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(LocalDateTime startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public long getDiskFiles() {
+        return diskFiles;
+    }
+
+    public void setDiskFiles(long diskFiles) {
+        this.diskFiles = diskFiles;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+
+    public long getMatched() {
+        return matched;
+    }
+
+    public void setMatched(long matched) {
+        this.matched = matched;
+    }
+
+    public long getOrphanFiles() {
+        return orphanFiles;
+    }
+
+    public void setOrphanFiles(long orphanFiles) {
+        this.orphanFiles = orphanFiles;
+    }
+
+    public long getMissingFiles() {
+        return missingFiles;
+    }
+
+    public void setMissingFiles(long missingFiles) {
+        this.missingFiles = missingFiles;
+    }
+
+    public long getSkippedRecent() {
+        return skippedRecent;
+    }
+
+    public void setSkippedRecent(long skippedRecent) {
+        this.skippedRecent = skippedRecent;
+    }
+
+    public long getRepaired() {
+        return repaired;
+    }
+
+    public void setRepaired(long repaired) {
+        this.repaired = repaired;
+    }
+
+    public List<String> getSamples() {
+        return samples;
+    }
+
+    public void setSamples(List<String> samples) {
+        this.samples = samples;
+    }
+}
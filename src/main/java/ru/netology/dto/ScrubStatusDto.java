@@ -0,0 +1,82 @@
+package ru.netology.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class ScrubStatusDto {
+    private boolean enabled;
+    private LocalDateTime passStarted;
+    private Integer lastFileId;
+    private long filesVerified;
+    private long bytesVerified;
+    private long mismatches;
+    private List<QuarantinedFileDto> quarantined;
+
+    public ScrubStatusDto(boolean enabled, LocalDateTime passStarted, Integer lastFileId,
+                          long filesVerified, long bytesVerified, long mismatches,
+                          List<QuarantinedFileDto> quarantined) {
+        this.enabled = enabled;
+        this.passStarted = passStarted;
+        this.lastFileId = lastFileId;
+        this.filesVerified = filesVerified;
+        this.bytesVerified = bytesVerified;
+        this.mismatches = mismatches;
+        this.quarantined = quarantined;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public LocalDateTime getPassStarted() {
+        return passStarted;
+    }
+
+    public void setPassStarted(LocalDateTime passStarted) {
+        this.passStarted = passStarted;
+    }
+
+    public Integer getLastFileId() {
+        return lastFileId;
+    }
+
+    public void setLastFileId(Integer lastFileId) {
+        this.lastFileId = lastFileId;
+    }
+
+    public long getFilesVerified() {
+        return filesVerified;
+    }
+
+    public void setFilesVerified(long filesVerified) {
+        this.filesVerified = filesVerified;
+    }
+
+    public long getBytesVerified() {
+        return bytesVerified;
+    }
+
+    public void setBytesVerified(long bytesVerified) {
+        this.bytesVerified = bytesVerified;
+    }
+
+    public long getMismatches() {
+        return mismatches;
+    }
+
+    public void setMismatches(long mismatches) {
+        this.mismatches = mismatches;
+    }
+
+    public List<QuarantinedFileDto> getQuarantined() {
+        return quarantined;
+    }
+
+    public void setQuarantined(List<QuarantinedFileDto> quarantined) {
+        this.quarantined = quarantined;
+    }
+}
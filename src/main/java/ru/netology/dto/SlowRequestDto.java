@@ -0,0 +1,72 @@
+package ru.netology.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+public class SlowRequestDto {
+    private String endpoint;
+    private int status;
+    private Instant finishedAt;
+    private double totalMs;
+    // Время этапов в миллисекундах; этапы могут вкладываться, остаток — код приложения и запись ответа
+    private Map<String, Double> stagesMs;
+    private int sqlStatements;
+
+    public SlowRequestDto(String endpoint, int status, Instant finishedAt, double totalMs,
+                          Map<String, Double> stagesMs, int sqlStatements) {
+        this.endpoint = endpoint;
+        this.status = status;
+        this.finishedAt = finishedAt;
+        this.totalMs = totalMs;
+        this.stagesMs = stagesMs;
+        this.sqlStatements = sqlStatements;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public double getTotalMs() {
+        return totalMs;
+    }
+
+    public void setTotalMs(double totalMs) {
+        this.totalMs = totalMs;
+    }
+
+    public Map<String, Double> getStagesMs() {
+        return stagesMs;
+    }
+
+    public void setStagesMs(Map<String, Double> stagesMs) {
+        this.stagesMs = stagesMs;
+    }
+
+    public int getSqlStatements() {
+        return sqlStatements;
+    }
+
+    public void setSqlStatements(int sqlStatements) {
+        this.sqlStatements = sqlStatements;
+    }
+}
@@ -0,0 +1,49 @@
+package ru.netology.dto;
+
+import java.util.List;
+
+public class SqlStatsDto {
+    private long statements;
+    private long slowStatements;
+    private double totalMs;
+    private List<EndpointSqlStatsDto> endpoints;
+
+    public SqlStatsDto(long statements, long slowStatements, double totalMs, List<EndpointSqlStatsDto> endpoints) {
+        this.statements = statements;
+        this.slowStatements = slowStatements;
+        this.totalMs = totalMs;
+        this.endpoints = endpoints;
+    }
+
+    public long getStatements() {
+        return statements;
+    }
+
+    public void setStatements(long statements) {
+        this.statements = statements;
+    }
+
+    public long getSlowStatements() {
+        return slowStatements;
+    }
+
+    public void setSlowStatements(long slowStatements) {
+        this.slowStatements = slowStatements;
+    }
+
+    public double getTotalMs() {
+        return totalMs;
+    }
+
+    public void setTotalMs(double totalMs) {
+        this.totalMs = totalMs;
+    }
+
+    public List<EndpointSqlStatsDto> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(List<EndpointSqlStatsDto> endpoints) {
+        this.endpoints = endpoints;
+    }
+}
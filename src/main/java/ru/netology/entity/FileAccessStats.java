@@ -0,0 +1,42 @@
+package ru.netology.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "file_access_stats")
+public class FileAccessStats {
+    @Id
+    @Column(name = "file_id")
+    private Integer fileId;
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    @Column(name = "download_count", nullable = false)
+    private Long downloadCount;
+
+    @Column(name = "last_access", nullable = false)
+    private LocalDateTime lastAccess;
+
+    public FileAccessStats() {}
+
+    public FileAccessStats(Integer fileId, Integer userId, Long downloadCount, LocalDateTime lastAccess) {
+        this.fileId = fileId;
+        this.userId = userId;
+        this.downloadCount = downloadCount;
+        this.lastAccess = lastAccess;
+    }
+
+    public Integer getFileId() { return fileId; }
+    public void setFileId(Integer fileId) { this.fileId = fileId; }
+
+    public Integer getUserId() { return userId; }
+    public void setUserId(Integer userId) { this.userId = userId; }
+
+    public Long getDownloadCount() { return downloadCount; }
+    public void setDownloadCount(Long downloadCount) { this.downloadCount = downloadCount; }
+
+    public LocalDateTime getLastAccess() { return lastAccess; }
+    public void setLastAccess(LocalDateTime lastAccess) { this.lastAccess = lastAccess; }
+}
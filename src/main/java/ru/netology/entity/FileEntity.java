@@ -1,6 +1,7 @@
 package ru.netology.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.PartitionKey;
 import java.time.LocalDateTime;
 import java.util.Objects;
 
@@ -8,7 +9,8 @@ import java.util.Objects;
 @Table(name = "files")
 public class FileEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "files_id_seq")
+    @SequenceGenerator(name = "files_id_seq", sequenceName = "files_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(nullable = false)
@@ -20,20 +22,43 @@ public class FileEntity {
     @Column(name = "file_path", nullable = false)
     private String filePath;
 
+    @Column(name = "volume")
+    private String volume;
+
+    @Column(name = "folder_id")
+    private Long folderId;
+
+    // CRC32C содержимого, посчитанный при записи
+    @Column(name = "checksum")
+    private Long checksum;
+
+    @Column(nullable = false)
+    private boolean quarantined;
+
     @ManyToOne
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
+    // Ключ секционирования files (V11): Hibernate добавляет его в WHERE своих UPDATE и DELETE,
+    // чтобы они шли в одну секцию, а не проверяли первичный ключ в каждой
+    @PartitionKey
+    @Column(name = "user_id", insertable = false, updatable = false)
+    private Integer userId;
+
     @Column(name = "created_date")
     private LocalDateTime createdDate;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     public FileEntity() {}
 
     public FileEntity(String filename, Long size, String filePath, User user) {
         this.filename = filename;
         this.size = size;
         this.filePath = filePath;
-        this.user = user;
+        setUser(user);
     }
 
     public Integer getId() { return id; }
@@ -48,15 +73,37 @@ public class FileEntity {
     public String getFilePath() { return filePath; }
     public void setFilePath(String filePath) { this.filePath = filePath; }
 
+    public String getVolume() { return volume; }
+    public void setVolume(String volume) { this.volume = volume; }
+
+    public Long getFolderId() { return folderId; }
+    public void setFolderId(Long folderId) { this.folderId = folderId; }
+
+    public Long getChecksum() { return checksum; }
+    public void setChecksum(Long checksum) { this.checksum = checksum; }
+
+    public boolean isQuarantined() { return quarantined; }
+    public void setQuarantined(boolean quarantined) { this.quarantined = quarantined; }
+
     public User getUser() { return user; }
-    public void setUser(User user) { this.user = user; }
+    public void setUser(User user) {
+        this.user = user;
+        this.userId = user != null ? user.getId() : null;
+    }
+
+    public Integer getUserId() { return userId; }
 
     public LocalDateTime getCreatedDate() { return createdDate; }
     public void setCreatedDate(LocalDateTime createdDate) { this.createdDate = createdDate; }
 
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
     @PrePersist
     protected void onCreate() {
         createdDate = LocalDateTime.now();
+        // Пользователь мог получить id после setUser
+        userId = user != null ? user.getId() : null;
     }
 
     @Override
@@ -0,0 +1,82 @@
+package ru.netology.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Entity
+@Table(name = "folders")
+public class Folder {
+    // Последовательность BIGSERIAL: id назначается при persist, до INSERT, и входит в путь той же записи
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "folders_id_seq")
+    @SequenceGenerator(name = "folders_id_seq", sequenceName = "folders_id_seq", allocationSize = 1)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "parent_id")
+    private Long parentId;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private String path;
+
+    @Column(name = "created_date")
+    private LocalDateTime createdDate;
+
+    public Folder() {}
+
+    public Folder(String name, Long parentId, User user) {
+        this.name = name;
+        this.parentId = parentId;
+        this.user = user;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public User getUser() { return user; }
+    public void setUser(User user) { this.user = user; }
+
+    public Long getParentId() { return parentId; }
+    public void setParentId(Long parentId) { this.parentId = parentId; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getPath() { return path; }
+    public void setPath(String path) { this.path = path; }
+
+    public LocalDateTime getCreatedDate() { return createdDate; }
+    public void setCreatedDate(LocalDateTime createdDate) { this.createdDate = createdDate; }
+
+    @PrePersist
+    protected void onCreate() {
+        createdDate = LocalDateTime.now();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Folder folder = (Folder) o;
+        return Objects.equals(id, folder.id) &&
+                Objects.equals(name, folder.name) &&
+                Objects.equals(path, folder.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, path);
+    }
+
+    @Override
+    public String toString() {
+        return "Folder{id=" + id + ", name='" + name + "', path='" + path + "'}";
+    }
+}
@@ -0,0 +1,39 @@
+package ru.netology.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "scrub_state")
+public class ScrubState {
+    @Id
+    private String name;
+
+    @Column(name = "last_file_id", nullable = false)
+    private Integer lastFileId;
+
+    @Column(name = "pass_started")
+    private LocalDateTime passStarted;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public ScrubState() {}
+
+    public ScrubState(String name) {
+        this.name = name;
+        this.lastFileId = 0;
+    }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public Integer getLastFileId() { return lastFileId; }
+    public void setLastFileId(Integer lastFileId) { this.lastFileId = lastFileId; }
+
+    public LocalDateTime getPassStarted() { return passStarted; }
+    public void setPassStarted(LocalDateTime passStarted) { this.passStarted = passStarted; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -1,5 +1,6 @@
 package ru.netology.handler;
 
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -10,14 +11,27 @@ import java.util.Map;
 public class GlobalExceptionHandler {
 
     @ExceptionHandler(RuntimeException.class)
-    public ResponseEntity<Map<String, String>> handleRuntimeException(RuntimeException ex) {
+    public ResponseEntity<Map<String, String>> handleRuntimeException(RuntimeException ex,
+                                                                      HttpServletResponse response) throws Exception {
+        rethrowIfCommitted(ex, response);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(Map.of("message", ex.getMessage()));
     }
 
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<Map<String, String>> handleException(Exception ex) {
+    public ResponseEntity<Map<String, String>> handleException(Exception ex,
+                                                               HttpServletResponse response) throws Exception {
+        rethrowIfCommitted(ex, response);
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(Map.of("message", "Internal server error"));
     }
+
+    // Ошибка посреди потоковой передачи (архив, файл): статус 200 и часть тела уже ушли клиенту.
+    // Исключение возвращается в контейнер, и Tomcat обрывает соединение (в HTTP/2 — поток) без
+    // завершающего блока — клиент получает ошибку, а не обрезанный файл, похожий на целый
+    private static void rethrowIfCommitted(Exception ex, HttpServletResponse response) throws Exception {
+        if (response.isCommitted()) {
+            throw ex;
+        }
+    }
 }
\ No newline at end of file
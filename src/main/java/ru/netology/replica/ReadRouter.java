@@ -0,0 +1,142 @@
+package ru.netology.replica;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.service.FileStorageService;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * Чтения, которые можно отдать реплике: список файлов, метаданные для скачивания, поиск пользователя.
+ * Они выполняются в read-only транзакции, её соединение ReplicaRoutingDataSource берёт из пула реплики;
+ * остальные чтения, в том числе read-only транзакции репозиториев, идут в основную базу.
+ * Без реплики (cloud.replica.url не задан) запросы выполняются как раньше, без транзакции.
+ *
+ * Open-in-view выключен, поэтому вне транзакции EntityManager закрывается сразу после запроса. Запрос должен
+ * прочитать результат целиком внутри вызова (getResultList, а не ленивый getResultStream), а возвращённые
+ * сущности отсоединены. Если к потоку всё же привязан EntityManager без транзакции, на время чтения с реплики
+ * он отвязывается, иначе соединение реплики досталось бы последующей записи.
+ *
+ * Read-your-writes: после изменения файлов пользователя (событие FILE_EVENTS_TOPIC, в кластере — и с других
+ * узлов) его чтения read-your-writes-ms идут в основную базу, пока реплика не догонит.
+ */
+@Component
+public class ReadRouter {
+    private static final int PRUNE_THRESHOLD = 4096;
+
+    private final ClusterEventBus clusterEventBus;
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate replicaTransaction;
+    private final boolean enabled;
+    private final long windowNanos;
+    // Пользователь -> до какого System.nanoTime() читать из основной базы
+    private final Map<Integer, Long> recentWrites = new ConcurrentHashMap<>();
+
+    private volatile boolean allRecent;
+    private volatile long allRecentUntil;
+
+    public ReadRouter(ClusterEventBus clusterEventBus,
+                      EntityManagerFactory entityManagerFactory,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${cloud.replica.url:}") String replicaUrl,
+                      @Value("${cloud.replica.read-your-writes-ms:5000}") long readYourWritesMs) {
+        this.clusterEventBus = clusterEventBus;
+        this.entityManagerFactory = entityManagerFactory;
+        this.replicaTransaction = new TransactionTemplate(transactionManager);
+        this.replicaTransaction.setReadOnly(true);
+        this.enabled = replicaUrl != null && !replicaUrl.isBlank();
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(readYourWritesMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            clusterEventBus.subscribe(FileStorageService.FILE_EVENTS_TOPIC, this::onFileEvent);
+        }
+    }
+
+    public <T> T read(Integer userId, Supplier<T> query) {
+        if (!enabled || isRecentWriter(userId)) {
+            return query.get();
+        }
+        return onReplica(query);
+    }
+
+    // Пустой ответ реплики может означать отставание (пользователь только что зарегистрировался) — повтор в основной базе
+    public <T> Optional<T> lookup(Supplier<Optional<T>> query) {
+        if (!enabled) {
+            return query.get();
+        }
+        Optional<T> result = onReplica(query);
+        return result != null && result.isPresent() ? result : query.get();
+    }
+
+    public void recordWrite(Integer userId) {
+        long now = System.nanoTime();
+        if (recentWrites.size() >= PRUNE_THRESHOLD) {
+            recentWrites.values().removeIf(until -> now - until >= 0);
+        }
+        recentWrites.put(userId, now + windowNanos);
+    }
+
+    public boolean isRecentWriter(Integer userId) {
+        long now = System.nanoTime();
+        if (allRecent) {
+            if (now - allRecentUntil < 0) {
+                return true;
+            }
+            allRecent = false;
+        }
+        Long until = recentWrites.get(userId);
+        if (until == null) {
+            return false;
+        }
+        if (now - until < 0) {
+            return true;
+        }
+        recentWrites.remove(userId, until);
+        return false;
+    }
+
+    private <T> T onReplica(Supplier<T> query) {
+        // Внутри уже открытой транзакции (она в основной базе) — как есть
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return query.get();
+        }
+        Object requestEntityManager = TransactionSynchronizationManager.unbindResourceIfPossible(entityManagerFactory);
+        try {
+            return ReplicaRoutingDataSource.readingReplica(() -> replicaTransaction.execute(status -> query.get()));
+        } finally {
+            if (requestEntityManager != null) {
+                TransactionSynchronizationManager.bindResource(entityManagerFactory, requestEntityManager);
+            }
+        }
+    }
+
+    // "userId/filename"; ALL — слушатель кластера переподключался и мог пропустить изменения любых пользователей
+    private void onFileEvent(String payload) {
+        if (ClusterEventBus.ALL.equals(payload)) {
+            allRecentUntil = System.nanoTime() + windowNanos;
+            allRecent = true;
+            return;
+        }
+        int separator = payload.indexOf('/');
+        if (separator > 0) {
+            try {
+                recordWrite(Integer.valueOf(payload.substring(0, separator)));
+            } catch (NumberFormatException ignored) {
+                // чужой формат события — не относится к файлам пользователя
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ru.netology.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/*
+ * Пул соединений приложения при настроенной реплике. Соединение с базой берётся при первом запросе,
+ * когда транзакция уже пометила его read-only. Из пула реплики берутся только такие соединения внутри
+ * ReadRouter: read-only транзакции самих репозиториев (findById, findBy у SimpleJpaRepository) идут
+ * в основную базу, иначе они обходили бы окно read-your-writes. Недоступная реплика не роняет чтения:
+ * retry-after-ms они идут в основную базу.
+ */
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    private final HikariDataSource primary;
+    private final HikariDataSource replica;
+    private final long retryAfterNanos;
+
+    private volatile boolean replicaDown;
+    private volatile long replicaDownUntil;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, HikariDataSource replica, long retryAfterMs) {
+        super(primary);
+        this.primary = primary;
+        this.replica = replica;
+        this.retryAfterNanos = TimeUnit.MILLISECONDS.toNanos(retryAfterMs);
+        setReadOnlyDataSource(new ReplicaOrPrimary());
+    }
+
+    static <T> T readingReplica(Supplier<T> query) {
+        REPLICA_READ.set(Boolean.TRUE);
+        try {
+            return query.get();
+        } finally {
+            REPLICA_READ.remove();
+        }
+    }
+
+    private Connection replicaConnection() throws SQLException {
+        if (REPLICA_READ.get() == null) {
+            return primary.getConnection();
+        }
+        if (replicaDown) {
+            if (System.nanoTime() - replicaDownUntil < 0) {
+                return primary.getConnection();
+            }
+            replicaDown = false;
+        }
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            replicaDownUntil = System.nanoTime() + retryAfterNanos;
+            replicaDown = true;
+            logger.warn("Replica is unavailable, reading from primary for {} ms: {}",
+                    TimeUnit.NANOSECONDS.toMillis(retryAfterNanos), e.getMessage());
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public void close() {
+        replica.close();
+        primary.close();
+    }
+
+    private final class ReplicaOrPrimary extends DelegatingDataSource {
+
+        private ReplicaOrPrimary() {
+            super(replica);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return replicaConnection();
+        }
+    }
+}
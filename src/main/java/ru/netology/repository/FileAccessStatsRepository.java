@@ -0,0 +1,22 @@
+package ru.netology.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
+import ru.netology.entity.FileAccessStats;
+
+import java.util.Collection;
+import java.util.List;
+
+// addAccesses — в FileAccessStatsRepositoryCustomImpl
+public interface FileAccessStatsRepository extends JpaRepository<FileAccessStats, Integer>, FileAccessStatsRepositoryCustom {
+    List<FileAccessStats> findByFileIdIn(Collection<Integer> fileIds);
+
+    // Строки удалённых файлов; проверка по (user_id, id) читает одну секцию files на строку
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM file_access_stats s WHERE NOT EXISTS " +
+            "(SELECT 1 FROM files f WHERE f.user_id = s.user_id AND f.id = s.file_id)", nativeQuery = true)
+    int deleteOrphans();
+}
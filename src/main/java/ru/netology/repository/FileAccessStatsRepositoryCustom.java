@@ -0,0 +1,12 @@
+package ru.netology.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+import ru.netology.entity.FileAccessStats;
+
+import java.util.Collection;
+
+public interface FileAccessStatsRepositoryCustom {
+    // Прибавляет downloadCount к счётчикам и сдвигает lastAccess вперёд; строки создаются при необходимости
+    @Transactional
+    void addAccesses(Collection<FileAccessStats> deltas);
+}
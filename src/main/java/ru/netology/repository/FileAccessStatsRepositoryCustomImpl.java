@@ -0,0 +1,88 @@
+package ru.netology.repository;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import ru.netology.entity.FileAccessStats;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/*
+ * Пачка счётчиков — JDBC-пакетами, а не запросом на файл: сначала UPDATE всех строк, затем INSERT
+ * для файлов, у которых строки ещё нет. Строку мог одновременно вставить другой узел — такие
+ * (ON CONFLICT DO NOTHING вернул 0) обновляются повторно. Прибавление выполняет база, поэтому
+ * сбросы разных узлов не затирают друг друга.
+ */
+public class FileAccessStatsRepositoryCustomImpl implements FileAccessStatsRepositoryCustom {
+    private static final String UPDATE = "UPDATE file_access_stats SET download_count = download_count + ?, " +
+            "last_access = GREATEST(last_access, ?) WHERE file_id = ?";
+    private static final String INSERT = "INSERT INTO file_access_stats (file_id, user_id, download_count, last_access) " +
+            "VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    private final EntityManager entityManager;
+
+    public FileAccessStatsRepositoryCustomImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public void addAccesses(Collection<FileAccessStats> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            List<FileAccessStats> missing = update(connection, deltas);
+            if (missing.isEmpty()) {
+                return;
+            }
+            List<FileAccessStats> raced = insert(connection, missing);
+            if (!raced.isEmpty()) {
+                update(connection, raced);
+            }
+        });
+    }
+
+    // Возвращает записи, для которых строки нет
+    private static List<FileAccessStats> update(Connection connection, Collection<FileAccessStats> deltas) throws SQLException {
+        List<FileAccessStats> ordered = new ArrayList<>(deltas);
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE)) {
+            for (FileAccessStats delta : ordered) {
+                statement.setLong(1, delta.getDownloadCount());
+                statement.setTimestamp(2, Timestamp.valueOf(delta.getLastAccess()));
+                statement.setInt(3, delta.getFileId());
+                statement.addBatch();
+            }
+            return unaffected(ordered, statement.executeBatch());
+        }
+    }
+
+    // Возвращает записи, строку которых успел вставить другой узел
+    private static List<FileAccessStats> insert(Connection connection, List<FileAccessStats> deltas) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            for (FileAccessStats delta : deltas) {
+                statement.setInt(1, delta.getFileId());
+                statement.setInt(2, delta.getUserId());
+                statement.setLong(3, delta.getDownloadCount());
+                statement.setTimestamp(4, Timestamp.valueOf(delta.getLastAccess()));
+                statement.addBatch();
+            }
+            return unaffected(deltas, statement.executeBatch());
+        }
+    }
+
+    // SUCCESS_NO_INFO — драйвер не сообщил число строк; считаем, что строка изменена
+    private static List<FileAccessStats> unaffected(List<FileAccessStats> deltas, int[] counts) {
+        List<FileAccessStats> result = new ArrayList<>();
+        for (int i = 0; i < deltas.size(); i++) {
+            if (counts[i] == 0) {
+                result.add(deltas.get(i));
+            }
+        }
+        return result;
+    }
+}
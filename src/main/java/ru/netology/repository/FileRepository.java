@@ -1,14 +1,93 @@
 package ru.netology.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.netology.dto.DownloadTarget;
 import ru.netology.entity.FileEntity;
 import ru.netology.entity.User;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface FileRepository extends JpaRepository<FileEntity, Long> {
+public interface FileRepository extends JpaRepository<FileEntity, Long>, JpaSpecificationExecutor<FileEntity> {
     List<FileEntity> findByUserOrderByCreatedDateDesc(User user);
     Optional<FileEntity> findByUserAndFilename(User user, String filename);
     boolean existsByUserAndFilename(User user, String filename);
+
+    // Подписанные ссылки: одна строка по первичному ключу, без подгрузки пользователя;
+    // пользователь из ссылки ограничивает поиск одной секцией
+    @Query("SELECT new ru.netology.dto.DownloadTarget(f.id, f.filename, f.filePath, f.size, f.version, f.quarantined) " +
+            "FROM FileEntity f WHERE f.userId = :userId AND f.id = :id")
+    Optional<DownloadTarget> findDownloadTarget(@Param("userId") Integer userId, @Param("id") Integer id);
+
+    @Query("SELECT f.filename FROM FileEntity f WHERE f.user = :user AND f.filename IN :filenames")
+    List<String> findFilenames(@Param("user") User user, @Param("filenames") Collection<String> filenames);
     void deleteByUserAndFilename(User user, String filename);
+
+    List<FileEntity> findByUserAndFolderIdOrderByFilenameAsc(User user, Long folderId);
+    List<FileEntity> findByUserAndFolderIdIsNullOrderByFilenameAsc(User user);
+    boolean existsByUserAndFolderId(User user, Long folderId);
+
+    @Query("SELECT f FROM FileEntity f WHERE f.user = :user AND f.folderId IN " +
+            "(SELECT d.id FROM Folder d WHERE d.user = :user AND d.path LIKE CONCAT(:path, '%')) ORDER BY f.filename")
+    List<FileEntity> findInSubtree(@Param("user") User user, @Param("path") String path);
+
+    // Фоновые проходы по всей таблице (ребалансировка, проверка целостности) читают все секции
+    @Query("SELECT f.volume, SUM(f.size) FROM FileEntity f GROUP BY f.volume")
+    List<Object[]> sumSizeByVolume();
+
+    List<FileEntity> findTop100ByVolumeAndIdGreaterThanOrderByIdAsc(String volume, Integer id);
+
+    List<FileEntity> findTop100ByIdGreaterThanOrderByIdAsc(Integer id);
+    List<FileEntity> findByQuarantinedTrueOrderByIdAsc();
+
+    // Без увеличения версии: служебные отметки не должны ломать оптимистичную блокировку клиентов
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileEntity f SET f.checksum = :checksum " +
+            "WHERE f.userId = :userId AND f.id = :id AND f.version = :version AND f.checksum IS NULL")
+    int recordChecksum(@Param("userId") Integer userId, @Param("id") Integer id, @Param("version") Long version,
+                       @Param("checksum") Long checksum);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileEntity f SET f.quarantined = true WHERE f.userId = :userId AND f.id = :id AND f.version = :version")
+    int quarantine(@Param("userId") Integer userId, @Param("id") Integer id, @Param("version") Long version);
+
+    // Ручная операция администратора по id из отчёта: проверяет первичный ключ во всех секциях
+    @Modifying
+    @Transactional
+    @Query("UPDATE FileEntity f SET f.quarantined = false WHERE f.id = :id")
+    int release(@Param("id") Integer id);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM files WHERE user_id = :userId AND file_path COLLATE \"C\" = :path)",
+            nativeQuery = true)
+    boolean existsByUserIdAndPath(@Param("userId") Integer userId, @Param("path") String path);
+
+    @Query(value = "SELECT filename FROM files WHERE user_id = :userId AND file_path COLLATE \"C\" = :path",
+            nativeQuery = true)
+    Optional<String> findFilenameByUserIdAndPath(@Param("userId") Integer userId, @Param("path") String path);
+
+    // Постранично по ключу: after — последний ключ предыдущей страницы
+    @Query(value = "SELECT file_path FROM files WHERE user_id = :userId AND file_path LIKE :pattern "
+            + "AND file_path COLLATE \"C\" > :after ORDER BY file_path COLLATE \"C\" LIMIT :limit",
+            nativeQuery = true)
+    List<String> findPathsLike(@Param("userId") Integer userId, @Param("pattern") String pattern,
+                               @Param("after") String after, @Param("limit") int limit);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM FileEntity f WHERE f.userId = :userId AND f.id = :id AND f.filePath = :path")
+    int deleteByIdAndFilePath(@Param("userId") Integer userId, @Param("id") Integer id, @Param("path") String path);
+
+    @Modifying
+    @Transactional
+    // prefix экранируется вызывающим: '!' перед '!', '%' и '_'
+    @Query("UPDATE FileEntity f SET f.volume = :volume WHERE f.volume IS NULL " +
+            "AND f.filePath LIKE CONCAT(:prefix, '%') ESCAPE '!'")
+    int assignVolume(@Param("volume") String volume, @Param("prefix") String prefix);
 }
\ No newline at end of file
@@ -0,0 +1,103 @@
+package ru.netology.repository;
+
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import ru.netology.dto.FileListQuery;
+import ru.netology.entity.FileAccessStats;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Условия /list совпадают с выражениями индексов V7: lower(filename) для поиска, (user_id, поле, id) для сортировок
+public final class FileSpecifications {
+
+    private FileSpecifications() {}
+
+    public static Specification<FileEntity> forQuery(User user, FileListQuery query) {
+        return forQuery(user, query, Set.of());
+    }
+
+    // recentlyAccessedIds — файлы, скачанные после notAccessedSince, но ещё не записанные в file_access_stats
+    public static Specification<FileEntity> forQuery(User user, FileListQuery query, Collection<Integer> recentlyAccessedIds) {
+        return (root, criteriaQuery, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            predicates.add(cb.equal(root.get("user"), user));
+
+            if (hasText(query.getSearch())) {
+                predicates.add(cb.like(cb.lower(root.get("filename")),
+                        "%" + escapeLike(query.getSearch()) + "%", '\\'));
+            }
+            if (hasText(query.getPrefix())) {
+                predicates.add(cb.like(cb.lower(root.get("filename")),
+                        escapeLike(query.getPrefix()) + "%", '\\'));
+            }
+            if (query.getMinSize() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("size"), query.getMinSize()));
+            }
+            if (query.getMaxSize() != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("size"), query.getMaxSize()));
+            }
+            if (query.getFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdDate"), query.getFrom()));
+            }
+            if (query.getTo() != null) {
+                predicates.add(cb.lessThan(root.get("createdDate"), query.getTo()));
+            }
+            if (query.getNotAccessedSince() != null) {
+                // По первичному ключу file_access_stats на каждую строку; строки нет — файл не скачивали
+                Subquery<Integer> accessed = criteriaQuery.subquery(Integer.class);
+                Root<FileAccessStats> stats = accessed.from(FileAccessStats.class);
+                accessed.select(stats.get("fileId")).where(
+                        cb.equal(stats.get("fileId"), root.get("id")),
+                        cb.greaterThanOrEqualTo(stats.get("lastAccess"), query.getNotAccessedSince()));
+                predicates.add(cb.not(cb.exists(accessed)));
+                if (!recentlyAccessedIds.isEmpty()) {
+                    predicates.add(cb.not(root.get("id").in(recentlyAccessedIds)));
+                }
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    // Имена сравниваются по кодовым точкам: столбец filename в COLLATE "C" (V13)
+    public static Sort sortFor(FileListQuery query) {
+        String order = query.getOrder();
+        if (hasText(order) && !"asc".equalsIgnoreCase(order) && !"desc".equalsIgnoreCase(order)) {
+            throw new IllegalArgumentException("Unsupported order: " + order);
+        }
+        Sort.Direction direction = query.isAscending() ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return Sort.by(direction, sortProperty(query.getSort()), "id");
+    }
+
+    public static String sortProperty(String sort) {
+        if (sort == null || FileListQuery.SORT_DATE.equals(sort)) {
+            return "createdDate";
+        }
+        if (FileListQuery.SORT_NAME.equals(sort)) {
+            return "filename";
+        }
+        if (FileListQuery.SORT_SIZE.equals(sort)) {
+            return "size";
+        }
+        throw new IllegalArgumentException("Unsupported sort: " + sort);
+    }
+
+    static boolean hasText(String value) {
+        return value != null && !value.isBlank();
+    }
+
+    private static String escapeLike(String value) {
+        return value.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
@@ -0,0 +1,7 @@
+package ru.netology.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.netology.entity.FilesPartitionProgress;
+
+public interface FilesPartitionProgressRepository extends JpaRepository<FilesPartitionProgress, String> {
+}
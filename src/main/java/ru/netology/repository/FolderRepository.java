@@ -0,0 +1,35 @@
+package ru.netology.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import ru.netology.entity.Folder;
+import ru.netology.entity.User;
+import java.util.List;
+import java.util.Optional;
+
+public interface FolderRepository extends JpaRepository<Folder, Long> {
+    Optional<Folder> findByIdAndUser(Long id, User user);
+    List<Folder> findByUserAndParentIdOrderByNameAsc(User user, Long parentId);
+    List<Folder> findByUserAndParentIdIsNullOrderByNameAsc(User user);
+    List<Folder> findByUserAndPathStartingWithOrderByPathAsc(User user, String path);
+    Optional<Folder> findByUserAndParentIdAndName(User user, Long parentId, String name);
+    Optional<Folder> findByUserAndParentIdIsNullAndName(User user, String name);
+    boolean existsByUserAndParentIdAndName(User user, Long parentId, String name);
+    boolean existsByUserAndParentIdIsNullAndName(User user, String name);
+    boolean existsByParentId(Long parentId);
+
+    // Перенос поддерева — одна замена префикса пути у вложенных папок; файлы и диск не затрагиваются
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE folders SET path = :newPath || substring(path from char_length(:oldPath) + 1), " +
+            "parent_id = CASE WHEN id = :id THEN CAST(:parentId AS BIGINT) ELSE parent_id END " +
+            "WHERE user_id = :userId AND path LIKE :oldPath || '%'", nativeQuery = true)
+    int moveSubtree(@Param("userId") Integer userId,
+                    @Param("id") Long id,
+                    @Param("parentId") Long parentId,
+                    @Param("oldPath") String oldPath,
+                    @Param("newPath") String newPath);
+}
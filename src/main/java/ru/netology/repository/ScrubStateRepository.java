@@ -0,0 +1,7 @@
+package ru.netology.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.netology.entity.ScrubState;
+
+public interface ScrubStateRepository extends JpaRepository<ScrubState, String> {
+}
@@ -1,10 +1,20 @@
 package ru.netology.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.netology.entity.User;
-import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, Long> {
-    Optional<User> findByLogin(String login);
+// findByLogin — в UserRepositoryCustomImpl
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     boolean existsByLogin(String login);
-}
\ No newline at end of file
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :newPassword WHERE u.id = :id AND u.password = :oldPassword")
+    int updatePassword(@Param("id") Integer id,
+                       @Param("oldPassword") String oldPassword,
+                       @Param("newPassword") String newPassword);
+}
@@ -0,0 +1,9 @@
+package ru.netology.repository;
+
+import ru.netology.entity.User;
+
+import java.util.Optional;
+
+public interface UserRepositoryCustom {
+    Optional<User> findByLogin(String login);
+}
@@ -0,0 +1,29 @@
+package ru.netology.repository;
+
+import jakarta.persistence.EntityManager;
+import ru.netology.entity.User;
+import ru.netology.replica.ReadRouter;
+
+import java.util.Optional;
+
+// Поиск по логину — на каждом запросе с токеном и при входе, поэтому читается с реплики, если она настроена
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private final EntityManager entityManager;
+    private final ReadRouter readRouter;
+
+    public UserRepositoryCustomImpl(EntityManager entityManager, ReadRouter readRouter) {
+        this.entityManager = entityManager;
+        this.readRouter = readRouter;
+    }
+
+    @Override
+    public Optional<User> findByLogin(String login) {
+        return readRouter.lookup(() -> entityManager
+                .createQuery("SELECT u FROM User u WHERE u.login = :login", User.class)
+                .setParameter("login", login)
+                .getResultList()
+                .stream()
+                .findFirst());
+    }
+}
@@ -0,0 +1,61 @@
+package ru.netology.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.Base64;
+
+/*
+ * Подпись ссылки на скачивание: HMAC-SHA256 от "download:<user>:<id>:<version>:<expires>".
+ * Версия в подписи делает ссылку недействительной после перезаписи или переименования файла,
+ * поэтому ответ по ней неизменен и его можно кэшировать на прокси до истечения срока.
+ */
+@Component
+public class DownloadUrlSigner {
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::createMac);
+
+    public DownloadUrlSigner(@Value("${cloud.download.secret:${cloud.jwt.secret}}") String secret) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    }
+
+    public String sign(Integer userId, Integer fileId, Long version, long expires) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(mac(userId, fileId, version, expires));
+    }
+
+    public boolean verify(Integer userId, Integer fileId, Long version, long expires, String signature) {
+        if (expires < Instant.now().getEpochSecond()) {
+            return false;
+        }
+        byte[] actual;
+        try {
+            actual = Base64.getUrlDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(mac(userId, fileId, version, expires), actual);
+    }
+
+    private byte[] mac(Integer userId, Integer fileId, Long version, long expires) {
+        String message = "download:" + userId + ":" + fileId + ":" + version + ":" + expires;
+        return macs.get().doFinal(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac createMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Could not initialize download URL signing", e);
+        }
+    }
+}
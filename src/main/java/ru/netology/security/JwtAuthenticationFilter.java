@@ -1,5 +1,6 @@
 package ru.netology.security;
 
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -9,6 +10,8 @@ import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import ru.netology.trace.RequestTrace;
+import ru.netology.trace.TraceStage;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -22,10 +25,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenUtil jwtTokenUtil;
     private final UserDetailsService userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
 
-    public JwtAuthenticationFilter(JwtTokenUtil jwtTokenUtil, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtTokenUtil jwtTokenUtil,
+                                   UserDetailsService userDetailsService,
+                                   TokenRevocationService tokenRevocationService) {
         this.jwtTokenUtil = jwtTokenUtil;
         this.userDetailsService = userDetailsService;
+        this.tokenRevocationService = tokenRevocationService;
+    }
+
+    // Фильтр зарегистрирован и как обычный сервлетный фильтр; подписанным ссылкам токен не нужен
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + "/download/");
     }
 
     @Override
@@ -38,20 +51,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
                 String jwt = authHeader.substring(7);
-                String username = jwtTokenUtil.getUsernameFromToken(jwt);
+                // Один разбор проверяет подпись и срок; недействительный токен бросает исключение
+                long started = RequestTrace.start();
+                Claims claims = jwtTokenUtil.getClaimsFromToken(jwt);
+                String username = claims.getSubject();
+                boolean revoked = tokenRevocationService.isRevoked(claims.getId());
+                RequestTrace.stop(TraceStage.JWT, started);
 
-                if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                if (revoked) {
+                    logger.debug("Rejected revoked token of user: {}", username);
+                } else if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+                    started = RequestTrace.start();
                     UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                    RequestTrace.stop(TraceStage.USER_LOOKUP, started);
+                    UsernamePasswordAuthenticationToken authToken =
+                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
 
-                    if (jwtTokenUtil.validateToken(jwt)) {
-                        UsernamePasswordAuthenticationToken authToken =
-                                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-
-                        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                        SecurityContextHolder.getContext().setAuthentication(authToken);
+                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authToken);
 
-                        logger.debug("Authenticated user: {}", username);
-                    }
+                    logger.debug("Authenticated user: {}", username);
                 }
             }
         } catch (Exception e) {
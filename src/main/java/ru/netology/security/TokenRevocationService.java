@@ -0,0 +1,205 @@
+package ru.netology.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.entity.RevokedToken;
+import ru.netology.repository.RevokedTokenRepository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Отозванные токены (по jti) хранятся в revoked_tokens и в памяти каждого узла: фильтр Блума
+ * отвечает «точно не отозван» для почти всех запросов без обращения к карте, точная карта
+ * jti -> срок действия подтверждает попадания. Другие узлы узнают об отзыве через ClusterEventBus.
+ * Истёкшие записи удаляются периодически, фильтр при этом перестраивается (из Блума удалять нельзя).
+ */
+@Service
+public class TokenRevocationService {
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationService.class);
+
+    public static final String TOPIC = "revoked-tokens";
+
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final ClusterEventBus clusterEventBus;
+    private final int expectedTokens;
+    private final long pruneIntervalMs;
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter filter;
+    private volatile boolean running;
+    private Thread pruner;
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository,
+                                  ClusterEventBus clusterEventBus,
+                                  @Value("${cloud.jwt.revocation.expected-tokens:100000}") int expectedTokens,
+                                  @Value("${cloud.jwt.revocation.prune-interval-ms:60000}") long pruneIntervalMs) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.clusterEventBus = clusterEventBus;
+        this.expectedTokens = expectedTokens;
+        this.pruneIntervalMs = pruneIntervalMs;
+        this.filter = new BloomFilter(expectedTokens);
+    }
+
+    @PostConstruct
+    public void start() {
+        clusterEventBus.subscribe(TOPIC, this::onEvent);
+        reload();
+        running = true;
+        pruner = Thread.ofPlatform()
+                .name("revoked-token-pruner")
+                .daemon()
+                .start(this::runPruner);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (pruner != null) {
+            pruner.interrupt();
+            pruner.join(5000);
+        }
+    }
+
+    // Вызывается на каждый запрос: для неотозванного токена — только проверка битов фильтра
+    public boolean isRevoked(String jti) {
+        if (jti == null || !filter.mightContain(jti)) {
+            return false;
+        }
+        Long expiresAt = revoked.get(jti);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    public void revoke(String jti, Instant expiresAt) {
+        if (expiresAt.toEpochMilli() <= System.currentTimeMillis()) {
+            return;
+        }
+        revokedTokenRepository.save(new RevokedToken(jti, LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault())));
+        add(jti, expiresAt.toEpochMilli());
+        clusterEventBus.publish(TOPIC, jti + " " + expiresAt.toEpochMilli());
+        logger.info("Token {} revoked until {}", jti, expiresAt);
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    // Удаляет истёкшие записи и перестраивает фильтр по оставшимся
+    public void prune() {
+        long now = System.currentTimeMillis();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        rebuild();
+        int deleted = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            logger.debug("Pruned {} expired revoked tokens", deleted);
+        }
+    }
+
+    private void onEvent(String payload) {
+        if (ClusterEventBus.ALL.equals(payload)) {
+            reload();
+            return;
+        }
+        String[] parts = payload.split(" ", 2);
+        if (parts.length == 2) {
+            add(parts[0], Long.parseLong(parts[1]));
+        }
+    }
+
+    private void reload() {
+        try {
+            for (RevokedToken token : revokedTokenRepository.findByExpiresAtAfter(LocalDateTime.now())) {
+                add(token.getJti(), token.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            }
+            logger.info("Loaded {} revoked tokens", revoked.size());
+        } catch (RuntimeException e) {
+            logger.error("Could not load revoked tokens", e);
+        }
+    }
+
+    // Запись в карту раньше битов фильтра: увидевший биты поток найдёт и запись.
+    // Синхронизация только с перестройкой, чтобы новый фильтр не потерял добавленный в это время jti
+    private synchronized void add(String jti, long expiresAt) {
+        revoked.put(jti, expiresAt);
+        filter.add(jti);
+    }
+
+    private synchronized void rebuild() {
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedTokens, revoked.size() * 2));
+        for (String jti : revoked.keySet()) {
+            rebuilt.add(jti);
+        }
+        filter = rebuilt;
+    }
+
+    private void runPruner() {
+        while (running) {
+            try {
+                Thread.sleep(pruneIntervalMs);
+                prune();
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Could not prune revoked tokens: {}", e.getMessage());
+            }
+        }
+    }
+
+    // ~10 бит на элемент и 7 хешей — около 1% ложных срабатываний при заполнении до ожидаемого размера
+    private static final class BloomFilter {
+        private static final int HASHES = 7;
+
+        private final AtomicLongArray bits;
+        private final int mask;
+
+        private BloomFilter(int expected) {
+            int size = Integer.highestOneBit(Math.max(64, expected * 10 - 1)) << 1;
+            this.bits = new AtomicLongArray(size >>> 6);
+            this.mask = size - 1;
+        }
+
+        private void add(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (h1 + i * h2) & mask;
+                long word;
+                do {
+                    word = bits.get(bit >>> 6);
+                } while (!bits.compareAndSet(bit >>> 6, word, word | (1L << bit)));
+            }
+        }
+
+        private boolean mightContain(String value) {
+            long hash = hash(value);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32) | 1;
+            for (int i = 0; i < HASHES; i++) {
+                int bit = (h1 + i * h2) & mask;
+                if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // String.hashCode векторизован в JDK; перемешивание растягивает его на две 32-битные хеш-функции
+        private static long hash(String value) {
+            long hash = value.hashCode() * 0x9e3779b97f4a7c15L;
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
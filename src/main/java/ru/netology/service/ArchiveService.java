@@ -0,0 +1,185 @@
+package ru.netology.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.netology.entity.FileEntity;
+import ru.netology.storage.StorageBackend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+@Service
+public class ArchiveService {
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveService.class);
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final StorageBackend storageBackend;
+    private final Set<String> storedExtensions;
+
+    public ArchiveService(StorageBackend storageBackend,
+                          @Value("${cloud.archive.stored-extensions:zip,gz,tgz,bz2,xz,zst,7z,rar,jar,docx,xlsx,pptx,odt,ods,odp,epub,jpg,jpeg,png,gif,webp,heic,avif,mp3,m4a,aac,ogg,opus,flac,mp4,m4v,mov,mkv,avi,webm}")
+                          String storedExtensions) {
+        this.storageBackend = storageBackend;
+        this.storedExtensions = Arrays.stream(storedExtensions.split(","))
+                .map(String::trim)
+                .map(extension -> extension.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+    }
+
+    public void writeArchive(List<FileEntity> files, OutputStream out) throws IOException {
+        // Поток подготовки читает следующий файл, пока текущий уходит в сеть; очередь ограничивает память
+        BlockingQueue<PreparedEntry> queue = new ArrayBlockingQueue<>(1);
+        Thread prefetcher = Thread.ofVirtual()
+                .name("archive-prefetch")
+                .start(() -> prefetch(files, queue));
+
+        byte[] buffer = new byte[CHUNK_SIZE];
+        PreparedEntry entry = null;
+        // Без try-with-resources: после ошибки центральный каталог не пишется, и обрезанный архив не выглядит целым
+        ZipOutputStream zip = new ZipOutputStream(out);
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                entry = queue.take();
+                if (entry.failure != null) {
+                    throw entry.failure;
+                }
+                writeEntry(zip, entry, buffer);
+                entry.close();
+                entry = null;
+            }
+            zip.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Archive streaming interrupted");
+        } finally {
+            if (entry != null) {
+                entry.close();
+            }
+            prefetcher.interrupt();
+            awaitTermination(prefetcher);
+            PreparedEntry pending;
+            while ((pending = queue.poll()) != null) {
+                pending.close();
+            }
+        }
+    }
+
+    private void awaitTermination(Thread prefetcher) {
+        try {
+            prefetcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Уже сжатые форматы пишутся с уровнем 0: deflate из несжатых блоков (5 байт на 64 КБ), CRC и размер
+    // идут в дескрипторе после данных. Запись STORED требует их до заголовка, то есть второго чтения файла,
+    // а контрольная сумма в БД — CRC32C, не CRC-32 формата zip
+    private void writeEntry(ZipOutputStream zip, PreparedEntry entry, byte[] buffer) throws IOException {
+        zip.setLevel(entry.stored ? Deflater.NO_COMPRESSION : Deflater.BEST_SPEED);
+        zip.putNextEntry(new ZipEntry(entry.file.getFilename()));
+
+        zip.write(entry.head, 0, entry.headLength);
+        if (entry.rest != null) {
+            int read;
+            while ((read = entry.rest.read(buffer)) != -1) {
+                zip.write(buffer, 0, read);
+            }
+        }
+        zip.closeEntry();
+    }
+
+    private void prefetch(List<FileEntity> files, BlockingQueue<PreparedEntry> queue) {
+        try {
+            for (FileEntity file : files) {
+                PreparedEntry entry;
+                try {
+                    entry = prepare(file);
+                } catch (IOException | RuntimeException e) {
+                    queue.put(PreparedEntry.failed(file, e));
+                    return;
+                }
+                try {
+                    queue.put(entry);
+                } catch (InterruptedException e) {
+                    entry.close();
+                    throw e;
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.debug("Archive prefetch cancelled");
+        }
+    }
+
+    private PreparedEntry prepare(FileEntity file) throws IOException {
+        PreparedEntry entry = new PreparedEntry(file, isStored(file.getFilename()));
+
+        InputStream in = storageBackend.read(file.getFilePath(), 0, Long.MAX_VALUE);
+        try {
+            entry.headLength = in.readNBytes(entry.head, 0, CHUNK_SIZE);
+            if (entry.headLength == CHUNK_SIZE) {
+                entry.rest = in;
+            } else {
+                in.close();
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return entry;
+    }
+
+    private boolean isStored(String filename) {
+        int dot = filename.lastIndexOf('.');
+        return dot >= 0 && storedExtensions.contains(filename.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static final class PreparedEntry {
+        private final FileEntity file;
+        private final boolean stored;
+        private final byte[] head;
+        private int headLength;
+        private InputStream rest;
+        private IOException failure;
+
+        private PreparedEntry(FileEntity file, boolean stored) {
+            this.file = file;
+            this.stored = stored;
+            this.head = new byte[CHUNK_SIZE];
+        }
+
+        private static PreparedEntry failed(FileEntity file, Exception failure) {
+            PreparedEntry entry = new PreparedEntry(file, false);
+            entry.failure = failure instanceof IOException io
+                    ? io
+                    : new IOException("Could not read '" + file.getFilename() + "'", failure);
+            return entry;
+        }
+
+        private void close() {
+            if (rest == null) {
+                return;
+            }
+            try {
+                rest.close();
+            } catch (IOException e) {
+                logger.debug("Could not close archive source for '{}'", file.getFilename(), e);
+            }
+        }
+    }
+}
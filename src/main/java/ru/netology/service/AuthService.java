@@ -1,28 +1,47 @@
 package ru.netology.service;
 
-import org.springframework.security.crypto.password.PasswordEncoder;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import ru.netology.entity.User;
 import ru.netology.repository.UserRepository;
 import ru.netology.security.JwtTokenUtil;
+import ru.netology.security.TokenRevocationService;
 import java.util.Optional;
 
 @Service
 public class AuthService {
+    private static final Logger logger = LoggerFactory.getLogger(AuthService.class);
+
     private final UserRepository userRepository;
     private final JwtTokenUtil jwtTokenUtil;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHasher passwordHasher;
+    private final TokenRevocationService tokenRevocationService;
 
-    public AuthService(UserRepository userRepository, JwtTokenUtil jwtTokenUtil, PasswordEncoder passwordEncoder) {
+    public AuthService(UserRepository userRepository,
+                       JwtTokenUtil jwtTokenUtil,
+                       PasswordHasher passwordHasher,
+                       TokenRevocationService tokenRevocationService) {
         this.userRepository = userRepository;
         this.jwtTokenUtil = jwtTokenUtil;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHasher = passwordHasher;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     public Optional<String> authenticate(String login, String password) {
-        return userRepository.findByLogin(login)
-                .filter(user -> passwordEncoder.matches(password, user.getPassword()))
-                .map(user -> jwtTokenUtil.generateToken(login));
+        Optional<User> user = userRepository.findByLogin(login);
+        if (user.isEmpty()) {
+            return Optional.empty();
+        }
+        PasswordHasher.Verification verification = passwordHasher.verify(password, user.get().getPassword());
+        if (!verification.isMatched()) {
+            return Optional.empty();
+        }
+        if (verification.getUpgradedHash() != null) {
+            upgradePassword(user.get(), verification.getUpgradedHash());
+        }
+        return Optional.of(jwtTokenUtil.generateToken(login));
     }
 
     public boolean register(String login, String password) {
@@ -32,8 +51,36 @@ public class AuthService {
 
         User user = new User();
         user.setLogin(login);
-        user.setPassword(passwordEncoder.encode(password));
+        user.setPassword(passwordHasher.encode(password));
         userRepository.save(user);
         return true;
     }
-}
\ No newline at end of file
+
+    public void logout(String authToken) {
+        String token = authToken.startsWith("Bearer ") ? authToken.substring(7) : authToken;
+        revokeToken(token);
+    }
+
+    // Токен действует до истечения срока, пока его jti не попадёт в список отозванных;
+    // false — токен выдан до появления jti и отозвать его нельзя
+    public boolean revokeToken(String token) {
+        Claims claims = jwtTokenUtil.getClaimsFromToken(token);
+        if (claims.getId() == null) {
+            logger.warn("Token of {} has no id and cannot be revoked", claims.getSubject());
+            return false;
+        }
+        tokenRevocationService.revoke(claims.getId(), claims.getExpiration().toInstant());
+        return true;
+    }
+
+    // Хеш заменяется, только если пароль не сменили, пока шла проверка
+    private void upgradePassword(User user, String upgradedHash) {
+        try {
+            if (userRepository.updatePassword(user.getId(), user.getPassword(), upgradedHash) > 0) {
+                logger.info("Password hash of {} upgraded to the configured cost", user.getLogin());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not upgrade password hash of {}: {}", user.getLogin(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package ru.netology.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.Folder;
+import ru.netology.entity.User;
+import ru.netology.repository.FileRepository;
+import ru.netology.repository.FolderRepository;
+import ru.netology.repository.UserRepository;
+import ru.netology.storage.StorageBackend;
+import ru.netology.storage.StoragePlacement;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/*
+ * Импорт дерева каталогов: java -jar app.jar --import --import.source=/data --import.user=login
+ *
+ * Обход идёт в отсортированном порядке, файлы копируются пулом потоков с ограничением на том,
+ * строки files пишутся пачками одним потоком. После каждой пачки в файл контрольной точки
+ * записывается путь, до которого (в порядке обхода) всё уже сохранено, — повторный запуск продолжает с него.
+ *
+ * Файлы запуска лежат под своими ключами <user>/import-<run>/<путь в источнике> и не пересекаются с файлами
+ * пользователя. Номер запуска хранится в контрольной точке; при продолжении строки этого запуска за контрольной
+ * точкой (сохранённые перед сбоем) находятся по ключам в БД, а не по файлу на томе: том выбирается заново.
+ */
+@Service
+@ConditionalOnProperty(name = "import.source")
+public class BulkImporter {
+    private static final Logger logger = LoggerFactory.getLogger(BulkImporter.class);
+
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final ImportResult END = new ImportResult(-1, null, null, 0, 0, false);
+    private static final String RUN_PREFIX = "run=";
+
+    private final UserRepository userRepository;
+    private final FileRepository fileRepository;
+    private final FolderRepository folderRepository;
+    private final FolderService folderService;
+    private final StorageBackend storageBackend;
+    private final Path source;
+    private final String login;
+    private final Path checkpointFile;
+    private final int threads;
+    private final int perVolume;
+    private final int batchSize;
+
+    private final ConcurrentMap<String, Semaphore> volumeSlots = new ConcurrentHashMap<>();
+    private final AtomicLong imported = new AtomicLong();
+    private final AtomicLong importedBytes = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private String runId;
+    private Set<String> importedAfterCheckpoint = Set.of();
+
+    public BulkImporter(UserRepository userRepository,
+                        FileRepository fileRepository,
+                        FolderRepository folderRepository,
+                        FolderService folderService,
+                        StorageBackend storageBackend,
+                        @Value("${import.source}") String source,
+                        @Value("${import.user}") String login,
+                        @Value("${import.checkpoint:}") String checkpointFile,
+                        @Value("${cloud.import.threads:0}") int threads,
+                        @Value("${cloud.import.per-volume:2}") int perVolume,
+                        @Value("${cloud.import.batch-size:1000}") int batchSize) {
+        this.userRepository = userRepository;
+        this.fileRepository = fileRepository;
+        this.folderRepository = folderRepository;
+        this.folderService = folderService;
+        this.storageBackend = storageBackend;
+        this.source = Paths.get(source).toAbsolutePath().normalize();
+        this.login = login;
+        this.checkpointFile = checkpointFile.isBlank() ? Paths.get("import-" + login + ".checkpoint") : Paths.get(checkpointFile);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.perVolume = perVolume;
+        this.batchSize = batchSize;
+    }
+
+    // true, если все файлы импортированы без ошибок
+    public boolean run() throws IOException, InterruptedException {
+        User user = userRepository.findByLogin(login)
+                .orElseThrow(() -> new RuntimeException("User not found: " + login));
+        if (!Files.isDirectory(source)) {
+            throw new RuntimeException("Import source is not a directory: " + source);
+        }
+        List<String> resumeAfter = readCheckpoint();
+        boolean resumed = runId != null;
+        if (!resumed) {
+            runId = UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        }
+        // Номер запуска записывается сразу: ключи уже скопированных файлов должны найтись и после раннего сбоя
+        writeCheckpoint(resumeAfter);
+        if (resumed) {
+            importedAfterCheckpoint = importedAfter(user, resumeAfter);
+        }
+        logger.info("Importing {} for user {} as run {} with {} threads{}", source, login, runId, threads,
+                resumeAfter.isEmpty() ? "" : ", resuming after " + String.join("/", resumeAfter));
+
+        // Разрешения ограничивают и очередь на копирование, и ещё не сохранённые в БД результаты
+        Semaphore inFlight = new Semaphore(batchSize + threads * 2);
+        BlockingQueue<ImportResult> results = new LinkedBlockingQueue<>();
+        BatchWriter batchWriter = new BatchWriter(user, results, inFlight);
+        Thread writer = Thread.ofPlatform().name("import-writer").start(batchWriter);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("import-", 0).factory());
+        try {
+            Walker walker = new Walker(user, resumeAfter, workers, results, inFlight);
+            walker.walk(source);
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+            results.put(END);
+            writer.join();
+        }
+
+        batchWriter.report("Import finished");
+        return failed.get() == 0;
+    }
+
+    private ImportResult copy(long sequence, Path path, List<String> relative, User user) {
+        String relativePath = String.join("/", relative);
+        if (importedAfterCheckpoint.contains(relativePath)) {
+            return ImportResult.skipped(sequence, relative);
+        }
+        try {
+            long size = Files.size(path);
+            StoragePlacement placement = storageBackend.allocate(user.getId(), runDirectory() + "/" + relativePath, size);
+            Semaphore slots = volumeSlots.computeIfAbsent(String.valueOf(placement.getVolume()), volume -> new Semaphore(perVolume));
+            slots.acquire();
+            try {
+                CRC32C crc = new CRC32C();
+                try {
+                    write(path, placement.getKey(), crc);
+                } catch (FileAlreadyExistsException e) {
+                    // Копия прерванного запуска без строки (сохранённые отсеяны выше): копируем заново
+                    storageBackend.delete(placement.getKey());
+                    crc.reset();
+                    write(path, placement.getKey(), crc);
+                }
+                return new ImportResult(sequence, relative, placement, size, crc.getValue(), false);
+            } finally {
+                slots.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ImportResult.failed(sequence, relative);
+        } catch (Exception e) {
+            logger.warn("Could not import {}: {}", relativePath, e.getMessage());
+            return ImportResult.failed(sequence, relative);
+        }
+    }
+
+    private void write(Path path, String key, CRC32C crc) throws IOException {
+        try (InputStream data = new CheckedInputStream(Files.newInputStream(path), crc)) {
+            storageBackend.write(key, data);
+        }
+    }
+
+    private String runDirectory() {
+        return "import-" + runId;
+    }
+
+    // Формат: строка run=<номер запуска>, затем путь; файл из одной строки с путём — от прежних версий
+    private List<String> readCheckpoint() throws IOException {
+        if (!Files.exists(checkpointFile)) {
+            return List.of();
+        }
+        String content = Files.readString(checkpointFile, StandardCharsets.UTF_8).strip();
+        if (content.startsWith(RUN_PREFIX)) {
+            int end = content.indexOf('\n');
+            runId = (end < 0 ? content.substring(RUN_PREFIX.length()) : content.substring(RUN_PREFIX.length(), end)).strip();
+            content = end < 0 ? "" : content.substring(end + 1).strip();
+        }
+        return content.isEmpty() ? List.of() : List.of(content.split("/"));
+    }
+
+    private void writeCheckpoint(List<String> relative) throws IOException {
+        Path temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        Files.writeString(temp, RUN_PREFIX + runId + "\n" + String.join("/", relative), StandardCharsets.UTF_8);
+        Files.move(temp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*
+     * Строки запуска за контрольной точкой: она не заходит за первый сбой, а пачки после него сохраняются.
+     * Ключи читаются страницами по порядку ключа, в памяти остаются только пути после контрольной точки.
+     */
+    private Set<String> importedAfter(User user, List<String> resumeAfter) {
+        String marker = runDirectory();
+        Set<String> paths = new HashSet<>();
+        String after = "";
+        while (true) {
+            // Номер запуска — шестнадцатеричный, экранировать в шаблоне нечего
+            List<String> keys = fileRepository.findPathsLike(user.getId(), "%" + marker + "%", after, batchSize);
+            for (String key : keys) {
+                int start = key.indexOf(marker);
+                List<String> relative = List.of(key.substring(start + marker.length() + 1).split("[/\\\\]"));
+                if (resumeAfter.isEmpty() || comparePaths(relative, resumeAfter) > 0) {
+                    paths.add(String.join("/", relative));
+                }
+            }
+            if (keys.size() < batchSize) {
+                break;
+            }
+            after = keys.get(keys.size() - 1);
+        }
+        if (!paths.isEmpty()) {
+            logger.info("Run {} already saved {} files after the checkpoint, they will be skipped", runId, paths.size());
+        }
+        return paths;
+    }
+
+    // Покомпонентное сравнение совпадает с порядком обхода отсортированных каталогов
+    private static int comparePaths(List<String> a, List<String> b) {
+        int common = Math.min(a.size(), b.size());
+        for (int i = 0; i < common; i++) {
+            int order = a.get(i).compareTo(b.get(i));
+            if (order != 0) {
+                return order;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    }
+
+    private final class Walker {
+        private final User user;
+        private final List<String> resumeAfter;
+        private final ExecutorService workers;
+        private final BlockingQueue<ImportResult> results;
+        private final Semaphore inFlight;
+        private long sequence;
+
+        private Walker(User user, List<String> resumeAfter, ExecutorService workers,
+                       BlockingQueue<ImportResult> results, Semaphore inFlight) {
+            this.user = user;
+            this.resumeAfter = resumeAfter;
+            this.workers = workers;
+            this.results = results;
+            this.inFlight = inFlight;
+        }
+
+        private void walk(Path directory) throws IOException, InterruptedException {
+            List<Path> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                stream.forEach(children::add);
+            }
+            children.sort((a, b) -> a.getFileName().toString().compareTo(b.getFileName().toString()));
+
+            for (Path child : children) {
+                List<String> relative = relative(child);
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    // Каталог целиком до контрольной точки пропускаем, не читая
+                    if (isBeforeCheckpoint(relative) && !isPrefixOfCheckpoint(relative)) {
+                        continue;
+                    }
+                    walk(child);
+                } else if (Files.isRegularFile(child, LinkOption.NOFOLLOW_LINKS)) {
+                    if (!resumeAfter.isEmpty() && comparePaths(relative, resumeAfter) <= 0) {
+                        continue;
+                    }
+                    inFlight.acquire();
+                    long current = sequence++;
+                    workers.execute(() -> results.add(copy(current, child, relative, user)));
+                }
+            }
+        }
+
+        private List<String> relative(Path path) {
+            List<String> names = new ArrayList<>();
+            for (Path name : source.relativize(path)) {
+                names.add(name.toString());
+            }
+            return names;
+        }
+
+        private boolean isBeforeCheckpoint(List<String> relative) {
+            return !resumeAfter.isEmpty() && comparePaths(relative, resumeAfter) < 0;
+        }
+
+        private boolean isPrefixOfCheckpoint(List<String> relative) {
+            return resumeAfter.size() > relative.size() && resumeAfter.subList(0, relative.size()).equals(relative);
+        }
+    }
+
+    private final class BatchWriter implements Runnable {
+        private final User user;
+        private final BlockingQueue<ImportResult> results;
+        private final Semaphore inFlight;
+        private final Map<String, Long> folders = new HashMap<>();
+        // Завершённые результаты после непрерывного префикса: номер в порядке обхода -> путь
+        private final TreeMap<Long, List<String>> completed = new TreeMap<>();
+        private final long started = System.nanoTime();
+        private long nextSequence;
+        private long firstFailure = Long.MAX_VALUE;
+        private long lastReport = started;
+
+        private BatchWriter(User user, BlockingQueue<ImportResult> results, Semaphore inFlight) {
+            this.user = user;
+            this.results = results;
+            this.inFlight = inFlight;
+        }
+
+        @Override
+        public void run() {
+            List<ImportResult> batch = new ArrayList<>(batchSize);
+            try {
+                while (true) {
+                    ImportResult result = results.poll(1, TimeUnit.SECONDS);
+                    if (result == END) {
+                        flush(batch);
+                        return;
+                    }
+                    if (result != null) {
+                        batch.add(result);
+                    }
+                    if (batch.size() >= batchSize || (result == null && !batch.isEmpty())) {
+                        flush(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                    if (System.nanoTime() - lastReport > PROGRESS_INTERVAL_NANOS) {
+                        report("Import progress");
+                        lastReport = System.nanoTime();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void flush(List<ImportResult> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<FileEntity> entities = new ArrayList<>();
+            List<ImportResult> copied = new ArrayList<>();
+            for (ImportResult result : batch) {
+                if (result.placement != null) {
+                    copied.add(result);
+                } else {
+                    (result.skipped ? skipped : failed).incrementAndGet();
+                }
+            }
+
+            boolean saved = false;
+            try {
+                Set<String> taken = takenNames(copied);
+                for (ImportResult result : copied) {
+                    String name = result.relative.get(result.relative.size() - 1);
+                    FileEntity fileEntity = new FileEntity(uniqueName(name, taken), result.size,
+                            result.placement.getKey(), user);
+                    fileEntity.setVolume(result.placement.getVolume());
+                    fileEntity.setFolderId(folderFor(result.relative.subList(0, result.relative.size() - 1)));
+                    fileEntity.setChecksum(result.checksum);
+                    fileEntity.setCreatedDate(LocalDateTime.now());
+                    entities.add(fileEntity);
+                }
+                fileRepository.saveAll(entities);
+                saved = true;
+                imported.addAndGet(entities.size());
+                importedBytes.addAndGet(entities.stream().mapToLong(FileEntity::getSize).sum());
+            } catch (RuntimeException e) {
+                logger.error("Could not save a batch of {} imported files", copied.size(), e);
+                failed.addAndGet(copied.size());
+                for (ImportResult result : copied) {
+                    deleteQuietly(result.placement.getKey());
+                }
+            }
+
+            // Контрольная точка не заходит за первый сбой: повторный запуск доимпортирует пропущенное
+            for (ImportResult result : batch) {
+                if (!result.skipped && (result.placement == null || !saved)) {
+                    firstFailure = Math.min(firstFailure, result.sequence);
+                }
+            }
+            completed.tailMap(firstFailure).clear();
+            for (ImportResult result : batch) {
+                if (result.sequence < firstFailure) {
+                    completed.put(result.sequence, result.relative);
+                }
+            }
+            advanceCheckpoint();
+            inFlight.release(batch.size());
+        }
+
+        private void advanceCheckpoint() {
+            List<String> last = null;
+            while (!completed.isEmpty() && completed.firstKey() == nextSequence) {
+                last = completed.pollFirstEntry().getValue();
+                nextSequence++;
+            }
+            if (last == null) {
+                return;
+            }
+            try {
+                writeCheckpoint(last);
+            } catch (IOException e) {
+                logger.warn("Could not write import checkpoint {}: {}", checkpointFile, e.getMessage());
+            }
+        }
+
+        // Имена файлов уникальны в пределах пользователя: совпадения из разных каталогов получают номер
+        private Set<String> takenNames(List<ImportResult> copied) {
+            Set<String> candidates = new HashSet<>();
+            for (ImportResult result : copied) {
+                candidates.add(result.relative.get(result.relative.size() - 1));
+            }
+            return candidates.isEmpty() ? new HashSet<>() : new HashSet<>(fileRepository.findFilenames(user, candidates));
+        }
+
+        private String uniqueName(String name, Set<String> taken) {
+            int dot = name.lastIndexOf('.');
+            String stem = dot > 0 ? name.substring(0, dot) : name;
+            String extension = dot > 0 ? name.substring(dot) : "";
+            String candidate = name;
+            int n = 1;
+            // Исходные имена уже сверены с БД одним запросом, пронумерованные проверяются по одному
+            while (taken.contains(candidate) || (n > 1 && fileRepository.existsByUserAndFilename(user, candidate))) {
+                n++;
+                candidate = stem + " (" + n + ")" + extension;
+            }
+            taken.add(candidate);
+            return candidate;
+        }
+
+        // Каталоги исходного дерева становятся папками; число каталогов много меньше числа файлов
+        private Long folderFor(List<String> directories) {
+            Long parentId = null;
+            StringBuilder path = new StringBuilder();
+            for (String name : directories) {
+                path.append(name).append('/');
+                Long id = folders.get(path.toString());
+                if (id == null) {
+                    Long parent = parentId;
+                    id = (parent == null
+                            ? folderRepository.findByUserAndParentIdIsNullAndName(user, name)
+                            : folderRepository.findByUserAndParentIdAndName(user, parent, name))
+                            .map(Folder::getId)
+                            .orElseGet(() -> folderService.createFolder(name, parent, user).getId());
+                    folders.put(path.toString(), id);
+                }
+                parentId = id;
+            }
+            return parentId;
+        }
+
+        private void deleteQuietly(String key) {
+            try {
+                storageBackend.delete(key);
+            } catch (IOException e) {
+                logger.warn("Could not delete {} after failed import: {}", key, e.getMessage());
+            }
+        }
+
+        private void report(String message) {
+            double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+            logger.info("{}: {} files ({} MB) imported, {} skipped, {} failed; {} files/s, {} MB/s", message,
+                    imported.get(), importedBytes.get() >> 20, skipped.get(), failed.get(),
+                    String.format("%.1f", imported.get() / seconds),
+                    String.format("%.1f", importedBytes.get() / seconds / (1 << 20)));
+        }
+    }
+
+    private static final class ImportResult {
+        private final long sequence;
+        private final List<String> relative;
+        private final StoragePlacement placement;
+        private final long size;
+        private final long checksum;
+        private final boolean skipped;
+
+        private ImportResult(long sequence, List<String> relative, StoragePlacement placement,
+                             long size, long checksum, boolean skipped) {
+            this.sequence = sequence;
+            this.relative = relative;
+            this.placement = placement;
+            this.size = size;
+            this.checksum = checksum;
+            this.skipped = skipped;
+        }
+
+        private static ImportResult skipped(long sequence, List<String> relative) {
+            return new ImportResult(sequence, relative, null, 0, 0, true);
+        }
+
+        private static ImportResult failed(long sequence, List<String> relative) {
+            return new ImportResult(sequence, relative, null, 0, 0, false);
+        }
+    }
+}
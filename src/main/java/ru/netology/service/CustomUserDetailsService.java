@@ -1,5 +1,6 @@
 package ru.netology.service;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -7,13 +8,23 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import ru.netology.repository.UserRepository;
 
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final Set<String> adminLogins;
 
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository,
+                                    @Value("${cloud.admin.logins:admin}") String adminLogins) {
         this.userRepository = userRepository;
+        this.adminLogins = Arrays.stream(adminLogins.split(","))
+                .map(String::trim)
+                .filter(login -> !login.isEmpty())
+                .collect(Collectors.toSet());
     }
 
     @Override
@@ -22,7 +33,7 @@ public class CustomUserDetailsService implements UserDetailsService {
                 .map(user -> User.builder()
                         .username(user.getLogin())
                         .password(user.getPassword())
-                        .roles("USER")
+                        .roles(adminLogins.contains(user.getLogin()) ? new String[]{"USER", "ADMIN"} : new String[]{"USER"})
                         .build())
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
     }
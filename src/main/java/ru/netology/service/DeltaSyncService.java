@@ -0,0 +1,133 @@
+package ru.netology.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import ru.netology.delta.DeltaPatcher;
+import ru.netology.dto.BlockChecksumDto;
+import ru.netology.dto.FileSignatureResponse;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.repository.FileRepository;
+import ru.netology.storage.StorageBackend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+@Service
+public class DeltaSyncService {
+    private static final Logger logger = LoggerFactory.getLogger(DeltaSyncService.class);
+
+    private final FileRepository fileRepository;
+    private final FileStorageService fileStorageService;
+    private final FileLockManager fileLockManager;
+    private final StorageBackend storageBackend;
+    private final DeltaPatcher deltaPatcher;
+    private final int minBlockSize;
+    private final int maxBlockSize;
+
+    public DeltaSyncService(FileRepository fileRepository,
+                            FileStorageService fileStorageService,
+                            FileLockManager fileLockManager,
+                            StorageBackend storageBackend,
+                            DeltaPatcher deltaPatcher,
+                            @Value("${cloud.delta.min-block-size:2048}") int minBlockSize,
+                            @Value("${cloud.delta.max-block-size:131072}") int maxBlockSize) {
+        this.fileRepository = fileRepository;
+        this.fileStorageService = fileStorageService;
+        this.fileLockManager = fileLockManager;
+        this.storageBackend = storageBackend;
+        this.deltaPatcher = deltaPatcher;
+        this.minBlockSize = minBlockSize;
+        this.maxBlockSize = maxBlockSize;
+    }
+
+    public FileSignatureResponse getSignature(String filename, Integer blockSize, User user) throws IOException {
+        // Под блокировкой, чтобы подпись соответствовала возвращаемой версии
+        try (FileLockManager.Lock ignored = fileLockManager.lock(user.getId(), filename)) {
+            FileEntity fileEntity = fileStorageService.loadPersisted(filename, user)
+                    .orElseThrow(() -> new RuntimeException("File not found: " + filename));
+
+            int size = blockSize != null ? validateBlockSize(blockSize) : defaultBlockSize(fileEntity.getSize());
+            List<BlockChecksumDto> blocks = deltaPatcher.signature(fileEntity.getFilePath(), fileEntity.getSize(), size);
+            return new FileSignatureResponse(filename, fileEntity.getVersion(), fileEntity.getSize(), size, blocks);
+        }
+    }
+
+    public FileEntity applyDelta(String filename, long baseVersion, int blockSize, InputStream body, User user)
+            throws IOException {
+        validateBlockSize(blockSize);
+
+        FileEntity saved;
+        DeltaPatcher.Result result;
+        try (DeltaPatcher.Delta delta = deltaPatcher.receive(body);
+             FileLockManager.Lock ignored = fileLockManager.lock(user.getId(), filename)) {
+            FileEntity fileEntity = fileStorageService.loadPersisted(filename, user)
+                    .orElseThrow(() -> new RuntimeException("File not found: " + filename));
+            if (fileEntity.getVersion() == null || fileEntity.getVersion() != baseVersion) {
+                throw new OptimisticLockingFailureException("File '" + filename + "' has changed since version "
+                        + baseVersion + ", request a new signature");
+            }
+
+            // Новая версия собирается рядом и ставится на место атомарной заменой: читатель без блокировки
+            // видит целиком старое или новое содержимое, ключ в метаданных не меняется
+            String key = fileEntity.getFilePath();
+            result = deltaPatcher.apply(key, fileEntity.getSize(), blockSize, delta);
+            String backupKey = deltaPatcher.tempKey(key);
+            try {
+                storageBackend.copy(key, backupKey);
+                storageBackend.replace(result.getKey(), key);
+            } catch (IOException | RuntimeException e) {
+                storageBackend.delete(result.getKey());
+                storageBackend.delete(backupKey);
+                throw e;
+            }
+
+            fileEntity.setSize(result.getSize());
+            fileEntity.setChecksum(result.getChecksum());
+            try {
+                saved = fileRepository.save(fileEntity);
+            } catch (RuntimeException e) {
+                restore(backupKey, key, e);
+                throw e;
+            }
+            try {
+                storageBackend.delete(backupKey);
+            } catch (IOException e) {
+                // Оставшуюся копию уберёт сверка с диском
+                logger.warn("Could not delete previous version '{}': {}", backupKey, e.getMessage());
+            }
+            logger.info("Delta applied to '{}': received {} bytes, new size {} bytes", filename,
+                    delta.getLiteralBytes(), result.getSize());
+        }
+        fileStorageService.publishChange(user, filename);
+        return saved;
+    }
+
+    private void restore(String backupKey, String key, RuntimeException failure) {
+        try {
+            storageBackend.replace(backupKey, key);
+        } catch (IOException | RuntimeException e) {
+            failure.addSuppressed(e);
+            logger.error("Metadata of '{}' was not saved and the previous content could not be restored, it is kept at '{}'",
+                    key, backupKey, e);
+        }
+    }
+
+    private int validateBlockSize(int blockSize) {
+        if (blockSize < minBlockSize || blockSize > maxBlockSize) {
+            throw new RuntimeException("Block size must be between " + minBlockSize + " and " + maxBlockSize);
+        }
+        return blockSize;
+    }
+
+    // Как в rsync: блок порядка квадратного корня из размера файла
+    private int defaultBlockSize(long fileSize) {
+        int root = (int) Math.min(Integer.MAX_VALUE, (long) Math.sqrt(fileSize));
+        int blockSize = Integer.highestOneBit(Math.max(1, root));
+        return Math.max(minBlockSize, Math.min(maxBlockSize, blockSize));
+    }
+}
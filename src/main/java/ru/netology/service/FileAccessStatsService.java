@@ -0,0 +1,244 @@
+package ru.netology.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.netology.entity.FileAccessStats;
+import ru.netology.repository.FileAccessStatsRepository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Число скачиваний и время последнего доступа к файлам. Скачивание не пишет в БД: оно увеличивает
+ * счётчики в памяти (LongAdder и LongAccumulator распределены по ячейкам, одновременные скачивания
+ * популярного файла не спорят за одно поле), а фоновый поток раз в flush-interval-ms сбрасывает
+ * накопленное одной пачкой в file_access_stats. При падении узла теряется не больше одного интервала;
+ * при ошибке записи счётчики возвращаются в память и уходят со следующей пачкой.
+ */
+@Service
+public class FileAccessStatsService {
+    private static final Logger logger = LoggerFactory.getLogger(FileAccessStatsService.class);
+
+    private final FileAccessStatsRepository fileAccessStatsRepository;
+    private final boolean enabled;
+    private final long flushIntervalMs;
+    private final long pruneIntervalMs;
+    // fileId -> скачивания, ещё не записанные в БД
+    private final ConcurrentMap<Integer, Counter> counters = new ConcurrentHashMap<>();
+
+    // Счётчики, убранные из карты на прошлом сбросе: скачивание, взявшее ссылку до удаления,
+    // успевает в них записать и попадает в следующую пачку
+    private List<Counter> retired = new ArrayList<>();
+    private long lastPrune = System.nanoTime();
+    private volatile boolean running;
+    private Thread flusher;
+
+    public FileAccessStatsService(FileAccessStatsRepository fileAccessStatsRepository,
+                                  @Value("${cloud.access-stats.enabled:true}") boolean enabled,
+                                  @Value("${cloud.access-stats.flush-interval-ms:5000}") long flushIntervalMs,
+                                  @Value("${cloud.access-stats.prune-interval-ms:3600000}") long pruneIntervalMs) {
+        this.fileAccessStatsRepository = fileAccessStatsRepository;
+        this.enabled = enabled;
+        this.flushIntervalMs = flushIntervalMs;
+        this.pruneIntervalMs = pruneIntervalMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = Thread.ofPlatform()
+                .name("access-stats-flusher")
+                .daemon()
+                .start(this::runFlusher);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        flusher.join(5000);
+        flush();
+    }
+
+    public void recordDownload(Integer userId, Integer fileId) {
+        if (!enabled || userId == null || fileId == null) {
+            return;
+        }
+        Counter counter = counters.get(fileId);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(fileId, id -> new Counter(id, userId));
+        }
+        long now = System.currentTimeMillis();
+        counter.downloads.increment();
+        counter.lastAccess.accumulate(now);
+        counter.seen.accumulate(now);
+    }
+
+    /*
+     * Файлы пользователя, скачанные на этом узле не раньше since. Условие notAccessedSince проверяется в БД,
+     * а эти скачивания туда ещё могли не попасть: до сброса (flush-interval-ms) или, при ошибке записи,
+     * до следующего. Время скачивания в счётчике не обнуляется при сбросе, а счётчик убирается из памяти
+     * только после интервала без скачиваний, когда всё записано. Скачивания на других узлах
+     * видны в БД после их сброса — это окно до flush-interval-ms остаётся.
+     */
+    public Set<Integer> accessedSince(Integer userId, LocalDateTime since) {
+        Set<Integer> fileIds = new HashSet<>();
+        if (!enabled || userId == null) {
+            return fileIds;
+        }
+        long threshold = since.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        // В карте только файлы, скачанные за последний интервал сброса на этом узле
+        for (Counter counter : counters.values()) {
+            if (counter.userId.equals(userId) && counter.seen.get() >= threshold) {
+                fileIds.add(counter.fileId);
+            }
+        }
+        return fileIds;
+    }
+
+    // Записанное в БД плюс ещё не сброшенное этим узлом; скачивания на других узлах видны после их сброса
+    public Map<Integer, FileAccessStats> statsFor(Collection<Integer> fileIds) {
+        Map<Integer, FileAccessStats> result = new HashMap<>();
+        if (fileIds.isEmpty()) {
+            return result;
+        }
+        // Копии: управляемые сущности (чтение с реплики идёт в транзакции) не должны меняться
+        for (FileAccessStats stored : fileAccessStatsRepository.findByFileIdIn(fileIds)) {
+            result.put(stored.getFileId(), new FileAccessStats(stored.getFileId(), stored.getUserId(),
+                    stored.getDownloadCount(), stored.getLastAccess()));
+        }
+        for (Integer fileId : fileIds) {
+            Counter counter = counters.get(fileId);
+            long downloads = counter == null ? 0 : counter.downloads.sum();
+            if (downloads == 0) {
+                continue;
+            }
+            long accessedAt = counter.lastAccess.get();
+            LocalDateTime lastAccess = toDateTime(accessedAt == 0 ? System.currentTimeMillis() : accessedAt);
+            FileAccessStats stats = result.get(fileId);
+            if (stats == null) {
+                result.put(fileId, new FileAccessStats(fileId, counter.userId, downloads, lastAccess));
+            } else {
+                stats.setDownloadCount(stats.getDownloadCount() + downloads);
+                if (lastAccess.isAfter(stats.getLastAccess())) {
+                    stats.setLastAccess(lastAccess);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Возвращает число файлов в записанной пачке
+    public synchronized int flush() {
+        List<FileAccessStats> batch = new ArrayList<>();
+        for (Counter counter : retired) {
+            addDrained(batch, counter);
+        }
+        retired = new ArrayList<>();
+
+        for (Counter counter : counters.values()) {
+            if (!addDrained(batch, counter) && counters.remove(counter.fileId, counter)) {
+                // Файл не скачивали весь интервал — освобождаем место в карте
+                retired.add(counter);
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            fileAccessStatsRepository.addAccesses(batch);
+            logger.debug("Flushed access stats of {} files", batch.size());
+            return batch.size();
+        } catch (RuntimeException e) {
+            logger.warn("Could not flush access stats of {} files, keeping them for the next flush: {}",
+                    batch.size(), e.getMessage());
+            for (FileAccessStats delta : batch) {
+                Counter counter = counters.computeIfAbsent(delta.getFileId(), id -> new Counter(id, delta.getUserId()));
+                long lastAccess = delta.getLastAccess().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                counter.downloads.add(delta.getDownloadCount());
+                counter.lastAccess.accumulate(lastAccess);
+                counter.seen.accumulate(lastAccess);
+            }
+            return 0;
+        }
+    }
+
+    public int trackedFiles() {
+        return counters.size();
+    }
+
+    private boolean addDrained(List<FileAccessStats> batch, Counter counter) {
+        long downloads = counter.downloads.sumThenReset();
+        long lastAccess = counter.lastAccess.getThenReset();
+        if (downloads == 0 && lastAccess == 0) {
+            return false;
+        }
+        // Сброс двух полей не атомарен: время скачивания могло уйти в эту пачку, а счёт — в следующую, и наоборот
+        batch.add(new FileAccessStats(counter.fileId, counter.userId, downloads,
+                toDateTime(lastAccess == 0 ? System.currentTimeMillis() : lastAccess)));
+        return true;
+    }
+
+    private void runFlusher() {
+        while (running) {
+            try {
+                Thread.sleep(flushIntervalMs);
+            } catch (InterruptedException e) {
+                return;
+            }
+            flush();
+            if (System.nanoTime() - lastPrune >= pruneIntervalMs * 1_000_000) {
+                lastPrune = System.nanoTime();
+                try {
+                    int deleted = fileAccessStatsRepository.deleteOrphans();
+                    if (deleted > 0) {
+                        logger.debug("Pruned access stats of {} deleted files", deleted);
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Could not prune access stats: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static final class Counter {
+        private final Integer fileId;
+        private final Integer userId;
+        private final LongAdder downloads = new LongAdder();
+        private final LongAccumulator lastAccess = new LongAccumulator(Math::max, 0);
+        // Последнее скачивание на этом узле; в отличие от lastAccess, при сбросе не обнуляется
+        private final LongAccumulator seen = new LongAccumulator(Math::max, 0);
+
+        private Counter(Integer fileId, Integer userId) {
+            this.fileId = fileId;
+            this.userId = userId;
+        }
+    }
+}
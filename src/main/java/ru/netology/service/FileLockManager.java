@@ -0,0 +1,121 @@
+package ru.netology.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.netology.cluster.ClusterLockService;
+import ru.netology.trace.RequestTrace;
+import ru.netology.trace.TraceStage;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+@Component
+public class FileLockManager {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final ClusterLockService clusterLockService;
+
+    public FileLockManager(@Value("${cloud.storage.lock-stripes:1024}") int stripeCount,
+                           ClusterLockService clusterLockService) {
+        int size = Integer.highestOneBit(Math.max(2, stripeCount) - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+        this.clusterLockService = clusterLockService;
+    }
+
+    // Ожидание блокировок попадает в этап LOCK трассировки запроса
+    public Lock lock(Integer userId, String filename) {
+        long started = RequestTrace.start();
+        try {
+            ReentrantLock lock = stripes[stripeIndex(userId, filename)];
+            lock.lock();
+            return withClusterLease(lock, null, () -> clusterLockService.acquire(userId, filename));
+        } finally {
+            RequestTrace.stop(TraceStage.LOCK, started);
+        }
+    }
+
+    public Lock lock(Integer userId, String filename, String otherFilename) {
+        long started = RequestTrace.start();
+        try {
+            int first = stripeIndex(userId, filename);
+            int second = stripeIndex(userId, otherFilename);
+            if (first == second) {
+                ReentrantLock lock = stripes[first];
+                lock.lock();
+                return withClusterLease(lock, null,
+                        () -> clusterLockService.acquire(userId, filename, otherFilename));
+            }
+
+            // Порядок захвата по номеру полосы исключает взаимную блокировку
+            ReentrantLock lower = stripes[Math.min(first, second)];
+            ReentrantLock upper = stripes[Math.max(first, second)];
+            lower.lock();
+            try {
+                upper.lock();
+            } catch (RuntimeException e) {
+                lower.unlock();
+                throw e;
+            }
+            return withClusterLease(upper, lower,
+                    () -> clusterLockService.acquire(userId, filename, otherFilename));
+        } finally {
+            RequestTrace.stop(TraceStage.LOCK, started);
+        }
+    }
+
+    // Локальная полоса захватывается первой, чтобы потоки одного узла не занимали соединения кластерного пула
+    private Lock withClusterLease(ReentrantLock first, ReentrantLock second,
+                                  Supplier<ClusterLockService.Lease> leaseSupplier) {
+        try {
+            return new Lock(first, second, leaseSupplier.get());
+        } catch (RuntimeException e) {
+            try {
+                first.unlock();
+            } finally {
+                if (second != null) {
+                    second.unlock();
+                }
+            }
+            throw e;
+        }
+    }
+
+    int stripeIndex(Integer userId, String filename) {
+        int hash = 31 * userId.hashCode() + filename.hashCode();
+        hash ^= hash >>> 16;
+        return hash & mask;
+    }
+
+    public static final class Lock implements AutoCloseable {
+        private final ReentrantLock first;
+        private final ReentrantLock second;
+        private final ClusterLockService.Lease lease;
+
+        private Lock(ReentrantLock first, ReentrantLock second, ClusterLockService.Lease lease) {
+            this.first = first;
+            this.second = second;
+            this.lease = lease;
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (lease != null) {
+                    lease.close();
+                }
+            } finally {
+                try {
+                    first.unlock();
+                } finally {
+                    if (second != null) {
+                        second.unlock();
+                    }
+                }
+            }
+        }
+    }
+}
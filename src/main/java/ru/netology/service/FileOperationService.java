@@ -2,19 +2,32 @@ package ru.netology.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import ru.netology.dto.DownloadTarget;
 import ru.netology.dto.FileInfoDto;
+import ru.netology.dto.FileListQuery;
+import ru.netology.entity.FileAccessStats;
 import ru.netology.entity.FileEntity;
 import ru.netology.entity.User;
+import ru.netology.replica.ReadRouter;
 import ru.netology.repository.FileRepository;
+import ru.netology.storage.StorageBackend;
+import ru.netology.trace.RequestTrace;
+import ru.netology.trace.TraceStage;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.*;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -23,28 +36,98 @@ public class FileOperationService {
 
     private final FileRepository fileRepository;
     private final FileStorageService fileStorageService;
-
-    public FileOperationService(FileRepository fileRepository, FileStorageService fileStorageService) {
+    private final FileLockManager fileLockManager;
+    private final StorageBackend storageBackend;
+    private final ReadRouter readRouter;
+    private final FileAccessStatsService fileAccessStatsService;
+
+    public FileOperationService(FileRepository fileRepository,
+                                FileStorageService fileStorageService,
+                                FileLockManager fileLockManager,
+                                StorageBackend storageBackend,
+                                ReadRouter readRouter,
+                                FileAccessStatsService fileAccessStatsService) {
         this.fileRepository = fileRepository;
         this.fileStorageService = fileStorageService;
+        this.fileLockManager = fileLockManager;
+        this.storageBackend = storageBackend;
+        this.readRouter = readRouter;
+        this.fileAccessStatsService = fileAccessStatsService;
     }
 
-    public List<FileInfoDto> getUserFiles(User user, int limit) {
-        List<FileEntity> files = fileStorageService.loadAll(user);
-
+    public List<FileInfoDto> getUserFiles(User user, int limit, FileListQuery query) {
+        // Скачивания этого узла, ещё не сброшенные в БД, учитываются до запроса, чтобы не сломать limit
+        Set<Integer> recentlyAccessed = query.getNotAccessedSince() == null
+                ? Set.of()
+                : fileAccessStatsService.accessedSince(user.getId(), query.getNotAccessedSince());
+        List<FileEntity> files = readRouter.read(user.getId(), () -> fileStorageService.find(user, query, limit, recentlyAccessed));
+
+        if (!query.isStats()) {
+            return files.stream()
+                    .map(file -> new FileInfoDto(file.getFilename(), file.getSize()))
+                    .collect(Collectors.toList());
+        }
+        // Файлы, ещё не записанные в БД (write-behind), без id — у них нет и статистики
+        List<Integer> ids = files.stream().map(FileEntity::getId).filter(Objects::nonNull).collect(Collectors.toList());
+        Map<Integer, FileAccessStats> stats = readRouter.read(user.getId(), () -> fileAccessStatsService.statsFor(ids));
         return files.stream()
-                .limit(limit)
-                .map(file -> new FileInfoDto(file.getFilename(), file.getSize()))
+                .map(file -> {
+                    FileAccessStats fileStats = file.getId() == null ? null : stats.get(file.getId());
+                    return fileStats == null
+                            ? new FileInfoDto(file.getFilename(), file.getSize(), 0L, null)
+                            : new FileInfoDto(file.getFilename(), file.getSize(),
+                                    fileStats.getDownloadCount(), fileStats.getLastAccess());
+                })
                 .collect(Collectors.toList());
     }
 
+    public void recordDownload(FileEntity fileEntity) {
+        fileAccessStatsService.recordDownload(fileEntity.getUserId(), fileEntity.getId());
+    }
+
+    public void recordDownload(Integer userId, DownloadTarget target) {
+        fileAccessStatsService.recordDownload(userId, target.getId());
+    }
+
     public void uploadFile(MultipartFile file, String filename, User user) throws IOException {
         fileStorageService.store(file, filename, user);
     }
 
     public FileEntity getFileForDownload(String filename, User user) {
-        return fileStorageService.load(filename, user)
-                .orElseThrow(() -> new RuntimeException("File not found"));
+        return requireIntact(readRouter.read(user.getId(), () -> fileStorageService.load(filename, user))
+                .orElseThrow(() -> new RuntimeException("File not found")));
+    }
+
+    public List<FileEntity> getFilesForArchive(List<String> filenames, User user) {
+        return filenames.stream()
+                .distinct()
+                .map(filename -> requireIntact(fileStorageService.load(filename, user)
+                        .orElseThrow(() -> new RuntimeException("File not found: " + filename))))
+                .collect(Collectors.toList());
+    }
+
+    public Resource openResource(FileEntity fileEntity) throws IOException {
+        long started = RequestTrace.start();
+        try {
+            return storageBackend.openResource(fileEntity.getFilePath());
+        } finally {
+            RequestTrace.stop(TraceStage.STORAGE, started);
+        }
+    }
+
+    // Ссылка выдана на конкретную версию: после перезаписи или переименования файла она не действует
+    public Optional<DownloadTarget> getSignedDownload(Integer userId, Integer id, Long version) {
+        return readRouter.read(userId, () -> fileRepository.findDownloadTarget(userId, id))
+                .filter(target -> target.getVersion().equals(version) && !target.isQuarantined());
+    }
+
+    public Resource openResource(DownloadTarget target) throws IOException {
+        long started = RequestTrace.start();
+        try {
+            return storageBackend.openResource(target.getFilePath());
+        } finally {
+            RequestTrace.stop(TraceStage.STORAGE, started);
+        }
     }
 
     public void deleteFile(String filename, User user) throws IOException {
@@ -54,42 +137,90 @@ public class FileOperationService {
     public void renameFile(String oldFilename, String newFilename, User user) throws IOException {
         String decodedFilename = decodeFilename(oldFilename);
 
-        FileEntity fileEntity = fileStorageService.load(decodedFilename, user)
-                .orElseThrow(() -> new RuntimeException("File not found: " + decodedFilename));
+        try (FileLockManager.Lock ignored = fileLockManager.lock(user.getId(), decodedFilename, newFilename)) {
+            FileEntity fileEntity = fileStorageService.loadPersisted(decodedFilename, user)
+                    .orElseThrow(() -> new RuntimeException("File not found: " + decodedFilename));
 
-        validateNewFilename(newFilename, user);
+            validateNewFilename(newFilename, user);
 
-        Path oldPath = Paths.get(fileEntity.getFilePath());
-        Path newPath = oldPath.resolveSibling(newFilename);
+            String oldKey = fileEntity.getFilePath();
+            String newKey = storageBackend.siblingKey(oldKey, newFilename);
 
-        validateFileExists(oldPath);
-        moveFile(oldPath, newPath);
+            long started = RequestTrace.start();
+            validateFileExists(oldKey);
+            storageBackend.move(oldKey, newKey);
+            RequestTrace.stop(TraceStage.STORAGE, started);
 
-        updateFileEntity(fileEntity, newFilename, newPath.toString());
+            try {
+                updateFileEntity(fileEntity, newFilename, newKey);
+            } catch (OptimisticLockingFailureException e) {
+                storageBackend.move(newKey, oldKey);
+                throw new RuntimeException("File '" + decodedFilename + "' was modified concurrently");
+            }
+        }
+        fileStorageService.publishChange(user, decodedFilename);
+        fileStorageService.publishChange(user, newFilename);
 
         logger.info("File successfully renamed from '{}' to '{}'", decodedFilename, newFilename);
     }
 
+    public FileEntity copyFile(String sourceFilename, String targetFilename, User user) throws IOException {
+        String decodedFilename = decodeFilename(sourceFilename);
+
+        FileEntity copy;
+        try (FileLockManager.Lock ignored = fileLockManager.lock(user.getId(), decodedFilename, targetFilename)) {
+            FileEntity source = fileStorageService.loadPersisted(decodedFilename, user)
+                    .orElseThrow(() -> new RuntimeException("File not found: " + decodedFilename));
+
+            validateNewFilename(targetFilename, user);
+
+            String targetKey = storageBackend.siblingKey(source.getFilePath(), targetFilename);
+            long started = RequestTrace.start();
+            storageBackend.copy(source.getFilePath(), targetKey);
+            RequestTrace.stop(TraceStage.STORAGE, started);
+
+            copy = new FileEntity(targetFilename, source.getSize(), targetKey, user);
+            copy.setVolume(source.getVolume());
+            copy.setFolderId(source.getFolderId());
+            copy.setChecksum(source.getChecksum());
+            copy.setCreatedDate(LocalDateTime.now());
+            try {
+                copy = fileRepository.save(copy);
+            } catch (RuntimeException e) {
+                storageBackend.delete(targetKey);
+                throw e;
+            }
+        }
+        fileStorageService.publishChange(user, targetFilename);
+
+        logger.info("File '{}' copied to '{}'", decodedFilename, targetFilename);
+        return copy;
+    }
+
+    // Повреждённый файл не отдаём, пока администратор его не восстановит
+    private FileEntity requireIntact(FileEntity fileEntity) {
+        if (fileEntity.isQuarantined()) {
+            throw new RuntimeException("File '" + fileEntity.getFilename() + "' failed an integrity check and is quarantined");
+        }
+        return fileEntity;
+    }
+
     private String decodeFilename(String filename) throws UnsupportedEncodingException {
         return URLDecoder.decode(filename, StandardCharsets.UTF_8.toString());
     }
 
     private void validateNewFilename(String newFilename, User user) {
-        if (fileRepository.existsByUserAndFilename(user, newFilename)) {
+        if (fileStorageService.load(newFilename, user).isPresent()) {
             throw new RuntimeException("File with name '" + newFilename + "' already exists");
         }
     }
 
-    private void validateFileExists(Path filePath) {
-        if (!Files.exists(filePath)) {
-            throw new RuntimeException("Source file not found on disk: " + filePath);
+    private void validateFileExists(String key) throws IOException {
+        if (storageBackend.stat(key).isEmpty()) {
+            throw new RuntimeException("Source file not found in storage: " + key);
         }
     }
 
-    private void moveFile(Path oldPath, Path newPath) throws IOException {
-        Files.move(oldPath, newPath, StandardCopyOption.REPLACE_EXISTING);
-    }
-
     private void updateFileEntity(FileEntity fileEntity, String newFilename, String newFilePath) {
         fileEntity.setFilename(newFilename);
         fileEntity.setFilePath(newFilePath);
@@ -1,71 +1,188 @@
 package ru.netology.service;
 
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.dto.FileListQuery;
 import ru.netology.entity.FileEntity;
 import ru.netology.entity.User;
 import ru.netology.repository.FileRepository;
+import ru.netology.repository.FileSpecifications;
+import ru.netology.storage.StorageBackend;
+import ru.netology.storage.StoragePlacement;
+import ru.netology.trace.RequestTrace;
+import ru.netology.trace.TraceStage;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
 
 @Service
 public class FileStorageService {
+    public static final String FILE_EVENTS_TOPIC = "files";
+
     private final FileRepository fileRepository;
-    private final Path rootLocation;
+    private final MetadataWriteBehindService metadataWriter;
+    private final FileLockManager fileLockManager;
+    private final ClusterEventBus clusterEventBus;
+    private final StorageBackend storageBackend;
 
     public FileStorageService(FileRepository fileRepository,
-                              @Value("${cloud.storage.path}") String storagePath) {
+                              MetadataWriteBehindService metadataWriter,
+                              FileLockManager fileLockManager,
+                              ClusterEventBus clusterEventBus,
+                              StorageBackend storageBackend) {
         this.fileRepository = fileRepository;
-        this.rootLocation = Paths.get(storagePath);
-        try {
-            Files.createDirectories(rootLocation);
-        } catch (IOException e) {
-            throw new RuntimeException("Could not initialize storage", e);
-        }
+        this.metadataWriter = metadataWriter;
+        this.fileLockManager = fileLockManager;
+        this.clusterEventBus = clusterEventBus;
+        this.storageBackend = storageBackend;
     }
 
     public void store(MultipartFile file, String filename, User user) throws IOException {
-        Path userDir = rootLocation.resolve(user.getId().toString());
-        Files.createDirectories(userDir);
+        try (FileLockManager.Lock ignored = fileLockManager.lock(user.getId(), filename)) {
+            if (load(filename, user).isPresent()) {
+                throw new FileAlreadyExistsException(filename);
+            }
 
-        Path destinationFile = userDir.resolve(filename);
-        Files.copy(file.getInputStream(), destinationFile);
+            long started = RequestTrace.start();
+            StoragePlacement placement = storageBackend.allocate(user.getId(), filename, file.getSize());
+            // Контрольная сумма считается по пути на диск, без повторного чтения файла
+            CRC32C crc = new CRC32C();
+            try (InputStream data = new CheckedInputStream(file.getInputStream(), crc)) {
+                storageBackend.write(placement.getKey(), data);
+            }
+            RequestTrace.stop(TraceStage.STORAGE, started);
 
-        FileEntity fileEntity = new FileEntity();
-        fileEntity.setFilename(filename);
-        fileEntity.setSize(file.getSize());
-        fileEntity.setFilePath(destinationFile.toString());
-        fileEntity.setUser(user);
-        fileEntity.setCreatedDate(LocalDateTime.now());
+            FileEntity fileEntity = new FileEntity();
+            fileEntity.setFilename(filename);
+            fileEntity.setSize(file.getSize());
+            fileEntity.setFilePath(placement.getKey());
+            fileEntity.setVolume(placement.getVolume());
+            fileEntity.setChecksum(crc.getValue());
+            fileEntity.setUser(user);
+            fileEntity.setCreatedDate(LocalDateTime.now());
 
-        fileRepository.save(fileEntity);
+            try {
+                metadataWriter.save(fileEntity);
+            } catch (RuntimeException e) {
+                storageBackend.delete(placement.getKey());
+                throw e;
+            }
+        }
+        publishChange(user, filename);
     }
 
-    public List<FileEntity> loadAll(User user) {
-        try {
-            return fileRepository.findByUserOrderByCreatedDateDesc(user);
-        } catch (Exception e) {
-            System.out.println("Error loading files for user " + user.getLogin() + ": " + e.getMessage());
-            return new ArrayList<>();
+    public List<FileEntity> find(User user, FileListQuery query, int limit) {
+        return find(user, query, limit, Set.of());
+    }
+
+    // recentlyAccessedIds исключаются при notAccessedSince: см. FileAccessStatsService.accessedSince
+    public List<FileEntity> find(User user, FileListQuery query, int limit, Collection<Integer> recentlyAccessedIds) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        Sort sort = FileSpecifications.sortFor(query);
+        // Снимок оверлея берём до запроса в БД, чтобы не потерять записи, сброшенные между ними
+        List<FileEntity> pending = metadataWriter.pendingFor(user).stream()
+                .filter(file -> matches(file, query))
+                .collect(Collectors.toList());
+        int fetch = (int) Math.min(Integer.MAX_VALUE, (long) limit + pending.size());
+        List<FileEntity> stored = fileRepository.findBy(FileSpecifications.forQuery(user, query, recentlyAccessedIds),
+                q -> q.sortBy(sort).limit(fetch).all());
+        if (pending.isEmpty()) {
+            return stored;
         }
+
+        Set<String> pendingNames = new HashSet<>();
+        List<FileEntity> result = new ArrayList<>(pending.size() + stored.size());
+        for (FileEntity file : pending) {
+            result.add(file);
+            pendingNames.add(file.getFilename());
+        }
+        for (FileEntity file : stored) {
+            if (!pendingNames.contains(file.getFilename())) {
+                result.add(file);
+            }
+        }
+        result.sort(comparator(query));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
     }
 
     public Optional<FileEntity> load(String filename, User user) {
+        Optional<FileEntity> pending = metadataWriter.findPending(user, filename);
+        if (pending.isPresent()) {
+            return pending;
+        }
+        return fileRepository.findByUserAndFilename(user, filename);
+    }
+
+    public Optional<FileEntity> loadPersisted(String filename, User user) {
+        metadataWriter.awaitPersisted(user, filename);
         return fileRepository.findByUserAndFilename(user, filename);
     }
 
     public void delete(String filename, User user) throws IOException {
-        FileEntity fileEntity = fileRepository.findByUserAndFilename(user, filename)
-                .orElseThrow(() -> new RuntimeException("File not found"));
+        try (FileLockManager.Lock ignored = fileLockManager.lock(user.getId(), filename)) {
+            FileEntity fileEntity = loadPersisted(filename, user)
+                    .orElseThrow(() -> new RuntimeException("File not found"));
+
+            long started = RequestTrace.start();
+            storageBackend.delete(fileEntity.getFilePath());
+            RequestTrace.stop(TraceStage.STORAGE, started);
+            fileRepository.delete(fileEntity);
+        }
+        publishChange(user, filename);
+    }
+
+    public void publishChange(User user, String filename) {
+        clusterEventBus.publish(FILE_EVENTS_TOPIC, user.getId() + "/" + filename);
+    }
+
+    // Те же условия, что и в FileSpecifications, для записей, ещё не попавших в БД
+    private boolean matches(FileEntity file, FileListQuery query) {
+        String name = file.getFilename().toLowerCase(Locale.ROOT);
+        if (query.getSearch() != null && !query.getSearch().isBlank()
+                && !name.contains(query.getSearch().toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        if (query.getPrefix() != null && !query.getPrefix().isBlank()
+                && !name.startsWith(query.getPrefix().toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        if (query.getMinSize() != null && file.getSize() < query.getMinSize()) {
+            return false;
+        }
+        if (query.getMaxSize() != null && file.getSize() > query.getMaxSize()) {
+            return false;
+        }
+        if (query.getFrom() != null && file.getCreatedDate().isBefore(query.getFrom())) {
+            return false;
+        }
+        // notAccessedSince не проверяется: у файла, ещё не записанного в БД, нет и статистики доступа
+        return query.getTo() == null || file.getCreatedDate().isBefore(query.getTo());
+    }
 
-        Files.deleteIfExists(Paths.get(fileEntity.getFilePath()));
-        fileRepository.delete(fileEntity);
+    private Comparator<FileEntity> comparator(FileListQuery query) {
+        Comparator<FileEntity> comparator = switch (FileSpecifications.sortProperty(query.getSort())) {
+            // Тот же порядок, что у ORDER BY filename в COLLATE "C"
+            case "filename" -> Comparator.comparing(FileEntity::getFilename, StorageReconciler::compareKeys);
+            case "size" -> Comparator.comparing(FileEntity::getSize);
+            default -> Comparator.comparing(FileEntity::getCreatedDate, Comparator.nullsFirst(Comparator.naturalOrder()));
+        };
+        comparator = comparator.thenComparing(FileEntity::getId, Comparator.nullsLast(Comparator.naturalOrder()));
+        return query.isAscending() ? comparator : comparator.reversed();
     }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+package ru.netology.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.netology.entity.FilesPartitionProgress;
+import ru.netology.repository.FilesPartitionProgressRepository;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Онлайн-перенос files в секционированную таблицу (V11): java -jar app.jar --partition-files
+ *
+ * Приложение продолжает работать: триггер V11 повторяет изменения files в files_partitioned,
+ * здесь строки переносятся пачками по id, каждая пачка — своя транзакция. Позиция (BIGINT) хранится
+ * в files_partition_progress (V14), повторный запуск продолжает с неё. Число строк пачки возвращает
+ * files_partition_backfill (V15).
+ * В конце files_partition_swap() под короткой блокировкой меняет таблицы местами.
+ */
+@Service
+@ConditionalOnProperty(name = "partition.files")
+public class FilesPartitionMigrator {
+    private static final Logger logger = LoggerFactory.getLogger(FilesPartitionMigrator.class);
+
+    private static final String STATE = "files-partition";
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final DataSource dataSource;
+    private final FilesPartitionProgressRepository progressRepository;
+    private final int batchSize;
+    private final long pauseMs;
+
+    public FilesPartitionMigrator(DataSource dataSource,
+                                  FilesPartitionProgressRepository progressRepository,
+                                  @Value("${cloud.partition.batch-size:10000}") int batchSize,
+                                  @Value("${cloud.partition.pause-ms:0}") long pauseMs) {
+        this.dataSource = dataSource;
+        this.progressRepository = progressRepository;
+        this.batchSize = batchSize;
+        this.pauseMs = pauseMs;
+    }
+
+    // false — таблица уже секционирована (перенесена миграцией или прошлым запуском)
+    public boolean run() throws SQLException, InterruptedException {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!isPending(connection)) {
+                logger.info("files is already partitioned");
+                progressRepository.deleteById(STATE);
+                return false;
+            }
+
+            FilesPartitionProgress progress = progressRepository.findById(STATE)
+                    .orElseGet(() -> new FilesPartitionProgress(STATE));
+            long lastId = progress.getLastId();
+            long copied = 0;
+            long started = System.nanoTime();
+            long lastReport = started;
+            logger.info("Copying files into files_partitioned in batches of {}{}", batchSize,
+                    lastId > 0 ? ", resuming after id " + lastId : "");
+
+            try (PreparedStatement backfill = connection.prepareStatement(
+                    "SELECT last_id, batch_rows FROM files_partition_backfill(?, ?)")) {
+                while (true) {
+                    backfill.setLong(1, lastId);
+                    backfill.setInt(2, batchSize);
+                    try (ResultSet batch = backfill.executeQuery()) {
+                        if (!batch.next()) {
+                            break;
+                        }
+                        long batchLastId = batch.getLong(1);
+                        if (batch.wasNull()) {
+                            break;
+                        }
+                        lastId = batchLastId;
+                        copied += batch.getInt(2);
+                    }
+
+                    progress.setLastId(lastId);
+                    progress.setUpdatedAt(LocalDateTime.now());
+                    progressRepository.save(progress);
+
+                    long now = System.nanoTime();
+                    if (now - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                        logger.info("Copied up to id {} ({} rows, {} rows/s)", lastId, copied,
+                                copied * 1_000_000_000L / Math.max(1, now - started));
+                        lastReport = now;
+                    }
+                    if (pauseMs > 0) {
+                        Thread.sleep(pauseMs);
+                    }
+                }
+            }
+
+            // Хвост после последней пачки копируется под блокировкой, триггер уже не нужен
+            try (PreparedStatement swap = connection.prepareStatement("SELECT files_partition_swap(?)")) {
+                swap.setLong(1, lastId);
+                swap.execute();
+            }
+            progressRepository.deleteById(STATE);
+            logger.info("files is now partitioned by user_id ({} rows copied in batches); the old table is kept as files_unpartitioned",
+                    copied);
+            return true;
+        }
+    }
+
+    private static boolean isPending(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT to_regclass('files_partitioned') IS NOT NULL");
+             ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() && resultSet.getBoolean(1);
+        }
+    }
+}
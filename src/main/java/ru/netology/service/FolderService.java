@@ -0,0 +1,168 @@
+package ru.netology.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.netology.dto.FileInfoDto;
+import ru.netology.dto.FolderContentsDto;
+import ru.netology.dto.FolderDto;
+import ru.netology.dto.FolderFileDto;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.Folder;
+import ru.netology.entity.User;
+import ru.netology.repository.FileRepository;
+import ru.netology.repository.FolderRepository;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+@Service
+public class FolderService {
+    private static final Logger logger = LoggerFactory.getLogger(FolderService.class);
+
+    // Имя, которое не может принадлежать файлу: блокировка дерева папок пользователя
+    static final String TREE_LOCK = "\0folders";
+    private static final String ROOT_PATH = "/";
+
+    private final FolderRepository folderRepository;
+    private final FileRepository fileRepository;
+    private final FileStorageService fileStorageService;
+    private final FileLockManager fileLockManager;
+    private final TransactionTemplate transaction;
+
+    public FolderService(FolderRepository folderRepository,
+                         FileRepository fileRepository,
+                         FileStorageService fileStorageService,
+                         FileLockManager fileLockManager,
+                         PlatformTransactionManager transactionManager) {
+        this.folderRepository = folderRepository;
+        this.fileRepository = fileRepository;
+        this.fileStorageService = fileStorageService;
+        this.fileLockManager = fileLockManager;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    public FolderContentsDto getContents(Long folderId, User user) {
+        Folder folder = folderId == null ? null : requireFolder(folderId, user);
+        List<Folder> folders = folderId == null
+                ? folderRepository.findByUserAndParentIdIsNullOrderByNameAsc(user)
+                : folderRepository.findByUserAndParentIdOrderByNameAsc(user, folderId);
+        List<FileEntity> files = folderId == null
+                ? fileRepository.findByUserAndFolderIdIsNullOrderByFilenameAsc(user)
+                : fileRepository.findByUserAndFolderIdOrderByFilenameAsc(user, folderId);
+
+        return new FolderContentsDto(
+                folder == null ? null : FolderDto.of(folder),
+                folders.stream().map(FolderDto::of).collect(Collectors.toList()),
+                files.stream().map(file -> new FileInfoDto(file.getFilename(), file.getSize())).collect(Collectors.toList()));
+    }
+
+    public List<FolderFileDto> getSubtreeFiles(Long folderId, User user) {
+        Folder folder = requireFolder(folderId, user);
+        return fileRepository.findInSubtree(user, folder.getPath()).stream()
+                .map(file -> new FolderFileDto(file.getFilename(), file.getSize(), file.getFolderId()))
+                .collect(Collectors.toList());
+    }
+
+    public Folder createFolder(String name, Long parentId, User user) {
+        validateName(name);
+
+        try (FileLockManager.Lock ignored = fileLockManager.lock(user.getId(), TREE_LOCK)) {
+            String parentPath = parentId == null ? ROOT_PATH : requireFolder(parentId, user).getPath();
+            validateUniqueName(name, parentId, user);
+
+            // Путь включает собственный id: он берётся из последовательности при persist, а INSERT уходит
+            // при фиксации уже с путём. Транзакция фиксируется до снятия блокировки дерева
+            return transaction.execute(status -> {
+                Folder folder = folderRepository.save(new Folder(name, parentId, user));
+                folder.setPath(parentPath + folder.getId() + "/");
+                return folder;
+            });
+        }
+    }
+
+    public Folder renameFolder(Long folderId, String name, User user) {
+        validateName(name);
+
+        try (FileLockManager.Lock ignored = fileLockManager.lock(user.getId(), TREE_LOCK)) {
+            Folder folder = requireFolder(folderId, user);
+            if (folder.getName().equals(name)) {
+                return folder;
+            }
+            validateUniqueName(name, folder.getParentId(), user);
+
+            folder.setName(name);
+            return folderRepository.save(folder);
+        }
+    }
+
+    public Folder moveFolder(Long folderId, Long parentId, User user) {
+        try (FileLockManager.Lock ignored = fileLockManager.lock(user.getId(), TREE_LOCK)) {
+            Folder folder = requireFolder(folderId, user);
+            if (Objects.equals(folder.getParentId(), parentId)) {
+                return folder;
+            }
+
+            String parentPath = parentId == null ? ROOT_PATH : requireFolder(parentId, user).getPath();
+            if (parentPath.startsWith(folder.getPath())) {
+                throw new RuntimeException("Folder cannot be moved into itself or its subfolder");
+            }
+            validateUniqueName(folder.getName(), parentId, user);
+
+            String newPath = parentPath + folder.getId() + "/";
+            int moved = folderRepository.moveSubtree(user.getId(), folder.getId(), parentId, folder.getPath(), newPath);
+            logger.info("Folder {} moved from '{}' to '{}' with {} folders in subtree", folderId, folder.getPath(), newPath, moved);
+
+            folder.setParentId(parentId);
+            folder.setPath(newPath);
+            return folder;
+        }
+    }
+
+    public void deleteFolder(Long folderId, User user) {
+        try (FileLockManager.Lock ignored = fileLockManager.lock(user.getId(), TREE_LOCK)) {
+            Folder folder = requireFolder(folderId, user);
+            if (folderRepository.existsByParentId(folderId) || fileRepository.existsByUserAndFolderId(user, folderId)) {
+                throw new RuntimeException("Folder is not empty");
+            }
+            folderRepository.delete(folder);
+        }
+    }
+
+    public void moveFile(String filename, Long folderId, User user) {
+        try (FileLockManager.Lock ignored = fileLockManager.lock(user.getId(), filename, TREE_LOCK)) {
+            FileEntity fileEntity = fileStorageService.loadPersisted(filename, user)
+                    .orElseThrow(() -> new RuntimeException("File not found: " + filename));
+            if (folderId != null) {
+                requireFolder(folderId, user);
+            }
+
+            fileEntity.setFolderId(folderId);
+            fileRepository.save(fileEntity);
+        }
+        fileStorageService.publishChange(user, filename);
+    }
+
+    private Folder requireFolder(Long folderId, User user) {
+        return folderRepository.findByIdAndUser(folderId, user)
+                .orElseThrow(() -> new RuntimeException("Folder not found: " + folderId));
+    }
+
+    private void validateName(String name) {
+        if (name == null || name.isBlank() || name.length() > 255 || name.contains("/")) {
+            throw new RuntimeException("Invalid folder name: " + name);
+        }
+    }
+
+    private void validateUniqueName(String name, Long parentId, User user) {
+        boolean exists = parentId == null
+                ? folderRepository.existsByUserAndParentIdIsNullAndName(user, name)
+                : folderRepository.existsByUserAndParentIdAndName(user, parentId, name);
+        if (exists) {
+            throw new RuntimeException("Folder with name '" + name + "' already exists");
+        }
+    }
+}
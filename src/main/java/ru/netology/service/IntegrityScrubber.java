@@ -0,0 +1,247 @@
+package ru.netology.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.netology.dto.QuarantinedFileDto;
+import ru.netology.dto.ScrubStatusDto;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.ScrubState;
+import ru.netology.repository.FileRepository;
+import ru.netology.repository.ScrubStateRepository;
+import ru.netology.storage.StorageBackend;
+import ru.netology.storage.StorageStat;
+import ru.netology.storage.StorageVolume;
+import ru.netology.storage.VolumeManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+@Service
+public class IntegrityScrubber {
+    private static final Logger logger = LoggerFactory.getLogger(IntegrityScrubber.class);
+
+    static final String STATE_NAME = "integrity";
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final long BUSY_PAUSE_MS = 50;
+    private static final long RETRY_MS = 60_000;
+
+    private final FileRepository fileRepository;
+    private final ScrubStateRepository scrubStateRepository;
+    private final FileLockManager fileLockManager;
+    private final StorageBackend storageBackend;
+    private final Optional<VolumeManager> volumeManager;
+    private final boolean enabled;
+    private final long bytesPerSecond;
+    private final long passIntervalMs;
+
+    // Счётчики текущего прохода на этом узле; обнуляются в начале следующего, итог виден до него
+    private final AtomicLong filesVerified = new AtomicLong();
+    private final AtomicLong bytesVerified = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+    private long nextSlot;
+
+    public IntegrityScrubber(FileRepository fileRepository,
+                             ScrubStateRepository scrubStateRepository,
+                             FileLockManager fileLockManager,
+                             StorageBackend storageBackend,
+                             Optional<VolumeManager> volumeManager,
+                             @Value("${cloud.scrub.enabled:true}") boolean enabled,
+                             @Value("${cloud.scrub.bytes-per-second:10485760}") long bytesPerSecond,
+                             @Value("${cloud.scrub.pass-interval-ms:86400000}") long passIntervalMs) {
+        this.fileRepository = fileRepository;
+        this.scrubStateRepository = scrubStateRepository;
+        this.fileLockManager = fileLockManager;
+        this.storageBackend = storageBackend;
+        this.volumeManager = volumeManager;
+        this.enabled = enabled;
+        this.bytesPerSecond = bytesPerSecond;
+        this.passIntervalMs = passIntervalMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (!enabled) {
+            return;
+        }
+        Thread.ofPlatform()
+                .name("integrity-scrubber")
+                .daemon()
+                .start(this::run);
+    }
+
+    private void run() {
+        try {
+            Thread.sleep(remainingIdleMs());
+            while (true) {
+                boolean more;
+                try {
+                    more = scrubNextBatch();
+                } catch (RuntimeException e) {
+                    logger.error("Integrity scrub batch failed, retrying in {} ms", RETRY_MS, e);
+                    Thread.sleep(RETRY_MS);
+                    continue;
+                }
+                if (!more) {
+                    Thread.sleep(passIntervalMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // После перезапуска не начинаем новый проход раньше срока, а незаконченный продолжаем сразу
+    private long remainingIdleMs() {
+        Optional<ScrubState> state = scrubStateRepository.findById(STATE_NAME);
+        if (state.isEmpty() || state.get().getLastFileId() != 0 || state.get().getUpdatedAt() == null) {
+            return 0;
+        }
+        long elapsed = Duration.between(state.get().getUpdatedAt(), LocalDateTime.now()).toMillis();
+        return Math.max(0, passIntervalMs - elapsed);
+    }
+
+    // Проверяет очередную порцию файлов и сохраняет позицию; false — проход завершён
+    public boolean scrubNextBatch() throws InterruptedException {
+        ScrubState state = scrubStateRepository.findById(STATE_NAME).orElseGet(() -> new ScrubState(STATE_NAME));
+        if (state.getLastFileId() == 0) {
+            state.setPassStarted(LocalDateTime.now());
+            filesVerified.set(0);
+            bytesVerified.set(0);
+            mismatches.set(0);
+        }
+
+        List<FileEntity> page = fileRepository.findTop100ByIdGreaterThanOrderByIdAsc(state.getLastFileId());
+        if (page.isEmpty()) {
+            logger.info("Integrity scrub pass started at {} finished: {} files, {} bytes verified, {} mismatches",
+                    state.getPassStarted(), filesVerified.get(), bytesVerified.get(), mismatches.get());
+            state.setLastFileId(0);
+            state.setUpdatedAt(LocalDateTime.now());
+            scrubStateRepository.save(state);
+            return false;
+        }
+
+        for (FileEntity file : page) {
+            verify(file);
+            state.setLastFileId(file.getId());
+        }
+        state.setUpdatedAt(LocalDateTime.now());
+        scrubStateRepository.save(state);
+        return true;
+    }
+
+    public ScrubStatusDto getStatus() {
+        ScrubState state = scrubStateRepository.findById(STATE_NAME).orElseGet(() -> new ScrubState(STATE_NAME));
+        List<QuarantinedFileDto> quarantined = fileRepository.findByQuarantinedTrueOrderByIdAsc().stream()
+                .map(file -> new QuarantinedFileDto(file.getId(), file.getUser().getLogin(), file.getFilename(), file.getSize()))
+                .collect(Collectors.toList());
+        return new ScrubStatusDto(enabled, state.getPassStarted(), state.getLastFileId(),
+                filesVerified.get(), bytesVerified.get(), mismatches.get(), quarantined);
+    }
+
+    // false — файла с таким id нет
+    public boolean release(Integer fileId) {
+        if (fileRepository.release(fileId) == 0) {
+            return false;
+        }
+        logger.warn("File {} released from quarantine", fileId);
+        return true;
+    }
+
+    private void verify(FileEntity file) throws InterruptedException {
+        if (file.isQuarantined()) {
+            return;
+        }
+        String failure = inspect(file);
+        filesVerified.incrementAndGet();
+        if (failure != null) {
+            quarantine(file, failure);
+        }
+    }
+
+    private void quarantine(FileEntity candidate, String failure) {
+        try (FileLockManager.Lock ignored = fileLockManager.lock(candidate.getUser().getId(), candidate.getFilename())) {
+            // Любая запись меняет версию под этой же блокировкой: если версия прежняя, файл читали целиком неизменным
+            Optional<FileEntity> current = fileRepository.findByUserAndFilename(candidate.getUser(), candidate.getFilename());
+            if (current.isEmpty() || !current.get().getId().equals(candidate.getId())
+                    || !Objects.equals(current.get().getVersion(), candidate.getVersion())) {
+                logger.debug("File {} changed during integrity check, will be verified in the next pass", candidate.getId());
+                return;
+            }
+
+            if (fileRepository.quarantine(candidate.getUser().getId(), candidate.getId(), candidate.getVersion()) > 0) {
+                mismatches.incrementAndGet();
+                logger.error("Integrity check failed for file {} '{}' of user {}: {}; file quarantined",
+                        candidate.getId(), candidate.getFilename(), candidate.getUser().getLogin(), failure);
+            }
+        }
+    }
+
+    // Причина несоответствия или null, если содержимое цело
+    private String inspect(FileEntity file) throws InterruptedException {
+        try {
+            Optional<StorageStat> stat = storageBackend.stat(file.getFilePath());
+            if (stat.isEmpty()) {
+                return "file is missing from storage";
+            }
+            if (stat.get().getSize() != file.getSize()) {
+                return "size " + stat.get().getSize() + " differs from recorded " + file.getSize();
+            }
+
+            long actual = checksum(file);
+            if (file.getChecksum() == null) {
+                // Файлы до появления контрольных сумм и после правки на месте: запоминаем текущее содержимое
+                fileRepository.recordChecksum(file.getUser().getId(), file.getId(), file.getVersion(), actual);
+                return null;
+            }
+            if (actual != file.getChecksum()) {
+                return String.format("checksum %08x differs from recorded %08x", actual, file.getChecksum());
+            }
+            return null;
+        } catch (IOException e) {
+            return "read failed: " + e.getMessage();
+        }
+    }
+
+    private long checksum(FileEntity file) throws IOException, InterruptedException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[CHUNK_SIZE];
+        try (InputStream in = storageBackend.read(file.getFilePath(), 0, file.getSize())) {
+            int read;
+            while ((read = in.readNBytes(buffer, 0, buffer.length)) > 0) {
+                crc.update(buffer, 0, read);
+                bytesVerified.addAndGet(read);
+                throttle(file.getVolume(), read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    // Фоновое чтение уступает пользовательскому вводу-выводу и не превышает заданную скорость
+    private void throttle(String volumeId, int bytes) throws InterruptedException {
+        if (volumeManager.flatMap(manager -> manager.find(volumeId)).map(StorageVolume::getQueueDepth).orElse(0) > 0) {
+            Thread.sleep(BUSY_PAUSE_MS);
+        }
+        if (bytesPerSecond <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        nextSlot = Math.max(nextSlot, now) + bytes * 1_000_000_000L / bytesPerSecond;
+        long wait = nextSlot - now;
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
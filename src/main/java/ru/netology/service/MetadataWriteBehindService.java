@@ -0,0 +1,299 @@
+package ru.netology.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.repository.FileRepository;
+import ru.netology.storage.StorageBackend;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*
+ * Метаданные загруженных файлов пишутся в БД пачками фоновым потоком. Пока запись не сброшена, её видят
+ * только запросы к этому узлу (оверлей pending): другой узел кластера не нашёл бы файл и принял бы загрузку
+ * с тем же именем. Поэтому в кластере (cloud.cluster.enabled) режим не включается, метаданные пишутся сразу.
+ * Запись, которую не удалось сохранить и поштучно, удаляется из хранилища, чтобы не оставлять файлов без строки.
+ *
+ * Клиент получает 200 до записи в БД, поэтому такая ошибка теряет уже подтверждённую загрузку. Узнать о ней можно
+ * только после: запись остаётся в failed, пока её не заберёт awaitPersisted (следующая операция с этим именем
+ * получает ошибку) или пока файл с тем же именем не загрузят заново.
+ */
+@Service
+public class MetadataWriteBehindService {
+    private static final Logger logger = LoggerFactory.getLogger(MetadataWriteBehindService.class);
+
+    private final FileRepository fileRepository;
+    private final StorageBackend storageBackend;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutMs;
+    private final long awaitTimeoutMs;
+    private final BlockingQueue<PendingFile> queue;
+    // Оверлей незаписанных метаданных: userId -> filename -> запись
+    private final ConcurrentMap<Integer, ConcurrentMap<String, PendingFile>> pending = new ConcurrentHashMap<>();
+    // Несохранённые записи, о которых ещё не сообщили: userId -> filename -> запись
+    private final ConcurrentMap<Integer, ConcurrentMap<String, PendingFile>> failed = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    public MetadataWriteBehindService(FileRepository fileRepository,
+                                      StorageBackend storageBackend,
+                                      @Value("${cloud.storage.write-behind.enabled:false}") boolean enabled,
+                                      @Value("${cloud.cluster.enabled:false}") boolean clusterEnabled,
+                                      @Value("${cloud.storage.write-behind.batch-size:500}") int batchSize,
+                                      @Value("${cloud.storage.write-behind.flush-interval-ms:20}") long flushIntervalMs,
+                                      @Value("${cloud.storage.write-behind.queue-capacity:10000}") int queueCapacity,
+                                      @Value("${cloud.storage.write-behind.offer-timeout-ms:100}") long offerTimeoutMs,
+                                      @Value("${cloud.storage.write-behind.await-timeout-ms:5000}") long awaitTimeoutMs) {
+        this.fileRepository = fileRepository;
+        this.storageBackend = storageBackend;
+        if (enabled && clusterEnabled) {
+            logger.warn("Write-behind metadata mode is node-local and is not used in cluster mode");
+        }
+        this.enabled = enabled && !clusterEnabled;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.awaitTimeoutMs = awaitTimeoutMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writer = Thread.ofPlatform()
+                .name("metadata-writer")
+                .daemon()
+                .start(this::runWriter);
+        logger.info("Write-behind metadata mode enabled (batch size {}, queue capacity {})",
+                batchSize, queue.remainingCapacity());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        writer.join(TimeUnit.NANOSECONDS.toMillis(flushIntervalNanos) + awaitTimeoutMs);
+
+        List<PendingFile> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            flush(rest);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void save(FileEntity fileEntity) {
+        if (!enabled) {
+            fileRepository.save(fileEntity);
+            return;
+        }
+
+        PendingFile pendingFile = new PendingFile(fileEntity);
+        forgetFailure(fileEntity.getUser().getId(), fileEntity.getFilename());
+        ConcurrentMap<String, PendingFile> userPending =
+                pending.computeIfAbsent(fileEntity.getUser().getId(), id -> new ConcurrentHashMap<>());
+        userPending.put(fileEntity.getFilename(), pendingFile);
+
+        boolean queued;
+        try {
+            queued = queue.offer(pendingFile, offerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+
+        if (!queued) {
+            // Очередь переполнена: пишем синхронно, чтобы не копить записи в памяти
+            logger.debug("Write-behind queue is full, saving '{}' synchronously", fileEntity.getFilename());
+            try {
+                fileRepository.save(fileEntity);
+                pendingFile.persisted.complete(null);
+            } finally {
+                userPending.remove(fileEntity.getFilename(), pendingFile);
+            }
+        }
+    }
+
+    public Optional<FileEntity> findPending(User user, String filename) {
+        Map<String, PendingFile> userPending = pending.get(user.getId());
+        if (userPending == null) {
+            return Optional.empty();
+        }
+        PendingFile pendingFile = userPending.get(filename);
+        return pendingFile == null ? Optional.empty() : Optional.of(pendingFile.entity);
+    }
+
+    public List<FileEntity> pendingFor(User user) {
+        Map<String, PendingFile> userPending = pending.get(user.getId());
+        if (userPending == null || userPending.isEmpty()) {
+            return List.of();
+        }
+        Collection<PendingFile> values = userPending.values();
+        List<FileEntity> result = new ArrayList<>(values.size());
+        for (PendingFile pendingFile : values) {
+            result.add(pendingFile.entity);
+        }
+        return result;
+    }
+
+    public void awaitPersisted(User user, String filename) {
+        Map<String, PendingFile> userPending = pending.get(user.getId());
+        PendingFile pendingFile = userPending == null ? null : userPending.get(filename);
+        if (pendingFile == null) {
+            pendingFile = forgetFailure(user.getId(), filename);
+        }
+        if (pendingFile == null) {
+            return;
+        }
+        try {
+            pendingFile.persisted.get(awaitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for file metadata: " + filename);
+        } catch (ExecutionException e) {
+            Map<String, PendingFile> userFailed = failed.get(user.getId());
+            if (userFailed != null) {
+                userFailed.remove(filename, pendingFile);
+            }
+            throw new RuntimeException("File metadata could not be saved: " + filename, e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("File metadata is not saved yet: " + filename);
+        }
+    }
+
+    private void runWriter() {
+        List<PendingFile> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingFile first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingFile next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                if (running) {
+                    continue;
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingFile> batch) {
+        List<FileEntity> entities = new ArrayList<>(batch.size());
+        for (PendingFile pendingFile : batch) {
+            entities.add(pendingFile.entity);
+        }
+
+        try {
+            fileRepository.saveAll(entities);
+            for (PendingFile pendingFile : batch) {
+                release(pendingFile, null);
+            }
+            logger.debug("Flushed {} file records", batch.size());
+        } catch (Exception e) {
+            logger.error("Batch flush of {} file records failed, retrying one by one", batch.size(), e);
+            for (PendingFile pendingFile : batch) {
+                try {
+                    fileRepository.save(pendingFile.entity);
+                    release(pendingFile, null);
+                } catch (Exception ex) {
+                    logger.error("Could not save metadata for file '{}'", pendingFile.entity.getFilename(), ex);
+                    discard(pendingFile);
+                    release(pendingFile, ex);
+                }
+            }
+        }
+    }
+
+    // Имя файла занято оверлеем до release, поэтому ключ в хранилище принадлежит только этой записи.
+    // Строка могла всё же сохраниться (ошибка после фиксации) — тогда файл не трогаем
+    private void discard(PendingFile pendingFile) {
+        FileEntity entity = pendingFile.entity;
+        try {
+            if (fileRepository.existsByUserIdAndPath(entity.getUser().getId(), entity.getFilePath())) {
+                return;
+            }
+            storageBackend.delete(entity.getFilePath());
+            logger.warn("Deleted stored content of '{}' whose metadata could not be saved", entity.getFilename());
+        } catch (Exception e) {
+            // Останется сиротой до сверки хранилища (StorageReconciler)
+            logger.error("Could not delete stored content of '{}' at {}", entity.getFilename(), entity.getFilePath(), e);
+        }
+    }
+
+    // Ошибка попадает в failed раньше, чем запись уходит из оверлея: awaitPersisted видит её в одном из двух
+    private void release(PendingFile pendingFile, Exception failure) {
+        Integer userId = pendingFile.entity.getUser().getId();
+        if (failure == null) {
+            pendingFile.persisted.complete(null);
+        } else {
+            pendingFile.persisted.completeExceptionally(failure);
+            failed.computeIfAbsent(userId, id -> new ConcurrentHashMap<>())
+                    .put(pendingFile.entity.getFilename(), pendingFile);
+        }
+        Map<String, PendingFile> userPending = pending.get(userId);
+        if (userPending != null) {
+            userPending.remove(pendingFile.entity.getFilename(), pendingFile);
+        }
+    }
+
+    private PendingFile forgetFailure(Integer userId, String filename) {
+        Map<String, PendingFile> userFailed = failed.get(userId);
+        return userFailed == null ? null : userFailed.remove(filename);
+    }
+
+    private static final class PendingFile {
+        private final FileEntity entity;
+        private final CompletableFuture<Void> persisted = new CompletableFuture<>();
+
+        private PendingFile(FileEntity entity) {
+            this.entity = entity;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.netology.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * BCrypt выполняется на отдельном небольшом пуле, а не на потоках запросов: поток запроса ждёт результат,
+ * но число таких ожидающих ограничено размером очереди. Когда очередь заполнена, задача отклоняется
+ * сразу (RejectedExecutionException) и клиент получает 503, а передача файлов не лишается потоков и CPU.
+ */
+@Service
+public class PasswordHasher {
+    private static final Logger logger = LoggerFactory.getLogger(PasswordHasher.class);
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          @Value("${cloud.auth.hash-threads:0}") int threads,
+                          @Value("${cloud.auth.hash-queue:32}") int queueCapacity) {
+        this.passwordEncoder = passwordEncoder;
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hash-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        logger.info("Password hashing pool: {} threads, queue capacity {}", poolSize, queueCapacity);
+    }
+
+    // При верном пароле и хеше слабее настроенной стоимости в той же задаче считается новый хеш
+    public Verification verify(String password, String encodedPassword) {
+        return submit(() -> {
+            if (!passwordEncoder.matches(password, encodedPassword)) {
+                return Verification.REJECTED;
+            }
+            return passwordEncoder.upgradeEncoding(encodedPassword)
+                    ? new Verification(true, passwordEncoder.encode(password))
+                    : Verification.MATCHED;
+        });
+    }
+
+    public String encode(String password) {
+        return submit(() -> passwordEncoder.encode(password));
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private <T> T submit(Callable<T> task) {
+        // Заполненная очередь — RejectedExecutionException вызывающему; без лога, иначе шторм входов засыпает его
+        Future<T> future = executor.submit(task);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while hashing password");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Password hashing failed", e.getCause());
+        }
+    }
+
+    public static final class Verification {
+        private static final Verification REJECTED = new Verification(false, null);
+        private static final Verification MATCHED = new Verification(true, null);
+
+        private final boolean matched;
+        private final String upgradedHash;
+
+        private Verification(boolean matched, String upgradedHash) {
+            this.matched = matched;
+            this.upgradedHash = upgradedHash;
+        }
+
+        public boolean isMatched() {
+            return matched;
+        }
+
+        public String getUpgradedHash() {
+            return upgradedHash;
+        }
+    }
+}
@@ -0,0 +1,687 @@
+package ru.netology.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.delta.DeltaPatcher;
+import ru.netology.dto.ReconcileStatusDto;
+import ru.netology.repository.FileRepository;
+import ru.netology.storage.StorageBackend;
+import ru.netology.storage.StorageVolume;
+import ru.netology.storage.VolumeManager;
+
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+ * Сверка файлов на дисках со строками таблицы files. Обе стороны выдаются отсортированными
+ * по (user_id, file_path) и сравниваются слиянием: в памяти только окно каталогов пользователей
+ * (не больше sort-buffer записей на каталог, остальное — во временных файлах) и страница курсора БД,
+ * независимо от общего числа файлов.
+ */
+@Service
+@ConditionalOnProperty(name = "cloud.storage.backend", havingValue = "local", matchIfMissing = true)
+public class StorageReconciler {
+    private static final Logger logger = LoggerFactory.getLogger(StorageReconciler.class);
+
+    private static final int SAMPLE_LIMIT = 100;
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+    private static final String ROWS_QUERY = "SELECT id, user_id, filename, file_path FROM files "
+            + "WHERE file_path IS NOT NULL ORDER BY user_id, file_path COLLATE \"C\"";
+
+    private static final Comparator<DiskEntry> DISK_ORDER = (a, b) -> compareKeys(a.key, b.key);
+
+    private final DataSource dataSource;
+    private final FileRepository fileRepository;
+    private final FileLockManager fileLockManager;
+    private final StorageBackend storageBackend;
+    private final VolumeManager volumeManager;
+    private final ClusterEventBus clusterEventBus;
+    private final int parallelism;
+    private final long gracePeriodMs;
+    private final int fetchSize;
+    private final int sortBuffer;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong diskFiles = new AtomicLong();
+    private final AtomicLong rows = new AtomicLong();
+    private final AtomicLong matched = new AtomicLong();
+    private final AtomicLong orphanFiles = new AtomicLong();
+    private final AtomicLong missingFiles = new AtomicLong();
+    private final AtomicLong skippedRecent = new AtomicLong();
+    private final AtomicLong repaired = new AtomicLong();
+    private final List<String> samples = new CopyOnWriteArrayList<>();
+    private volatile boolean repair;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+
+    public StorageReconciler(DataSource dataSource,
+                             FileRepository fileRepository,
+                             FileLockManager fileLockManager,
+                             StorageBackend storageBackend,
+                             VolumeManager volumeManager,
+                             ClusterEventBus clusterEventBus,
+                             @Value("${cloud.reconcile.parallelism:0}") int parallelism,
+                             @Value("${cloud.reconcile.grace-period-ms:3600000}") long gracePeriodMs,
+                             @Value("${cloud.reconcile.fetch-size:10000}") int fetchSize,
+                             @Value("${cloud.reconcile.sort-buffer:50000}") int sortBuffer) {
+        this.dataSource = dataSource;
+        this.fileRepository = fileRepository;
+        this.fileLockManager = fileLockManager;
+        this.storageBackend = storageBackend;
+        this.volumeManager = volumeManager;
+        this.clusterEventBus = clusterEventBus;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.gracePeriodMs = gracePeriodMs;
+        this.fetchSize = fetchSize;
+        this.sortBuffer = Math.max(1, sortBuffer);
+    }
+
+    public boolean start(boolean repair) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        reset(repair);
+        Thread.ofPlatform()
+                .name("storage-reconciler")
+                .daemon()
+                .start(() -> {
+                    try {
+                        reconcile(repair);
+                    } catch (Exception e) {
+                        logger.error("Storage reconciliation failed", e);
+                        error = e.getMessage();
+                    } finally {
+                        finishedAt = LocalDateTime.now();
+                        running.set(false);
+                    }
+                });
+        return true;
+    }
+
+    public ReconcileStatusDto getStatus() {
+        return new ReconcileStatusDto(running.get(), repair, startedAt, finishedAt, error,
+                diskFiles.get(), rows.get(), matched.get(), orphanFiles.get(), missingFiles.get(),
+                skippedRecent.get(), repaired.get(), new ArrayList<>(samples));
+    }
+
+    private void reconcile(boolean repair) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            // Курсор PostgreSQL с fetch size работает только внутри транзакции
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(ROWS_QUERY)) {
+                statement.setFetchSize(fetchSize);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    reconcile(new RowIterator(resultSet), repair);
+                }
+            } finally {
+                connection.rollback();
+            }
+        }
+    }
+
+    // Строки должны идти в порядке (user_id, file_path) по кодовым точкам, как ORDER BY ... COLLATE "C"
+    public void reconcile(Iterator<StoredFile> storedFiles, boolean repair) {
+        Path workDirectory;
+        try {
+            workDirectory = Files.createTempDirectory("reconcile-");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a directory for sorted listings", e);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try (DiskWalk disk = new DiskWalk(pool, workDirectory)) {
+            DiskEntry file = disk.next();
+            StoredFile row = storedFiles.hasNext() ? storedFiles.next() : null;
+
+            while (file != null || row != null) {
+                int order;
+                if (file == null) {
+                    order = 1;
+                } else if (row == null) {
+                    order = -1;
+                } else {
+                    order = file.userId != row.userId
+                            ? Integer.compare(file.userId, row.userId)
+                            : compareKeys(file.key, row.key);
+                }
+
+                if (order <= 0) {
+                    diskFiles.incrementAndGet();
+                }
+                if (order >= 0) {
+                    rows.incrementAndGet();
+                }
+                if (order == 0) {
+                    matched.incrementAndGet();
+                } else if (order < 0) {
+                    orphanFile(file, repair);
+                } else {
+                    missingFile(row, repair);
+                }
+
+                if (order <= 0) {
+                    file = disk.next();
+                }
+                if (order >= 0) {
+                    row = storedFiles.hasNext() ? storedFiles.next() : null;
+                }
+            }
+            logger.info("Storage reconciliation finished: {} files on disk, {} rows, {} orphan files, {} missing files, {} repaired",
+                    diskFiles.get(), rows.get(), orphanFiles.get(), missingFiles.get(), repaired.get());
+        } finally {
+            pool.shutdownNow();
+            deleteWorkDirectory(pool, workDirectory);
+        }
+    }
+
+    private void orphanFile(DiskEntry file, boolean repair) {
+        // Загрузка пишет файл раньше строки: свежие файлы могут ещё ждать свою запись в БД
+        if (System.currentTimeMillis() - file.lastModified < gracePeriodMs) {
+            skippedRecent.incrementAndGet();
+            return;
+        }
+        orphanFiles.incrementAndGet();
+        report("File without row: " + file.key);
+        if (!repair) {
+            return;
+        }
+
+        try (FileLockManager.Lock ignored = lockOrphan(file)) {
+            if (fileRepository.existsByUserIdAndPath(file.userId, file.key)) {
+                return;
+            }
+            if (storageBackend.delete(file.key)) {
+                repaired.incrementAndGet();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not delete orphan file {}: {}", file.key, e.getMessage());
+        }
+    }
+
+    /*
+     * Блокировка по тем же именам, что берут сервисы файлов. Ключ обычного файла оканчивается его именем.
+     * Временная версия дельты (<имя>.delta-<uuid>) существует под блокировкой файла-владельца:
+     * его имя берётся из строки с ключом без суффикса (у импортированных файлов имя может отличаться от ключа).
+     */
+    private FileLockManager.Lock lockOrphan(DiskEntry file) {
+        String name = Paths.get(file.key).getFileName().toString();
+        int mark = name.lastIndexOf(DeltaPatcher.TEMP_SUFFIX);
+        if (mark <= 0 || !isUuid(name.substring(mark + DeltaPatcher.TEMP_SUFFIX.length()))) {
+            return fileLockManager.lock(file.userId, name);
+        }
+        String ownerKey = Paths.get(file.key).resolveSibling(name.substring(0, mark)).toString();
+        String owner = fileRepository.findFilenameByUserIdAndPath(file.userId, ownerKey)
+                .orElse(name.substring(0, mark));
+        return fileLockManager.lock(file.userId, name, owner);
+    }
+
+    private static boolean isUuid(String value) {
+        try {
+            return UUID.fromString(value).toString().equalsIgnoreCase(value);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void deleteWorkDirectory(ForkJoinPool pool, Path workDirectory) {
+        try {
+            // Прерванные сканы ещё могут дописывать серии
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try (Stream<Path> paths = Files.walk(workDirectory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not delete reconciliation directory {}: {}", workDirectory, e.getMessage());
+        }
+    }
+
+    private void missingFile(StoredFile row, boolean repair) {
+        missingFiles.incrementAndGet();
+        report("Row without file: id " + row.id + ", " + row.key);
+        // Файл за пределами настроенных томов мог оказаться на отключённом диске — строку не трогаем
+        if (!repair || volumeManager.volumeOf(Paths.get(row.key)).isEmpty()) {
+            return;
+        }
+
+        try (FileLockManager.Lock ignored = fileLockManager.lock(row.userId, row.filename)) {
+            if (storageBackend.stat(row.key).isPresent()) {
+                return;
+            }
+            // Условие по пути: строку могли переименовать после снимка курсора
+            if (fileRepository.deleteByIdAndFilePath(row.userId, row.id, row.key) > 0) {
+                repaired.incrementAndGet();
+                clusterEventBus.publish(FileStorageService.FILE_EVENTS_TOPIC, row.userId + "/" + row.filename);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not check file {} for row {}: {}", row.key, row.id, e.getMessage());
+        }
+    }
+
+    private void report(String difference) {
+        logger.warn(difference);
+        if (samples.size() < SAMPLE_LIMIT) {
+            samples.add(difference);
+        }
+    }
+
+    private void reset(boolean repair) {
+        this.repair = repair;
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        error = null;
+        for (AtomicLong counter : List.of(diskFiles, rows, matched, orphanFiles, missingFiles, skippedRecent, repaired)) {
+            counter.set(0);
+        }
+        samples.clear();
+    }
+
+    // Порядок кодовых точек совпадает с побайтовым порядком UTF-8, то есть с COLLATE "C" в PostgreSQL
+    static int compareKeys(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int first = a.codePointAt(i);
+            int second = b.codePointAt(j);
+            if (first != second) {
+                return Integer.compare(first, second);
+            }
+            i += Character.charCount(first);
+            j += Character.charCount(second);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    public static final class StoredFile {
+        private final Integer id;
+        private final int userId;
+        private final String filename;
+        private final String key;
+
+        public StoredFile(Integer id, int userId, String filename, String key) {
+            this.id = id;
+            this.userId = userId;
+            this.filename = filename;
+            this.key = key;
+        }
+    }
+
+    private static final class DiskEntry {
+        private final int userId;
+        private final String key;
+        private final long lastModified;
+
+        private DiskEntry(int userId, String key, long lastModified) {
+            this.userId = userId;
+            this.key = key;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final class RowIterator implements Iterator<StoredFile> {
+        private final ResultSet resultSet;
+        private Boolean hasNext;
+
+        private RowIterator(ResultSet resultSet) {
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (hasNext == null) {
+                try {
+                    hasNext = resultSet.next();
+                } catch (SQLException e) {
+                    throw new RuntimeException("Could not read file rows", e);
+                }
+            }
+            return hasNext;
+        }
+
+        @Override
+        public StoredFile next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            hasNext = null;
+            try {
+                return new StoredFile(resultSet.getInt("id"), resultSet.getInt("user_id"),
+                        resultSet.getString("filename"), resultSet.getString("file_path"));
+            } catch (SQLException e) {
+                throw new RuntimeException("Could not read file rows", e);
+            }
+        }
+    }
+
+    // Каталоги пользователей сканируются параллельно, но выдаются строго по возрастанию user_id;
+    // вперёд читается не больше двух каталогов на поток
+    private final class DiskWalk implements Closeable {
+        private final ForkJoinPool pool;
+        private final Path workDirectory;
+        private final Iterator<Integer> users;
+        private final Deque<ForkJoinTask<SortedRuns>> window = new ArrayDeque<>();
+        private SortedRuns currentRuns;
+        private Iterator<DiskEntry> current = Collections.emptyIterator();
+
+        private DiskWalk(ForkJoinPool pool, Path workDirectory) {
+            this.pool = pool;
+            this.workDirectory = workDirectory;
+            this.users = userIds().iterator();
+            fill();
+        }
+
+        private DiskEntry next() {
+            while (!current.hasNext()) {
+                closeCurrent();
+                if (window.isEmpty()) {
+                    return null;
+                }
+                currentRuns = window.poll().join();
+                try {
+                    current = currentRuns.iterator();
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not read sorted directory listing", e);
+                }
+                fill();
+            }
+            return current.next();
+        }
+
+        private void fill() {
+            while (window.size() < pool.getParallelism() * 2 && users.hasNext()) {
+                int userId = users.next();
+                List<Path> directories = new ArrayList<>();
+                for (StorageVolume volume : volumeManager.getVolumes()) {
+                    Path directory = volume.getRoot().resolve(Integer.toString(userId));
+                    if (Files.isDirectory(directory)) {
+                        directories.add(directory);
+                    }
+                }
+                window.add(pool.submit(new DirectoryScan(userId, directories, workDirectory)));
+            }
+        }
+
+        private void closeCurrent() {
+            if (currentRuns != null) {
+                currentRuns.close();
+                currentRuns = null;
+            }
+            current = Collections.emptyIterator();
+        }
+
+        // Незавершённые сканы окна оставляют серии в рабочем каталоге, его удаляет вызывающий
+        @Override
+        public void close() {
+            closeCurrent();
+        }
+
+        // Число пользователей много меньше числа файлов, поэтому их номера можно держать в памяти
+        private TreeSet<Integer> userIds() {
+            TreeSet<Integer> ids = new TreeSet<>();
+            for (StorageVolume volume : volumeManager.getVolumes()) {
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(volume.getRoot(), Files::isDirectory)) {
+                    for (Path directory : stream) {
+                        try {
+                            ids.add(Integer.parseInt(directory.getFileName().toString()));
+                        } catch (NumberFormatException e) {
+                            logger.debug("Skipping foreign directory {}", directory);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not list volume " + volume.getId(), e);
+                }
+            }
+            return ids;
+        }
+    }
+
+    private final class DirectoryScan extends RecursiveTask<SortedRuns> {
+        private final int userId;
+        private final List<Path> directories;
+        private final Path workDirectory;
+
+        private DirectoryScan(int userId, List<Path> directories, Path workDirectory) {
+            this.userId = userId;
+            this.directories = directories;
+            this.workDirectory = workDirectory;
+        }
+
+        @Override
+        protected SortedRuns compute() {
+            SortedRuns runs = new SortedRuns(userId, workDirectory);
+            List<DirectoryScan> subdirectories = new ArrayList<>();
+            try {
+                for (Path directory : directories) {
+                    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                        for (Path path : stream) {
+                            BasicFileAttributes attributes;
+                            try {
+                                attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                            } catch (NoSuchFileException e) {
+                                continue;
+                            }
+                            if (attributes.isDirectory()) {
+                                DirectoryScan task = new DirectoryScan(userId, List.of(path), workDirectory);
+                                task.fork();
+                                subdirectories.add(task);
+                            } else if (attributes.isRegularFile()) {
+                                runs.add(new DiskEntry(userId, path.toString(), attributes.lastModifiedTime().toMillis()));
+                            }
+                        }
+                    } catch (NoSuchFileException e) {
+                        logger.debug("Directory {} disappeared during reconciliation", directory);
+                    }
+                }
+                for (DirectoryScan task : subdirectories) {
+                    runs.addAll(task.join());
+                }
+                return runs;
+            } catch (IOException e) {
+                runs.close();
+                throw new UncheckedIOException("Could not list directories of user " + userId, e);
+            } catch (RuntimeException e) {
+                runs.close();
+                throw e;
+            }
+        }
+    }
+
+    /*
+     * Внешняя сортировка записей одного пользователя: каталог может содержать миллионы файлов,
+     * поэтому в памяти держится не больше sort-buffer записей, остальное сбрасывается отсортированными
+     * сериями во временные файлы и сливается при чтении (в памяти — по одной записи из каждой серии).
+     */
+    private final class SortedRuns {
+        private final int userId;
+        private final Path workDirectory;
+        private final List<DiskEntry> buffer = new ArrayList<>();
+        private final List<Path> files = new ArrayList<>();
+        private final List<DataInputStream> readers = new ArrayList<>();
+
+        private SortedRuns(int userId, Path workDirectory) {
+            this.userId = userId;
+            this.workDirectory = workDirectory;
+        }
+
+        private void add(DiskEntry entry) throws IOException {
+            buffer.add(entry);
+            if (buffer.size() >= sortBuffer) {
+                spill();
+            }
+        }
+
+        private void addAll(SortedRuns other) throws IOException {
+            files.addAll(other.files);
+            other.files.clear();
+            for (DiskEntry entry : other.buffer) {
+                add(entry);
+            }
+            other.buffer.clear();
+        }
+
+        private void spill() throws IOException {
+            buffer.sort(DISK_ORDER);
+            Path file = Files.createTempFile(workDirectory, "run-", ".bin");
+            files.add(file);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(file), RUN_BUFFER_SIZE))) {
+                out.writeInt(buffer.size());
+                for (DiskEntry entry : buffer) {
+                    out.writeUTF(entry.key);
+                    out.writeLong(entry.lastModified);
+                }
+            }
+            buffer.clear();
+        }
+
+        private Iterator<DiskEntry> iterator() throws IOException {
+            buffer.sort(DISK_ORDER);
+            PriorityQueue<Run> heads = new PriorityQueue<>((a, b) -> DISK_ORDER.compare(a.head, b.head));
+            Run memory = new Run(buffer.iterator());
+            if (memory.advance()) {
+                heads.add(memory);
+            }
+            for (Path file : files) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), RUN_BUFFER_SIZE));
+                readers.add(in);
+                Run run = new Run(new RunReader(userId, in));
+                if (run.advance()) {
+                    heads.add(run);
+                }
+            }
+            return new Iterator<>() {
+                @Override
+                public boolean hasNext() {
+                    return !heads.isEmpty();
+                }
+
+                @Override
+                public DiskEntry next() {
+                    Run run = heads.poll();
+                    if (run == null) {
+                        throw new NoSuchElementException();
+                    }
+                    DiskEntry entry = run.head;
+                    if (run.advance()) {
+                        heads.add(run);
+                    }
+                    return entry;
+                }
+            };
+        }
+
+        private void close() {
+            buffer.clear();
+            for (DataInputStream reader : readers) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    logger.debug("Could not close sorted run: {}", e.getMessage());
+                }
+            }
+            readers.clear();
+            for (Path file : files) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.debug("Could not delete sorted run {}: {}", file, e.getMessage());
+                }
+            }
+            files.clear();
+        }
+    }
+
+    private static final class Run {
+        private final Iterator<DiskEntry> entries;
+        private DiskEntry head;
+
+        private Run(Iterator<DiskEntry> entries) {
+            this.entries = entries;
+        }
+
+        private boolean advance() {
+            head = entries.hasNext() ? entries.next() : null;
+            return head != null;
+        }
+    }
+
+    private static final class RunReader implements Iterator<DiskEntry> {
+        private final int userId;
+        private final DataInputStream in;
+        private int remaining = -1;
+
+        private RunReader(int userId, DataInputStream in) {
+            this.userId = userId;
+            this.in = in;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                if (remaining < 0) {
+                    remaining = in.readInt();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read sorted run", e);
+            }
+            return remaining > 0;
+        }
+
+        @Override
+        public DiskEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            remaining--;
+            try {
+                return new DiskEntry(userId, in.readUTF(), in.readLong());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read sorted run", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package ru.netology.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.netology.cluster.ClusterLockService;
+import ru.netology.entity.FileEntity;
+import ru.netology.repository.FileRepository;
+import ru.netology.storage.StorageVolume;
+import ru.netology.storage.VolumeManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@ConditionalOnProperty(name = "cloud.storage.backend", havingValue = "local", matchIfMissing = true)
+public class VolumeRebalancer {
+    private static final Logger logger = LoggerFactory.getLogger(VolumeRebalancer.class);
+    private static final String CLUSTER_TASK = "volume-rebalancer";
+
+    private final FileRepository fileRepository;
+    private final FileLockManager fileLockManager;
+    private final VolumeManager volumeManager;
+    private final ClusterLockService clusterLockService;
+    private final boolean enabled;
+    private final double tolerance;
+    private final long pauseMs;
+
+    public VolumeRebalancer(FileRepository fileRepository,
+                            FileLockManager fileLockManager,
+                            VolumeManager volumeManager,
+                            ClusterLockService clusterLockService,
+                            @Value("${cloud.storage.rebalance.enabled:true}") boolean enabled,
+                            @Value("${cloud.storage.rebalance.tolerance:0.1}") double tolerance,
+                            @Value("${cloud.storage.rebalance.pause-ms:0}") long pauseMs) {
+        this.fileRepository = fileRepository;
+        this.fileLockManager = fileLockManager;
+        this.volumeManager = volumeManager;
+        this.clusterLockService = clusterLockService;
+        this.enabled = enabled;
+        this.tolerance = tolerance;
+        this.pauseMs = pauseMs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnReady() {
+        if (!enabled) {
+            return;
+        }
+        Thread.ofPlatform()
+                .name("volume-rebalancer")
+                .daemon()
+                .start(this::rebalance);
+    }
+
+    public void rebalance() {
+        List<StorageVolume> volumes = volumeManager.getVolumes();
+        if (volumes.size() < 2) {
+            return;
+        }
+
+        // Тома общие для всех узлов: переносит файлы только узел, захвативший блокировку
+        Optional<ClusterLockService.Lease> lease;
+        try {
+            lease = clusterLockService.tryAcquire(CLUSTER_TASK);
+        } catch (RuntimeException e) {
+            logger.error("Volume rebalancing skipped: {}", e.getMessage());
+            return;
+        }
+        if (lease.isEmpty()) {
+            logger.info("Volume rebalancing is already running on another node");
+            return;
+        }
+
+        try (ClusterLockService.Lease ignored = lease.get()) {
+            assignLegacyVolumes(volumes);
+
+            Map<String, Long> used = usedBytes(volumes);
+            long total = used.values().stream().mapToLong(Long::longValue).sum();
+            int totalWeight = volumes.stream().mapToInt(StorageVolume::getWeight).sum();
+            Map<String, Long> target = new HashMap<>();
+            for (StorageVolume volume : volumes) {
+                target.put(volume.getId(), total * volume.getWeight() / totalWeight);
+            }
+
+            for (StorageVolume donor : volumes) {
+                long donorTarget = target.get(donor.getId());
+                if (used.get(donor.getId()) <= donorTarget * (1 + tolerance)) {
+                    continue;
+                }
+                logger.info("Rebalancing volume {}: {} bytes used, target {}",
+                        donor.getId(), used.get(donor.getId()), donorTarget);
+                drain(donor, volumes, used, target);
+            }
+        } catch (Exception e) {
+            logger.error("Volume rebalancing failed", e);
+        }
+    }
+
+    private void assignLegacyVolumes(List<StorageVolume> volumes) {
+        for (StorageVolume volume : volumes) {
+            int assigned = fileRepository.assignVolume(volume.getId(), escapeLike(volume.getRoot() + File.separator));
+            if (assigned > 0) {
+                logger.info("Assigned {} existing files to volume {}", assigned, volume.getId());
+            }
+        }
+    }
+
+    private Map<String, Long> usedBytes(List<StorageVolume> volumes) {
+        Map<String, Long> used = new HashMap<>();
+        for (StorageVolume volume : volumes) {
+            used.put(volume.getId(), 0L);
+        }
+        for (Object[] row : fileRepository.sumSizeByVolume()) {
+            String volumeId = (String) row[0];
+            if (volumeId != null && used.containsKey(volumeId)) {
+                used.put(volumeId, ((Number) row[1]).longValue());
+            }
+        }
+        return used;
+    }
+
+    private void drain(StorageVolume donor, List<StorageVolume> volumes,
+                       Map<String, Long> used, Map<String, Long> target) throws Exception {
+        Integer lastId = 0;
+        while (used.get(donor.getId()) > target.get(donor.getId())) {
+            List<FileEntity> page = fileRepository.findTop100ByVolumeAndIdGreaterThanOrderByIdAsc(donor.getId(), lastId);
+            if (page.isEmpty()) {
+                return;
+            }
+
+            for (FileEntity file : page) {
+                lastId = file.getId();
+                if (used.get(donor.getId()) <= target.get(donor.getId())) {
+                    return;
+                }
+
+                Optional<StorageVolume> receiver = pickReceiver(volumes, used, target, file.getSize());
+                if (receiver.isEmpty()) {
+                    return;
+                }
+                try {
+                    if (move(file, donor, receiver.get())) {
+                        used.merge(donor.getId(), -file.getSize(), Long::sum);
+                        used.merge(receiver.get().getId(), file.getSize(), Long::sum);
+                    }
+                } catch (IOException e) {
+                    logger.warn("Could not move '{}' off volume {}: {}", file.getFilename(), donor.getId(), e.getMessage());
+                }
+                if (pauseMs > 0) {
+                    Thread.sleep(pauseMs);
+                }
+            }
+        }
+    }
+
+    private Optional<StorageVolume> pickReceiver(List<StorageVolume> volumes, Map<String, Long> used,
+                                                 Map<String, Long> target, long size) {
+        StorageVolume best = null;
+        long bestDeficit = 0;
+        for (StorageVolume volume : volumes) {
+            long deficit = target.get(volume.getId()) - used.get(volume.getId());
+            if (deficit >= size && deficit > bestDeficit && volume.getUsableSpace() > size) {
+                best = volume;
+                bestDeficit = deficit;
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    private boolean move(FileEntity candidate, StorageVolume source, StorageVolume target) throws IOException {
+        try (FileLockManager.Lock ignored = fileLockManager.lock(candidate.getUser().getId(), candidate.getFilename())) {
+            // Пока ждали блокировку, файл могли переименовать, удалить или перенести
+            Optional<FileEntity> current = fileRepository.findByUserAndFilename(candidate.getUser(), candidate.getFilename());
+            if (current.isEmpty() || !current.get().getId().equals(candidate.getId())
+                    || !source.getId().equals(current.get().getVolume())) {
+                return false;
+            }
+            FileEntity fileEntity = current.get();
+
+            Path sourcePath = Paths.get(fileEntity.getFilePath());
+            Path targetPath = target.getRoot().resolve(source.getRoot().normalize().relativize(sourcePath.normalize()));
+            Path tempPath = targetPath.resolveSibling(targetPath.getFileName() + ".rebalance");
+            Files.createDirectories(targetPath.getParent());
+
+            try (StorageVolume.IoTicket sourceIo = source.beginIo();
+                 StorageVolume.IoTicket targetIo = target.beginIo()) {
+                Files.copy(sourcePath, tempPath, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tempPath, targetPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            fileEntity.setFilePath(targetPath.toString());
+            fileEntity.setVolume(target.getId());
+            try {
+                fileRepository.save(fileEntity);
+            } catch (RuntimeException e) {
+                Files.deleteIfExists(targetPath);
+                throw e;
+            }
+
+            Files.deleteIfExists(sourcePath);
+            logger.debug("Moved '{}' from {} to {}", fileEntity.getFilename(), source.getId(), target.getId());
+            return true;
+        }
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!")
+                .replace("%", "!%")
+                .replace("_", "!_");
+    }
+}
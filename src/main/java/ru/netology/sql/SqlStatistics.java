@@ -0,0 +1,127 @@
+package ru.netology.sql;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.netology.dto.EndpointSqlStatsDto;
+import ru.netology.dto.SqlStatsDto;
+import ru.netology.trace.RequestTrace;
+import ru.netology.trace.TraceStage;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Счётчики SQL-запросов: общие и по эндпоинтам. Запросы считаются в контексте текущего
+ * HTTP-запроса (ThreadLocal, открывается SqlTracingFilter); запросы вне HTTP (миграции,
+ * фоновые задачи) попадают только в общие счётчики.
+ * Медленные запросы пишутся в лог вместе с параметрами, слишком много запросов на один
+ * HTTP-запрос — признак N+1, тоже в лог.
+ */
+@Component
+public class SqlStatistics {
+    private static final Logger logger = LoggerFactory.getLogger(SqlStatistics.class);
+
+    private final long slowThresholdNanos;
+    private final int maxStatementsPerRequest;
+    private final ThreadLocal<RequestScope> current = new ThreadLocal<>();
+    private final Map<String, EndpointStats> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder slowStatements = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    public SqlStatistics(@Value("${cloud.sql.slow-threshold-ms:200}") long slowThresholdMs,
+                         @Value("${cloud.sql.max-statements-per-request:50}") int maxStatementsPerRequest) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+        this.maxStatementsPerRequest = maxStatementsPerRequest;
+    }
+
+    public void beginRequest() {
+        current.set(new RequestScope());
+    }
+
+    // Закрывает контекст запроса и относит его запросы к эндпоинту ("GET /list")
+    public void endRequest(String endpoint) {
+        RequestScope scope = current.get();
+        current.remove();
+        if (scope == null) {
+            return;
+        }
+        endpoints.computeIfAbsent(endpoint, key -> new EndpointStats()).add(scope);
+        if (scope.statements > maxStatementsPerRequest) {
+            logger.warn("{} executed {} SQL statements ({} ms), possible N+1", endpoint, scope.statements,
+                    TimeUnit.NANOSECONDS.toMillis(scope.nanos));
+        } else if (logger.isDebugEnabled() && scope.statements > 0) {
+            logger.debug("{} executed {} SQL statements ({} ms)", endpoint, scope.statements,
+                    TimeUnit.NANOSECONDS.toMillis(scope.nanos));
+        }
+    }
+
+    public void record(String sql, long nanos, Object parameters) {
+        statements.increment();
+        totalNanos.add(nanos);
+        RequestTrace.add(TraceStage.DATABASE, nanos);
+        RequestScope scope = current.get();
+        if (scope != null) {
+            scope.statements++;
+            scope.nanos += nanos;
+        }
+        if (nanos >= slowThresholdNanos) {
+            slowStatements.increment();
+            logger.warn("Slow SQL ({} ms): {} {}", TimeUnit.NANOSECONDS.toMillis(nanos), sql, parameters);
+        }
+    }
+
+    // Число запросов текущего HTTP-запроса; -1 вне HTTP-запроса
+    public int getCurrentStatements() {
+        RequestScope scope = current.get();
+        return scope != null ? scope.statements : -1;
+    }
+
+    public SqlStatsDto getStats() {
+        List<EndpointSqlStatsDto> list = endpoints.entrySet().stream()
+                .map(entry -> entry.getValue().toDto(entry.getKey()))
+                .sorted(Comparator.comparing(EndpointSqlStatsDto::getEndpoint))
+                .toList();
+        return new SqlStatsDto(statements.sum(), slowStatements.sum(), totalNanos.sum() / 1_000_000.0, list);
+    }
+
+    public void reset() {
+        endpoints.clear();
+        statements.reset();
+        slowStatements.reset();
+        totalNanos.reset();
+    }
+
+    private static final class RequestScope {
+        private int statements;
+        private long nanos;
+    }
+
+    private static final class EndpointStats {
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final AtomicLong maxStatements = new AtomicLong();
+
+        private void add(RequestScope scope) {
+            requests.increment();
+            statements.add(scope.statements);
+            nanos.add(scope.nanos);
+            maxStatements.accumulateAndGet(scope.statements, Math::max);
+        }
+
+        private EndpointSqlStatsDto toDto(String endpoint) {
+            long count = requests.sum();
+            long total = statements.sum();
+            return new EndpointSqlStatsDto(endpoint, count, total, maxStatements.get(),
+                    count > 0 ? (double) total / count : 0, nanos.sum() / 1_000_000.0);
+        }
+    }
+}
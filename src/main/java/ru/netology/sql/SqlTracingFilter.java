@@ -0,0 +1,37 @@
+package ru.netology.sql;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.netology.trace.RequestTraceFilter;
+
+import java.io.IOException;
+
+// Раньше фильтров безопасности: загрузка пользователя по токену тоже относится к запросу
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class SqlTracingFilter extends OncePerRequestFilter {
+
+    private final SqlStatistics statistics;
+
+    public SqlTracingFilter(SqlStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        statistics.beginRequest();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            statistics.endRequest(request.getMethod() + " " + RequestTraceFilter.endpoint(request));
+        }
+    }
+}
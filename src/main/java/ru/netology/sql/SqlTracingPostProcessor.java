@@ -0,0 +1,30 @@
+package ru.netology.sql;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+// Оборачивает пул соединений приложения; statistics берётся лениво, чтобы не создавать бины раньше пост-процессора
+@Component
+public class SqlTracingPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<SqlStatistics> statistics;
+    private final boolean enabled;
+
+    public SqlTracingPostProcessor(ObjectProvider<SqlStatistics> statistics,
+                                   @Value("${cloud.sql.tracing:true}") boolean enabled) {
+        this.statistics = statistics;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (enabled && bean instanceof DataSource dataSource && !TracingDataSource.isWrapped(bean)) {
+            return TracingDataSource.wrap(dataSource, statistics.getObject());
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,181 @@
+package ru.netology.sql;
+
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * Обёртка пула соединений на динамических прокси JDBC: DataSource -> Connection -> Statement.
+ * Вызовы execute* замеряются и передаются в SqlStatistics вместе с параметрами,
+ * собранными из setXxx(index, value). Остальные вызовы проходят к драйверу без изменений;
+ * unwrap() возвращает исходный пул, так что метаданные Hikari и Flyway работают как раньше.
+ */
+public final class TracingDataSource {
+    private static final int MAX_PARAMETER_LENGTH = 100;
+
+    private TracingDataSource() {
+    }
+
+    public static DataSource wrap(DataSource target, SqlStatistics statistics) {
+        return proxy(target, ClassUtils.getAllInterfaces(target), new DataSourceHandler(target, statistics));
+    }
+
+    static boolean isWrapped(Object dataSource) {
+        return Proxy.isProxyClass(dataSource.getClass())
+                && Proxy.getInvocationHandler(dataSource) instanceof DataSourceHandler;
+    }
+
+    private static <T> T proxy(Object target, Class<?>[] interfaces, InvocationHandler handler) {
+        @SuppressWarnings("unchecked")
+        T proxy = (T) Proxy.newProxyInstance(target.getClass().getClassLoader(), interfaces, handler);
+        return proxy;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // equals/hashCode по самому прокси: пул и Hibernate сравнивают соединения по ссылке
+    private abstract static class TracingHandler implements InvocationHandler {
+        protected final Object target;
+
+        protected TracingHandler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return switch (method.getName()) {
+                case "equals" -> args.length == 1 && proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> handle(method, args);
+            };
+        }
+
+        protected abstract Object handle(Method method, Object[] args) throws Throwable;
+    }
+
+    private static final class DataSourceHandler extends TracingHandler {
+        private final SqlStatistics statistics;
+
+        private DataSourceHandler(DataSource target, SqlStatistics statistics) {
+            super(target);
+            this.statistics = statistics;
+        }
+
+        @Override
+        protected Object handle(Method method, Object[] args) throws Throwable {
+            Object result = TracingDataSource.invoke(target, method, args);
+            if (result instanceof Connection connection) {
+                return proxy(connection, new Class<?>[]{Connection.class}, new ConnectionHandler(connection, statistics));
+            }
+            return result;
+        }
+    }
+
+    private static final class ConnectionHandler extends TracingHandler {
+        private final SqlStatistics statistics;
+
+        private ConnectionHandler(Connection target, SqlStatistics statistics) {
+            super(target);
+            this.statistics = statistics;
+        }
+
+        @Override
+        protected Object handle(Method method, Object[] args) throws Throwable {
+            Object result = TracingDataSource.invoke(target, method, args);
+            if (result instanceof Statement statement) {
+                // prepareStatement/prepareCall получают текст запроса сразу, createStatement — при execute
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                return proxy(statement, new Class<?>[]{method.getReturnType()},
+                        new StatementHandler(statement, sql, statistics));
+            }
+            return result;
+        }
+    }
+
+    private static final class StatementHandler extends TracingHandler {
+        private final SqlStatistics statistics;
+        private final Parameters parameters = new Parameters();
+        private String sql;
+        private int batched;
+
+        private StatementHandler(Statement target, String sql, SqlStatistics statistics) {
+            super(target);
+            this.sql = sql;
+            this.statistics = statistics;
+        }
+
+        @Override
+        protected Object handle(Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                parameters.values.put(index, args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameters.values.clear();
+            } else if (name.equals("addBatch")) {
+                batched++;
+                if (args != null && args.length == 1) {
+                    sql = (String) args[0];
+                }
+            } else if (name.equals("clearBatch")) {
+                batched = 0;
+            }
+            return TracingDataSource.invoke(target, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String text = args != null && args.length > 0 && args[0] instanceof String query ? query : sql;
+            if (method.getName().startsWith("executeBatch") || method.getName().startsWith("executeLargeBatch")) {
+                text = "[batch of " + batched + "] " + text;
+                batched = 0;
+            }
+            long started = System.nanoTime();
+            try {
+                return TracingDataSource.invoke(target, method, args);
+            } finally {
+                statistics.record(text, System.nanoTime() - started, parameters);
+            }
+        }
+    }
+
+    // Параметры форматируются только при записи в лог; для пакета — значения последней строки
+    private static final class Parameters {
+        private final Map<Integer, Object> values = new TreeMap<>();
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("[");
+            for (Object value : values.values()) {
+                if (builder.length() > 1) {
+                    builder.append(", ");
+                }
+                builder.append(format(value));
+            }
+            return builder.append(']').toString();
+        }
+
+        private static String format(Object value) {
+            if (value instanceof byte[] bytes) {
+                return "<" + bytes.length + " bytes>";
+            }
+            String text = String.valueOf(value);
+            return text.length() > MAX_PARAMETER_LENGTH ? text.substring(0, MAX_PARAMETER_LENGTH) + "..." : text;
+        }
+    }
+}
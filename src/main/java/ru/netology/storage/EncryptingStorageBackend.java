@@ -0,0 +1,473 @@
+package ru.netology.storage;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+
+/*
+ * Шифрование поверх любого хранилища. Формат объекта:
+ *   заголовок: "NCE1" | размер сегмента | nonce и ключ файла, зашифрованный мастер-ключом | префикс nonce сегментов
+ *   сегменты: AES-GCM каждого куска открытого текста фиксированного размера, nonce = префикс || номер сегмента,
+ *   в AAD — номер сегмента и признак последнего, поэтому перестановка и обрезка файла обнаруживаются.
+ * Каждый сегмент проверяется независимо: чтение диапазона расшифровывает только затронутые сегменты,
+ * а skip() потока переходит к нужному сегменту без расшифровки пропущенных (Range через Resource).
+ * Объект без заголовка отдаётся открытым только при allow-plaintext — на время перехода на шифрование:
+ * иначе подложенный в хранилище файл обошёл бы проверку подлинности.
+ */
+@Primary
+@Component
+@ConditionalOnProperty(name = "cloud.storage.encryption.enabled", havingValue = "true")
+public class EncryptingStorageBackend implements StorageBackend {
+    private static final byte[] MAGIC = {'N', 'C', 'E', '1'};
+    private static final String CIPHER = "AES/GCM/NoPadding";
+    private static final int KEY_SIZE = 32;
+    private static final int NONCE_SIZE = 12;
+    private static final int TAG_SIZE = 16;
+    private static final int PREFIX_SIZE = 8;
+    static final int HEADER_SIZE = MAGIC.length + Integer.BYTES + NONCE_SIZE + KEY_SIZE + TAG_SIZE + PREFIX_SIZE;
+
+    private final StorageBackend delegate;
+    private final SecretKey masterKey;
+    private final int segmentSize;
+    private final boolean allowPlaintext;
+    private final SecureRandom random = new SecureRandom();
+
+    public EncryptingStorageBackend(@Qualifier(StorageBackend.RAW) StorageBackend delegate,
+                                    @Value("${cloud.storage.encryption.master-key:}") String masterKey,
+                                    @Value("${cloud.storage.encryption.segment-size:65536}") int segmentSize,
+                                    @Value("${cloud.storage.encryption.allow-plaintext:false}") boolean allowPlaintext) {
+        byte[] key = masterKey.isBlank() ? new byte[0] : Base64.getDecoder().decode(masterKey.trim());
+        if (key.length != KEY_SIZE) {
+            throw new RuntimeException("cloud.storage.encryption.master-key must be a base64-encoded 256-bit key");
+        }
+        if (segmentSize <= 0) {
+            throw new RuntimeException("cloud.storage.encryption.segment-size must be positive");
+        }
+        this.delegate = delegate;
+        this.masterKey = new SecretKeySpec(key, "AES");
+        this.segmentSize = segmentSize;
+        this.allowPlaintext = allowPlaintext;
+    }
+
+    @Override
+    public StoragePlacement allocate(Integer userId, String filename, long sizeHint) {
+        return delegate.allocate(userId, filename, sizeHint);
+    }
+
+    @Override
+    public String siblingKey(String key, String filename) {
+        return delegate.siblingKey(key, filename);
+    }
+
+    @Override
+    public long write(String key, InputStream data) throws IOException {
+        byte[] dataKey = new byte[KEY_SIZE];
+        byte[] prefix = new byte[PREFIX_SIZE];
+        random.nextBytes(dataKey);
+        random.nextBytes(prefix);
+
+        EncryptingInputStream encrypted = new EncryptingInputStream(data, header(dataKey, prefix),
+                new SecretKeySpec(dataKey, "AES"), prefix, segmentSize);
+        delegate.write(key, encrypted);
+        return encrypted.plaintextBytes;
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) throws IOException {
+        Optional<StorageStat> stat = delegate.stat(key);
+        if (stat.isEmpty()) {
+            throw new NoSuchFileException(key);
+        }
+        Header header = readHeader(key, stat.get().getSize());
+        if (header == null) {
+            if (!allowPlaintext) {
+                throw new IOException("Object '" + key + "' is not encrypted; "
+                        + "set cloud.storage.encryption.allow-plaintext=true while migrating");
+            }
+            return delegate.read(key, offset, length);
+        }
+
+        long physicalSize = stat.get().getSize();
+        long plainSize = header.plaintextSize(physicalSize);
+        long end = offset + Math.min(length, Math.max(0, plainSize - offset));
+        if (offset >= plainSize || end <= offset) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        return new DecryptingInputStream(key, header, header.segmentCount(physicalSize), offset, end);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return delegate.delete(key);
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) throws IOException {
+        delegate.move(sourceKey, targetKey);
+    }
+
+    // Ключ файла хранится в заголовке и не зависит от пути, поэтому копия остаётся читаемой
+    @Override
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        delegate.copy(sourceKey, targetKey);
+    }
+
+    @Override
+    public void replace(String sourceKey, String targetKey) throws IOException {
+        delegate.replace(sourceKey, targetKey);
+    }
+
+    @Override
+    public Optional<StorageStat> stat(String key) throws IOException {
+        Optional<StorageStat> stat = delegate.stat(key);
+        if (stat.isEmpty()) {
+            return stat;
+        }
+        Header header = readHeader(key, stat.get().getSize());
+        if (header == null) {
+            return stat;
+        }
+        return Optional.of(new StorageStat(header.plaintextSize(stat.get().getSize()), stat.get().getLastModified()));
+    }
+
+    @Override
+    public Resource openResource(String key) {
+        return new DecryptedResource(key);
+    }
+
+    private byte[] header(byte[] dataKey, byte[] prefix) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC).putInt(segmentSize);
+
+        byte[] nonce = new byte[NONCE_SIZE];
+        random.nextBytes(nonce);
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.ENCRYPT_MODE, masterKey, new GCMParameterSpec(TAG_SIZE * 8, nonce));
+            cipher.updateAAD(header.array(), 0, MAGIC.length + Integer.BYTES);
+            header.put(nonce).put(cipher.doFinal(dataKey));
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot wrap file key", e);
+        }
+        header.put(prefix);
+        return header.array();
+    }
+
+    // null — объект записан до включения шифрования и хранится открытым
+    private Header readHeader(String key, long physicalSize) throws IOException {
+        if (physicalSize < HEADER_SIZE + TAG_SIZE) {
+            return null;
+        }
+        byte[] bytes;
+        try (InputStream in = delegate.read(key, 0, HEADER_SIZE)) {
+            bytes = in.readNBytes(HEADER_SIZE);
+        }
+        if (bytes.length < HEADER_SIZE || !Arrays.equals(bytes, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(MAGIC.length);
+        int fileSegmentSize = buffer.getInt();
+        byte[] nonce = new byte[NONCE_SIZE];
+        byte[] wrapped = new byte[KEY_SIZE + TAG_SIZE];
+        byte[] prefix = new byte[PREFIX_SIZE];
+        buffer.get(nonce).get(wrapped).get(prefix);
+
+        try {
+            Cipher cipher = Cipher.getInstance(CIPHER);
+            cipher.init(Cipher.DECRYPT_MODE, masterKey, new GCMParameterSpec(TAG_SIZE * 8, nonce));
+            cipher.updateAAD(bytes, 0, MAGIC.length + Integer.BYTES);
+            return new Header(fileSegmentSize, new SecretKeySpec(cipher.doFinal(wrapped), "AES"), prefix);
+        } catch (AEADBadTagException e) {
+            throw new IOException("File key of '" + key + "' cannot be unwrapped: wrong master key or damaged header");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Cannot unwrap file key of '" + key + "'", e);
+        }
+    }
+
+    private static byte[] nonce(byte[] prefix, long segment) {
+        return ByteBuffer.allocate(NONCE_SIZE).put(prefix).putInt((int) segment).array();
+    }
+
+    private static byte[] aad(long segment, boolean last) {
+        return ByteBuffer.allocate(Long.BYTES + 1).putLong(segment).put((byte) (last ? 1 : 0)).array();
+    }
+
+    private static final class Header {
+        private final int segmentSize;
+        private final SecretKey dataKey;
+        private final byte[] prefix;
+
+        private Header(int segmentSize, SecretKey dataKey, byte[] prefix) {
+            this.segmentSize = segmentSize;
+            this.dataKey = dataKey;
+            this.prefix = prefix;
+        }
+
+        // Всегда есть хотя бы один сегмент: у пустого файла это один тег
+        private long segmentCount(long physicalSize) {
+            long stride = segmentSize + TAG_SIZE;
+            return Math.max(1, (physicalSize - HEADER_SIZE + stride - 1) / stride);
+        }
+
+        private long plaintextSize(long physicalSize) {
+            return physicalSize - HEADER_SIZE - segmentCount(physicalSize) * TAG_SIZE;
+        }
+    }
+
+    private static final class EncryptingInputStream extends InputStream {
+        private final PushbackInputStream source;
+        private final SecretKey dataKey;
+        private final byte[] prefix;
+        private final Cipher cipher;
+        private final byte[] plain;
+        private byte[] output;
+        private int outputPosition;
+        private int outputLimit;
+        private long segment;
+        private boolean finished;
+        private long plaintextBytes;
+
+        private EncryptingInputStream(InputStream source, byte[] header, SecretKey dataKey, byte[] prefix,
+                                      int segmentSize) throws IOException {
+            this.source = new PushbackInputStream(source, 1);
+            this.dataKey = dataKey;
+            this.prefix = prefix;
+            this.plain = new byte[segmentSize];
+            this.output = header;
+            this.outputLimit = header.length;
+            try {
+                this.cipher = Cipher.getInstance(CIPHER);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("AES-GCM is not available", e);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (outputPosition == outputLimit && !nextSegment()) {
+                return -1;
+            }
+            int count = Math.min(length, outputLimit - outputPosition);
+            System.arraycopy(output, outputPosition, buffer, offset, count);
+            outputPosition += count;
+            return count;
+        }
+
+        private boolean nextSegment() throws IOException {
+            if (finished) {
+                return false;
+            }
+            int read = source.readNBytes(plain, 0, plain.length);
+            int next = read < plain.length ? -1 : source.read();
+            boolean last = next < 0;
+            if (!last) {
+                source.unread(next);
+            }
+
+            if (output.length < plain.length + TAG_SIZE) {
+                output = new byte[plain.length + TAG_SIZE];
+            }
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, dataKey, new GCMParameterSpec(TAG_SIZE * 8, nonce(prefix, segment)));
+                cipher.updateAAD(aad(segment, last));
+                outputLimit = cipher.doFinal(plain, 0, read, output, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Cannot encrypt segment " + segment, e);
+            }
+            outputPosition = 0;
+            plaintextBytes += read;
+            segment++;
+            finished = last;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+
+    // Открытый текст [position, end); исходный поток открывается с сегмента, в который попадает position
+    private final class DecryptingInputStream extends InputStream {
+        private final String key;
+        private final Header header;
+        private final long segmentCount;
+        private final long end;
+        private final Cipher cipher;
+        private final byte[] encrypted;
+        private final byte[] plain;
+        private InputStream source;
+        private long position;
+        private long segment;
+        private int plainPosition;
+        private int plainLimit;
+
+        private DecryptingInputStream(String key, Header header, long segmentCount, long position, long end)
+                throws IOException {
+            this.key = key;
+            this.header = header;
+            this.segmentCount = segmentCount;
+            this.position = position;
+            this.end = end;
+            this.encrypted = new byte[header.segmentSize + TAG_SIZE];
+            this.plain = new byte[header.segmentSize];
+            try {
+                this.cipher = Cipher.getInstance(CIPHER);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("AES-GCM is not available", e);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            if (source == null) {
+                open();
+            }
+            while (plainPosition == plainLimit) {
+                decryptNextSegment();
+            }
+            int count = (int) Math.min(Math.min(length, plainLimit - plainPosition), end - position);
+            System.arraycopy(plain, plainPosition, buffer, offset, count);
+            plainPosition += count;
+            position += count;
+            return count;
+        }
+
+        // Внутри расшифрованного сегмента — сдвиг в буфере, дальше — поток откроется заново с нужного сегмента
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = Math.min(Math.max(0, n), end - position);
+            if (skipped == 0) {
+                return 0;
+            }
+            if (source != null && skipped < plainLimit - plainPosition) {
+                plainPosition += (int) skipped;
+            } else {
+                close();
+            }
+            position += skipped;
+            return skipped;
+        }
+
+        private void open() throws IOException {
+            long stride = header.segmentSize + TAG_SIZE;
+            segment = position / header.segmentSize;
+            long last = (end - 1) / header.segmentSize;
+            source = delegate.read(key, HEADER_SIZE + segment * stride, (last - segment + 1) * stride);
+            decryptNextSegment();
+            plainPosition = (int) Math.min(position - (segment - 1) * header.segmentSize, plainLimit);
+        }
+
+        private void decryptNextSegment() throws IOException {
+            if (segment >= segmentCount) {
+                throw new IOException("Encrypted file ended before segment " + segment);
+            }
+            int read = source.readNBytes(encrypted, 0, encrypted.length);
+            boolean last = segment == segmentCount - 1;
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, header.dataKey,
+                        new GCMParameterSpec(TAG_SIZE * 8, nonce(header.prefix, segment)));
+                cipher.updateAAD(aad(segment, last));
+                plainLimit = cipher.doFinal(encrypted, 0, read, plain, 0);
+            } catch (AEADBadTagException e) {
+                throw new IOException("Encrypted segment " + segment + " failed authentication");
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Cannot decrypt segment " + segment, e);
+            }
+            plainPosition = 0;
+            segment++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            plainPosition = 0;
+            plainLimit = 0;
+            if (source != null) {
+                InputStream closing = source;
+                source = null;
+                closing.close();
+            }
+        }
+    }
+
+    private final class DecryptedResource extends AbstractResource {
+        private final String key;
+
+        private DecryptedResource(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean exists() {
+            try {
+                return delegate.stat(key).isPresent();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return stat(key).orElseThrow(() -> new NoSuchFileException(key)).getSize();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return read(key, 0, Long.MAX_VALUE);
+        }
+
+        @Override
+        public String getFilename() {
+            return key.substring(key.lastIndexOf('/') + 1);
+        }
+
+        @Override
+        public String getDescription() {
+            return "Encrypted object [" + key + "]";
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.netology.storage;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Component
+@Qualifier(StorageBackend.RAW)
+@ConditionalOnProperty(name = "cloud.storage.backend", havingValue = "memory")
+public class InMemoryStorageBackend implements StorageBackend {
+    public static final String VOLUME = "memory";
+
+    private final ConcurrentMap<String, Blob> blobs = new ConcurrentHashMap<>();
+
+    @Override
+    public StoragePlacement allocate(Integer userId, String filename, long sizeHint) {
+        return new StoragePlacement(VOLUME + "/" + userId + "/" + filename, VOLUME);
+    }
+
+    @Override
+    public String siblingKey(String key, String filename) {
+        return key.substring(0, key.lastIndexOf('/') + 1) + filename;
+    }
+
+    @Override
+    public long write(String key, InputStream data) throws IOException {
+        byte[] bytes = data.readAllBytes();
+        if (blobs.putIfAbsent(key, new Blob(bytes)) != null) {
+            throw new FileAlreadyExistsException(key);
+        }
+        return bytes.length;
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) throws IOException {
+        Blob blob = require(key);
+        int start = (int) Math.min(offset, blob.data.length);
+        int count = (int) Math.min(length, blob.data.length - start);
+        return new ByteArrayInputStream(blob.data, start, count);
+    }
+
+    @Override
+    public boolean delete(String key) {
+        return blobs.remove(key) != null;
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) throws IOException {
+        Blob blob = require(sourceKey);
+        if (blobs.putIfAbsent(targetKey, blob) != null) {
+            throw new FileAlreadyExistsException(targetKey);
+        }
+        blobs.remove(sourceKey, blob);
+    }
+
+    // Содержимое неизменяемо, поэтому копия разделяет тот же массив
+    @Override
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        Blob blob = require(sourceKey);
+        if (blobs.putIfAbsent(targetKey, blob) != null) {
+            throw new FileAlreadyExistsException(targetKey);
+        }
+    }
+
+    @Override
+    public void replace(String sourceKey, String targetKey) throws IOException {
+        Blob blob = require(sourceKey);
+        blobs.put(targetKey, blob);
+        blobs.remove(sourceKey, blob);
+    }
+
+    @Override
+    public Optional<StorageStat> stat(String key) {
+        Blob blob = blobs.get(key);
+        return blob == null ? Optional.empty() : Optional.of(new StorageStat(blob.data.length, blob.lastModified));
+    }
+
+    @Override
+    public Resource openResource(String key) throws IOException {
+        return new ByteArrayResource(require(key).data);
+    }
+
+    private Blob require(String key) throws NoSuchFileException {
+        Blob blob = blobs.get(key);
+        if (blob == null) {
+            throw new NoSuchFileException(key);
+        }
+        return blob;
+    }
+
+    private static final class Blob {
+        private final byte[] data;
+        private final long lastModified;
+
+        private Blob(byte[] data) {
+            this.data = data;
+            this.lastModified = System.currentTimeMillis();
+        }
+    }
+}
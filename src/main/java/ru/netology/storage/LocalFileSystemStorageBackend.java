@@ -0,0 +1,160 @@
+package ru.netology.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Optional;
+
+@Component
+@Qualifier(StorageBackend.RAW)
+@ConditionalOnProperty(name = "cloud.storage.backend", havingValue = "local", matchIfMissing = true)
+public class LocalFileSystemStorageBackend implements StorageBackend {
+    private static final Logger logger = LoggerFactory.getLogger(LocalFileSystemStorageBackend.class);
+
+    private final VolumeManager volumeManager;
+
+    public LocalFileSystemStorageBackend(VolumeManager volumeManager) {
+        this.volumeManager = volumeManager;
+    }
+
+    @Override
+    public StoragePlacement allocate(Integer userId, String filename, long sizeHint) {
+        StorageVolume volume = volumeManager.place(sizeHint);
+        Path userDir = volume.getRoot().resolve(userId.toString());
+        Path destination = userDir.resolve(filename);
+        if (!destination.normalize().startsWith(userDir.normalize())) {
+            throw new RuntimeException("Invalid filename: " + filename);
+        }
+        return new StoragePlacement(destination.toString(), volume.getId());
+    }
+
+    @Override
+    public String siblingKey(String key, String filename) {
+        Path path = Paths.get(key);
+        Path sibling = path.resolveSibling(filename);
+        if (!sibling.normalize().startsWith(path.getParent().normalize())) {
+            throw new RuntimeException("Invalid filename: " + filename);
+        }
+        return sibling.toString();
+    }
+
+    @Override
+    public long write(String key, InputStream data) throws IOException {
+        Path path = Paths.get(key);
+        Files.createDirectories(path.getParent());
+        Optional<StorageVolume> volume = volumeManager.volumeOf(path);
+        if (volume.isEmpty()) {
+            return Files.copy(data, path);
+        }
+        try (StorageVolume.IoTicket io = volume.get().claimIo()) {
+            return Files.copy(data, path);
+        }
+    }
+
+    @Override
+    public InputStream read(String key, long offset, long length) throws IOException {
+        SeekableByteChannel channel = Files.newByteChannel(Paths.get(key), StandardOpenOption.READ);
+        try {
+            channel.position(offset);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new BoundedInputStream(Channels.newInputStream(channel), length);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        return Files.deleteIfExists(Paths.get(key));
+    }
+
+    @Override
+    public void move(String sourceKey, String targetKey) throws IOException {
+        Path target = Paths.get(targetKey);
+        Files.createDirectories(target.getParent());
+        Files.move(Paths.get(sourceKey), target);
+    }
+
+    @Override
+    public void copy(String sourceKey, String targetKey) throws IOException {
+        Path source = Paths.get(sourceKey);
+        Path target = Paths.get(targetKey);
+        Files.createDirectories(target.getParent());
+
+        // Жёсткая ссылка: копия создаётся за одну операцию с метаданными, содержимое общее
+        try {
+            Files.createLink(target, source);
+            return;
+        } catch (FileAlreadyExistsException | NoSuchFileException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            logger.debug("Hard link {} -> {} is not possible, copying in kernel: {}", targetKey, sourceKey, e.getMessage());
+        }
+
+        // transferTo между файлами идёт через copy_file_range: без буферов приложения, а на btrfs/xfs — reflink
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            try {
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, out);
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(target);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void replace(String sourceKey, String targetKey) throws IOException {
+        Path source = Paths.get(sourceKey);
+        Path target = Paths.get(targetKey);
+        // Сначала данные на диск, затем rename(2) поверх старого имени, затем сам каталог:
+        // без первого fsync после сбоя под старым именем может оказаться пустой файл
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        try (FileChannel directory = FileChannel.open(target.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            logger.debug("Could not sync directory {}: {}", target.getParent(), e.getMessage());
+        }
+    }
+
+    @Override
+    public Optional<StorageStat> stat(String key) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Paths.get(key), BasicFileAttributes.class);
+            return Optional.of(new StorageStat(attributes.size(), attributes.lastModifiedTime().toMillis()));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public Resource openResource(String key) {
+        return new FileSystemResource(Paths.get(key));
+    }
+}
@@ -0,0 +1,41 @@
+package ru.netology.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.Optional;
+
+public interface StorageBackend {
+    // Квалификатор физических хранилищ, поверх которых могут работать обёртки
+    String RAW = "raw";
+
+    StoragePlacement allocate(Integer userId, String filename, long sizeHint);
+
+    String siblingKey(String key, String filename);
+
+    long write(String key, InputStream data) throws IOException;
+
+    InputStream read(String key, long offset, long length) throws IOException;
+
+    boolean delete(String key) throws IOException;
+
+    void move(String sourceKey, String targetKey) throws IOException;
+
+    // Копия без передачи данных через приложение, где хранилище это умеет
+    default void copy(String sourceKey, String targetKey) throws IOException {
+        StorageStat stat = stat(sourceKey).orElseThrow(() -> new NoSuchFileException(sourceKey));
+        try (InputStream data = read(sourceKey, 0, stat.getSize())) {
+            write(targetKey, data);
+        }
+    }
+
+    // Атомарно ставит source на место существующего target: читатель видит либо старое содержимое, либо новое.
+    // После возврата замена переживает сбой питания
+    void replace(String sourceKey, String targetKey) throws IOException;
+
+    Optional<StorageStat> stat(String key) throws IOException;
+
+    Resource openResource(String key) throws IOException;
+}
@@ -0,0 +1,15 @@
+package ru.netology.storage;
+
+public class StoragePlacement {
+    private final String key;
+    private final String volume;
+
+    public StoragePlacement(String key, String volume) {
+        this.key = key;
+        this.volume = volume;
+    }
+
+    public String getKey() { return key; }
+
+    public String getVolume() { return volume; }
+}
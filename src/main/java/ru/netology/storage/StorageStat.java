@@ -0,0 +1,15 @@
+package ru.netology.storage;
+
+public class StorageStat {
+    private final long size;
+    private final long lastModified;
+
+    public StorageStat(long size, long lastModified) {
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public long getSize() { return size; }
+
+    public long getLastModified() { return lastModified; }
+}
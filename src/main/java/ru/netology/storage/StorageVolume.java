@@ -0,0 +1,97 @@
+package ru.netology.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StorageVolume {
+    private final String id;
+    private final Path root;
+    private final int weight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Места, выбранные для загрузок, запись которых ещё не началась: System.nanoTime() истечения по порядку выдачи
+    private final Queue<Long> reservations = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger reserved = new AtomicInteger();
+
+    public StorageVolume(String id, Path root, int weight) {
+        this.id = id;
+        this.root = root;
+        this.weight = weight;
+    }
+
+    public String getId() { return id; }
+
+    public Path getRoot() { return root; }
+
+    public int getWeight() { return weight; }
+
+    public int getQueueDepth() {
+        pruneReservations();
+        return inFlight.get() + reserved.get();
+    }
+
+    public long getUsableSpace() {
+        try {
+            return Files.getFileStore(root).getUsableSpace();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    public boolean contains(Path path) {
+        return path.normalize().startsWith(root.normalize());
+    }
+
+    public IoTicket beginIo() {
+        inFlight.incrementAndGet();
+        return new IoTicket(this);
+    }
+
+    // Выбор тома и резерв выполняются под блокировкой VolumeManager, поэтому одновременные загрузки
+    // видят очередь друг друга ещё до начала записи
+    void reserve(long ttlNanos) {
+        reservations.add(System.nanoTime() + ttlNanos);
+        reserved.incrementAndGet();
+    }
+
+    // Запись новой загрузки: резерв превращается в операцию в очереди тома
+    public IoTicket claimIo() {
+        IoTicket ticket = beginIo();
+        if (reservations.poll() != null) {
+            reserved.decrementAndGet();
+        }
+        return ticket;
+    }
+
+    // Резерв, запись по которому так и не началась (ошибка до записи), перестаёт учитываться по истечении
+    private void pruneReservations() {
+        long now = System.nanoTime();
+        Long head;
+        while ((head = reservations.peek()) != null && head - now < 0) {
+            if (reservations.remove(head)) {
+                reserved.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "StorageVolume{id='" + id + "', weight=" + weight + "}";
+    }
+
+    public static final class IoTicket implements AutoCloseable {
+        private final StorageVolume volume;
+
+        private IoTicket(StorageVolume volume) {
+            this.volume = volume;
+        }
+
+        @Override
+        public void close() {
+            volume.inFlight.decrementAndGet();
+        }
+    }
+}
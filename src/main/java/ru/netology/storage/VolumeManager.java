@@ -0,0 +1,141 @@
+package ru.netology.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.netology.entity.FileEntity;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@Component
+@ConditionalOnProperty(name = "cloud.storage.backend", havingValue = "local", matchIfMissing = true)
+public class VolumeManager {
+    private static final Logger logger = LoggerFactory.getLogger(VolumeManager.class);
+    // Идентификатор тома хранится на самом томе: перемонтирование в другой каталог не меняет files.volume
+    static final String ID_FILE = ".volume-id";
+    private static final long RESERVATION_TTL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final List<StorageVolume> volumes;
+    private final long reserveBytes;
+
+    // Формат cloud.storage.path: "/mnt/disk1=2,/mnt/disk2=1"; вес по умолчанию 1
+    public VolumeManager(@Value("${cloud.storage.path}") String storagePath,
+                         @Value("${cloud.storage.reserve-bytes:104857600}") long reserveBytes) {
+        this.reserveBytes = reserveBytes;
+        this.volumes = new ArrayList<>();
+        try {
+            for (String spec : storagePath.split(",")) {
+                if (spec.isBlank()) {
+                    continue;
+                }
+                volumes.add(parseVolume(spec.trim()));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not initialize storage", e);
+        }
+        if (volumes.isEmpty()) {
+            throw new RuntimeException("No storage volumes configured");
+        }
+        if (volumes.stream().map(StorageVolume::getId).distinct().count() < volumes.size()) {
+            throw new RuntimeException("Storage volumes share an id, check " + ID_FILE + " files: " + volumes);
+        }
+        logger.info("Storage volumes: {}", volumes);
+    }
+
+    public List<StorageVolume> getVolumes() {
+        return volumes;
+    }
+
+    // Выбор и резерв атомарны: одновременные загрузки распределяются по томам, а не выбирают один
+    public synchronized StorageVolume place(long size) {
+        StorageVolume best = null;
+        double bestScore = -1;
+        for (StorageVolume volume : volumes) {
+            long available = volume.getUsableSpace() - reserveBytes - size;
+            if (available <= 0) {
+                continue;
+            }
+            // Свободное место с учётом веса, штраф за текущую очередь операций
+            double score = (double) available * volume.getWeight() / (1 + volume.getQueueDepth());
+            if (score > bestScore) {
+                bestScore = score;
+                best = volume;
+            }
+        }
+        if (best == null) {
+            throw new RuntimeException("Not enough storage space");
+        }
+        best.reserve(RESERVATION_TTL_NANOS);
+        return best;
+    }
+
+    public Optional<StorageVolume> find(String id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return volumes.stream()
+                .filter(volume -> volume.getId().equals(id))
+                .findFirst();
+    }
+
+    public Optional<StorageVolume> volumeOf(FileEntity fileEntity) {
+        Optional<StorageVolume> volume = find(fileEntity.getVolume());
+        if (volume.isPresent()) {
+            return volume;
+        }
+        return volumeOf(Paths.get(fileEntity.getFilePath()));
+    }
+
+    public Optional<StorageVolume> volumeOf(Path path) {
+        return volumes.stream()
+                .filter(candidate -> candidate.contains(path))
+                .findFirst();
+    }
+
+    private StorageVolume parseVolume(String spec) throws IOException {
+        int separator = spec.lastIndexOf('=');
+        Path root = Paths.get(separator < 0 ? spec : spec.substring(0, separator).trim());
+        int weight = separator < 0 ? 1 : Integer.parseInt(spec.substring(separator + 1).trim());
+        if (weight <= 0) {
+            throw new RuntimeException("Storage volume weight must be positive: " + spec);
+        }
+        Files.createDirectories(root);
+        return new StorageVolume(volumeId(root), root, weight);
+    }
+
+    // Новому тому — случайный id; тому с данными — путь, под которым его файлы уже записаны в files.volume
+    private static String volumeId(Path root) throws IOException {
+        Path idFile = root.resolve(ID_FILE);
+        if (Files.exists(idFile)) {
+            return Files.readString(idFile, StandardCharsets.UTF_8).trim();
+        }
+        boolean empty;
+        try (Stream<Path> children = Files.list(root)) {
+            empty = children.findAny().isEmpty();
+        }
+        String id = empty ? UUID.randomUUID().toString() : root.toString();
+        // Файл появляется уже записанным: другой узел не прочитает пустой id
+        Path temp = Files.writeString(root.resolve(ID_FILE + "." + UUID.randomUUID()), id, StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, idFile);
+            return id;
+        } catch (FileAlreadyExistsException e) {
+            // Том одновременно инициализировал другой узел
+            Files.deleteIfExists(temp);
+            return Files.readString(idFile, StandardCharsets.UTF_8).trim();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ru.netology.trace;
+
+import java.util.Arrays;
+
+/*
+ * Время этапов текущего запроса. Состояние потока переиспользуется между запросами,
+ * поэтому замер этапа — два System.nanoTime() и сложение без выделения памяти:
+ *
+ *   long started = RequestTrace.start();
+ *   ... этап ...
+ *   RequestTrace.stop(TraceStage.STORAGE, started);
+ *
+ * Вне HTTP-запроса (фоновые задачи, модульные тесты) start() возвращает 0 и замер ничего не делает.
+ */
+public final class RequestTrace {
+    private static final ThreadLocal<RequestTrace> CURRENT = ThreadLocal.withInitial(RequestTrace::new);
+    private static final int STAGES = TraceStage.values().length;
+
+    private final long[] nanos = new long[STAGES];
+    private final int[] calls = new int[STAGES];
+    private boolean active;
+    private long started;
+
+    private RequestTrace() {
+    }
+
+    public static long start() {
+        return CURRENT.get().active ? System.nanoTime() : 0;
+    }
+
+    public static void stop(TraceStage stage, long started) {
+        if (started != 0) {
+            add(stage, System.nanoTime() - started);
+        }
+    }
+
+    // Для уже измеренного времени, например SQL-запроса из SqlStatistics
+    public static void add(TraceStage stage, long elapsed) {
+        RequestTrace trace = CURRENT.get();
+        if (trace.active) {
+            trace.nanos[stage.ordinal()] += elapsed;
+            trace.calls[stage.ordinal()]++;
+        }
+    }
+
+    static RequestTrace begin() {
+        RequestTrace trace = CURRENT.get();
+        Arrays.fill(trace.nanos, 0);
+        Arrays.fill(trace.calls, 0);
+        trace.active = true;
+        trace.started = System.nanoTime();
+        return trace;
+    }
+
+    long end() {
+        active = false;
+        return System.nanoTime() - started;
+    }
+
+    long getNanos(TraceStage stage) {
+        return nanos[stage.ordinal()];
+    }
+
+    int getCalls(TraceStage stage) {
+        return calls[stage.ordinal()];
+    }
+}
@@ -0,0 +1,43 @@
+package ru.netology.trace;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+// Сразу за SqlTracingFilter: время запроса включает фильтры безопасности и запись ответа
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class RequestTraceFilter extends OncePerRequestFilter {
+
+    private final RequestTracer tracer;
+
+    public RequestTraceFilter(RequestTracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        RequestTrace trace = tracer.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            tracer.end(trace, request.getMethod() + " " + endpoint(request), response.getStatus());
+        }
+    }
+
+    // Шаблон маршрута вместо URI, чтобы /download/{id} и случайные 404 не размножали ключи
+    public static String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern != null ? pattern.toString() : "unmapped";
+    }
+}
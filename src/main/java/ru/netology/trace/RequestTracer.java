@@ -0,0 +1,73 @@
+package ru.netology.trace;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.netology.dto.SlowRequestDto;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/*
+ * Последние медленные запросы с временем этапов. Кольцевой буфер без блокировок:
+ * запись занимает слот по счётчику и затирает самый старый. Быстрые запросы
+ * не создают объектов — снимок собирается только для запросов дольше порога.
+ */
+@Component
+public class RequestTracer {
+
+    private final long slowThresholdNanos;
+    private final AtomicReferenceArray<SlowRequestDto> slots;
+    private final AtomicLong cursor = new AtomicLong();
+
+    public RequestTracer(@Value("${cloud.trace.slow-threshold-ms:500}") long slowThresholdMs,
+                         @Value("${cloud.trace.capacity:128}") int capacity) {
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowThresholdMs);
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    public RequestTrace begin() {
+        return RequestTrace.begin();
+    }
+
+    public void end(RequestTrace trace, String endpoint, int status) {
+        long total = trace.end();
+        if (total < slowThresholdNanos) {
+            return;
+        }
+        Map<String, Double> stages = new LinkedHashMap<>();
+        for (TraceStage stage : TraceStage.values()) {
+            if (trace.getCalls(stage) > 0) {
+                stages.put(stage.name().toLowerCase(), trace.getNanos(stage) / 1_000_000.0);
+            }
+        }
+        SlowRequestDto request = new SlowRequestDto(endpoint, status, Instant.now(), total / 1_000_000.0,
+                stages, trace.getCalls(TraceStage.DATABASE));
+        slots.set((int) (cursor.getAndIncrement() % slots.length()), request);
+    }
+
+    // Самые медленные сначала
+    public List<SlowRequestDto> getSlowRequests() {
+        List<SlowRequestDto> requests = new ArrayList<>(slots.length());
+        for (int i = 0; i < slots.length(); i++) {
+            SlowRequestDto request = slots.get(i);
+            if (request != null) {
+                requests.add(request);
+            }
+        }
+        requests.sort(Comparator.comparingDouble(SlowRequestDto::getTotalMs).reversed());
+        return requests;
+    }
+
+    public void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ru.netology.trace;
+
+// Этапы обработки запроса; этапы могут вкладываться: поиск пользователя включает свой SQL
+public enum TraceStage {
+    JWT,
+    USER_LOOKUP,
+    LOCK,
+    DATABASE,
+    STORAGE
+}
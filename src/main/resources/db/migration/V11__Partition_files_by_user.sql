@@ -0,0 +1,114 @@
+-- Секционирование files по хешу user_id: все запросы пользователя читают и меняют одну секцию,
+-- индексы и VACUUM работают с таблицами в 1/32 размера.
+--
+-- Небольшая таблица переносится прямо в миграции. Большая — онлайн, без долгой блокировки:
+--   1. миграция создаёт files_partitioned и триггер, повторяющий в ней все изменения files;
+--   2. files_partition_backfill() переносит строки пачками по id (java -jar app.jar --partition-files);
+--   3. files_partition_swap() под короткой блокировкой догоняет хвост и меняет таблицы местами.
+-- Старая таблица остаётся как files_unpartitioned для отката; удалить её вручную после проверки.
+
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM files WHERE user_id IS NULL) THEN
+        RAISE EXCEPTION 'files contains rows without user_id; assign or delete them before partitioning';
+    END IF;
+END $$;
+
+-- Порядок столбцов и значения по умолчанию (включая files_id_seq) как у files
+CREATE TABLE files_partitioned (LIKE files INCLUDING DEFAULTS) PARTITION BY HASH (user_id);
+
+ALTER TABLE files_partitioned ALTER COLUMN user_id SET NOT NULL;
+-- Уникальность на секционированной таблице должна включать ключ секционирования; id и так из последовательности
+ALTER TABLE files_partitioned ADD PRIMARY KEY (id, user_id);
+ALTER TABLE files_partitioned ADD FOREIGN KEY (user_id) REFERENCES users(id);
+ALTER TABLE files_partitioned ADD FOREIGN KEY (folder_id) REFERENCES folders(id);
+
+DO $$
+BEGIN
+    FOR i IN 0..31 LOOP
+        EXECUTE format('CREATE TABLE files_p%s PARTITION OF files_partitioned FOR VALUES WITH (MODULUS 32, REMAINDER %s)',
+                       lpad(i::text, 2, '0'), i);
+    END LOOP;
+END $$;
+
+-- Те же индексы, что у files (V5–V9); создаются в каждой секции
+CREATE INDEX idx_files_part_volume_id ON files_partitioned (volume, id);
+CREATE INDEX idx_files_part_folder ON files_partitioned (folder_id);
+CREATE INDEX idx_files_part_user_filename_trgm ON files_partitioned USING gin (user_id, lower(filename) gin_trgm_ops);
+CREATE INDEX idx_files_part_user_filename_prefix ON files_partitioned (user_id, lower(filename) text_pattern_ops);
+CREATE INDEX idx_files_part_user_created ON files_partitioned (user_id, created_date, id);
+CREATE INDEX idx_files_part_user_name ON files_partitioned (user_id, filename, id);
+CREATE INDEX idx_files_part_user_size ON files_partitioned (user_id, size, id);
+CREATE INDEX idx_files_part_quarantined ON files_partitioned (id) WHERE quarantined;
+CREATE INDEX idx_files_part_user_path ON files_partitioned (user_id, file_path COLLATE "C");
+
+-- Изменения files на время переноса; вставка с обновлением при конфликте, чтобы не зависеть от того,
+-- дошла ли пачка переноса до строки
+CREATE FUNCTION files_partition_mirror() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        DELETE FROM files_partitioned WHERE id = OLD.id AND user_id = OLD.user_id;
+        RETURN OLD;
+    END IF;
+    IF TG_OP = 'UPDATE' AND NEW.user_id IS DISTINCT FROM OLD.user_id THEN
+        DELETE FROM files_partitioned WHERE id = OLD.id AND user_id = OLD.user_id;
+    END IF;
+    INSERT INTO files_partitioned SELECT (NEW).*
+    ON CONFLICT (id, user_id) DO UPDATE SET
+        filename = EXCLUDED.filename,
+        file_path = EXCLUDED.file_path,
+        size = EXCLUDED.size,
+        content = EXCLUDED.content,
+        created_date = EXCLUDED.created_date,
+        version = EXCLUDED.version,
+        volume = EXCLUDED.volume,
+        folder_id = EXCLUDED.folder_id,
+        checksum = EXCLUDED.checksum,
+        quarantined = EXCLUDED.quarantined;
+    RETURN NEW;
+END $$;
+
+CREATE TRIGGER files_partition_mirror AFTER INSERT OR UPDATE OR DELETE ON files
+    FOR EACH ROW EXECUTE FUNCTION files_partition_mirror();
+
+-- Следующая пачка строк с id > after_id; возвращает последний перенесённый id или NULL, если строк больше нет.
+-- FOR SHARE: удаление или изменение прочитанной строки ждёт конца пачки и затем повторяется триггером,
+-- поэтому пачка не может вернуть в новую таблицу уже удалённую или устаревшую строку
+CREATE FUNCTION files_partition_backfill(after_id BIGINT, batch_size INTEGER) RETURNS BIGINT LANGUAGE plpgsql AS $$
+DECLARE
+    last_id BIGINT;
+BEGIN
+    WITH batch AS (
+        SELECT * FROM files WHERE id > after_id ORDER BY id LIMIT batch_size FOR SHARE
+    ), copied AS (
+        INSERT INTO files_partitioned SELECT * FROM batch ON CONFLICT (id, user_id) DO NOTHING
+    )
+    SELECT max(id) INTO last_id FROM batch;
+    RETURN last_id;
+END $$;
+
+-- Переключение: строки до after_id уже перенесены пачками или триггером, остальные копируются под блокировкой
+CREATE FUNCTION files_partition_swap(after_id BIGINT) RETURNS VOID LANGUAGE plpgsql AS $$
+BEGIN
+    IF to_regclass('files_partitioned') IS NULL THEN
+        RAISE NOTICE 'files is already partitioned';
+        RETURN;
+    END IF;
+    LOCK TABLE files IN ACCESS EXCLUSIVE MODE;
+    INSERT INTO files_partitioned SELECT * FROM files WHERE id > after_id ON CONFLICT (id, user_id) DO NOTHING;
+
+    DROP TRIGGER files_partition_mirror ON files;
+    DROP FUNCTION files_partition_mirror();
+    ALTER TABLE files RENAME TO files_unpartitioned;
+    ALTER TABLE files_partitioned RENAME TO files;
+    -- Иначе последовательность удалится вместе со старой таблицей
+    ALTER SEQUENCE files_id_seq OWNED BY files.id;
+END $$;
+
+-- До 100 тысяч строк перенос под блокировкой занимает секунды — сразу переключаемся
+DO $$
+BEGIN
+    IF (SELECT count(*) FROM (SELECT 1 FROM files LIMIT 100001) head) <= 100000 THEN
+        PERFORM files_partition_swap(0);
+    END IF;
+END $$;
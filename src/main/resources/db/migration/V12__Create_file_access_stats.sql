@@ -0,0 +1,10 @@
+-- Счётчики скачиваний и время последнего доступа. Отдельно от files: частые обновления не переписывают
+-- широкие строки files и не меняют их версию. Узлы копят счётчики в памяти и сбрасывают их пачками.
+-- Без внешнего ключа: files может быть секционирована (V11); строки удалённых файлов чистятся периодически.
+-- Обновляемые столбцы не индексируются, а fillfactor оставляет место в странице — обновления идут как HOT
+CREATE TABLE file_access_stats (
+    file_id BIGINT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    download_count BIGINT NOT NULL,
+    last_access TIMESTAMP NOT NULL
+) WITH (fillfactor = 70);
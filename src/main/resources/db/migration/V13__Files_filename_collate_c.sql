@@ -0,0 +1,12 @@
+-- Имена в /list сортируются по кодовым точкам, как Java сортирует незаписанные файлы (write-behind)
+-- при слиянии с результатом запроса; порядок больше не зависит от локали сервера БД.
+-- Тип не меняется, таблица не переписывается — перестраиваются только индексы по filename
+ALTER TABLE files ALTER COLUMN filename TYPE VARCHAR(255) COLLATE "C";
+
+-- Если перенос в секционированную таблицу (V11) ещё не завершён, она получает тот же столбец
+DO $$
+BEGIN
+    IF to_regclass('files_partitioned') IS NOT NULL THEN
+        ALTER TABLE files_partitioned ALTER COLUMN filename TYPE VARCHAR(255) COLLATE "C";
+    END IF;
+END $$;
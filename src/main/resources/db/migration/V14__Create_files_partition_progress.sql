@@ -0,0 +1,12 @@
+-- Позиция онлайн-переноса files в секции (V11): id строк — BIGINT, в scrub_state.last_file_id (INTEGER)
+-- она не помещается. Позиция незавершённого переноса переходит из scrub_state сюда.
+CREATE TABLE files_partition_progress (
+    name VARCHAR(100) PRIMARY KEY,
+    last_id BIGINT NOT NULL,
+    updated_at TIMESTAMP
+);
+
+INSERT INTO files_partition_progress (name, last_id, updated_at)
+SELECT name, last_file_id, updated_at FROM scrub_state WHERE name = 'files-partition';
+
+DELETE FROM scrub_state WHERE name = 'files-partition';
@@ -0,0 +1,15 @@
+-- files_partition_backfill (V11) возвращала только последний id, и счётчик переноса прибавлял размер пачки
+-- даже за последнюю, неполную. Теперь функция возвращает и число строк пачки.
+-- Тип результата меняется, поэтому функция пересоздаётся; условия пачки и FOR SHARE — как в V11
+DROP FUNCTION IF EXISTS files_partition_backfill(BIGINT, INTEGER);
+
+CREATE FUNCTION files_partition_backfill(after_id BIGINT, batch_size INTEGER,
+                                         OUT last_id BIGINT, OUT batch_rows INTEGER) LANGUAGE plpgsql AS $$
+BEGIN
+    WITH batch AS (
+        SELECT * FROM files WHERE id > after_id ORDER BY id LIMIT batch_size FOR SHARE
+    ), copied AS (
+        INSERT INTO files_partitioned SELECT * FROM batch ON CONFLICT (id, user_id) DO NOTHING
+    )
+    SELECT max(id), count(*) INTO last_id, batch_rows FROM batch;
+END $$;
@@ -0,0 +1 @@
+ALTER SEQUENCE files_id_seq INCREMENT BY 50;
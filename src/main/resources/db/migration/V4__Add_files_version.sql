@@ -0,0 +1 @@
+ALTER TABLE files ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
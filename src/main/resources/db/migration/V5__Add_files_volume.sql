@@ -0,0 +1,3 @@
+ALTER TABLE files ADD COLUMN volume VARCHAR(500);
+
+CREATE INDEX idx_files_volume_id ON files (volume, id);
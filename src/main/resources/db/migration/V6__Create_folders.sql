@@ -0,0 +1,18 @@
+-- path — материализованный путь из id предков и самой папки: /12/57/
+CREATE TABLE folders (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users(id),
+    parent_id BIGINT REFERENCES folders(id),
+    name VARCHAR(255) NOT NULL,
+    path VARCHAR(4000) NOT NULL,
+    created_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Поддерево — диапазон по префиксу пути
+CREATE INDEX idx_folders_user_path ON folders (user_id, path text_pattern_ops);
+CREATE INDEX idx_folders_parent ON folders (parent_id);
+CREATE UNIQUE INDEX uq_folders_user_parent_name ON folders (user_id, COALESCE(parent_id, 0), name);
+
+ALTER TABLE files ADD COLUMN folder_id BIGINT REFERENCES folders(id);
+
+CREATE INDEX idx_files_folder ON files (folder_id);
@@ -0,0 +1,12 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+-- Поиск подстроки без учёта регистра в пределах пользователя
+CREATE INDEX idx_files_user_filename_trgm ON files USING gin (user_id, lower(filename) gin_trgm_ops);
+-- Поиск по началу имени
+CREATE INDEX idx_files_user_filename_prefix ON files (user_id, lower(filename) text_pattern_ops);
+
+-- Сортировки /list; id — устойчивый порядок при равных значениях, индексы читаются в обе стороны
+CREATE INDEX idx_files_user_created ON files (user_id, created_date, id);
+CREATE INDEX idx_files_user_name ON files (user_id, filename, id);
+CREATE INDEX idx_files_user_size ON files (user_id, size, id);
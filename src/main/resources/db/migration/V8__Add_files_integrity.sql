@@ -0,0 +1,11 @@
+ALTER TABLE files ADD COLUMN checksum BIGINT;
+ALTER TABLE files ADD COLUMN quarantined BOOLEAN NOT NULL DEFAULT false;
+
+CREATE INDEX idx_files_quarantined ON files (id) WHERE quarantined;
+
+CREATE TABLE scrub_state (
+    name VARCHAR(100) PRIMARY KEY,
+    last_file_id INTEGER NOT NULL,
+    pass_started TIMESTAMP,
+    updated_at TIMESTAMP
+);
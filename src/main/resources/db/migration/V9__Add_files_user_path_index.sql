@@ -0,0 +1,2 @@
+-- Сверка с диском читает строки в побайтовом порядке путей
+CREATE INDEX idx_files_user_path ON files (user_id, file_path COLLATE "C");
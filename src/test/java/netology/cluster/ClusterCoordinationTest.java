@@ -0,0 +1,280 @@
+package netology.cluster;
+
+import netology.load.EmbeddedApplication;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockMultipartFile;
+import ru.netology.NetologyDiplomApplication;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.entity.User;
+import ru.netology.repository.UserRepository;
+import ru.netology.security.TokenRevocationService;
+import ru.netology.service.FileLockManager;
+import ru.netology.service.FileOperationService;
+import ru.netology.service.FileStorageService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Два экземпляра приложения на одной базе PostgreSQL и одном каталоге хранилища, как два узла за балансировщиком.
+ * Проверяется взаимное исключение блокировок файлов между узлами, рост пропускной способности со вторым узлом
+ * и доставка событий с одного узла на другой.
+ * Запуск: CLUSTER_TEST_DB_URL=jdbc:postgresql://localhost:5432/cloud_db mvn test -Dtest=ClusterCoordinationTest
+ */
+@EnabledIfEnvironmentVariable(named = "CLUSTER_TEST_DB_URL", matches = ".+")
+class ClusterCoordinationTest {
+
+    private static final int THREADS_PER_NODE = 4;
+    private static final String PROBE_TOPIC = "cluster-test-probe";
+    private static final long SCALING_DURATION_MS = 2_000;
+    // Ожидание под блокировкой, как запись в хранилище: пропускная способность ограничена блокировками, а не процессором
+    private static final long HOLD_MS = 5;
+
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    private Path storage;
+    private ConfigurableApplicationContext nodeA;
+    private ConfigurableApplicationContext nodeB;
+    private User user;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        storage = Files.createTempDirectory("cluster-test");
+        nodeA = startNode("node-a");
+        nodeB = startNode("node-b");
+        user = nodeA.getBean(UserRepository.class).save(new User("cluster-" + UUID.randomUUID(), "unused"));
+        awaitListeners();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (user != null) {
+            try {
+                nodeA.getBean(FileOperationService.class).deleteFile("report.pdf", user);
+            } catch (RuntimeException e) {
+                // Файл создаётся не в каждом тесте
+            }
+            nodeA.getBean(UserRepository.class).delete(user);
+        }
+        for (ConfigurableApplicationContext node : nodes) {
+            node.close();
+        }
+        EmbeddedApplication.deleteRecursively(storage);
+    }
+
+    @Test
+    void lockHeldOnOneNode_ShouldBlockTheSameFileOnOtherNode() throws Exception {
+        FileLockManager lockA = nodeA.getBean(FileLockManager.class);
+        FileLockManager lockB = nodeB.getBean(FileLockManager.class);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<?> waiting;
+            try (FileLockManager.Lock ignored = lockA.lock(user.getId(), "shared.txt")) {
+                // Другой файл на втором узле не ждёт
+                executor.submit(() -> {
+                    lockB.lock(user.getId(), "other.txt").close();
+                    return null;
+                }).get(10, TimeUnit.SECONDS);
+
+                waiting = executor.submit(() -> {
+                    lockB.lock(user.getId(), "shared.txt").close();
+                    return null;
+                });
+                assertThrows(TimeoutException.class, () -> waiting.get(500, TimeUnit.MILLISECONDS));
+            }
+            waiting.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void sharedFile_ShouldBeUpdatedUnderMutualExclusionFromTwoNodes() throws Exception {
+        Path shared = storage.resolve("counter.txt");
+        Files.writeString(shared, "0");
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        int iterations = 50;
+
+        List<ExecutorService> executors = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (ConfigurableApplicationContext node : nodes) {
+            FileLockManager lockManager = node.getBean(FileLockManager.class);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS_PER_NODE);
+            executors.add(executor);
+            for (int t = 0; t < THREADS_PER_NODE; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        try (FileLockManager.Lock ignored = lockManager.lock(user.getId(), "shared.txt")) {
+                            if (inside.incrementAndGet() > 1) {
+                                overlaps.incrementAndGet();
+                            }
+                            int value = Integer.parseInt(Files.readString(shared));
+                            Files.writeString(shared, Integer.toString(value + 1));
+                            inside.decrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(120, TimeUnit.SECONDS);
+            }
+        } finally {
+            executors.forEach(ExecutorService::shutdownNow);
+        }
+
+        assertEquals(0, overlaps.get());
+        assertEquals(nodes.size() * THREADS_PER_NODE * iterations, Integer.parseInt(Files.readString(shared)));
+    }
+
+    @Test
+    void disjointFiles_ShouldScaleWithSecondNode() throws Exception {
+        double oneNode = lockThroughput(List.of(nodeA), (node, thread) -> "scale-" + node + "-" + thread);
+        double twoNodes = lockThroughput(nodes, (node, thread) -> "scale-" + node + "-" + thread);
+        double sameFile = lockThroughput(nodes, (node, thread) -> "scale-shared");
+
+        System.out.printf("Cluster locks: one node %.0f ops/s, two nodes %.0f ops/s, one file on two nodes %.0f ops/s%n",
+                oneNode, twoNodes, sameFile);
+        assertTrue(twoNodes >= 1.5 * oneNode, "A second node should add throughput on disjoint files");
+        assertTrue(twoNodes >= 3 * sameFile, "Disjoint files should not be serialized across nodes");
+    }
+
+    @Test
+    void uploadOnOneNode_ShouldPublishFileEventToOtherNode() throws Exception {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        nodeB.getBean(ClusterEventBus.class).subscribe(FileStorageService.FILE_EVENTS_TOPIC, payload -> {
+            if (!ClusterEventBus.ALL.equals(payload)) {
+                received.add(payload);
+            }
+        });
+
+        nodeA.getBean(FileOperationService.class).uploadFile(
+                new MockMultipartFile("file", "report.pdf", "application/pdf", new byte[]{1, 2, 3}), "report.pdf", user);
+
+        assertEquals(user.getId() + "/report.pdf", received.poll(5, TimeUnit.SECONDS));
+        // Метаданные общие: второй узел сразу видит загруженный файл
+        assertTrue(nodeB.getBean(FileStorageService.class).load("report.pdf", user).isPresent());
+    }
+
+    @Test
+    void tokenRevokedOnOneNode_ShouldBeRejectedByOtherNode() throws Exception {
+        TokenRevocationService revocationA = nodeA.getBean(TokenRevocationService.class);
+        TokenRevocationService revocationB = nodeB.getBean(TokenRevocationService.class);
+        String jti = UUID.randomUUID().toString();
+        assertFalse(revocationB.isRevoked(jti));
+
+        revocationA.revoke(jti, Instant.now().plusSeconds(60));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!revocationB.isRevoked(jti) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(revocationB.isRevoked(jti));
+    }
+
+    // Операций в секунду: THREADS_PER_NODE потоков на каждом узле, имя файла выбирает filename(узел, поток)
+    private double lockThroughput(List<ConfigurableApplicationContext> lockNodes,
+                                  BiFunction<Integer, Integer, String> filename) throws Exception {
+        AtomicLong operations = new AtomicLong();
+        List<ExecutorService> executors = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        for (int n = 0; n < lockNodes.size(); n++) {
+            FileLockManager lockManager = lockNodes.get(n).getBean(FileLockManager.class);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS_PER_NODE);
+            executors.add(executor);
+            for (int t = 0; t < THREADS_PER_NODE; t++) {
+                String name = filename.apply(n, t);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SCALING_DURATION_MS);
+                    while (System.nanoTime() < deadline) {
+                        try (FileLockManager.Lock ignored = lockManager.lock(user.getId(), name)) {
+                            Thread.sleep(HOLD_MS);
+                        }
+                        operations.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(SCALING_DURATION_MS + 60_000, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            executors.forEach(ExecutorService::shutdownNow);
+        }
+        return operations.get() * 1000.0 / SCALING_DURATION_MS;
+    }
+
+    private ConfigurableApplicationContext startNode(String nodeId) {
+        ConfigurableApplicationContext node = SpringApplication.run(NetologyDiplomApplication.class,
+                "--server.port=0",
+                "--spring.datasource.url=" + System.getenv("CLUSTER_TEST_DB_URL"),
+                "--spring.datasource.username=" + System.getenv().getOrDefault("CLUSTER_TEST_DB_USER", "postgres"),
+                "--spring.datasource.password=" + System.getenv().getOrDefault("CLUSTER_TEST_DB_PASSWORD", "postgresql"),
+                "--logging.level.ru.netology=WARN",
+                "--cloud.storage.backend=local",
+                "--cloud.storage.path=" + storage,
+                "--cloud.storage.rebalance.enabled=false",
+                "--cloud.scrub.enabled=false",
+                "--cloud.cluster.enabled=true",
+                "--cloud.cluster.node-id=" + nodeId,
+                "--cloud.cluster.pool-size=" + (THREADS_PER_NODE + 2));
+        nodes.add(node);
+        return node;
+    }
+
+    // Слушатель LISTEN подключается асинхронно: ждём, пока пробное событие каждого узла дойдёт до другого
+    private void awaitListeners() throws InterruptedException {
+        for (ConfigurableApplicationContext sender : nodes) {
+            for (ConfigurableApplicationContext receiver : nodes) {
+                if (sender == receiver) {
+                    continue;
+                }
+                String probe = UUID.randomUUID().toString();
+                CountDownLatch delivered = new CountDownLatch(1);
+                receiver.getBean(ClusterEventBus.class).subscribe(PROBE_TOPIC, payload -> {
+                    if (probe.equals(payload)) {
+                        delivered.countDown();
+                    }
+                });
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+                do {
+                    sender.getBean(ClusterEventBus.class).publish(PROBE_TOPIC, probe);
+                } while (!delivered.await(200, TimeUnit.MILLISECONDS) && System.nanoTime() < deadline);
+                assertEquals(0, delivered.getCount(), "Cluster event listener did not connect");
+            }
+        }
+    }
+}
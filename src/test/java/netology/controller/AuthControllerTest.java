@@ -12,6 +12,7 @@ import ru.netology.service.AuthService;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -81,6 +82,22 @@ class AuthControllerTest {
         verify(authService, times(1)).authenticate(testLogin, testPassword);
     }
 
+    @Test
+    void login_ShouldReturnServiceUnavailable_WhenHashingQueueIsFull() {
+        when(authService.authenticate(testLogin, testPassword))
+                .thenThrow(new RejectedExecutionException());
+
+        Map<String, String> authRequest = Map.of(
+                "login", testLogin,
+                "password", testPassword
+        );
+
+        ResponseEntity<?> response = authController.login(authRequest);
+
+        assertEquals(503, response.getStatusCodeValue());
+        assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+    }
+
     @Test
     void login_ShouldReturnBadRequest_WhenLoginIsMissing() {
         Map<String, String> authRequest = Map.of(
@@ -119,6 +136,14 @@ class AuthControllerTest {
         verify(authService, never()).authenticate(any(), any());
     }
 
+    @Test
+    void logout_ShouldRevokeToken() {
+        ResponseEntity<?> response = authController.logout("Bearer " + testToken);
+
+        assertEquals(200, response.getStatusCodeValue());
+        verify(authService, times(1)).logout("Bearer " + testToken);
+    }
+
     @Test
     void register_ShouldReturnSuccess_WhenRegistrationIsSuccessful() {
         when(authService.register(testLogin, testPassword))
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -14,6 +15,7 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 import ru.netology.controller.FileController;
 import ru.netology.dto.FileInfoDto;
+import ru.netology.dto.FileListQuery;
 import ru.netology.dto.FileResponse;
 import ru.netology.dto.RenameRequest;
 import ru.netology.entity.FileEntity;
@@ -55,6 +57,7 @@ class FileControllerTest {
     private final String testToken = "valid-token";
     private final String testFilename = "test.txt";
     private final String testNewFilename = "renamed.txt";
+    private final FileListQuery query = new FileListQuery();
 
     @BeforeEach
     void setUp() {
@@ -69,9 +72,9 @@ class FileControllerTest {
         when(userRepository.findByLogin(testUser.getLogin())).thenReturn(Optional.of(testUser));
 
         FileInfoDto fileInfo = new FileInfoDto(testFilename, 1024L);
-        when(fileOperationService.getUserFiles(testUser, 10)).thenReturn(List.of(fileInfo));
+        when(fileOperationService.getUserFiles(testUser, 10, query)).thenReturn(List.of(fileInfo));
 
-        ResponseEntity<List<FileInfoDto>> response = fileController.getFileList("Bearer " + testToken, 10);
+        ResponseEntity<List<FileInfoDto>> response = fileController.getFileList("Bearer " + testToken, 10, query);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -81,16 +84,16 @@ class FileControllerTest {
 
         verify(jwtTokenUtil).getUsernameFromToken(testToken);
         verify(userRepository).findByLogin(testUser.getLogin());
-        verify(fileOperationService).getUserFiles(testUser, 10);
+        verify(fileOperationService).getUserFiles(testUser, 10, query);
     }
 
     @Test
     void getFileList_ShouldReturnEmptyList_WhenUserHasNoFiles() {
         when(jwtTokenUtil.getUsernameFromToken(anyString())).thenReturn(testUser.getLogin());
         when(userRepository.findByLogin(testUser.getLogin())).thenReturn(Optional.of(testUser));
-        when(fileOperationService.getUserFiles(testUser, 10)).thenReturn(List.of());
+        when(fileOperationService.getUserFiles(testUser, 10, query)).thenReturn(List.of());
 
-        ResponseEntity<List<FileInfoDto>> response = fileController.getFileList("Bearer " + testToken, 10);
+        ResponseEntity<List<FileInfoDto>> response = fileController.getFileList("Bearer " + testToken, 10, query);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -98,6 +101,19 @@ class FileControllerTest {
         assertTrue(response.getBody().isEmpty());
     }
 
+    @Test
+    void getFileList_ShouldReturnBadRequest_WhenSortIsUnsupported() {
+        when(jwtTokenUtil.getUsernameFromToken(anyString())).thenReturn(testUser.getLogin());
+        when(userRepository.findByLogin(testUser.getLogin())).thenReturn(Optional.of(testUser));
+        when(fileOperationService.getUserFiles(testUser, 10, query))
+                .thenThrow(new IllegalArgumentException("Unsupported sort: owner"));
+
+        ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                () -> fileController.getFileList("Bearer " + testToken, 10, query));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getStatusCode());
+    }
+
     @Test
 void uploadFile_ShouldReturnSuccess_WhenFileIsValid() throws IOException {
     when(jwtTokenUtil.getUsernameFromToken(anyString())).thenReturn(testUser.getLogin());
@@ -153,6 +169,8 @@ void uploadFile_ShouldThrowBadRequest_WhenIOExceptionOccurs() throws IOException
 
         when(fileOperationService.getFileForDownload(testFilename, testUser))
                 .thenReturn(fileEntity);
+        when(fileOperationService.openResource(fileEntity))
+                .thenReturn(new FileSystemResource(tempFile));
 
         ResponseEntity<?> response = fileController.downloadFile(
                 "Bearer " + testToken, testFilename
@@ -176,6 +194,8 @@ void uploadFile_ShouldThrowBadRequest_WhenIOExceptionOccurs() throws IOException
 
         when(fileOperationService.getFileForDownload(testFilename, testUser))
                 .thenReturn(fileEntity);
+        when(fileOperationService.openResource(fileEntity))
+                .thenReturn(new FileSystemResource(fileEntity.getFilePath()));
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class, () -> {
             fileController.downloadFile("Bearer " + testToken, testFilename);
@@ -0,0 +1,279 @@
+package netology.delta;
+
+import org.junit.jupiter.api.Test;
+import ru.netology.delta.DeltaPatcher;
+import ru.netology.delta.RollingChecksum;
+import ru.netology.dto.BlockChecksumDto;
+import ru.netology.storage.InMemoryStorageBackend;
+import ru.netology.storage.LocalFileSystemStorageBackend;
+import ru.netology.storage.StorageBackend;
+import ru.netology.storage.StoragePlacement;
+import ru.netology.storage.VolumeManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaPatcherTest {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    @Test
+    void smallEdit_ShouldBuildNewVersionBesideUntouchedBase() throws Exception {
+        withLocalBackend(backend -> {
+            byte[] base = randomBytes(1_000_000, 1);
+            byte[] edited = base.clone();
+            for (int i = 0; i < 10; i++) {
+                edited[300_000 + i] ^= 0x5a;
+            }
+            String key = store(backend, base);
+
+            DeltaPatcher.Result result = sync(backend, key, base, edited);
+
+            assertNotEquals(key, result.getKey());
+            assertArrayEquals(base, readAll(backend, key, base.length));
+            assertArrayEquals(edited, readAll(backend, result.getKey(), result.getSize()));
+        });
+    }
+
+    @Test
+    void insertion_ShouldTransferOnlyNewBytesAndRebuildFile() throws Exception {
+        withLocalBackend(backend -> {
+            byte[] base = randomBytes(1_000_000, 2);
+            byte[] inserted = randomBytes(100, 3);
+            byte[] edited = new byte[base.length + inserted.length];
+            System.arraycopy(base, 0, edited, 0, 500_000);
+            System.arraycopy(inserted, 0, edited, 500_000, inserted.length);
+            System.arraycopy(base, 500_000, edited, 500_000 + inserted.length, base.length - 500_000);
+
+            DeltaPatcher.Result result = sync(backend, store(backend, base), base, edited);
+
+            assertArrayEquals(edited, readAll(backend, result.getKey(), result.getSize()));
+        });
+    }
+
+    @Test
+    void truncation_ShouldShrinkFile() throws Exception {
+        withLocalBackend(backend -> {
+            byte[] base = randomBytes(100_000, 4);
+            byte[] edited = Arrays.copyOf(base, 50_000);
+
+            DeltaPatcher.Result result = sync(backend, store(backend, base), base, edited);
+
+            assertArrayEquals(edited, readAll(backend, result.getKey(), result.getSize()));
+        });
+    }
+
+    @Test
+    void inMemoryBackend_ShouldRebuildFile() throws Exception {
+        StorageBackend backend = new InMemoryStorageBackend();
+        byte[] base = randomBytes(200_000, 5);
+        byte[] edited = base.clone();
+        edited[150_000] ^= 1;
+
+        DeltaPatcher.Result result = sync(backend, store(backend, base), base, edited);
+
+        assertArrayEquals(edited, readAll(backend, result.getKey(), result.getSize()));
+    }
+
+    @Test
+    void deltaBeyondEndOfFile_ShouldBeRejected() throws Exception {
+        StorageBackend backend = new InMemoryStorageBackend();
+        DeltaPatcher patcher = new DeltaPatcher(backend, 1000, 1 << 20);
+        String key = store(backend, randomBytes(10_000, 6));
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(DeltaPatcher.OP_COPY);
+        out.writeInt(2);
+        out.writeInt(2);
+        out.writeByte(DeltaPatcher.OP_END);
+
+        try (DeltaPatcher.Delta delta = patcher.receive(new ByteArrayInputStream(body.toByteArray()))) {
+            assertThrows(IOException.class, () -> patcher.apply(key, 10_000, BLOCK_SIZE, delta));
+        }
+        assertThrows(IOException.class, () -> patcher.receive(new ByteArrayInputStream(new byte[]{DeltaPatcher.OP_DATA, 0, 0, 1, 0})));
+    }
+
+    @Test
+    void oversizedDelta_ShouldBeRejected() throws Exception {
+        StorageBackend backend = new InMemoryStorageBackend();
+        DeltaPatcher patcher = new DeltaPatcher(backend, 10, 1000);
+        String key = store(backend, randomBytes(10 * BLOCK_SIZE, 7));
+
+        // Чередование блоков не склеивается: каждая команда — отдельная запись в памяти
+        ByteArrayOutputStream manyOps = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(manyOps);
+        for (int i = 0; i < 11; i++) {
+            out.writeByte(DeltaPatcher.OP_COPY);
+            out.writeInt(i % 2 == 0 ? 0 : 5);
+            out.writeInt(1);
+        }
+        out.writeByte(DeltaPatcher.OP_END);
+        assertThrows(IOException.class, () -> patcher.receive(new ByteArrayInputStream(manyOps.toByteArray())));
+
+        // Длина проверяется до записи данных на диск
+        assertThrows(IOException.class, () -> patcher.receive(new ByteArrayInputStream(
+                new byte[]{DeltaPatcher.OP_DATA, 0, 0, 0x03, (byte) 0xe9})));
+
+        // Повтор одного блока раздувает файл без новых данных
+        ByteArrayOutputStream growth = new ByteArrayOutputStream();
+        out = new DataOutputStream(growth);
+        out.writeByte(DeltaPatcher.OP_COPY);
+        out.writeInt(0);
+        out.writeInt(10);
+        out.writeByte(DeltaPatcher.OP_COPY);
+        out.writeInt(0);
+        out.writeInt(10);
+        out.writeByte(DeltaPatcher.OP_END);
+        try (DeltaPatcher.Delta delta = patcher.receive(new ByteArrayInputStream(growth.toByteArray()))) {
+            assertThrows(IOException.class, () -> patcher.apply(key, 10 * BLOCK_SIZE, BLOCK_SIZE, delta));
+        }
+    }
+
+    private DeltaPatcher.Result sync(StorageBackend backend, String key, byte[] base, byte[] edited) throws Exception {
+        DeltaPatcher patcher = new DeltaPatcher(backend, 100_000, 1 << 20);
+
+        List<BlockChecksumDto> signature = patcher.signature(key, base.length, BLOCK_SIZE);
+        byte[] body = encodeDelta(edited, signature, base.length);
+        assertTrue(body.length < 3 * BLOCK_SIZE + Math.abs(edited.length - base.length), "delta size " + body.length);
+
+        try (DeltaPatcher.Delta delta = patcher.receive(new ByteArrayInputStream(body))) {
+            return patcher.apply(key, base.length, BLOCK_SIZE, delta);
+        }
+    }
+
+    // Клиентская часть rsync: скользящее окно ищет совпадения с блоками подписи
+    private byte[] encodeDelta(byte[] target, List<BlockChecksumDto> signature, long baseSize) throws Exception {
+        Map<Integer, List<Integer>> byWeak = new HashMap<>();
+        for (int i = 0; i < signature.size(); i++) {
+            byWeak.computeIfAbsent(signature.get(i).getWeak(), weak -> new ArrayList<>()).add(i);
+        }
+        int lastBlockLength = (int) (baseSize - (long) (signature.size() - 1) * BLOCK_SIZE);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        ByteArrayOutputStream literal = new ByteArrayOutputStream();
+        RollingChecksum checksum = new RollingChecksum();
+        boolean windowValid = false;
+        int position = 0;
+
+        while (position + BLOCK_SIZE <= target.length) {
+            if (!windowValid) {
+                checksum.reset(target, position, BLOCK_SIZE);
+                windowValid = true;
+            }
+            int match = findBlock(byWeak.get(checksum.value()), signature, target, position, BLOCK_SIZE, lastBlockLength);
+            if (match >= 0) {
+                flushLiteral(out, literal);
+                out.writeByte(DeltaPatcher.OP_COPY);
+                out.writeInt(match);
+                out.writeInt(1);
+                position += BLOCK_SIZE;
+                windowValid = false;
+            } else {
+                literal.write(target[position]);
+                if (position + BLOCK_SIZE < target.length) {
+                    checksum.roll(target[position], target[position + BLOCK_SIZE]);
+                } else {
+                    windowValid = false;
+                }
+                position++;
+            }
+        }
+
+        int tail = target.length - position;
+        if (tail > 0) {
+            int match = findBlock(byWeak.get(RollingChecksum.of(target, position, tail)), signature, target, position, tail, lastBlockLength);
+            if (match >= 0) {
+                flushLiteral(out, literal);
+                out.writeByte(DeltaPatcher.OP_COPY);
+                out.writeInt(match);
+                out.writeInt(1);
+            } else {
+                literal.write(target, position, tail);
+            }
+        }
+        flushLiteral(out, literal);
+        out.writeByte(DeltaPatcher.OP_END);
+        return body.toByteArray();
+    }
+
+    private int findBlock(List<Integer> candidates, List<BlockChecksumDto> signature, byte[] data, int offset,
+                          int length, int lastBlockLength) throws Exception {
+        if (candidates == null) {
+            return -1;
+        }
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        md5.update(data, offset, length);
+        String strong = HexFormat.of().formatHex(md5.digest());
+        for (int index : candidates) {
+            int blockLength = index == signature.size() - 1 ? lastBlockLength : BLOCK_SIZE;
+            if (blockLength == length && signature.get(index).getStrong().equals(strong)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private void flushLiteral(DataOutputStream out, ByteArrayOutputStream literal) throws IOException {
+        if (literal.size() == 0) {
+            return;
+        }
+        out.writeByte(DeltaPatcher.OP_DATA);
+        out.writeInt(literal.size());
+        literal.writeTo(out);
+        literal.reset();
+    }
+
+    private String store(StorageBackend backend, byte[] content) throws IOException {
+        StoragePlacement placement = backend.allocate(1, "document.bin", content.length);
+        backend.write(placement.getKey(), new ByteArrayInputStream(content));
+        return placement.getKey();
+    }
+
+    private byte[] readAll(StorageBackend backend, String key, long size) throws IOException {
+        assertEquals(size, backend.stat(key).orElseThrow().getSize());
+        try (InputStream in = backend.read(key, 0, size)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private byte[] randomBytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private void withLocalBackend(BackendTest test) throws Exception {
+        Path root = Files.createTempDirectory("delta-patcher-test");
+        try {
+            test.run(new LocalFileSystemStorageBackend(new VolumeManager(root.toString(), 0)));
+        } finally {
+            try (var paths = Files.walk(root)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private interface BackendTest {
+        void run(StorageBackend backend) throws Exception;
+    }
+}
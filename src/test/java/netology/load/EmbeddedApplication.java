@@ -0,0 +1,65 @@
+package netology.load;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.netology.NetologyDiplomApplication;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Всё приложение на встроенной H2 (режим PostgreSQL, схема от Hibernate) и временном каталоге хранилища
+public final class EmbeddedApplication {
+
+    private EmbeddedApplication() {
+    }
+
+    public static ConfigurableApplicationContext start(String database, Path storage, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=" + url(database),
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.flyway.enabled=false",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.ru.netology=INFO",
+                "--logging.level.org.flywaydb=INFO",
+                "--cloud.storage.backend=local",
+                "--cloud.storage.path=" + storage,
+                "--cloud.storage.rebalance.enabled=false",
+                "--cloud.scrub.enabled=false",
+                "--cloud.cluster.enabled=false"));
+        // Повтор свойства Spring склеивает через запятую ("INFO,WARN"), поэтому аргумент вызывающего заменяет умолчание
+        for (String arg : extraArgs) {
+            int separator = arg.indexOf('=');
+            if (separator > 0) {
+                String key = arg.substring(0, separator + 1);
+                args.removeIf(existing -> existing.startsWith(key));
+            }
+            args.add(arg);
+        }
+        return SpringApplication.run(NetologyDiplomApplication.class, args.toArray(String[]::new));
+    }
+
+    public static String url(String database) {
+        return "jdbc:h2:mem:" + database + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1";
+    }
+
+    public static int port(ConfigurableApplicationContext context) {
+        return ((WebServerApplicationContext) context).getWebServer().getPort();
+    }
+
+    public static void deleteRecursively(Path root) throws Exception {
+        try (var paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package netology.load;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.netology.entity.User;
+import ru.netology.repository.UserRepository;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Много параллельных мелких запросов одного клиента (список, переименования) до и после:
+ * HTTP/1.1 без сжатия против HTTP/2 (h2c) со сжатием JSON. Клиент ходит через TCP-прокси,
+ * который считает байты в обе стороны и число соединений.
+ * Запуск: mvn test -Dbenchmarks=true -Dtest=Http2CompressionBenchmarkTest -Dh2.concurrency=64
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class Http2CompressionBenchmarkTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("h2.concurrency", 64);
+    private static final int FILES = Integer.getInteger("h2.files", 200);
+    private static final long DURATION_MS = Long.getLong("h2.duration-ms", 20_000);
+    private static final long WARMUP_MS = Long.getLong("h2.warmup-ms", 3_000);
+    private static final String LOGIN = "h2-user";
+    private static final String PASSWORD = "h2-password";
+    private static final Pattern TOKEN = Pattern.compile("\"auth-token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final String BOUNDARY = "h2-boundary";
+
+    @Test
+    void smallRequests_ShouldCompareHttp11WithHttp2AndCompression() throws Exception {
+        Run before = run("http1.1-identity", HttpClient.Version.HTTP_1_1,
+                "--server.http2.enabled=false", "--server.compression.enabled=false");
+        Run after = run("h2c-gzip", HttpClient.Version.HTTP_2);
+
+        System.out.print(before.report());
+        System.out.print(after.report());
+
+        assertTrue(after.bytesDown < before.bytesDown, "Compressed responses should take fewer bytes");
+        assertTrue(after.compressedResponses > 0, "Large JSON responses should be gzip-encoded");
+    }
+
+    private Run run(String name, HttpClient.Version version, String... serverArgs) throws Exception {
+        Path storage = Files.createTempDirectory("h2-storage");
+        List<String> args = new ArrayList<>(List.of("--cloud.auth.bcrypt-cost=4", "--logging.level.ru.netology=WARN"));
+        args.addAll(List.of(serverArgs));
+        ConfigurableApplicationContext context = EmbeddedApplication.start("h2-" + name, storage,
+                args.toArray(String[]::new));
+        try (CountingProxy proxy = new CountingProxy(EmbeddedApplication.port(context))) {
+            context.getBean(UserRepository.class)
+                    .save(new User(LOGIN, context.getBean(PasswordEncoder.class).encode(PASSWORD)));
+            Client seeder = new Client(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build(),
+                    "http://localhost:" + EmbeddedApplication.port(context), login(context));
+            for (int i = 0; i < FILES; i++) {
+                seeder.upload("listed-" + i + ".txt");
+            }
+
+            HttpClient client = HttpClient.newBuilder()
+                    .version(version)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+            Client measured = new Client(client, "http://localhost:" + proxy.port(), seeder.token);
+            for (int i = 0; i < CONCURRENCY; i++) {
+                measured.upload("session-" + i + ".txt");
+            }
+
+            // Прогрев JIT и соединений; байты и задержки прогрева в отчёт не попадают
+            load(measured, WARMUP_MS);
+            proxy.reset();
+            measured.compressed.set(0);
+            LatencyStats stats = load(measured, DURATION_MS);
+            return new Run(name, stats, proxy.bytesUp.sum(), proxy.bytesDown.sum(), proxy.connections.get(),
+                    measured.compressed.get());
+        } finally {
+            context.close();
+            EmbeddedApplication.deleteRecursively(storage);
+        }
+    }
+
+    private String login(ConfigurableApplicationContext context) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + EmbeddedApplication.port(context) + "/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"login\":\"" + LOGIN + "\",\"password\":\"" + PASSWORD + "\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = TOKEN.matcher(response.body());
+        assertTrue(matcher.find(), response.body());
+        return matcher.group(1);
+    }
+
+    // Каждая сессия: большой и маленький список, переименование своего файла туда и обратно
+    private LatencyStats load(Client client, long durationMs) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        List<Future<LatencyStats>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CONCURRENCY; i++) {
+                String file = "session-" + i + ".txt";
+                String renamed = "session-" + i + "-renamed.txt";
+                futures.add(executor.submit(() -> {
+                    LatencyStats stats = new LatencyStats();
+                    while (System.nanoTime() < deadline) {
+                        client.timed(stats, "list-200", client.get("/list?limit=" + FILES));
+                        client.timed(stats, "list-10", client.get("/list?limit=10"));
+                        client.timed(stats, "rename", client.rename(file, renamed));
+                        client.timed(stats, "rename", client.rename(renamed, file));
+                    }
+                    return stats;
+                }));
+            }
+            LatencyStats total = new LatencyStats();
+            for (Future<LatencyStats> future : futures) {
+                total.merge(future.get());
+            }
+            return total;
+        }
+    }
+
+    private static final class Client {
+        private final HttpClient client;
+        private final String baseUrl;
+        private final String token;
+        private final AtomicInteger compressed = new AtomicInteger();
+
+        private Client(HttpClient client, String baseUrl, String token) {
+            this.client = client;
+            this.baseUrl = baseUrl;
+            this.token = token;
+        }
+
+        private HttpRequest get(String path) {
+            return authorized(path).GET().build();
+        }
+
+        private HttpRequest rename(String from, String to) {
+            return authorized("/file?filename=" + from)
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString("{\"filename\":\"" + to + "\"}"))
+                    .build();
+        }
+
+        private void upload(String filename) throws Exception {
+            HttpResponse<byte[]> response = client.send(authorized("/file?filename=" + filename)
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofString("--" + BOUNDARY + "\r\n"
+                            + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                            + "Content-Type: text/plain\r\n\r\n"
+                            + "content of " + filename
+                            + "\r\n--" + BOUNDARY + "--\r\n"))
+                    .build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(200, response.statusCode(), new String(response.body(), StandardCharsets.UTF_8));
+        }
+
+        private HttpRequest.Builder authorized(String path) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("auth-token", "Bearer " + token)
+                    .header("Accept-Encoding", "gzip");
+        }
+
+        // Время — до полностью прочитанного и распакованного тела
+        private void timed(LatencyStats stats, String endpoint, HttpRequest request) {
+            long started = System.nanoTime();
+            boolean ok;
+            try {
+                HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                byte[] body = response.body();
+                if (response.headers().firstValue("Content-Encoding").filter("gzip"::equalsIgnoreCase).isPresent()) {
+                    compressed.incrementAndGet();
+                    try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                        body = in.readAllBytes();
+                    }
+                }
+                ok = response.statusCode() == 200 && body.length > 0;
+            } catch (Exception e) {
+                ok = false;
+            }
+            stats.record(endpoint, System.nanoTime() - started, ok);
+        }
+    }
+
+    // TCP-прокси без разбора протокола: одинаково считает HTTP/1.1 и h2c
+    private static final class CountingProxy implements AutoCloseable {
+        private final ServerSocket serverSocket;
+        private final int targetPort;
+        private final LongAdder bytesUp = new LongAdder();
+        private final LongAdder bytesDown = new LongAdder();
+        private final AtomicInteger connections = new AtomicInteger();
+        private final List<Socket> sockets = new ArrayList<>();
+
+        private CountingProxy(int targetPort) throws IOException {
+            this.targetPort = targetPort;
+            this.serverSocket = new ServerSocket(0, 1000, InetAddress.getLoopbackAddress());
+            Thread.ofVirtual().start(this::accept);
+        }
+
+        private int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void reset() {
+            bytesUp.reset();
+            bytesDown.reset();
+            connections.set(0);
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket client = serverSocket.accept();
+                    Socket target = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+                    synchronized (sockets) {
+                        sockets.add(client);
+                        sockets.add(target);
+                    }
+                    connections.incrementAndGet();
+                    Thread.ofVirtual().start(() -> pipe(client, target, bytesUp));
+                    Thread.ofVirtual().start(() -> pipe(target, client, bytesDown));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private static void pipe(Socket from, Socket to, LongAdder counter) {
+            byte[] buffer = new byte[16 * 1024];
+            try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                    out.flush();
+                    counter.add(read);
+                }
+            } catch (IOException ignored) {
+                // соединение закрыто одной из сторон
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+        }
+    }
+
+    private record Run(String name, LatencyStats stats, long bytesUp, long bytesDown, int connections,
+                       int compressedResponses) {
+
+        private String report() {
+            long requests = stats.totalRequests();
+            String header = String.format("%s concurrency=%d files=%d connections=%d bytes-up=%d bytes-down=%d "
+                            + "bytes-per-request=%d gzip-responses=%d",
+                    name, CONCURRENCY, FILES, connections, bytesUp, bytesDown,
+                    requests > 0 ? (bytesUp + bytesDown) / requests : 0, compressedResponses);
+            return stats.report(header, DURATION_MS / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package netology.load;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.repository.FileRepository;
+import ru.netology.repository.UserRepository;
+import ru.netology.storage.StorageBackend;
+import ru.netology.storage.StoragePlacement;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Настройки h2c и сжатия JSON на работающем приложении; объёмы и задержки — Http2CompressionBenchmarkTest
+class Http2CompressionTest {
+    private static final String LOGIN = "h2-check";
+    private static final String PASSWORD = "h2-check-password";
+    private static final Pattern TOKEN = Pattern.compile("\"auth-token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final String DOCUMENT = "h2-document.txt";
+    private static final byte[] DOCUMENT_CONTENT = "compressible text ".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+    private static Path storage;
+    private static ConfigurableApplicationContext context;
+    private static String baseUrl;
+    private static String token;
+
+    @BeforeAll
+    static void startApplication() throws Exception {
+        storage = Files.createTempDirectory("h2-storage");
+        context = EmbeddedApplication.start("h2check", storage, "--cloud.auth.bcrypt-cost=4");
+        baseUrl = "http://localhost:" + EmbeddedApplication.port(context);
+        User user = context.getBean(UserRepository.class)
+                .save(new User(LOGIN, context.getBean(PasswordEncoder.class).encode(PASSWORD)));
+        // Только строки: /list не читает содержимое, а ответ должен превысить порог сжатия в 1 КБ
+        FileRepository files = context.getBean(FileRepository.class);
+        for (int i = 0; i < 50; i++) {
+            files.save(new FileEntity("h2-file-" + i + ".txt", (long) i, "h2/h2-file-" + i + ".txt", user));
+        }
+        // Хорошо сжимаемый .txt уходит как text/plain: сжатие включено только для JSON
+        StorageBackend storageBackend = context.getBean(StorageBackend.class);
+        StoragePlacement placement = storageBackend.allocate(user.getId(), DOCUMENT, DOCUMENT_CONTENT.length);
+        storageBackend.write(placement.getKey(), new ByteArrayInputStream(DOCUMENT_CONTENT));
+        FileEntity document = new FileEntity(DOCUMENT, (long) DOCUMENT_CONTENT.length, placement.getKey(), user);
+        document.setVolume(placement.getVolume());
+        files.save(document);
+
+        HttpResponse<String> login = HttpClient.newHttpClient().send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"login\":\"" + LOGIN + "\",\"password\":\"" + PASSWORD + "\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = TOKEN.matcher(login.body());
+        assertTrue(matcher.find(), login.body());
+        token = matcher.group(1);
+    }
+
+    @AfterAll
+    static void stopApplication() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        EmbeddedApplication.deleteRecursively(storage);
+    }
+
+    @Test
+    void cleartextClient_ShouldBeUpgradedToHttp2() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+
+        HttpResponse<byte[]> response = client.send(list(false), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, response.statusCode());
+        assertEquals(HttpClient.Version.HTTP_2, response.version());
+    }
+
+    @Test
+    void largeJson_ShouldBeGzippedOnlyWhenAccepted() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        HttpResponse<byte[]> gzipped = client.send(list(true), HttpResponse.BodyHandlers.ofByteArray());
+        HttpResponse<byte[]> plain = client.send(list(false), HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals("gzip", gzipped.headers().firstValue("Content-Encoding").orElse(null));
+        assertTrue(plain.headers().firstValue("Content-Encoding").isEmpty());
+        String unzipped = new String(new GZIPInputStream(new ByteArrayInputStream(gzipped.body())).readAllBytes(),
+                StandardCharsets.UTF_8);
+        assertEquals(new String(plain.body(), StandardCharsets.UTF_8), unzipped);
+        assertTrue(gzipped.body().length < plain.body().length);
+    }
+
+    @Test
+    void fileContent_ShouldNotBeGzippedEvenWhenAccepted() throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        HttpResponse<byte[]> download = client.send(get("/file?filename=" + DOCUMENT, true),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, download.statusCode());
+        assertTrue(download.headers().firstValue("Content-Encoding").isEmpty());
+        assertArrayEquals(DOCUMENT_CONTENT, download.body());
+    }
+
+    private static HttpRequest list(boolean gzip) {
+        return get("/list?limit=50", gzip);
+    }
+
+    private static HttpRequest get(String path, boolean gzip) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("auth-token", "Bearer " + token);
+        if (gzip) {
+            request.header("Accept-Encoding", "gzip");
+        }
+        return request.GET().build();
+    }
+}
@@ -0,0 +1,81 @@
+package netology.load;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Задержки по эндпоинтам одной сессии; сессии сливаются в общий отчёт после прогона
+class LatencyStats {
+    private final Map<String, Samples> endpoints = new TreeMap<>();
+
+    void record(String endpoint, long nanos, boolean ok) {
+        endpoints.computeIfAbsent(endpoint, key -> new Samples()).add(nanos, ok);
+    }
+
+    void merge(LatencyStats other) {
+        other.endpoints.forEach((endpoint, samples) ->
+                endpoints.computeIfAbsent(endpoint, key -> new Samples()).addAll(samples));
+    }
+
+    long totalRequests() {
+        return endpoints.values().stream().mapToLong(samples -> samples.count).sum();
+    }
+
+    /*
+     * Формат рассчитан на diff между коммитами: строки отсортированы по эндпоинту,
+     * колонки фиксированной ширины, без времени запуска и имён машин.
+     */
+    String report(String header, double seconds) {
+        StringBuilder report = new StringBuilder();
+        report.append("# ").append(header).append('\n');
+        report.append(String.format("%-10s %10s %8s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "req/s", "p50_ms", "p99_ms", "p999_ms"));
+        Samples total = new Samples();
+        endpoints.forEach((endpoint, samples) -> {
+            report.append(line(endpoint, samples, seconds));
+            total.addAll(samples);
+        });
+        report.append(line("total", total, seconds));
+        return report.toString();
+    }
+
+    private static String line(String endpoint, Samples samples, double seconds) {
+        long[] sorted = Arrays.copyOf(samples.nanos, samples.count);
+        Arrays.sort(sorted);
+        return String.format("%-10s %10d %8d %10.1f %10.2f %10.2f %10.2f%n", endpoint, samples.count, samples.errors,
+                samples.count / seconds, percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999));
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(sorted.length * quantile) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static final class Samples {
+        private long[] nanos = new long[1024];
+        private int count;
+        private long errors;
+
+        private void add(long value, boolean ok) {
+            if (count == nanos.length) {
+                nanos = Arrays.copyOf(nanos, count * 2);
+            }
+            nanos[count++] = value;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        private void addAll(Samples other) {
+            if (count + other.count > nanos.length) {
+                nanos = Arrays.copyOf(nanos, Math.max(nanos.length * 2, count + other.count));
+            }
+            System.arraycopy(other.nanos, 0, nanos, count, other.count);
+            count += other.count;
+            errors += other.errors;
+        }
+    }
+}
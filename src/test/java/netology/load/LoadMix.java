@@ -0,0 +1,45 @@
+package netology.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Сценарий в виде "операция:вес,...", например "login:1,upload:2,list:4,download:4,rename:1,delete:1"
+class LoadMix {
+    private final List<String> operations = new ArrayList<>();
+    private final List<Integer> cumulativeWeights = new ArrayList<>();
+    private final String spec;
+    private int totalWeight;
+
+    LoadMix(String spec) {
+        this.spec = spec;
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight <= 0) {
+                continue;
+            }
+            totalWeight += weight;
+            operations.add(parts[0].trim());
+            cumulativeWeights.add(totalWeight);
+        }
+        if (operations.isEmpty()) {
+            throw new IllegalArgumentException("Empty load mix: " + spec);
+        }
+    }
+
+    String next(Random random) {
+        int value = random.nextInt(totalWeight);
+        for (int i = 0; i < operations.size(); i++) {
+            if (value < cumulativeWeights.get(i)) {
+                return operations.get(i);
+            }
+        }
+        return operations.get(operations.size() - 1);
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,176 @@
+package netology.load;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Один виртуальный пользователь: замкнутый цикл запросов по сценарию до окончания прогона
+class LoadSession implements Runnable {
+    private static final Pattern TOKEN = Pattern.compile("\"auth-token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final String BOUNDARY = "load-test-boundary";
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final String login;
+    private final String password;
+    private final String filePrefix;
+    private final LoadMix mix;
+    private final byte[] content;
+    private final long deadline;
+    private final Random random;
+    private final LatencyStats stats = new LatencyStats();
+    private final List<String> files = new ArrayList<>();
+    private String token;
+    private int uploaded;
+
+    LoadSession(HttpClient client, String baseUrl, String run, String login, String password,
+                LoadMix mix, byte[] content, long deadline, long seed) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.login = login;
+        this.password = password;
+        // Файлы прогрева остаются у пользователя: имена разных прогонов не должны совпадать
+        this.filePrefix = run + "-" + login + "-";
+        this.mix = mix;
+        this.content = content;
+        this.deadline = deadline;
+        this.random = new Random(seed);
+    }
+
+    LatencyStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public void run() {
+        login();
+        while (System.nanoTime() < deadline) {
+            String operation = mix.next(random);
+            // Операциям над файлом нужен хотя бы один свой файл
+            if (files.isEmpty() && !operation.equals("login") && !operation.equals("list")) {
+                operation = "upload";
+            }
+            switch (operation) {
+                case "login" -> login();
+                case "upload" -> upload();
+                case "list" -> send("list", get("/list?limit=10"));
+                case "download" -> send("download", get("/file?filename=" + encode(randomFile())));
+                case "rename" -> rename();
+                case "delete" -> delete();
+                default -> throw new IllegalArgumentException("Unknown operation: " + operation);
+            }
+        }
+    }
+
+    private void login() {
+        String body = "{\"login\":\"" + login + "\",\"password\":\"" + password + "\"}";
+        HttpResponse<String> response = send("login", HttpRequest.newBuilder(uri("/login"))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response != null && response.statusCode() == 200) {
+            Matcher matcher = TOKEN.matcher(response.body());
+            if (matcher.find()) {
+                token = matcher.group(1);
+            }
+        }
+    }
+
+    private void upload() {
+        String filename = filePrefix + uploaded++ + ".bin";
+        HttpRequest request = authorized("/file?filename=" + encode(filename))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(filename)))
+                .build();
+        if (send("upload", request)) {
+            files.add(filename);
+        }
+    }
+
+    private void rename() {
+        int index = random.nextInt(files.size());
+        String filename = files.get(index);
+        String renamed = filePrefix + uploaded++ + ".bin";
+        HttpRequest request = authorized("/file?filename=" + encode(filename))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"filename\":\"" + renamed + "\"}"))
+                .build();
+        if (send("rename", request)) {
+            files.set(index, renamed);
+        }
+    }
+
+    private void delete() {
+        int index = random.nextInt(files.size());
+        if (send("delete", authorized("/file?filename=" + encode(files.get(index))).DELETE().build())) {
+            files.remove(index);
+        }
+    }
+
+    private String randomFile() {
+        return files.get(random.nextInt(files.size()));
+    }
+
+    private HttpRequest get(String path) {
+        return authorized(path).GET().build();
+    }
+
+    private HttpRequest.Builder authorized(String path) {
+        return HttpRequest.newBuilder(uri(path))
+                .timeout(TIMEOUT)
+                .header("auth-token", "Bearer " + token);
+    }
+
+    private boolean send(String endpoint, HttpRequest request) {
+        HttpResponse<Void> response = send(endpoint, request, HttpResponse.BodyHandlers.discarding());
+        return response != null && response.statusCode() / 100 == 2;
+    }
+
+    // Время запроса вместе с чтением тела ответа; ошибка ввода-вывода — тоже ошибочный запрос
+    private <T> HttpResponse<T> send(String endpoint, HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        long started = System.nanoTime();
+        try {
+            HttpResponse<T> response = client.send(request, handler);
+            stats.record(endpoint, System.nanoTime() - started, response.statusCode() / 100 == 2);
+            return response;
+        } catch (IOException e) {
+            stats.record(endpoint, System.nanoTime() - started, false);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Load session interrupted", e);
+        }
+    }
+
+    private byte[] multipart(String filename) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 256);
+        String head = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n";
+        body.writeBytes(head.getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+package netology.load;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.netology.entity.User;
+import ru.netology.repository.UserRepository;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Нагрузочный прогон всего приложения: встроенная H2 (режим PostgreSQL, схема от Hibernate),
+ * временный каталог хранилища, по виртуальному потоку на пользователя.
+ * Запуск: mvn test -Dbenchmarks=true -Dtest=LoadTest -Dload.users=64 -Dload.duration-ms=60000
+ * Отчёт пишется в target/load-report.txt (load.report) и подходит для diff между коммитами.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class LoadTest {
+
+    private static final int USERS = Integer.getInteger("load.users", 32);
+    private static final long DURATION_MS = Long.getLong("load.duration-ms", 30_000);
+    private static final long WARMUP_MS = Long.getLong("load.warmup-ms", 5_000);
+    private static final int FILE_SIZE = Integer.getInteger("load.file-size", 64 * 1024);
+    private static final int BCRYPT_COST = Integer.getInteger("load.bcrypt-cost", 10);
+    private static final String MIX = System.getProperty("load.mix",
+            "login:1,upload:2,list:4,download:4,rename:1,delete:1");
+    private static final String REPORT = System.getProperty("load.report", "target/load-report.txt");
+    private static final String PASSWORD = "load-password";
+
+    @Test
+    void mixedLoad_ShouldReportLatencyPercentiles() throws Exception {
+        Path storage = Files.createTempDirectory("load-storage");
+        ConfigurableApplicationContext context = EmbeddedApplication.start("load", storage,
+                "--cloud.auth.bcrypt-cost=" + BCRYPT_COST);
+        try {
+            int port = EmbeddedApplication.port(context);
+            List<String> logins = seedUsers(context);
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(10))
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+            LoadMix mix = new LoadMix(MIX);
+            byte[] content = new byte[FILE_SIZE];
+            new Random(42).nextBytes(content);
+
+            // Прогрев JIT и пулов соединений; его результаты не попадают в отчёт
+            run(client, "http://localhost:" + port, "warmup", logins, mix, content, WARMUP_MS);
+            LatencyStats stats = run(client, "http://localhost:" + port, "run", logins, mix, content, DURATION_MS);
+
+            String header = String.format("users=%d duration=%ds file-size=%d bcrypt-cost=%d mix=%s",
+                    USERS, DURATION_MS / 1000, FILE_SIZE, BCRYPT_COST, mix);
+            String report = stats.report(header, DURATION_MS / 1000.0);
+            System.out.print(report);
+            Path reportPath = Paths.get(REPORT);
+            if (reportPath.getParent() != null) {
+                Files.createDirectories(reportPath.getParent());
+            }
+            Files.writeString(reportPath, report);
+
+            assertTrue(stats.totalRequests() > 0);
+        } finally {
+            context.close();
+            EmbeddedApplication.deleteRecursively(storage);
+        }
+    }
+
+    // Пользователи создаются напрямую: /register закрыт авторизацией, а хеш достаточно посчитать один раз
+    private List<String> seedUsers(ConfigurableApplicationContext context) {
+        String hash = context.getBean(PasswordEncoder.class).encode(PASSWORD);
+        List<User> users = new ArrayList<>();
+        List<String> logins = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            String login = "load-user-" + i;
+            users.add(new User(login, hash));
+            logins.add(login);
+        }
+        context.getBean(UserRepository.class).saveAll(users);
+        return logins;
+    }
+
+    private LatencyStats run(HttpClient client, String baseUrl, String run, List<String> logins, LoadMix mix,
+                             byte[] content, long durationMs) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        List<LoadSession> sessions = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < logins.size(); i++) {
+                LoadSession session = new LoadSession(client, baseUrl, run, logins.get(i), PASSWORD,
+                        mix, content, deadline, i);
+                sessions.add(session);
+                futures.add(executor.submit(session));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        LatencyStats total = new LatencyStats();
+        for (LoadSession session : sessions) {
+            total.merge(session.getStats());
+        }
+        return total;
+    }
+}
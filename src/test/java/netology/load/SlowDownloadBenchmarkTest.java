@@ -0,0 +1,212 @@
+package netology.load;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.netology.entity.User;
+import ru.netology.repository.UserRepository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Много одновременных медленных скачиваний: пул потоков Tomcat (по умолчанию) против профиля virtual.
+ * Клиенты — виртуальные потоки с маленьким буфером приёма, читают ответ с ограниченной скоростью,
+ * поэтому сервер держит поток на каждую незавершённую передачу.
+ * Запуск: mvn test -Dbenchmarks=true -Dtest=SlowDownloadBenchmarkTest -Dslow.downloads=10000
+ * Нужен ulimit -n больше трёх дескрипторов на скачивание (сокет клиента, сокет сервера, файл).
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class SlowDownloadBenchmarkTest {
+
+    private static final int DOWNLOADS = Integer.getInteger("slow.downloads", 10_000);
+    private static final int FILE_SIZE = Integer.getInteger("slow.file-size", 1024 * 1024);
+    private static final int BYTES_PER_SECOND = Integer.getInteger("slow.bytes-per-second", 256 * 1024);
+    private static final long RAMP_MS = Long.getLong("slow.ramp-ms", 2_000);
+    private static final int CHUNK = 16 * 1024;
+    private static final int RECEIVE_BUFFER = 8 * 1024;
+    private static final String LOGIN = "slow-user";
+    private static final String PASSWORD = "slow-password";
+    private static final String FILENAME = "slow.bin";
+    private static final Pattern TOKEN = Pattern.compile("\"auth-token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final String BOUNDARY = "slow-boundary";
+
+    @Test
+    void slowDownloads_ShouldCompareThreadPoolWithVirtualThreads() throws Exception {
+        Result platform = run("platform");
+        Result virtual = run("virtual", "--spring.profiles.active=virtual");
+
+        System.out.print(platform.report());
+        System.out.print(virtual.report());
+
+        assertEquals(DOWNLOADS, virtual.completed, "Every download should finish on virtual threads");
+    }
+
+    private Result run(String mode, String... extraArgs) throws Exception {
+        Path storage = Files.createTempDirectory("slow-storage");
+        List<String> args = new ArrayList<>(List.of(
+                "--cloud.auth.bcrypt-cost=4",
+                "--logging.level.ru.netology=WARN",
+                // Одинаковый лимит соединений: различается только модель потоков
+                "--server.tomcat.max-connections=" + (DOWNLOADS + 1000),
+                "--server.tomcat.accept-count=1000"));
+        args.addAll(List.of(extraArgs));
+        ConfigurableApplicationContext context = EmbeddedApplication.start("slow-" + mode, storage,
+                args.toArray(String[]::new));
+        try {
+            int port = EmbeddedApplication.port(context);
+            String token = seed(context, port);
+            return download(mode, port, token);
+        } finally {
+            context.close();
+            EmbeddedApplication.deleteRecursively(storage);
+        }
+    }
+
+    private String seed(ConfigurableApplicationContext context, int port) throws Exception {
+        context.getBean(UserRepository.class)
+                .save(new User(LOGIN, context.getBean(PasswordEncoder.class).encode(PASSWORD)));
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String baseUrl = "http://localhost:" + port;
+
+        HttpResponse<String> login = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"login\":\"" + LOGIN + "\",\"password\":\"" + PASSWORD + "\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = TOKEN.matcher(login.body());
+        assertTrue(matcher.find(), login.body());
+        String token = matcher.group(1);
+
+        byte[] content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + FILENAME + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        HttpResponse<String> upload = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/file?filename=" + FILENAME))
+                .header("auth-token", "Bearer " + token)
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, upload.statusCode(), upload.body());
+        return token;
+    }
+
+    private Result download(String mode, int port, String token) throws Exception {
+        byte[] request = ("GET /file?filename=" + FILENAME + " HTTP/1.1\r\n"
+                + "Host: localhost:" + port + "\r\n"
+                + "auth-token: Bearer " + token + "\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        long[] firstByteNanos = new long[DOWNLOADS];
+        long[] totalNanos = new long[DOWNLOADS];
+        boolean[] ok = new boolean[DOWNLOADS];
+        AtomicInteger completed = new AtomicInteger();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        long started = System.nanoTime();
+        long rampNanos = TimeUnit.MILLISECONDS.toNanos(RAMP_MS);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < DOWNLOADS; i++) {
+                int client = i;
+                long startAt = started + rampNanos * i / DOWNLOADS;
+                executor.submit(() -> {
+                    sleepUntil(startAt);
+                    long begin = System.nanoTime();
+                    try (Socket socket = new Socket()) {
+                        socket.setReceiveBufferSize(RECEIVE_BUFFER);
+                        socket.setSoTimeout((int) TimeUnit.MINUTES.toMillis(10));
+                        socket.connect(new InetSocketAddress("localhost", port), 60_000);
+                        OutputStream out = socket.getOutputStream();
+                        out.write(request);
+                        out.flush();
+                        long received = readSlowly(socket.getInputStream(), begin, firstByteNanos, client);
+                        ok[client] = received > FILE_SIZE;
+                    } catch (Exception e) {
+                        ok[client] = false;
+                    }
+                    totalNanos[client] = System.nanoTime() - begin;
+                    if (ok[client]) {
+                        completed.incrementAndGet();
+                    }
+                    return null;
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        LatencyStats stats = new LatencyStats();
+        for (int i = 0; i < DOWNLOADS; i++) {
+            stats.record("first-byte", firstByteNanos[i], ok[i]);
+            stats.record("download", totalNanos[i], ok[i]);
+        }
+        return new Result(mode, stats, completed.get(), threads.getPeakThreadCount(), seconds);
+    }
+
+    // Ответ (заголовки и тело) читается кусками CHUNK со скоростью BYTES_PER_SECOND; возвращает число байт
+    private static long readSlowly(InputStream in, long begin, long[] firstByteNanos, int client) throws Exception {
+        byte[] buffer = new byte[CHUNK];
+        long received = 0;
+        long chunkNanos = TimeUnit.SECONDS.toNanos(1) * CHUNK / BYTES_PER_SECOND;
+        long next = 0;
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            if (received == 0) {
+                firstByteNanos[client] = System.nanoTime() - begin;
+                next = System.nanoTime();
+            }
+            received += read;
+            next += chunkNanos * read / CHUNK;
+            sleepUntil(next);
+        }
+        return received;
+    }
+
+    private static void sleepUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private record Result(String mode, LatencyStats stats, int completed, int peakPlatformThreads, double seconds) {
+
+        private String report() {
+            String header = String.format("mode=%s downloads=%d completed=%d file-size=%d bytes-per-second=%d "
+                            + "peak-platform-threads=%d wall=%.1fs",
+                    mode, DOWNLOADS, completed, FILE_SIZE, BYTES_PER_SECOND, peakPlatformThreads, seconds);
+            return stats.report(header, seconds);
+        }
+    }
+}
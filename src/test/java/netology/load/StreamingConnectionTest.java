@@ -0,0 +1,134 @@
+package netology.load;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.netology.entity.User;
+import ru.netology.repository.UserRepository;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Передача файла не держит соединение с БД: медленных клиентов больше, чем соединений в пуле
+class StreamingConnectionTest {
+
+    private static final int POOL_SIZE = 2;
+    private static final int CLIENTS = 6;
+    private static final int FILE_SIZE = 8 * 1024 * 1024;
+    private static final String LOGIN = "stream-user";
+    private static final String PASSWORD = "stream-password";
+    private static final String FILENAME = "stream.bin";
+    private static final String BOUNDARY = "stream-boundary";
+    private static final Pattern TOKEN = Pattern.compile("\"auth-token\"\\s*:\\s*\"([^\"]+)\"");
+
+    @Test
+    void stalledDownloads_ShouldNotHoldDatabaseConnections() throws Exception {
+        Path storage = Files.createTempDirectory("stream-storage");
+        ConfigurableApplicationContext context = EmbeddedApplication.start("stream", storage,
+                "--cloud.auth.bcrypt-cost=4",
+                "--logging.level.ru.netology=WARN",
+                "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                "--spring.datasource.hikari.connection-timeout=3000",
+                // Файл больше буферов сокетов, иначе сервер допишет ответ, не дожидаясь клиента
+                "--spring.servlet.multipart.max-file-size=" + 2 * FILE_SIZE,
+                "--spring.servlet.multipart.max-request-size=" + 2 * FILE_SIZE);
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            int port = EmbeddedApplication.port(context);
+            String token = seed(context, port);
+            HikariPoolMXBean pool = context.getBean(DataSource.class).unwrap(HikariDataSource.class).getHikariPoolMXBean();
+
+            // Каждый клиент читает начало ответа и останавливается: сервер блокируется на записи в сокет
+            for (int i = 0; i < CLIENTS; i++) {
+                Socket socket = new Socket();
+                sockets.add(socket);
+                socket.setReceiveBufferSize(8 * 1024);
+                socket.setSoTimeout(30_000);
+                socket.connect(new InetSocketAddress("localhost", port), 10_000);
+                OutputStream out = socket.getOutputStream();
+                out.write(("GET /file?filename=" + FILENAME + " HTTP/1.1\r\n"
+                        + "Host: localhost:" + port + "\r\n"
+                        + "auth-token: Bearer " + token + "\r\n"
+                        + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                String head = new String(socket.getInputStream().readNBytes(12), StandardCharsets.US_ASCII);
+                assertEquals("HTTP/1.1 200", head, "Download " + i + " should start while earlier ones are stalled");
+            }
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (pool.getActiveConnections() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(0, pool.getActiveConnections(), "Stalled downloads should not hold pool connections");
+
+            for (Socket socket : sockets) {
+                assertTrue(drain(socket.getInputStream()) > FILE_SIZE, "Download should complete after the stall");
+            }
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            context.close();
+            EmbeddedApplication.deleteRecursively(storage);
+        }
+    }
+
+    private static String seed(ConfigurableApplicationContext context, int port) throws Exception {
+        context.getBean(UserRepository.class)
+                .save(new User(LOGIN, context.getBean(PasswordEncoder.class).encode(PASSWORD)));
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String baseUrl = "http://localhost:" + port;
+
+        HttpResponse<String> login = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"login\":\"" + LOGIN + "\",\"password\":\"" + PASSWORD + "\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = TOKEN.matcher(login.body());
+        assertTrue(matcher.find(), login.body());
+        String token = matcher.group(1);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + FILENAME + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(new byte[FILE_SIZE]);
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        HttpResponse<String> upload = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/file?filename=" + FILENAME))
+                .header("auth-token", "Bearer " + token)
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        assertEquals(200, upload.statusCode(), upload.body());
+        return token;
+    }
+
+    private static long drain(InputStream in) throws Exception {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,118 @@
+package netology.replica;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import ru.netology.cluster.ClusterDataSource;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.replica.ReadRouter;
+import ru.netology.service.FileStorageService;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadRouterTest {
+
+    private final ClusterEventBus eventBus = new ClusterEventBus(new ClusterDataSource(null, false, 1, 1000), "node");
+    private final RecordingTransactionManager transactions = new RecordingTransactionManager();
+
+    @Test
+    void withoutReplica_ShouldQueryWithoutTransaction() {
+        ReadRouter router = router("", 5000);
+
+        assertEquals("files", router.read(7, () -> "files"));
+        assertEquals(Optional.of("user"), router.lookup(() -> Optional.of("user")));
+
+        assertTrue(transactions.begun.isEmpty());
+    }
+
+    @Test
+    void read_ShouldUseReadOnlyTransactionOutsideReadYourWritesWindow() throws InterruptedException {
+        ReadRouter router = router("jdbc:postgresql://replica/cloud_db", 100);
+
+        router.read(7, () -> "files");
+        assertEquals(1, transactions.begun.size());
+        assertTrue(transactions.begun.get(0).isReadOnly());
+
+        // Изменение файла пользователя 7: его чтения — в основную базу, чтения других — по-прежнему в реплику
+        eventBus.publish(FileStorageService.FILE_EVENTS_TOPIC, "7/report.txt");
+        assertEquals("files", router.read(7, () -> "files"));
+        assertEquals(1, transactions.begun.size());
+        router.read(8, () -> "files");
+        assertEquals(2, transactions.begun.size());
+
+        Thread.sleep(150);
+        router.read(7, () -> "files");
+        assertEquals(3, transactions.begun.size());
+    }
+
+    @Test
+    void clusterResync_ShouldSendEveryoneToPrimaryForWindow() {
+        ReadRouter router = router("jdbc:postgresql://replica/cloud_db", 60_000);
+
+        eventBus.publish(FileStorageService.FILE_EVENTS_TOPIC, ClusterEventBus.ALL);
+
+        assertTrue(router.isRecentWriter(1));
+        assertTrue(router.isRecentWriter(2));
+        router.read(3, () -> "files");
+        assertTrue(transactions.begun.isEmpty());
+    }
+
+    @Test
+    void lookup_ShouldRetryOnPrimaryWhenReplicaHasNoRow() {
+        ReadRouter router = router("jdbc:postgresql://replica/cloud_db", 5000);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(Optional.of("user"), router.lookup(() -> Optional.of("user")));
+        assertEquals(1, transactions.begun.size());
+
+        // Первый вызов — в read-only транзакции (реплика), второй — без неё (основная база)
+        Optional<String> registered = router.lookup(() -> calls.incrementAndGet() == 1 ? Optional.empty() : Optional.of("new"));
+        assertEquals(Optional.of("new"), registered);
+        assertEquals(2, calls.get());
+        assertEquals(2, transactions.begun.size());
+    }
+
+    private ReadRouter router(String replicaUrl, long readYourWritesMs) {
+        ReadRouter router = new ReadRouter(eventBus, entityManagerFactory(), transactions, replicaUrl, readYourWritesMs);
+        router.start();
+        return router;
+    }
+
+    // Только ключ ресурса транзакции: EntityManager запроса в тесте не привязан
+    private static EntityManagerFactory entityManagerFactory() {
+        return (EntityManagerFactory) Proxy.newProxyInstance(EntityManagerFactory.class.getClassLoader(),
+                new Class<?>[]{EntityManagerFactory.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+
+    private static final class RecordingTransactionManager implements PlatformTransactionManager {
+        private final List<TransactionDefinition> begun = new ArrayList<>();
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            begun.add(definition);
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package netology.replica;
+
+import netology.load.EmbeddedApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.netology.entity.User;
+import ru.netology.repository.UserRepository;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Приложение на двух базах H2: основной и «реплике». Реплика догоняет основную только по replicate(),
+ * поэтому по содержимому ответа видно, из какой базы прочитан запрос.
+ */
+class ReplicaRoutingTest {
+    private static final String PRIMARY = "routing-primary";
+    private static final String REPLICA = "routing-replica";
+    private static final long WINDOW_MS = 300;
+    private static final Pattern TOKEN = Pattern.compile("\"auth-token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final String BOUNDARY = "routing-boundary";
+
+    private static Path storage;
+    private static ConfigurableApplicationContext context;
+    private static HttpClient client;
+    private static String baseUrl;
+
+    @BeforeAll
+    static void startApplication() throws Exception {
+        storage = Files.createTempDirectory("routing-storage");
+        context = EmbeddedApplication.start(PRIMARY, storage,
+                "--cloud.replica.url=" + EmbeddedApplication.url(REPLICA),
+                "--cloud.replica.read-your-writes-ms=" + WINDOW_MS,
+                "--cloud.auth.bcrypt-cost=4");
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        baseUrl = "http://localhost:" + EmbeddedApplication.port(context);
+        replicate();
+    }
+
+    @AfterAll
+    static void stopApplication() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        EmbeddedApplication.deleteRecursively(storage);
+    }
+
+    @Test
+    void newUser_ShouldAuthenticateBeforeReplicaCatchesUp() throws Exception {
+        createUser("fresh-user");
+
+        String token = login("fresh-user");
+
+        assertEquals(200, send(get("/list", token)).statusCode());
+    }
+
+    @Test
+    void reads_ShouldComeFromReplicaOutsideReadYourWritesWindow() throws Exception {
+        createUser("routed-user");
+        replicate();
+        String token = login("routed-user");
+
+        HttpResponse<String> upload = send(authorized("/file?filename=routed.txt", token)
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofString(multipart("routed.txt", "routed content")))
+                .build());
+        assertEquals(200, upload.statusCode(), upload.body());
+
+        // Сразу после загрузки — из основной базы
+        assertTrue(send(get("/list", token)).body().contains("routed.txt"));
+        assertEquals(200, send(get("/file?filename=routed.txt", token)).statusCode());
+
+        // Окно прошло, реплика ещё не догнала: файла в ней нет
+        Thread.sleep(WINDOW_MS + 200);
+        assertFalse(send(get("/list", token)).body().contains("routed.txt"));
+        assertNotEquals(200, send(get("/file?filename=routed.txt", token)).statusCode());
+
+        replicate();
+        assertTrue(send(get("/list", token)).body().contains("routed.txt"));
+        HttpResponse<String> download = send(get("/file?filename=routed.txt", token));
+        assertEquals(200, download.statusCode());
+        assertEquals("routed content", download.body());
+    }
+
+    // Копия основной базы в реплику целиком: имитация репликации в выбранный момент
+    private static void replicate() throws Exception {
+        try (Connection primary = DriverManager.getConnection(EmbeddedApplication.url(PRIMARY), "sa", "");
+             Connection replica = DriverManager.getConnection(EmbeddedApplication.url(REPLICA), "sa", "");
+             Statement source = primary.createStatement();
+             Statement target = replica.createStatement()) {
+            List<String> script = new ArrayList<>();
+            try (ResultSet resultSet = source.executeQuery("SCRIPT")) {
+                while (resultSet.next()) {
+                    script.add(resultSet.getString(1));
+                }
+            }
+            target.execute("DROP ALL OBJECTS");
+            for (String statement : script) {
+                target.execute(statement);
+            }
+        }
+    }
+
+    private static void createUser(String login) {
+        context.getBean(UserRepository.class)
+                .save(new User(login, context.getBean(PasswordEncoder.class).encode("password")));
+    }
+
+    private static String login(String login) throws Exception {
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"login\":\"" + login + "\",\"password\":\"password\"}"))
+                .build());
+        Matcher matcher = TOKEN.matcher(response.body());
+        assertTrue(matcher.find(), response.body());
+        return matcher.group(1);
+    }
+
+    private static HttpRequest get(String path, String token) {
+        return authorized(path, token).GET().build();
+    }
+
+    private static HttpRequest.Builder authorized(String path, String token) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).header("auth-token", "Bearer " + token);
+    }
+
+    private static HttpResponse<String> send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String multipart(String filename, String content) {
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + content
+                + "\r\n--" + BOUNDARY + "--\r\n";
+    }
+}
@@ -0,0 +1,86 @@
+package netology.repository;
+
+import netology.load.EmbeddedApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.netology.entity.FileAccessStats;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.repository.FileAccessStatsRepository;
+import ru.netology.repository.FileRepository;
+import ru.netology.repository.UserRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Пакетная запись счётчиков (UPDATE, затем INSERT ... ON CONFLICT DO NOTHING) на настоящей БД (H2 в режиме PostgreSQL)
+class FileAccessStatsRepositoryTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    private static Path storage;
+    private static ConfigurableApplicationContext context;
+    private static FileAccessStatsRepository statsRepository;
+    private static FileRepository fileRepository;
+    private static User user;
+
+    @BeforeAll
+    static void startApplication() throws Exception {
+        storage = Files.createTempDirectory("access-stats-storage");
+        // Свой поток сброса не нужен: пачки пишет тест
+        context = EmbeddedApplication.start("accessstats", storage, "--cloud.access-stats.enabled=false");
+        statsRepository = context.getBean(FileAccessStatsRepository.class);
+        fileRepository = context.getBean(FileRepository.class);
+        user = context.getBean(UserRepository.class).save(new User("stats-user", "unused"));
+    }
+
+    @AfterAll
+    static void stopApplication() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        EmbeddedApplication.deleteRecursively(storage);
+    }
+
+    @Test
+    void batch_ShouldInsertMissingRowsAndAddToExisting() {
+        Integer existing = file("existing.txt");
+        Integer fresh = file("fresh.txt");
+        statsRepository.addAccesses(List.of(delta(existing, 2, BASE)));
+
+        statsRepository.addAccesses(List.of(delta(existing, 3, BASE.plusHours(1)), delta(fresh, 1, BASE)));
+
+        FileAccessStats updated = statsRepository.findById(existing).orElseThrow();
+        assertEquals(5L, updated.getDownloadCount().longValue());
+        assertEquals(BASE.plusHours(1), updated.getLastAccess());
+        FileAccessStats inserted = statsRepository.findById(fresh).orElseThrow();
+        assertEquals(1L, inserted.getDownloadCount().longValue());
+        assertEquals(user.getId(), inserted.getUserId());
+    }
+
+    @Test
+    void olderDelta_ShouldNotMoveLastAccessBack() {
+        Integer id = file("greatest.txt");
+        statsRepository.addAccesses(List.of(delta(id, 1, BASE.plusDays(1))));
+
+        // Пачка другого узла с более ранним временем: прибавляется счёт, время остаётся позднее
+        statsRepository.addAccesses(List.of(delta(id, 4, BASE)));
+
+        FileAccessStats stats = statsRepository.findById(id).orElseThrow();
+        assertEquals(5L, stats.getDownloadCount().longValue());
+        assertEquals(BASE.plusDays(1), stats.getLastAccess());
+    }
+
+    private static Integer file(String filename) {
+        return fileRepository.save(new FileEntity(filename, 1L, "stats/" + filename, user)).getId();
+    }
+
+    private static FileAccessStats delta(Integer fileId, long downloads, LocalDateTime lastAccess) {
+        return new FileAccessStats(fileId, user.getId(), downloads, lastAccess);
+    }
+}
@@ -0,0 +1,170 @@
+package netology.repository;
+
+import netology.load.EmbeddedApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.netology.dto.FileListQuery;
+import ru.netology.entity.FileAccessStats;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.repository.FileAccessStatsRepository;
+import ru.netology.repository.FileRepository;
+import ru.netology.repository.FileSpecifications;
+import ru.netology.repository.UserRepository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Условия и сортировки /list на настоящей БД (H2 в режиме PostgreSQL)
+class FileSpecificationsTest {
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    private static Path storage;
+    private static ConfigurableApplicationContext context;
+    private static FileRepository fileRepository;
+    private static User user;
+    private static final Map<String, FileEntity> files = new HashMap<>();
+
+    @BeforeAll
+    static void startApplication() throws Exception {
+        storage = Files.createTempDirectory("specifications-storage");
+        context = EmbeddedApplication.start("specifications", storage);
+        fileRepository = context.getBean(FileRepository.class);
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        user = userRepository.save(new User("spec-user", "unused"));
+        User other = userRepository.save(new User("spec-other", "unused"));
+
+        save(user, "Report_2024.PDF", 300, 0);
+        save(user, "report-final.pdf", 100, 1);
+        save(user, "notes.txt", 200, 2);
+        save(user, "100%.txt", 50, 3);
+        save(user, "a_b.txt", 200, 4);
+        save(other, "report-other.pdf", 100, 0);
+
+        FileAccessStatsRepository stats = context.getBean(FileAccessStatsRepository.class);
+        stats.save(new FileAccessStats(files.get("notes.txt").getId(), user.getId(), 3L, LocalDateTime.now()));
+        stats.save(new FileAccessStats(files.get("report-final.pdf").getId(), user.getId(), 1L,
+                LocalDateTime.now().minusDays(10)));
+    }
+
+    @AfterAll
+    static void stopApplication() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        EmbeddedApplication.deleteRecursively(storage);
+    }
+
+    @Test
+    void search_ShouldIgnoreCaseAndOtherUsers() {
+        FileListQuery query = new FileListQuery();
+        query.setSearch("REPORT");
+
+        assertEquals(Set.of("Report_2024.PDF", "report-final.pdf"), Set.copyOf(find(query)));
+    }
+
+    @Test
+    void search_ShouldTreatLikeWildcardsLiterally() {
+        FileListQuery percent = new FileListQuery();
+        percent.setSearch("%");
+        FileListQuery underscore = new FileListQuery();
+        underscore.setSearch("_");
+
+        assertEquals(List.of("100%.txt"), find(percent));
+        assertEquals(Set.of("Report_2024.PDF", "a_b.txt"), Set.copyOf(find(underscore)));
+    }
+
+    @Test
+    void prefix_ShouldMatchOnlyNameStart() {
+        FileListQuery query = new FileListQuery();
+        query.setPrefix("rep");
+        FileListQuery middle = new FileListQuery();
+        middle.setPrefix("eport");
+
+        assertEquals(Set.of("Report_2024.PDF", "report-final.pdf"), Set.copyOf(find(query)));
+        assertTrue(find(middle).isEmpty());
+    }
+
+    @Test
+    void sizeAndDateRanges_ShouldBeInclusiveExceptUpperDate() {
+        FileListQuery size = new FileListQuery();
+        size.setMinSize(100L);
+        size.setMaxSize(200L);
+        FileListQuery dates = new FileListQuery();
+        dates.setFrom(BASE.plusDays(1));
+        dates.setTo(BASE.plusDays(3));
+
+        assertEquals(Set.of("report-final.pdf", "notes.txt", "a_b.txt"), Set.copyOf(find(size)));
+        assertEquals(Set.of("report-final.pdf", "notes.txt"), Set.copyOf(find(dates)));
+    }
+
+    @Test
+    void notAccessedSince_ShouldKeepNeverAndLongAgoDownloadedFiles() {
+        FileListQuery query = new FileListQuery();
+        query.setNotAccessedSince(LocalDateTime.now().minusDays(1));
+
+        assertEquals(Set.of("Report_2024.PDF", "report-final.pdf", "100%.txt", "a_b.txt"), Set.copyOf(find(query)));
+    }
+
+    @Test
+    void notAccessedSince_ShouldExcludeUnflushedDownloads() {
+        FileListQuery query = new FileListQuery();
+        query.setNotAccessedSince(LocalDateTime.now().minusDays(1));
+        // Скачан на этом узле, в file_access_stats ещё старое время
+        Set<Integer> recent = Set.of(files.get("report-final.pdf").getId());
+
+        assertEquals(Set.of("Report_2024.PDF", "100%.txt", "a_b.txt"), Set.copyOf(find(query, recent)));
+    }
+
+    @Test
+    void sorts_ShouldOrderByFieldThenId() {
+        // Имена — по кодовым точкам: цифры и заглавные раньше строчных
+        assertEquals(List.of("100%.txt", "Report_2024.PDF", "a_b.txt", "notes.txt", "report-final.pdf"),
+                find(sorted(FileListQuery.SORT_NAME, null)));
+        // Равные размеры — по id в том же направлении
+        assertEquals(List.of("Report_2024.PDF", "a_b.txt", "notes.txt", "report-final.pdf", "100%.txt"),
+                find(sorted(FileListQuery.SORT_SIZE, null)));
+        assertEquals(List.of("Report_2024.PDF", "report-final.pdf", "notes.txt", "100%.txt", "a_b.txt"),
+                find(sorted(FileListQuery.SORT_DATE, "asc")));
+    }
+
+    @Test
+    void unsupportedSortOrOrder_ShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> FileSpecifications.sortFor(sorted("owner", null)));
+        assertThrows(IllegalArgumentException.class, () -> FileSpecifications.sortFor(sorted(FileListQuery.SORT_NAME, "up")));
+    }
+
+    private static void save(User owner, String filename, long size, int day) {
+        FileEntity file = fileRepository.save(new FileEntity(filename, size, "spec/" + filename, owner));
+        // Дата создания ставится при вставке; для диапазонов задаём свою
+        file.setCreatedDate(BASE.plusDays(day));
+        files.put(filename, fileRepository.save(file));
+    }
+
+    private static FileListQuery sorted(String sort, String order) {
+        FileListQuery query = new FileListQuery();
+        query.setSort(sort);
+        query.setOrder(order);
+        return query;
+    }
+
+    private static List<String> find(FileListQuery query) {
+        return find(query, Set.of());
+    }
+
+    private static List<String> find(FileListQuery query, Set<Integer> recentlyAccessedIds) {
+        return fileRepository.findBy(FileSpecifications.forQuery(user, query, recentlyAccessedIds),
+                        q -> q.sortBy(FileSpecifications.sortFor(query)).all())
+                .stream().map(FileEntity::getFilename).collect(Collectors.toList());
+    }
+}
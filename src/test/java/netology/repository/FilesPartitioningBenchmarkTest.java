@@ -0,0 +1,329 @@
+package netology.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.postgresql.ds.PGSimpleDataSource;
+import ru.netology.repository.FilesPartitionProgressRepository;
+import ru.netology.service.FilesPartitionMigrator;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/*
+ * Секционирование files (V11) на сгенерированных данных. База ОЧИЩАЕТСЯ — только отдельная пустая БД:
+ * Запуск: mvn test -Dbenchmarks=true -Dtest=FilesPartitioningBenchmarkTest
+ *         -Dpartition.url=jdbc:postgresql://localhost:5432/partition_bench -Dpartition.user=postgres
+ *         -Dpartition.password=postgresql -Dpartition.rows=5000000 -Dpartition.users=10000
+ *
+ * Схема до V10, данные, замер запросов пользователя; затем V11 и онлайн-перенос FilesPartitionMigrator
+ * под параллельной записью, сверка старой и новой таблиц, повторный замер и проверка, что план каждого
+ * запроса из FileRepository с пользователем обращается ровно к одной секции.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class FilesPartitioningBenchmarkTest {
+
+    private static final String URL = System.getProperty("partition.url");
+    private static final String USER = System.getProperty("partition.user", "postgres");
+    private static final String PASSWORD = System.getProperty("partition.password", "");
+    private static final int ROWS = Integer.getInteger("partition.rows", 5_000_000);
+    private static final int USERS = Integer.getInteger("partition.users", 10_000);
+    private static final int QUERIES = Integer.getInteger("partition.queries", 2_000);
+    private static final int SAMPLES = 1_000;
+    private static final int WRITER_BATCHES = 10;
+    private static final Pattern PARTITION = Pattern.compile("\\bfiles_p\\d{2}\\b");
+
+    // SQL-эквиваленты запросов FileRepository и обновлений Hibernate по сущности (с @PartitionKey)
+    private static final Map<String, String> QUERIES_BY_NAME = new LinkedHashMap<>();
+
+    static {
+        QUERIES_BY_NAME.put("findByUserAndFilename",
+                "SELECT * FROM files WHERE user_id = ? AND filename = ?");
+        QUERIES_BY_NAME.put("list by created_date",
+                "SELECT * FROM files WHERE user_id = ? ORDER BY created_date DESC, id DESC LIMIT 20");
+        QUERIES_BY_NAME.put("list by name prefix",
+                "SELECT * FROM files WHERE user_id = ? AND lower(filename) LIKE ? ORDER BY filename, id LIMIT 20");
+        QUERIES_BY_NAME.put("folder root",
+                "SELECT * FROM files WHERE user_id = ? AND folder_id IS NULL ORDER BY filename");
+        QUERIES_BY_NAME.put("findFilenames",
+                "SELECT filename FROM files WHERE user_id = ? AND filename IN (?, 'missing-1', 'missing-2')");
+        QUERIES_BY_NAME.put("existsByUserIdAndPath",
+                "SELECT EXISTS (SELECT 1 FROM files WHERE user_id = ? AND file_path COLLATE \"C\" = ?)");
+        QUERIES_BY_NAME.put("findDownloadTarget",
+                "SELECT id, filename, file_path, size, version, quarantined FROM files WHERE user_id = ? AND id = ?");
+        QUERIES_BY_NAME.put("entity update",
+                "UPDATE files SET version = version WHERE user_id = ? AND id = ?");
+        QUERIES_BY_NAME.put("deleteByIdAndFilePath",
+                "DELETE FROM files WHERE user_id = ? AND id = ? AND file_path = 'missing'");
+    }
+
+    @Test
+    void partitionedFiles_ShouldPruneEveryUserQuery() throws Exception {
+        assumeTrue(URL != null, "Set -Dpartition.url to an empty PostgreSQL database");
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(URL);
+        dataSource.setUser(USER);
+        dataSource.setPassword(PASSWORD);
+
+        Flyway flyway = Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration")
+                .cleanDisabled(false)
+                .target("10")
+                .load();
+        flyway.clean();
+        flyway.migrate();
+
+        try (Connection connection = dataSource.getConnection()) {
+            generate(connection);
+            List<Sample> samples = sample(connection);
+            Map<String, long[]> before = measure(connection, samples);
+
+            Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+            assertTrue(exists(connection, "files_partitioned"), "Large table should take the online path");
+
+            // Запись во время переноса: новые строки, изменения и удаления должны попасть в новую таблицу.
+            // Писатель стартует после первой пачки и дожидается к WRITER_BATCHES-й, то есть до переключения
+            AtomicReference<Throwable> writerFailure = new AtomicReference<>();
+            Thread writer = Thread.ofPlatform().unstarted(() -> {
+                try {
+                    write(dataSource, samples);
+                } catch (Throwable e) {
+                    writerFailure.set(e);
+                }
+            });
+            AtomicInteger batches = new AtomicInteger();
+            FilesPartitionMigrator migrator = new FilesPartitionMigrator(dataSource, stateRepository(() -> {
+                int batch = batches.incrementAndGet();
+                if (batch == 1) {
+                    writer.start();
+                } else if (batch == WRITER_BATCHES) {
+                    writer.join();
+                }
+            }), 10_000, 0);
+            long started = System.nanoTime();
+            assertTrue(migrator.run());
+            System.out.printf("Online copy of %d rows: %.1f s%n", ROWS, (System.nanoTime() - started) / 1e9);
+            assertTrue(batches.get() >= WRITER_BATCHES, "Too few rows to overlap writes with the copy");
+            assertNull(writerFailure.get());
+
+            assertEquals(0, count(connection, "SELECT * FROM files_unpartitioned EXCEPT SELECT * FROM files"));
+            assertEquals(0, count(connection, "SELECT * FROM files EXCEPT SELECT * FROM files_unpartitioned"));
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE files");
+            }
+            Map<String, long[]> after = measure(connection, samples);
+            report(before, after);
+
+            for (Map.Entry<String, String> query : QUERIES_BY_NAME.entrySet()) {
+                Set<String> partitions = partitionsInPlan(connection, query.getValue(), samples.get(0));
+                assertEquals(1, partitions.size(), query.getKey() + " reads partitions " + partitions);
+            }
+        }
+    }
+
+    private void generate(Connection connection) throws SQLException {
+        long started = System.nanoTime();
+        try (PreparedStatement users = connection.prepareStatement(
+                "INSERT INTO users (login, password) SELECT 'bench-' || g, 'x' FROM generate_series(1, ?) g")) {
+            users.setInt(1, USERS);
+            users.execute();
+        }
+        long firstUser;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT min(id) FROM users WHERE login LIKE 'bench-%'")) {
+            resultSet.next();
+            firstUser = resultSet.getLong(1);
+        }
+        try (PreparedStatement files = connection.prepareStatement(
+                "INSERT INTO files (filename, file_path, size, user_id, created_date, volume) " +
+                "SELECT 'file-' || g || '.bin', '/data/' || u || '/file-' || g || '.bin', g % 1000000, u, " +
+                "       now() - make_interval(secs => g), '/data' " +
+                "FROM (SELECT g, ? + g % ? AS u FROM generate_series(1, ?) g) s")) {
+            files.setLong(1, firstUser);
+            files.setInt(2, USERS);
+            files.setInt(3, ROWS);
+            files.execute();
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE files");
+        }
+        System.out.printf("Generated %d files for %d users in %.1f s%n", ROWS, USERS, (System.nanoTime() - started) / 1e9);
+    }
+
+    private List<Sample> sample(Connection connection) throws SQLException {
+        List<Sample> samples = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT id, user_id, filename, file_path FROM files ORDER BY random() LIMIT ?")) {
+            statement.setInt(1, SAMPLES);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    samples.add(new Sample(resultSet.getLong(1), resultSet.getLong(2),
+                            resultSet.getString(3), resultSet.getString(4)));
+                }
+            }
+        }
+        return samples;
+    }
+
+    // Задержки по запросам в наносекундах, отсортированные
+    private Map<String, long[]> measure(Connection connection, List<Sample> samples) throws SQLException {
+        Map<String, long[]> result = new LinkedHashMap<>();
+        Random random = new Random(42);
+        for (Map.Entry<String, String> query : QUERIES_BY_NAME.entrySet()) {
+            long[] nanos = new long[QUERIES];
+            try (PreparedStatement statement = connection.prepareStatement(query.getValue())) {
+                for (int i = 0; i < QUERIES; i++) {
+                    bind(statement, query.getValue(), samples.get(random.nextInt(samples.size())));
+                    long started = System.nanoTime();
+                    if (statement.execute()) {
+                        try (ResultSet resultSet = statement.getResultSet()) {
+                            while (resultSet.next()) {
+                                // чтение результата входит в замер
+                            }
+                        }
+                    }
+                    nanos[i] = System.nanoTime() - started;
+                }
+            }
+            Arrays.sort(nanos);
+            result.put(query.getKey(), nanos);
+        }
+        return result;
+    }
+
+    private Set<String> partitionsInPlan(Connection connection, String sql, Sample sample) throws SQLException {
+        Set<String> partitions = new TreeSet<>();
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            bind(statement, sql, sample);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Matcher matcher = PARTITION.matcher(resultSet.getString(1));
+                    while (matcher.find()) {
+                        partitions.add(matcher.group());
+                    }
+                }
+            }
+        }
+        return partitions;
+    }
+
+    // Первый параметр — всегда пользователь, второй зависит от запроса
+    private static void bind(PreparedStatement statement, String sql, Sample sample) throws SQLException {
+        statement.setLong(1, sample.userId);
+        if (sql.contains("AND id = ?")) {
+            statement.setLong(2, sample.id);
+        } else if (sql.contains("LIKE ?")) {
+            statement.setString(2, sample.filename.substring(0, 6) + "%");
+        } else if (sql.contains("COLLATE")) {
+            statement.setString(2, sample.filePath);
+        } else if (sql.contains("filename = ?") || sql.contains("IN (?")) {
+            statement.setString(2, sample.filename);
+        }
+    }
+
+    private static void write(PGSimpleDataSource dataSource, List<Sample> samples) throws SQLException {
+        Random random = new Random(7);
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO files (filename, file_path, size, user_id, volume) VALUES (?, ?, 1, ?, '/data') RETURNING id");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE files SET version = version + 1, checksum = ? WHERE user_id = ? AND id = ?");
+             PreparedStatement delete = connection.prepareStatement(
+                     "DELETE FROM files WHERE user_id = ? AND id = ?")) {
+            for (int i = 0; i < 1_000; i++) {
+                Sample sample = samples.get(random.nextInt(samples.size()));
+                insert.setString(1, "written-" + i + ".bin");
+                insert.setString(2, "/data/" + sample.userId + "/written-" + i + ".bin");
+                insert.setLong(3, sample.userId);
+                long id;
+                try (ResultSet resultSet = insert.executeQuery()) {
+                    resultSet.next();
+                    id = resultSet.getLong(1);
+                }
+                update.setLong(1, random.nextLong());
+                update.setLong(2, sample.userId);
+                update.setLong(3, sample.id);
+                update.executeUpdate();
+                if (i % 2 == 0) {
+                    delete.setLong(1, sample.userId);
+                    delete.setLong(2, id);
+                    delete.executeUpdate();
+                }
+            }
+        }
+    }
+
+    private static void report(Map<String, long[]> before, Map<String, long[]> after) {
+        System.out.printf("%-24s %12s %12s %12s %12s%n", "query", "before_p50", "before_p99", "after_p50", "after_p99");
+        for (String name : before.keySet()) {
+            System.out.printf("%-24s %12.3f %12.3f %12.3f %12.3f%n", name,
+                    percentile(before.get(name), 0.5), percentile(before.get(name), 0.99),
+                    percentile(after.get(name), 0.5), percentile(after.get(name), 0.99));
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(sorted.length * quantile) - 1);
+        return sorted[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    private static long count(Connection connection, String query) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM (" + query + ") difference")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static boolean exists(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    // Позиция переноса в тесте не сохраняется: репозиторий-заглушка, save вызывается после каждой пачки
+    private static FilesPartitionProgressRepository stateRepository(BatchListener afterBatch) {
+        return (FilesPartitionProgressRepository) Proxy.newProxyInstance(FilesPartitionProgressRepository.class.getClassLoader(),
+                new Class<?>[]{FilesPartitionProgressRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> Optional.empty();
+                    case "save" -> {
+                        afterBatch.run();
+                        yield args[0];
+                    }
+                    default -> null;
+                });
+    }
+
+    private interface BatchListener {
+        void run() throws InterruptedException;
+    }
+
+    private record Sample(long id, long userId, String filename, String filePath) {
+    }
+}
@@ -0,0 +1,42 @@
+package netology.security;
+
+import org.junit.jupiter.api.Test;
+import ru.netology.security.DownloadUrlSigner;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadUrlSignerTest {
+
+    private final DownloadUrlSigner signer = new DownloadUrlSigner("test-secret-key-for-download-links");
+
+    @Test
+    void verify_ShouldAcceptOwnSignature() {
+        long expires = Instant.now().getEpochSecond() + 60;
+        String signature = signer.sign(7, 42, 3L, expires);
+
+        assertTrue(signer.verify(7, 42, 3L, expires, signature));
+        assertFalse(signature.contains("=") || signature.contains("+") || signature.contains("/"));
+    }
+
+    @Test
+    void verify_ShouldRejectOtherUserFileVersionOrExpiry() {
+        long expires = Instant.now().getEpochSecond() + 60;
+        String signature = signer.sign(7, 42, 3L, expires);
+
+        assertFalse(signer.verify(8, 42, 3L, expires, signature));
+        assertFalse(signer.verify(7, 43, 3L, expires, signature));
+        assertFalse(signer.verify(7, 42, 4L, expires, signature));
+        assertFalse(signer.verify(7, 42, 3L, expires + 60, signature));
+        assertFalse(new DownloadUrlSigner("another-secret").verify(7, 42, 3L, expires, signature));
+    }
+
+    @Test
+    void verify_ShouldRejectExpiredOrMalformedSignature() {
+        long expired = Instant.now().getEpochSecond() - 1;
+
+        assertFalse(signer.verify(7, 42, 3L, expired, signer.sign(7, 42, 3L, expired)));
+        assertFalse(signer.verify(7, 42, 3L, Instant.now().getEpochSecond() + 60, "not base64!"));
+    }
+}
@@ -0,0 +1,70 @@
+package netology.security;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.netology.cluster.ClusterDataSource;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.repository.RevokedTokenRepository;
+import ru.netology.security.TokenRevocationService;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Запуск: mvn test -Dbenchmarks=true -Dtest=TokenRevocationBenchmarkTest
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class TokenRevocationBenchmarkTest {
+
+    private static final int REVOKED = Integer.getInteger("benchmarks.revocation.revoked", 100_000);
+    private static final int PROBES = 1 << 16;
+    private static final int ROUNDS = 200;
+
+    @Test
+    void isRevoked_ShouldCostNanosecondsForValidTokens() throws InterruptedException {
+        // Репозиторий в проверке не участвует: заглушка возвращает пустой список
+        RevokedTokenRepository repository = (RevokedTokenRepository) Proxy.newProxyInstance(
+                RevokedTokenRepository.class.getClassLoader(), new Class<?>[]{RevokedTokenRepository.class},
+                (proxy, method, args) -> method.getReturnType() == List.class ? List.of() : null);
+        ClusterEventBus eventBus = new ClusterEventBus(new ClusterDataSource(null, false, 0, 0), "benchmark");
+        TokenRevocationService service = new TokenRevocationService(repository, eventBus, REVOKED, 60_000);
+        service.start();
+        try {
+            // Отзывы приходят как события от других узлов, чтобы не писать в репозиторий
+            long expiresAt = System.currentTimeMillis() + 3_600_000;
+            for (int i = 0; i < REVOKED; i++) {
+                eventBus.publish(TokenRevocationService.TOPIC, UUID.randomUUID() + " " + expiresAt);
+            }
+            assertEquals(REVOKED, service.size());
+
+            List<String> valid = new ArrayList<>(PROBES);
+            for (int i = 0; i < PROBES; i++) {
+                valid.add(UUID.randomUUID().toString());
+            }
+
+            long bestNanos = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                long started = System.nanoTime();
+                int revoked = 0;
+                for (String jti : valid) {
+                    if (service.isRevoked(jti)) {
+                        revoked++;
+                    }
+                }
+                bestNanos = Math.min(bestNanos, System.nanoTime() - started);
+                assertEquals(0, revoked);
+            }
+
+            double nanosPerCheck = (double) bestNanos / PROBES;
+            System.out.printf("isRevoked: %.1f ns per valid token with %d revoked tokens%n", nanosPerCheck, REVOKED);
+            String maxNanos = System.getProperty("benchmarks.revocation.max-ns");
+            if (maxNanos != null) {
+                assertTrue(nanosPerCheck <= Double.parseDouble(maxNanos), "Check is slower than " + maxNanos + " ns");
+            }
+        } finally {
+            service.stop();
+        }
+    }
+}
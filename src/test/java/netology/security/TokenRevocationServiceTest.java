@@ -0,0 +1,79 @@
+package netology.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.netology.cluster.ClusterDataSource;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.entity.RevokedToken;
+import ru.netology.repository.RevokedTokenRepository;
+import ru.netology.security.TokenRevocationService;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TokenRevocationServiceTest {
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private ClusterEventBus clusterEventBus;
+    private TokenRevocationService revocationService;
+
+    @BeforeEach
+    void setUp() {
+        clusterEventBus = new ClusterEventBus(new ClusterDataSource(null, false, 0, 0), "node-1");
+        revocationService = new TokenRevocationService(revokedTokenRepository, clusterEventBus, 1000, 60_000);
+    }
+
+    @Test
+    void isRevoked_ShouldReturnTrueOnlyForRevokedTokens() {
+        when(revokedTokenRepository.findByExpiresAtAfter(any())).thenReturn(List.of());
+        revocationService.start();
+
+        revocationService.revoke("revoked-jti", Instant.now().plusSeconds(3600));
+
+        assertTrue(revocationService.isRevoked("revoked-jti"));
+        assertFalse(revocationService.isRevoked("other-jti"));
+        assertFalse(revocationService.isRevoked(null));
+        verify(revokedTokenRepository).save(any(RevokedToken.class));
+    }
+
+    @Test
+    void start_ShouldLoadPersistedTokens_AndApplyEventsFromOtherNodes() {
+        when(revokedTokenRepository.findByExpiresAtAfter(any())).thenReturn(List.of(
+                new RevokedToken("persisted-jti", LocalDateTime.now().plusHours(1))));
+        revocationService.start();
+
+        clusterEventBus.publish(TokenRevocationService.TOPIC, "remote-jti " + (System.currentTimeMillis() + 60_000));
+
+        assertTrue(revocationService.isRevoked("persisted-jti"));
+        assertTrue(revocationService.isRevoked("remote-jti"));
+        verify(revokedTokenRepository, never()).save(any());
+    }
+
+    @Test
+    void prune_ShouldDropExpiredTokens() {
+        when(revokedTokenRepository.findByExpiresAtAfter(any())).thenReturn(List.of());
+        revocationService.start();
+        clusterEventBus.publish(TokenRevocationService.TOPIC, "expired-jti " + (System.currentTimeMillis() - 1));
+        revocationService.revoke("live-jti", Instant.now().plusSeconds(3600));
+        revocationService.revoke("already-expired-jti", Instant.now().minusSeconds(1));
+
+        revocationService.prune();
+
+        assertEquals(1, revocationService.size());
+        assertFalse(revocationService.isRevoked("expired-jti"));
+        assertTrue(revocationService.isRevoked("live-jti"));
+        verify(revokedTokenRepository, times(1)).save(any(RevokedToken.class));
+        verify(revokedTokenRepository).deleteExpired(any());
+    }
+}
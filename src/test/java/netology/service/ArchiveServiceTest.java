@@ -0,0 +1,160 @@
+package netology.service;
+
+import org.junit.jupiter.api.Test;
+import ru.netology.entity.FileEntity;
+import ru.netology.service.ArchiveService;
+import ru.netology.storage.InMemoryStorageBackend;
+import ru.netology.storage.StoragePlacement;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchiveServiceTest {
+
+    private final InMemoryStorageBackend storageBackend = new InMemoryStorageBackend();
+    private final ArchiveService archiveService = new ArchiveService(storageBackend, "zip,jpg,png");
+    private final Map<String, byte[]> contents = new HashMap<>();
+
+    @Test
+    void writeArchive_ShouldCopyCompressedFormatsAndDeflateOthers() throws IOException {
+        List<FileEntity> files = List.of(
+                storeText("notes.txt", "notes ".repeat(20_000)),
+                storeFile("photo.jpg", 200_000),
+                storeFile("bundle.zip", 64 * 1024),
+                storeFile("empty.bin", 0),
+                storeFile("scan.PNG", 128 * 1024));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archiveService.writeArchive(files, out);
+
+        int entries = 0;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                byte[] content = contents.get(entry.getName());
+                assertArrayEquals(content, zip.readAllBytes());
+                // Размеры и CRC из дескриптора записи известны после чтения данных
+                boolean compressedFormat = entry.getName().matches("(?i).*\\.(jpg|zip|png)");
+                if (compressedFormat) {
+                    assertTrue(entry.getCompressedSize() <= content.length + 5L * (content.length / 65_535 + 1) + 16,
+                            entry.getName() + " should be copied without compression");
+                } else if (content.length > 0) {
+                    assertTrue(entry.getCompressedSize() < content.length / 10, entry.getName() + " should be deflated");
+                }
+                entries++;
+            }
+        }
+        assertEquals(files.size(), entries);
+    }
+
+    @Test
+    void writeArchive_ShouldReadEachFileOnce() throws IOException {
+        AtomicInteger reads = new AtomicInteger();
+        InMemoryStorageBackend countingBackend = new InMemoryStorageBackend() {
+            @Override
+            public InputStream read(String key, long offset, long length) throws IOException {
+                reads.incrementAndGet();
+                return super.read(key, offset, length);
+            }
+        };
+        FileEntity photo = storeFile(countingBackend, "photo.jpg", 200_000);
+
+        new ArchiveService(countingBackend, "jpg").writeArchive(List.of(photo), new ByteArrayOutputStream());
+
+        assertEquals(1, reads.get());
+    }
+
+    @Test
+    void writeArchive_ShouldFail_WhenSourceBreaksMidStream() throws IOException {
+        InMemoryStorageBackend failingBackend = new InMemoryStorageBackend() {
+            @Override
+            public InputStream read(String key, long offset, long length) throws IOException {
+                InputStream data = super.read(key, offset, length);
+                return new FilterInputStream(data) {
+                    private long position;
+
+                    @Override
+                    public int read(byte[] buffer, int off, int len) throws IOException {
+                        if (position > 100_000) {
+                            throw new IOException("Disk read error");
+                        }
+                        int read = super.read(buffer, off, len);
+                        position += Math.max(read, 0);
+                        return read;
+                    }
+                };
+            }
+        };
+        List<FileEntity> files = List.of(storeFile(failingBackend, "first.jpg", 1000),
+                storeFile(failingBackend, "photo.jpg", 200_000));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThrows(IOException.class, () -> new ArchiveService(failingBackend, "jpg").writeArchive(files, out));
+
+        // Центральный каталог не записан: частичный архив не читается как целый
+        Path partial = Files.createTempFile("partial", ".zip");
+        try {
+            Files.write(partial, out.toByteArray());
+            assertThrows(ZipException.class, () -> new ZipFile(partial.toFile()).close());
+        } finally {
+            Files.delete(partial);
+        }
+    }
+
+    @Test
+    void writeArchive_ShouldFail_WhenSourceIsMissing() throws IOException {
+        List<FileEntity> files = new ArrayList<>();
+        files.add(storeFile("first.txt", 100));
+        FileEntity missing = new FileEntity();
+        missing.setFilename("missing.txt");
+        missing.setFilePath(InMemoryStorageBackend.VOLUME + "/1/missing.txt");
+        files.add(missing);
+
+        assertThrows(IOException.class, () -> archiveService.writeArchive(files, new ByteArrayOutputStream()));
+    }
+
+    private FileEntity storeFile(String filename, int size) throws IOException {
+        return storeFile(storageBackend, filename, size);
+    }
+
+    private FileEntity storeText(String filename, String text) throws IOException {
+        return store(storageBackend, filename, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private FileEntity storeFile(InMemoryStorageBackend backend, String filename, int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(filename.hashCode()).nextBytes(content);
+        return store(backend, filename, content);
+    }
+
+    private FileEntity store(InMemoryStorageBackend backend, String filename, byte[] content) throws IOException {
+        int size = content.length;
+        StoragePlacement placement = backend.allocate(1, filename, size);
+        backend.write(placement.getKey(), new ByteArrayInputStream(content));
+        contents.put(filename, content);
+
+        FileEntity file = new FileEntity();
+        file.setFilename(filename);
+        file.setFilePath(placement.getKey());
+        file.setSize((long) size);
+        return file;
+    }
+}
@@ -0,0 +1,181 @@
+package netology.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.Folder;
+import ru.netology.entity.User;
+import ru.netology.repository.FileRepository;
+import ru.netology.repository.FolderRepository;
+import ru.netology.repository.UserRepository;
+import ru.netology.service.BulkImporter;
+import ru.netology.service.FolderService;
+import ru.netology.storage.InMemoryStorageBackend;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkImporterTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private FileRepository fileRepository;
+
+    @Mock
+    private FolderRepository folderRepository;
+
+    @Mock
+    private FolderService folderService;
+
+    private final InMemoryStorageBackend storageBackend = new InMemoryStorageBackend();
+    private final List<FileEntity> saved = new ArrayList<>();
+    private final AtomicLong folderIds = new AtomicLong();
+    private final Map<String, Long> createdFolders = new ConcurrentHashMap<>();
+    private User testUser;
+    private Path source;
+    private Path checkpoint;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        testUser = new User();
+        testUser.setId(1);
+        testUser.setLogin("customer");
+        source = Files.createTempDirectory("import-source");
+        checkpoint = Files.createTempDirectory("import-state").resolve("import.checkpoint");
+
+        lenient().when(userRepository.findByLogin("customer")).thenReturn(Optional.of(testUser));
+        lenient().when(fileRepository.saveAll(anyCollection())).thenAnswer(invocation -> {
+            Iterable<FileEntity> batch = invocation.getArgument(0);
+            batch.forEach(saved::add);
+            return batch;
+        });
+        lenient().when(fileRepository.findFilenames(eq(testUser), anyCollection())).thenAnswer(invocation ->
+                saved.stream().map(FileEntity::getFilename).collect(Collectors.toList()));
+        lenient().when(fileRepository.existsByUserAndFilename(eq(testUser), anyString())).thenAnswer(invocation ->
+                saved.stream().anyMatch(file -> file.getFilename().equals(invocation.getArgument(1))));
+        lenient().when(folderService.createFolder(anyString(), any(), eq(testUser))).thenAnswer(invocation -> {
+            Folder folder = new Folder(invocation.getArgument(0), invocation.getArgument(1), testUser);
+            folder.setId(folderIds.incrementAndGet());
+            createdFolders.put(folder.getName(), folder.getId());
+            return folder;
+        });
+    }
+
+    @Test
+    void run_ShouldImportTreeWithChecksumsFoldersAndUniqueNames() throws Exception {
+        createFile("readme.txt", "root readme");
+        createFile("docs/readme.txt", "docs readme");
+        createFile("docs/2024/report.pdf", "report");
+
+        assertTrue(importer(2).run());
+
+        assertEquals(3, saved.size());
+        FileEntity report = find("report.pdf");
+        assertEquals(crc("report"), report.getChecksum());
+        assertEquals(createdFolders.get("2024"), report.getFolderId());
+        assertEquals("report", new String(storageBackend.read(report.getFilePath(), 0, report.getSize()).readAllBytes(),
+                StandardCharsets.UTF_8));
+        assertTrue(saved.stream().anyMatch(file -> file.getFilename().equals("readme (2).txt")));
+        assertTrue(Files.readString(checkpoint).endsWith("\nreadme.txt"));
+        assertTrue(report.getFilePath().matches("memory/1/import-[0-9a-f]{12}/docs/2024/report.pdf"));
+    }
+
+    @Test
+    void run_ShouldNotClashWithUsersExistingFiles() throws Exception {
+        String existingKey = storageBackend.allocate(1, "notes.txt", 0).getKey();
+        storageBackend.write(existingKey, new ByteArrayInputStream("user's own".getBytes(StandardCharsets.UTF_8)));
+        saved.add(new FileEntity("notes.txt", 10L, existingKey, testUser));
+        createFile("notes.txt", "imported");
+
+        assertTrue(importer(1).run());
+
+        assertEquals(2, saved.size());
+        FileEntity imported = find("notes (2).txt");
+        assertNotEquals(existingKey, imported.getFilePath());
+        assertEquals("imported", content(imported.getFilePath(), imported.getSize()));
+        assertEquals("user's own", content(existingKey, 10));
+    }
+
+    @Test
+    void run_ShouldResumeAfterCheckpoint() throws Exception {
+        createFile("a/first.txt", "1");
+        createFile("b/second.txt", "2");
+        createFile("c.txt", "3");
+        Files.writeString(checkpoint, "a/first.txt");
+
+        assertTrue(importer(1).run());
+
+        assertEquals(List.of("c.txt", "second.txt"),
+                saved.stream().map(FileEntity::getFilename).sorted().collect(Collectors.toList()));
+        verify(folderService, never()).createFolder(eq("a"), any(), any());
+    }
+
+    @Test
+    void run_ShouldSkipFilesSavedBeforeInterruption_OnAnyVolume() throws Exception {
+        createFile("copied.txt", "already there");
+        createFile("unsaved.txt", "copied without row");
+        Files.writeString(checkpoint, "run=0123456789ab\n");
+        // Строка прошлого запуска указывает на другой том: повторный выбор тома не должен её продублировать
+        when(fileRepository.findPathsLike(eq(1), eq("%import-0123456789ab%"), eq(""), anyInt()))
+                .thenReturn(List.of("/volume2/1/import-0123456789ab/copied.txt"));
+        String unsavedKey = storageBackend.allocate(1, "import-0123456789ab/unsaved.txt", 0).getKey();
+        storageBackend.write(unsavedKey, new ByteArrayInputStream("partial".getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(importer(1).run());
+
+        assertEquals(List.of("unsaved.txt"), saved.stream().map(FileEntity::getFilename).collect(Collectors.toList()));
+        assertEquals(unsavedKey, saved.get(0).getFilePath());
+        assertEquals("copied without row", content(unsavedKey, saved.get(0).getSize()));
+        assertTrue(Files.readString(checkpoint).startsWith("run=0123456789ab\n"));
+    }
+
+    private BulkImporter importer(int threads) {
+        return new BulkImporter(userRepository, fileRepository, folderRepository, folderService, storageBackend,
+                source.toString(), "customer", checkpoint.toString(), threads, 1, 2);
+    }
+
+    private String content(String key, long size) throws IOException {
+        return new String(storageBackend.read(key, 0, size).readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private void createFile(String relative, String content) throws IOException {
+        Path path = source.resolve(relative);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, content);
+    }
+
+    private FileEntity find(String filename) {
+        return saved.stream().filter(file -> file.getFilename().equals(filename)).findFirst().orElseThrow();
+    }
+
+    private static long crc(String content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,133 @@
+package netology.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cluster.ClusterDataSource;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.cluster.ClusterLockService;
+import ru.netology.delta.DeltaPatcher;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.service.DeltaSyncService;
+import ru.netology.service.FileLockManager;
+import ru.netology.service.FileStorageService;
+import ru.netology.service.MetadataWriteBehindService;
+import ru.netology.storage.InMemoryStorageBackend;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaSyncServiceTest {
+
+    private static final int BLOCK_SIZE = 4;
+
+    private final InMemoryFileRepository repository = new InMemoryFileRepository();
+    private final TrackingStorageBackend storageBackend = new TrackingStorageBackend();
+    private final User user = new User();
+    private FileStorageService storage;
+    private DeltaSyncService deltaSync;
+
+    @BeforeEach
+    void setUp() {
+        user.setId(1);
+        user.setLogin("testuser");
+        MetadataWriteBehindService writer = new MetadataWriteBehindService(repository.proxy(), storageBackend,
+                false, false, 500, 20, 100, 100, 5000);
+        FileLockManager lockManager = new FileLockManager(64, new ClusterLockService(new ClusterDataSource(null, false, 0, 0)));
+        storage = new FileStorageService(repository.proxy(), writer, lockManager,
+                new ClusterEventBus(new ClusterDataSource(null, false, 1, 1000), "node"), storageBackend);
+        deltaSync = new DeltaSyncService(repository.proxy(), storage, lockManager, storageBackend,
+                new DeltaPatcher(storageBackend, 1000, 1 << 20), BLOCK_SIZE, 4096);
+    }
+
+    @Test
+    void appliedDelta_ShouldReplaceContentUnderTheSameKey() throws Exception {
+        FileEntity original = upload("abcdefgh");
+
+        FileEntity saved = deltaSync.applyDelta("doc.txt", original.getVersion(), BLOCK_SIZE, delta("WXYZ"), user);
+
+        assertEquals(original.getFilePath(), saved.getFilePath());
+        assertEquals(original.getVersion() + 1, saved.getVersion().longValue());
+        assertEquals(8L, saved.getSize().longValue());
+        assertEquals("abcdWXYZ", content(saved.getFilePath()));
+        assertEquals(Set.of(original.getFilePath()), storageBackend.liveKeys());
+    }
+
+    @Test
+    void failedMetadataSave_ShouldRestorePreviousContent() throws Exception {
+        FileEntity original = upload("abcdefgh");
+        repository.rejects = file -> true;
+
+        assertThrows(IllegalStateException.class,
+                () -> deltaSync.applyDelta("doc.txt", original.getVersion(), BLOCK_SIZE, delta("WXYZ"), user));
+
+        FileEntity stored = repository.all().get(0);
+        assertEquals(original.getVersion(), stored.getVersion());
+        assertEquals("abcdefgh", content(stored.getFilePath()));
+        assertEquals(Set.of(original.getFilePath()), storageBackend.liveKeys());
+    }
+
+    @Test
+    void staleVersion_ShouldLeaveFileUntouched() throws Exception {
+        FileEntity original = upload("abcdefgh");
+
+        assertThrows(RuntimeException.class,
+                () -> deltaSync.applyDelta("doc.txt", original.getVersion() + 1, BLOCK_SIZE, delta("WXYZ"), user));
+
+        assertEquals("abcdefgh", content(original.getFilePath()));
+        assertEquals(Set.of(original.getFilePath()), storageBackend.liveKeys());
+    }
+
+    private FileEntity upload(String content) throws Exception {
+        storage.store(TestUploads.file("doc.txt", content), "doc.txt", user);
+        return repository.all().get(0);
+    }
+
+    // Первый блок текущей версии и новые данные вместо второго
+    private InputStream delta(String data) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(DeltaPatcher.OP_COPY);
+        out.writeInt(0);
+        out.writeInt(1);
+        out.writeByte(DeltaPatcher.OP_DATA);
+        out.writeInt(data.length());
+        out.write(data.getBytes(StandardCharsets.UTF_8));
+        out.writeByte(DeltaPatcher.OP_END);
+        return new ByteArrayInputStream(body.toByteArray());
+    }
+
+    private String content(String key) throws IOException {
+        return new String(storageBackend.openResource(key).getContentAsByteArray(), StandardCharsets.UTF_8);
+    }
+
+    // Запоминает все когда-либо созданные ключи, чтобы проверить, что временные версии не остались
+    private static final class TrackingStorageBackend extends InMemoryStorageBackend {
+        private final Set<String> created = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public long write(String key, InputStream data) throws IOException {
+            created.add(key);
+            return super.write(key, data);
+        }
+
+        @Override
+        public void copy(String sourceKey, String targetKey) throws IOException {
+            created.add(targetKey);
+            super.copy(sourceKey, targetKey);
+        }
+
+        Set<String> liveKeys() {
+            return created.stream().filter(key -> stat(key).isPresent()).collect(Collectors.toSet());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package netology.service;
+
+import org.junit.jupiter.api.Test;
+import ru.netology.entity.FileAccessStats;
+import ru.netology.repository.FileAccessStatsRepository;
+import ru.netology.service.FileAccessStatsService;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileAccessStatsServiceTest {
+
+    private final List<List<FileAccessStats>> flushed = new ArrayList<>();
+    private final List<FileAccessStats> stored = new ArrayList<>();
+    private int failuresLeft;
+
+    @Test
+    void concurrentDownloads_ShouldBeFlushedAsOneBatchWithExactCounts() throws Exception {
+        FileAccessStatsService service = service(true);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            for (int thread = 0; thread < 8; thread++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        service.recordDownload(7, i % 3 == 0 ? 101 : 102);
+                    }
+                });
+            }
+        }
+
+        assertEquals(2, service.flush());
+        assertEquals(1, flushed.size());
+        Map<Integer, Long> counts = flushed.get(0).stream()
+                .collect(Collectors.toMap(FileAccessStats::getFileId, FileAccessStats::getDownloadCount));
+        assertEquals(8 * 3334L, (long) counts.get(101));
+        assertEquals(8 * 6666L, (long) counts.get(102));
+        assertTrue(flushed.get(0).stream().allMatch(delta -> delta.getUserId() == 7 && delta.getLastAccess() != null));
+    }
+
+    @Test
+    void idleFiles_ShouldNotBeWrittenAndShouldLeaveMemory() {
+        FileAccessStatsService service = service(true);
+        service.recordDownload(7, 101);
+
+        assertEquals(1, service.flush());
+        assertEquals(0, service.flush());
+        assertEquals(1, flushed.size());
+        assertEquals(0, service.trackedFiles());
+
+        service.recordDownload(7, 101);
+        assertEquals(1, service.flush());
+        assertEquals(1L, flushed.get(1).get(0).getDownloadCount().longValue());
+    }
+
+    @Test
+    void failedFlush_ShouldKeepCountsForNextFlush() {
+        FileAccessStatsService service = service(true);
+        service.recordDownload(7, 101);
+        service.recordDownload(7, 101);
+        failuresLeft = 1;
+
+        assertEquals(0, service.flush());
+        service.recordDownload(7, 101);
+        assertEquals(1, service.flush());
+
+        assertEquals(3L, flushed.get(0).get(0).getDownloadCount().longValue());
+    }
+
+    @Test
+    void statsFor_ShouldAddUnflushedDownloadsToStored() {
+        FileAccessStatsService service = service(true);
+        LocalDateTime yesterday = LocalDateTime.now().minusDays(1);
+        stored.add(new FileAccessStats(101, 7, 5L, yesterday));
+        service.recordDownload(7, 101);
+        service.recordDownload(7, 101);
+        service.recordDownload(7, 102);
+
+        Map<Integer, FileAccessStats> stats = service.statsFor(List.of(101, 102, 103));
+
+        assertEquals(7L, stats.get(101).getDownloadCount().longValue());
+        assertTrue(stats.get(101).getLastAccess().isAfter(yesterday));
+        assertEquals(1L, stats.get(102).getDownloadCount().longValue());
+        assertFalse(stats.containsKey(103));
+        // Прочитанная строка не изменилась
+        assertEquals(5L, stored.get(0).getDownloadCount().longValue());
+    }
+
+    @Test
+    void accessedSince_ShouldReportOwnUnflushedAndJustFlushedDownloads() {
+        FileAccessStatsService service = service(true);
+        LocalDateTime before = LocalDateTime.now().minusSeconds(1);
+        service.recordDownload(7, 101);
+        service.recordDownload(8, 201);
+        assertEquals(2, service.flush());
+        service.recordDownload(7, 102);
+
+        // 101 уже в БД, но остаётся в памяти до следующего сброса: реплика могла его ещё не получить
+        assertEquals(Set.of(101, 102), service.accessedSince(7, before));
+        assertEquals(Set.of(), service.accessedSince(7, LocalDateTime.now().plusMinutes(1)));
+
+        // Сброс 102; затем интервал без скачиваний — счётчики уходят из памяти
+        assertEquals(1, service.flush());
+        assertEquals(0, service.flush());
+        assertEquals(Set.of(), service.accessedSince(7, before));
+    }
+
+    @Test
+    void disabled_ShouldNotCountDownloads() {
+        FileAccessStatsService service = service(false);
+        service.recordDownload(7, 101);
+
+        assertEquals(0, service.flush());
+        assertTrue(flushed.isEmpty());
+    }
+
+    private FileAccessStatsService service(boolean enabled) {
+        return new FileAccessStatsService(repository(), enabled, 5000, 3600000);
+    }
+
+    // Пачки копируются: сервис может вернуть их в память после ошибки
+    @SuppressWarnings("unchecked")
+    private FileAccessStatsRepository repository() {
+        return (FileAccessStatsRepository) Proxy.newProxyInstance(FileAccessStatsRepository.class.getClassLoader(),
+                new Class<?>[]{FileAccessStatsRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "addAccesses" -> {
+                        if (failuresLeft > 0) {
+                            failuresLeft--;
+                            throw new IllegalStateException("connection refused");
+                        }
+                        flushed.add(new ArrayList<>((Collection<FileAccessStats>) args[0]));
+                        yield null;
+                    }
+                    case "findByFileIdIn" -> stored.stream()
+                            .filter(stats -> ((Collection<Integer>) args[0]).contains(stats.getFileId()))
+                            .collect(Collectors.toList());
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,124 @@
+package netology.service;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.netology.cluster.ClusterDataSource;
+import ru.netology.cluster.ClusterLockService;
+import ru.netology.service.FileLockManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Пропускная способность блокировок на непересекающихся именах: 1024 полосы против минимума в 2 полосы,
+ * меньше FileLockManager не создаёт. При 2 полосах параллельно держат блокировку не больше двух потоков.
+ * Запуск: mvn test -Dbenchmarks=true -Dtest=FileLockBenchmarkTest
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class FileLockBenchmarkTest {
+
+    private static final int USER_ID = 1;
+    private static final int STRIPES = 1024;
+    private static final int MINIMUM_STRIPES = 2;
+    private static final long DURATION_MS = Long.getLong("benchmarks.locks.duration-ms", 2_000);
+    // Ожидание под блокировкой, как запись в хранилище
+    private static final long HOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final byte[] WORK = new byte[16 * 1024];
+
+    // Держатель блокировки ждёт, а не считает: рост с числом потоков не зависит от числа ядер
+    @Test
+    void stripedLocks_ShouldScaleWithThreadsWhileMinimumStripesStayFlat() throws Exception {
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+        run(STRIPES, threads, FileLockBenchmarkTest::hold);
+
+        double minimumN = run(MINIMUM_STRIPES, threads, FileLockBenchmarkTest::hold);
+        double minimum2N = run(MINIMUM_STRIPES, 2 * threads, FileLockBenchmarkTest::hold);
+        double stripedN = run(STRIPES, threads, FileLockBenchmarkTest::hold);
+        double striped2N = run(STRIPES, 2 * threads, FileLockBenchmarkTest::hold);
+
+        report("hold", threads, minimumN, minimum2N, stripedN, striped2N);
+        assertTrue(striped2N >= 1.5 * stripedN, "Striped locks should scale from N to 2N threads");
+        assertTrue(minimum2N <= 1.25 * minimumN, "Two stripes should cap throughput on disjoint names");
+        assertTrue(stripedN >= 1.5 * minimumN, "Striped locks should beat two stripes at N threads");
+    }
+
+    // Работа под блокировкой на процессоре: рост ограничен числом ядер
+    @Test
+    void stripedLocks_ShouldScaleWithCores() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        Assumptions.assumeTrue(cores >= 2, "Needs at least 2 cores");
+        int threads = cores / 2;
+        run(STRIPES, threads, FileLockBenchmarkTest::compute);
+
+        double minimumN = run(MINIMUM_STRIPES, threads, FileLockBenchmarkTest::compute);
+        double minimum2N = run(MINIMUM_STRIPES, 2 * threads, FileLockBenchmarkTest::compute);
+        double stripedN = run(STRIPES, threads, FileLockBenchmarkTest::compute);
+        double striped2N = run(STRIPES, 2 * threads, FileLockBenchmarkTest::compute);
+
+        report("compute", threads, minimumN, minimum2N, stripedN, striped2N);
+        assertTrue(striped2N >= 1.3 * stripedN, "Striped locks should scale from N to 2N cores");
+        if (cores >= 4) {
+            assertTrue(striped2N >= 1.3 * minimum2N, "Striped locks should beat two stripes on all cores");
+        }
+    }
+
+    // Операций в секунду; у каждого потока свои имена
+    private double run(int stripes, int threads, Runnable work) throws Exception {
+        FileLockManager lockManager = new FileLockManager(stripes, new ClusterLockService(new ClusterDataSource(null, false, 0, 0)));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                String prefix = "thread-" + t + "-file-";
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MS);
+                    long operations = 0;
+                    while (System.nanoTime() < deadline) {
+                        try (FileLockManager.Lock ignored = lockManager.lock(USER_ID, prefix + (operations & 63))) {
+                            work.run();
+                        }
+                        operations++;
+                    }
+                    return operations;
+                }));
+            }
+            start.countDown();
+            long total = 0;
+            for (Future<Long> future : futures) {
+                total += future.get(DURATION_MS + 30_000, TimeUnit.MILLISECONDS);
+            }
+            return total * 1000.0 / DURATION_MS;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void hold() {
+        LockSupport.parkNanos(HOLD_NANOS);
+    }
+
+    private static void compute() {
+        CRC32C crc = new CRC32C();
+        crc.update(WORK);
+        if (crc.getValue() == 42) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void report(String mode, int threads, double minimumN, double minimum2N, double stripedN, double striped2N) {
+        System.out.printf("%-8s N=%d: %d stripes %.0f ops/s (N), %.0f ops/s (2N); %d stripes %.0f ops/s (N), %.0f ops/s (2N)%n",
+                mode, threads, MINIMUM_STRIPES, minimumN, minimum2N, STRIPES, stripedN, striped2N);
+    }
+}
@@ -0,0 +1,246 @@
+package netology.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cluster.ClusterDataSource;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.cluster.ClusterLockService;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.replica.ReadRouter;
+import ru.netology.service.FileAccessStatsService;
+import ru.netology.service.FileLockManager;
+import ru.netology.service.FileOperationService;
+import ru.netology.service.FileStorageService;
+import ru.netology.service.MetadataWriteBehindService;
+import ru.netology.storage.InMemoryStorageBackend;
+
+import java.nio.file.FileAlreadyExistsException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileLockManagerTest {
+
+    private static final int USER_ID = 1;
+
+    private final InMemoryFileRepository repository = new InMemoryFileRepository();
+    private final InMemoryStorageBackend storageBackend = new InMemoryStorageBackend();
+    private final User user = new User();
+
+    @BeforeEach
+    void setUp() {
+        user.setId(USER_ID);
+        user.setLogin("testuser");
+    }
+
+    @Test
+    void concurrentRenamesToSameName_ShouldLetExactlyOneWin() throws Exception {
+        Services services = services(localLockManager(1024));
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            for (int round = 0; round < 50; round++) {
+                String target = "target-" + round;
+                for (int i = 0; i < threads; i++) {
+                    String source = "source-" + round + "-" + i;
+                    services.storage.store(TestUploads.file(source, source), source, user);
+                }
+
+                AtomicInteger renamed = new AtomicInteger();
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    String source = "source-" + round + "-" + i;
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        try {
+                            services.operations.renameFile(source, target, user);
+                            renamed.incrementAndGet();
+                        } catch (RuntimeException | FileAlreadyExistsException lost) {
+                            // Имя уже занято победителем
+                        }
+                        return null;
+                    }));
+                }
+
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+
+                assertEquals(1, renamed.get());
+                String sources = "source-" + round + "-";
+                List<FileEntity> rows = repository.all().stream()
+                        .filter(row -> row.getFilename().equals(target) || row.getFilename().startsWith(sources))
+                        .collect(Collectors.toList());
+                assertEquals(threads, rows.size());
+                assertEquals(1, rows.stream().filter(row -> row.getFilename().equals(target)).count());
+                for (FileEntity row : rows) {
+                    assertTrue(storageBackend.stat(row.getFilePath()).isPresent());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void conflictingMutations_ShouldBeSerialized() throws Exception {
+        FileLockManager lockManager = localLockManager(64);
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        int keys = 8;
+        int iterations = 20_000;
+        long[] counters = new long[keys];
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < iterations; i++) {
+                        int key = (i + offset) % keys;
+                        try (FileLockManager.Lock ignored = lockManager.lock(USER_ID, "file-" + key)) {
+                            long value = counters[key];
+                            if ((i & 63) == 0) {
+                                Thread.yield();
+                            }
+                            counters[key] = value + 1;
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long total = 0;
+        for (long counter : counters) {
+            total += counter;
+        }
+        assertEquals((long) threads * iterations, total);
+    }
+
+    @Test
+    void lockedFile_ShouldNotBlockUnrelatedFile() throws Exception {
+        FileLockManager lockManager = localLockManager(1024);
+        Services services = services(lockManager);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<?> sameFile;
+            try (FileLockManager.Lock ignored = lockManager.lock(USER_ID, "a.txt")) {
+                executor.submit(() -> {
+                    services.storage.store(TestUploads.file("b.txt", "b"), "b.txt", user);
+                    return null;
+                }).get(10, TimeUnit.SECONDS);
+
+                sameFile = executor.submit(() -> {
+                    services.storage.store(TestUploads.file("a.txt", "a"), "a.txt", user);
+                    return null;
+                });
+                assertThrows(TimeoutException.class, () -> sameFile.get(200, TimeUnit.MILLISECONDS));
+                assertTrue(storageBackend.stat(key("a.txt")).isEmpty());
+            }
+            sameFile.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of("b.txt", "a.txt"), repository.all().stream()
+                .map(FileEntity::getFilename).collect(Collectors.toList()));
+    }
+
+    // Загрузки, переименования и удаления на пересекающихся именах через настоящие сервисы:
+    // после гонки у каждого имени не больше одной строки, у каждой строки есть содержимое, лишнего содержимого нет
+    @Test
+    void concurrentStoreRenameDelete_ShouldKeepMetadataAndContentConsistent() throws Exception {
+        Services services = services(localLockManager(64));
+        int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        int names = 6;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                Random random = new Random(t);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 2_000; i++) {
+                        String name = "file-" + random.nextInt(names);
+                        String other = "file-" + random.nextInt(names);
+                        try {
+                            switch (random.nextInt(3)) {
+                                case 0 -> services.storage.store(TestUploads.file(name, name), name, user);
+                                case 1 -> services.operations.renameFile(name, other, user);
+                                default -> services.operations.deleteFile(name, user);
+                            }
+                        } catch (FileAlreadyExistsException | RuntimeException expected) {
+                            // Имя занято или файла уже нет — проигравшие в гонке получают ошибку, а не портят данные
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<FileEntity> rows = repository.all();
+        Set<String> filenames = new HashSet<>();
+        for (FileEntity row : rows) {
+            assertTrue(filenames.add(row.getFilename()), "Duplicate row for " + row.getFilename());
+            assertEquals(key(row.getFilename()), row.getFilePath());
+            assertTrue(storageBackend.stat(row.getFilePath()).isPresent(), "No content for " + row.getFilename());
+        }
+        for (int i = 0; i < names; i++) {
+            String name = "file-" + i;
+            assertEquals(filenames.contains(name), storageBackend.stat(key(name)).isPresent(), "Orphaned content " + name);
+        }
+    }
+
+    private FileLockManager localLockManager(int stripes) {
+        ClusterDataSource disabled = new ClusterDataSource(null, false, 0, 0);
+        return new FileLockManager(stripes, new ClusterLockService(disabled));
+    }
+
+    private Services services(FileLockManager lockManager) {
+        MetadataWriteBehindService writer = new MetadataWriteBehindService(repository.proxy(), storageBackend,
+                false, false, 500, 20, 100, 100, 5000);
+        ClusterEventBus eventBus = new ClusterEventBus(new ClusterDataSource(null, false, 1, 1000), "node");
+        FileStorageService storage = new FileStorageService(repository.proxy(), writer, lockManager, eventBus, storageBackend);
+        FileOperationService operations = new FileOperationService(repository.proxy(), storage, lockManager, storageBackend,
+                new ReadRouter(eventBus, null, null, "", 5000),
+                new FileAccessStatsService(null, false, 5000, 3600000));
+        return new Services(storage, operations);
+    }
+
+    private String key(String filename) {
+        return InMemoryStorageBackend.VOLUME + "/" + USER_ID + "/" + filename;
+    }
+
+    private record Services(FileStorageService storage, FileOperationService operations) {
+    }
+}
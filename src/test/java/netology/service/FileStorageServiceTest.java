@@ -0,0 +1,124 @@
+package netology.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cluster.ClusterDataSource;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.cluster.ClusterLockService;
+import ru.netology.dto.FileListQuery;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.service.FileLockManager;
+import ru.netology.service.FileStorageService;
+import ru.netology.service.MetadataWriteBehindService;
+import ru.netology.storage.InMemoryStorageBackend;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Слияние результата запроса /list с файлами, ещё не записанными в БД (write-behind)
+class FileStorageServiceTest {
+
+    private final InMemoryFileRepository repository = new InMemoryFileRepository();
+    private final InMemoryStorageBackend storageBackend = new InMemoryStorageBackend();
+    private final User user = new User();
+    private MetadataWriteBehindService writer;
+    private FileStorageService storageService;
+
+    @BeforeEach
+    void setUp() {
+        user.setId(1);
+        user.setLogin("testuser");
+        writer = new MetadataWriteBehindService(repository.proxy(), storageBackend,
+                true, false, 500, 20, 100, 100, 5000);
+        writer.start();
+        storageService = new FileStorageService(repository.proxy(), writer,
+                new FileLockManager(64, new ClusterLockService(new ClusterDataSource(null, false, 0, 0))),
+                new ClusterEventBus(new ClusterDataSource(null, false, 1, 1000), "node"), storageBackend);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        repository.gate.countDown();
+        writer.stop();
+    }
+
+    @Test
+    void pendingFiles_ShouldBeInterleavedWithStoredAndLimited() throws Exception {
+        stored("b.txt", 20);
+        stored("d.txt", 40);
+        stored("f.txt", 60);
+        repository.gate = new CountDownLatch(1);
+        pending("a.txt", "1");
+        pending("c.txt", "333");
+        pending("e.txt", "55555");
+
+        assertEquals(List.of("a.txt", "b.txt", "c.txt", "d.txt"), names(query(FileListQuery.SORT_NAME, null), 4));
+        assertEquals(List.of("f.txt", "d.txt", "b.txt", "e.txt", "c.txt", "a.txt"),
+                names(query(FileListQuery.SORT_SIZE, null), 10));
+        assertEquals(List.of("f.txt", "e.txt"), names(query(FileListQuery.SORT_NAME, "desc"), 2));
+    }
+
+    @Test
+    void fileFlushedBetweenSnapshotAndQuery_ShouldBeListedOnce() throws Exception {
+        stored("b.txt", 20);
+        repository.gate = new CountDownLatch(1);
+        pending("a.txt", "1");
+        // Строка уже в БД, а оверлей ещё не очищен
+        repository.save(new FileEntity("a.txt", 1L, "memory/1/a.txt", user));
+
+        assertEquals(List.of("a.txt", "b.txt"), names(query(FileListQuery.SORT_NAME, null), 10));
+    }
+
+    @Test
+    void nameOrder_ShouldFollowCodePointsLikeDatabase() throws Exception {
+        // В UTF-16 суррогатная пара эмодзи меньше U+FF21, по кодовым точкам (COLLATE "C") — больше
+        stored("Ａ.txt", 1);
+        stored("z.txt", 1);
+        repository.gate = new CountDownLatch(1);
+        pending("😀.txt", "1");
+        pending("ä.txt", "1");
+
+        assertEquals(List.of("z.txt", "ä.txt", "Ａ.txt", "😀.txt"),
+                names(query(FileListQuery.SORT_NAME, null), 10));
+    }
+
+    @Test
+    void largestLimit_ShouldNotOverflowWithPendingFiles() throws Exception {
+        stored("b.txt", 20);
+        repository.gate = new CountDownLatch(1);
+        pending("a.txt", "1");
+
+        assertEquals(List.of("a.txt", "b.txt"), names(query(FileListQuery.SORT_NAME, null), Integer.MAX_VALUE));
+    }
+
+    @Test
+    void invalidQuery_ShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> storageService.find(user, query("owner", null), 10));
+        assertThrows(IllegalArgumentException.class, () -> storageService.find(user, query(FileListQuery.SORT_NAME, "up"), 10));
+        assertThrows(IllegalArgumentException.class, () -> storageService.find(user, query(FileListQuery.SORT_NAME, null), -1));
+    }
+
+    private void stored(String filename, long size) {
+        repository.save(new FileEntity(filename, size, "memory/1/" + filename, user));
+    }
+
+    private void pending(String filename, String content) throws Exception {
+        storageService.store(TestUploads.file(filename, content), filename, user);
+    }
+
+    private FileListQuery query(String sort, String order) {
+        FileListQuery query = new FileListQuery();
+        query.setSort(sort);
+        query.setOrder(order);
+        return query;
+    }
+
+    private List<String> names(FileListQuery query, int limit) {
+        return storageService.find(user, query, limit).stream().map(FileEntity::getFilename).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,125 @@
+package netology.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.netology.cluster.ClusterDataSource;
+import ru.netology.cluster.ClusterLockService;
+import ru.netology.entity.Folder;
+import ru.netology.entity.User;
+import ru.netology.repository.FileRepository;
+import ru.netology.repository.FolderRepository;
+import ru.netology.service.FileLockManager;
+import ru.netology.service.FileStorageService;
+import ru.netology.service.FolderService;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FolderServiceTest {
+
+    @Mock
+    private FolderRepository folderRepository;
+
+    @Mock
+    private FileRepository fileRepository;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private FolderService folderService;
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        testUser = new User();
+        testUser.setId(1);
+        testUser.setLogin("testuser");
+
+        FileLockManager lockManager = new FileLockManager(64,
+                new ClusterLockService(new ClusterDataSource(null, false, 0, 0)));
+        folderService = new FolderService(folderRepository, fileRepository, fileStorageService, lockManager,
+                transactionManager);
+    }
+
+    @Test
+    void createFolder_ShouldStoreMaterializedPath() {
+        when(folderRepository.existsByUserAndParentIdIsNullAndName(testUser, "docs")).thenReturn(false);
+        when(folderRepository.save(any(Folder.class))).thenAnswer(invocation -> {
+            Folder folder = invocation.getArgument(0);
+            folder.setId(12L);
+            return folder;
+        });
+
+        Folder folder = folderService.createFolder("docs", null, testUser);
+
+        assertEquals("/12/", folder.getPath());
+        // Одна запись в одной транзакции
+        verify(folderRepository, times(1)).save(any(Folder.class));
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void moveFolder_ShouldRewriteSubtreeWithSingleUpdate() {
+        Folder folder = folder(5L, 1L, "docs", "/1/5/");
+        Folder target = folder(9L, null, "archive", "/9/");
+        when(folderRepository.findByIdAndUser(5L, testUser)).thenReturn(Optional.of(folder));
+        when(folderRepository.findByIdAndUser(9L, testUser)).thenReturn(Optional.of(target));
+        when(folderRepository.existsByUserAndParentIdAndName(testUser, 9L, "docs")).thenReturn(false);
+        when(folderRepository.moveSubtree(1, 5L, 9L, "/1/5/", "/9/5/")).thenReturn(3);
+
+        Folder moved = folderService.moveFolder(5L, 9L, testUser);
+
+        assertEquals("/9/5/", moved.getPath());
+        assertEquals(9L, moved.getParentId());
+        verify(folderRepository, times(1)).moveSubtree(1, 5L, 9L, "/1/5/", "/9/5/");
+        verifyNoInteractions(fileRepository);
+    }
+
+    @Test
+    void moveFolder_ShouldRejectMoveIntoOwnSubfolder() {
+        Folder folder = folder(5L, 1L, "docs", "/1/5/");
+        Folder child = folder(7L, 5L, "drafts", "/1/5/7/");
+        when(folderRepository.findByIdAndUser(5L, testUser)).thenReturn(Optional.of(folder));
+        when(folderRepository.findByIdAndUser(7L, testUser)).thenReturn(Optional.of(child));
+
+        assertThrows(RuntimeException.class, () -> folderService.moveFolder(5L, 7L, testUser));
+
+        verify(folderRepository, never()).moveSubtree(anyInt(), anyLong(), anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    void renameFolder_ShouldNotTouchSubtree() {
+        Folder folder = folder(5L, null, "docs", "/5/");
+        when(folderRepository.findByIdAndUser(5L, testUser)).thenReturn(Optional.of(folder));
+        when(folderRepository.existsByUserAndParentIdIsNullAndName(testUser, "papers")).thenReturn(false);
+        when(folderRepository.save(folder)).thenReturn(folder);
+
+        Folder renamed = folderService.renameFolder(5L, "papers", testUser);
+
+        assertEquals("papers", renamed.getName());
+        assertEquals("/5/", renamed.getPath());
+        verify(folderRepository, never()).moveSubtree(anyInt(), anyLong(), anyLong(), anyString(), anyString());
+        verifyNoInteractions(fileRepository);
+    }
+
+    private Folder folder(Long id, Long parentId, String name, String path) {
+        Folder folder = new Folder(name, parentId, testUser);
+        folder.setId(id);
+        folder.setPath(path);
+        return folder;
+    }
+}
@@ -0,0 +1,306 @@
+package netology.service;
+
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.repository.FileRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * FileRepository в памяти для тестов сервисов. Строки копируются при записи и чтении, как сущности разных
+ * транзакций, версия проверяется, как @Version; saveAll атомарен. Уникальности (user_id, filename), как и в БД,
+ * нет — её обеспечивают блокировки сервисов. findBy не вычисляет спецификации, но применяет сортировку и limit
+ * запроса; имена сравниваются по кодовым точкам, как столбец filename в COLLATE "C".
+ * Запросы ребалансировки томов повторяют свои JPQL-аналоги, включая LIKE с экранированием.
+ */
+final class InMemoryFileRepository {
+    private final Map<Integer, FileEntity> rows = new HashMap<>();
+    private final List<List<String>> batches = new ArrayList<>();
+    private int lastId;
+
+    // Запись, для которой save и saveAll завершаются ошибкой
+    volatile Predicate<FileEntity> rejects = file -> false;
+    // Пока не открыт, saveAll ждёт: записи копятся в оверлее write-behind
+    volatile CountDownLatch gate = new CountDownLatch(0);
+
+    FileRepository proxy() {
+        return (FileRepository) Proxy.newProxyInstance(FileRepository.class.getClassLoader(),
+                new Class<?>[]{FileRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "save" -> save((FileEntity) args[0]);
+                    case "saveAll" -> saveAll(asList(args[0]));
+                    case "findByUserAndFilename" -> find((User) args[0], (String) args[1]);
+                    case "existsByUserAndFilename" -> find((User) args[0], (String) args[1]).isPresent();
+                    case "existsByUserIdAndPath" -> existsPath((Integer) args[0], (String) args[1]);
+                    case "delete" -> {
+                        delete((FileEntity) args[0]);
+                        yield null;
+                    }
+                    case "findBy" -> findBy(args[1]);
+                    case "sumSizeByVolume" -> sumSizeByVolume();
+                    case "findTop100ByVolumeAndIdGreaterThanOrderByIdAsc" -> pageOfVolume((String) args[0], (Integer) args[1]);
+                    case "assignVolume" -> assignVolume((String) args[0], (String) args[1]);
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryFileRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    synchronized List<FileEntity> all() {
+        List<FileEntity> result = new ArrayList<>();
+        for (FileEntity row : rows.values()) {
+            result.add(copy(row));
+        }
+        result.sort(Comparator.comparing(FileEntity::getId));
+        return result;
+    }
+
+    synchronized List<List<String>> batches() {
+        return new ArrayList<>(batches);
+    }
+
+    synchronized FileEntity save(FileEntity entity) {
+        check(entity);
+        return store(entity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<FileEntity> asList(Object entities) {
+        return new ArrayList<>((Collection<FileEntity>) entities);
+    }
+
+    private List<FileEntity> saveAll(List<FileEntity> entities) throws InterruptedException {
+        gate.await();
+        synchronized (this) {
+            for (FileEntity entity : entities) {
+                check(entity);
+            }
+            List<String> names = new ArrayList<>();
+            for (FileEntity entity : entities) {
+                store(entity);
+                names.add(entity.getFilename());
+            }
+            batches.add(names);
+            return entities;
+        }
+    }
+
+    private void check(FileEntity entity) {
+        if (rejects.test(entity)) {
+            throw new IllegalStateException("Rejected: " + entity.getFilename());
+        }
+        if (entity.getId() != null) {
+            FileEntity stored = rows.get(entity.getId());
+            if (stored == null || !Objects.equals(stored.getVersion(), entity.getVersion())) {
+                throw new OptimisticLockingFailureException("Row " + entity.getId() + " was updated or deleted");
+            }
+        }
+    }
+
+    private FileEntity store(FileEntity entity) {
+        if (entity.getId() == null) {
+            entity.setId(++lastId);
+            entity.setVersion(0L);
+        } else {
+            entity.setVersion(entity.getVersion() + 1);
+        }
+        rows.put(entity.getId(), copy(entity));
+        return entity;
+    }
+
+    private synchronized Optional<FileEntity> find(User user, String filename) {
+        return rows.values().stream()
+                .filter(row -> row.getUserId().equals(user.getId()) && row.getFilename().equals(filename))
+                .min(Comparator.comparing(FileEntity::getId))
+                .map(InMemoryFileRepository::copy);
+    }
+
+    private synchronized List<Object[]> sumSizeByVolume() {
+        Map<String, Long> sums = new HashMap<>();
+        for (FileEntity row : rows.values()) {
+            sums.merge(row.getVolume(), row.getSize(), Long::sum);
+        }
+        List<Object[]> result = new ArrayList<>();
+        sums.forEach((volume, size) -> result.add(new Object[]{volume, size}));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object findBy(Object queryFunction) {
+        return ((Function<JpaSpecificationExecutor.SpecificationFluentQuery<FileEntity>, Object>) queryFunction)
+                .apply(new SortedQuery(Sort.unsorted(), Integer.MAX_VALUE));
+    }
+
+    // То, что FileStorageService.find берёт у findBy: сортировка, limit и all(); остальное не нужно сервисам
+    private final class SortedQuery implements JpaSpecificationExecutor.SpecificationFluentQuery<FileEntity> {
+        private final Sort sort;
+        private final int limit;
+
+        private SortedQuery(Sort sort, int limit) {
+            this.sort = sort;
+            this.limit = limit;
+        }
+
+        @Override
+        public JpaSpecificationExecutor.SpecificationFluentQuery<FileEntity> sortBy(Sort sort) {
+            return new SortedQuery(this.sort.and(sort), limit);
+        }
+
+        @Override
+        public JpaSpecificationExecutor.SpecificationFluentQuery<FileEntity> limit(int limit) {
+            return new SortedQuery(sort, limit);
+        }
+
+        @Override
+        public List<FileEntity> all() {
+            return sorted(sort).stream().limit(limit).collect(Collectors.toList());
+        }
+
+        @Override
+        public Stream<FileEntity> stream() {
+            return all().stream();
+        }
+
+        @Override
+        public FileEntity oneValue() {
+            List<FileEntity> result = all();
+            if (result.size() > 1) {
+                throw new IncorrectResultSizeDataAccessException(1, result.size());
+            }
+            return result.isEmpty() ? null : result.get(0);
+        }
+
+        @Override
+        public FileEntity firstValue() {
+            List<FileEntity> result = all();
+            return result.isEmpty() ? null : result.get(0);
+        }
+
+        @Override
+        public long count() {
+            return all().size();
+        }
+
+        @Override
+        public boolean exists() {
+            return !all().isEmpty();
+        }
+
+        @Override
+        public <R> JpaSpecificationExecutor.SpecificationFluentQuery<R> as(Class<R> resultType) {
+            throw new UnsupportedOperationException("as");
+        }
+
+        @Override
+        public JpaSpecificationExecutor.SpecificationFluentQuery<FileEntity> project(Collection<String> properties) {
+            throw new UnsupportedOperationException("project");
+        }
+
+        @Override
+        public Page<FileEntity> page(Pageable pageable) {
+            throw new UnsupportedOperationException("page");
+        }
+
+        @Override
+        public Page<FileEntity> page(Pageable pageable, Specification<?> countSpec) {
+            throw new UnsupportedOperationException("page");
+        }
+    }
+
+    private List<FileEntity> sorted(Sort sort) {
+        List<FileEntity> result = all();
+        Comparator<FileEntity> comparator = Comparator.comparing(file -> 0);
+        for (Sort.Order order : sort) {
+            Comparator<FileEntity> next = switch (order.getProperty()) {
+                case "filename" -> Comparator.comparing(FileEntity::getFilename,
+                        (a, b) -> Arrays.compare(a.codePoints().toArray(), b.codePoints().toArray()));
+                case "size" -> Comparator.comparing(FileEntity::getSize);
+                case "createdDate" -> Comparator.comparing(FileEntity::getCreatedDate, Comparator.nullsFirst(Comparator.naturalOrder()));
+                case "id" -> Comparator.comparing(FileEntity::getId);
+                default -> throw new UnsupportedOperationException("Sort by " + order.getProperty());
+            };
+            comparator = comparator.thenComparing(order.isAscending() ? next : next.reversed());
+        }
+        result.sort(comparator);
+        return result;
+    }
+
+    private synchronized List<FileEntity> pageOfVolume(String volume, Integer afterId) {
+        return rows.values().stream()
+                .filter(row -> volume.equals(row.getVolume()) && row.getId() > afterId)
+                .sorted(Comparator.comparing(FileEntity::getId))
+                .limit(100)
+                .map(InMemoryFileRepository::copy)
+                .collect(Collectors.toList());
+    }
+
+    // LIKE CONCAT(:prefix, '%') ESCAPE '!', как в запросе репозитория
+    private synchronized int assignVolume(String volume, String prefix) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < prefix.length(); i++) {
+            char c = prefix.charAt(i);
+            if (c == '!' && i + 1 < prefix.length()) {
+                regex.append(Pattern.quote(String.valueOf(prefix.charAt(++i))));
+            } else if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        Pattern pattern = Pattern.compile(regex + ".*", Pattern.DOTALL);
+        int assigned = 0;
+        for (FileEntity row : rows.values()) {
+            if (row.getVolume() == null && pattern.matcher(row.getFilePath()).matches()) {
+                row.setVolume(volume);
+                assigned++;
+            }
+        }
+        return assigned;
+    }
+
+    private synchronized boolean existsPath(Integer userId, String path) {
+        return rows.values().stream().anyMatch(row -> row.getUserId().equals(userId) && row.getFilePath().equals(path));
+    }
+
+    private synchronized void delete(FileEntity entity) {
+        check(entity);
+        rows.remove(entity.getId());
+    }
+
+    private static FileEntity copy(FileEntity source) {
+        FileEntity copy = new FileEntity(source.getFilename(), source.getSize(), source.getFilePath(), source.getUser());
+        copy.setId(source.getId());
+        copy.setVersion(source.getVersion());
+        copy.setVolume(source.getVolume());
+        copy.setFolderId(source.getFolderId());
+        copy.setChecksum(source.getChecksum());
+        copy.setQuarantined(source.isQuarantined());
+        copy.setCreatedDate(source.getCreatedDate());
+        return copy;
+    }
+}
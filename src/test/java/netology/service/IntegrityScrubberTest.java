@@ -0,0 +1,182 @@
+package netology.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.netology.cluster.ClusterDataSource;
+import ru.netology.cluster.ClusterLockService;
+import ru.netology.dto.ScrubStatusDto;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.ScrubState;
+import ru.netology.entity.User;
+import ru.netology.repository.FileRepository;
+import ru.netology.repository.ScrubStateRepository;
+import ru.netology.service.FileLockManager;
+import ru.netology.service.IntegrityScrubber;
+import ru.netology.storage.InMemoryStorageBackend;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IntegrityScrubberTest {
+
+    @Mock
+    private FileRepository fileRepository;
+
+    @Mock
+    private ScrubStateRepository scrubStateRepository;
+
+    private final InMemoryStorageBackend storageBackend = new InMemoryStorageBackend();
+    private IntegrityScrubber scrubber;
+    private User testUser;
+
+    @BeforeEach
+    void setUp() {
+        testUser = new User();
+        testUser.setId(1);
+        testUser.setLogin("testuser");
+
+        FileLockManager lockManager = new FileLockManager(64,
+                new ClusterLockService(new ClusterDataSource(null, false, 0, 0)));
+        scrubber = new IntegrityScrubber(fileRepository, scrubStateRepository, lockManager, storageBackend,
+                Optional.empty(), false, 0, 60_000);
+    }
+
+    @Test
+    void scrubNextBatch_ShouldQuarantineCorruptedFile() throws Exception {
+        FileEntity file = storeFile(3, "report.txt", "original content");
+        file.setChecksum(crc("original content") ^ 1);
+        when(scrubStateRepository.findById("integrity")).thenReturn(Optional.empty());
+        when(fileRepository.findTop100ByIdGreaterThanOrderByIdAsc(0)).thenReturn(List.of(file));
+        when(fileRepository.findByUserAndFilename(testUser, "report.txt")).thenReturn(Optional.of(file));
+        when(fileRepository.quarantine(1, 3, 5L)).thenReturn(1);
+
+        assertTrue(scrubber.scrubNextBatch());
+
+        verify(fileRepository).quarantine(1, 3, 5L);
+        assertEquals(1, scrubber.getStatus().getMismatches());
+    }
+
+    @Test
+    void scrubNextBatch_ShouldNotQuarantine_WhenFileChangedDuringCheck() throws Exception {
+        FileEntity file = storeFile(3, "report.txt", "original content");
+        file.setChecksum(crc("original content") ^ 1);
+        FileEntity rewritten = storeFile(3, "report.txt", "original content");
+        rewritten.setVersion(6L);
+        when(scrubStateRepository.findById("integrity")).thenReturn(Optional.empty());
+        when(fileRepository.findTop100ByIdGreaterThanOrderByIdAsc(0)).thenReturn(List.of(file));
+        when(fileRepository.findByUserAndFilename(testUser, "report.txt")).thenReturn(Optional.of(rewritten));
+
+        scrubber.scrubNextBatch();
+
+        verify(fileRepository, never()).quarantine(anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    void scrubNextBatch_ShouldRecordChecksum_WhenMissing() throws Exception {
+        FileEntity file = storeFile(4, "legacy.txt", "uploaded before checksums");
+        when(scrubStateRepository.findById("integrity")).thenReturn(Optional.empty());
+        when(fileRepository.findTop100ByIdGreaterThanOrderByIdAsc(0)).thenReturn(List.of(file));
+
+        scrubber.scrubNextBatch();
+
+        verify(fileRepository).recordChecksum(1, 4, 5L, crc("uploaded before checksums"));
+        verify(fileRepository, never()).quarantine(anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    void scrubNextBatch_ShouldResumeFromSavedPosition() throws Exception {
+        ScrubState state = new ScrubState("integrity");
+        state.setLastFileId(40);
+        FileEntity file = storeFile(41, "next.txt", "intact");
+        file.setChecksum(crc("intact"));
+        when(scrubStateRepository.findById("integrity")).thenReturn(Optional.of(state));
+        when(fileRepository.findTop100ByIdGreaterThanOrderByIdAsc(40)).thenReturn(List.of(file));
+
+        assertTrue(scrubber.scrubNextBatch());
+
+        ArgumentCaptor<ScrubState> saved = ArgumentCaptor.forClass(ScrubState.class);
+        verify(scrubStateRepository).save(saved.capture());
+        assertEquals(41, saved.getValue().getLastFileId());
+        verify(fileRepository, never()).quarantine(anyInt(), anyInt(), anyLong());
+    }
+
+    @Test
+    void scrubNextBatch_ShouldRestartPass_WhenAllFilesVerified() throws Exception {
+        ScrubState state = new ScrubState("integrity");
+        state.setLastFileId(41);
+        when(scrubStateRepository.findById("integrity")).thenReturn(Optional.of(state));
+        when(fileRepository.findTop100ByIdGreaterThanOrderByIdAsc(41)).thenReturn(List.of());
+
+        assertFalse(scrubber.scrubNextBatch());
+
+        verify(scrubStateRepository).save(any(ScrubState.class));
+        assertEquals(0, state.getLastFileId());
+    }
+
+    @Test
+    void newPass_ShouldResetCounters() throws Exception {
+        ScrubState state = new ScrubState("integrity");
+        FileEntity corrupted = storeFile(3, "report.txt", "original content");
+        corrupted.setChecksum(crc("original content") ^ 1);
+        FileEntity intact = storeFile(4, "notes.txt", "intact");
+        intact.setChecksum(crc("intact"));
+        when(scrubStateRepository.findById("integrity")).thenReturn(Optional.of(state));
+        when(fileRepository.findTop100ByIdGreaterThanOrderByIdAsc(0)).thenReturn(List.of(corrupted)).thenReturn(List.of(intact));
+        when(fileRepository.findTop100ByIdGreaterThanOrderByIdAsc(3)).thenReturn(List.of());
+        when(fileRepository.findByUserAndFilename(testUser, "report.txt")).thenReturn(Optional.of(corrupted));
+        when(fileRepository.quarantine(1, 3, 5L)).thenReturn(1);
+
+        assertTrue(scrubber.scrubNextBatch());
+        assertFalse(scrubber.scrubNextBatch());
+        // Итог законченного прохода виден до начала следующего
+        assertEquals(1, scrubber.getStatus().getMismatches());
+
+        assertTrue(scrubber.scrubNextBatch());
+        ScrubStatusDto status = scrubber.getStatus();
+        assertEquals(1, status.getFilesVerified());
+        assertEquals(6, status.getBytesVerified());
+        assertEquals(0, status.getMismatches());
+    }
+
+    @Test
+    void release_ShouldReportMissingFile() {
+        when(fileRepository.release(7)).thenReturn(0);
+        when(fileRepository.release(8)).thenReturn(1);
+
+        assertFalse(scrubber.release(7));
+        assertTrue(scrubber.release(8));
+    }
+
+    private FileEntity storeFile(Integer id, String filename, String content) throws IOException {
+        String key = InMemoryStorageBackend.VOLUME + "/" + id + "/" + filename;
+        storageBackend.delete(key);
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        storageBackend.write(key, new ByteArrayInputStream(bytes));
+
+        FileEntity file = new FileEntity(filename, (long) bytes.length, key, testUser);
+        file.setId(id);
+        file.setVersion(5L);
+        return file;
+    }
+
+    private static long crc(String content) {
+        CRC32C crc = new CRC32C();
+        crc.update(content.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
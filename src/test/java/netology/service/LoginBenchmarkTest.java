@@ -0,0 +1,157 @@
+package netology.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import ru.netology.service.PasswordHasher;
+import ru.netology.storage.InMemoryStorageBackend;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Запуск: mvn test -Dbenchmarks=true -Dtest=LoginBenchmarkTest
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class LoginBenchmarkTest {
+
+    private static final int BCRYPT_COST = Integer.getInteger("benchmarks.login.cost", 12);
+    private static final int REQUEST_THREADS = Integer.getInteger("benchmarks.login.request-threads", 200);
+    private static final int LOGIN_CLIENTS = Integer.getInteger("benchmarks.login.clients", 400);
+    private static final long DURATION_MS = Long.getLong("benchmarks.login.duration-ms", 10_000);
+    private static final int FILE_SIZE = 1024 * 1024;
+    private static final String KEY = "memory/1/probe.bin";
+
+    @Test
+    void isolatedHashing_ShouldKeepFileLatencyUnderLoginStorm() throws Exception {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(BCRYPT_COST);
+        String hash = encoder.encode("password");
+        InMemoryStorageBackend storage = new InMemoryStorageBackend();
+        byte[] data = new byte[FILE_SIZE];
+        new Random(42).nextBytes(data);
+        storage.write(KEY, new ByteArrayInputStream(data));
+
+        Result inline = run("inline", storage, password -> encoder.matches(password, hash));
+
+        PasswordHasher passwordHasher = new PasswordHasher(encoder, 0, 32);
+        Result isolated;
+        try {
+            isolated = run("isolated", storage, password -> passwordHasher.verify(password, hash).isMatched());
+        } finally {
+            passwordHasher.shutdown();
+        }
+
+        System.out.println(inline);
+        System.out.println(isolated);
+        assertTrue(isolated.logins > 0);
+        // Порог задаётся для конкретного железа
+        String maxP99 = System.getProperty("benchmarks.login.max-file-p99-ms");
+        if (maxP99 != null) {
+            assertTrue(isolated.fileP99Ms <= Double.parseDouble(maxP99), "File p99 is above " + maxP99 + " ms");
+        }
+    }
+
+    // Общий пул потоков запросов, как у Tomcat: шторм входов и параллельно замер задержки чтения файла
+    private Result run(String name, InMemoryStorageBackend storage, Predicate<String> login) throws Exception {
+        ExecutorService requestThreads = Executors.newFixedThreadPool(REQUEST_THREADS);
+        // Клиенты входа ограничены семафором, как число открытых соединений
+        Semaphore clients = new Semaphore(LOGIN_CLIENTS);
+        AtomicLong logins = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        List<Long> fileLatencies = Collections.synchronizedList(new ArrayList<>());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MS);
+
+        Thread loginLoad = Thread.ofPlatform().start(() -> {
+            while (System.nanoTime() < deadline) {
+                try {
+                    clients.acquire();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                requestThreads.execute(() -> {
+                    try {
+                        login.test("password");
+                        logins.incrementAndGet();
+                    } catch (RejectedExecutionException e) {
+                        rejected.incrementAndGet();
+                    } finally {
+                        clients.release();
+                    }
+                });
+            }
+        });
+
+        while (System.nanoTime() < deadline) {
+            long submitted = System.nanoTime();
+            requestThreads.submit(() -> readFile(storage)).get();
+            fileLatencies.add(System.nanoTime() - submitted);
+            Thread.sleep(10);
+        }
+        loginLoad.join();
+        requestThreads.shutdown();
+        assertTrue(requestThreads.awaitTermination(1, TimeUnit.MINUTES));
+
+        List<Long> sorted = new ArrayList<>(fileLatencies);
+        Collections.sort(sorted);
+        double seconds = DURATION_MS / 1000.0;
+        return new Result(name, logins.get() / seconds, rejected.get() / seconds,
+                percentile(sorted, 0.5), percentile(sorted, 0.99), logins.get());
+    }
+
+    private long readFile(InMemoryStorageBackend storage) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = storage.read(KEY, 0, FILE_SIZE)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private double percentile(List<Long> sorted, double quantile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.floor(sorted.size() * quantile))) / 1_000_000.0;
+    }
+
+    private static final class Result {
+        private final String name;
+        private final double loginsPerSecond;
+        private final double rejectedPerSecond;
+        private final double fileP50Ms;
+        private final double fileP99Ms;
+        private final long logins;
+
+        private Result(String name, double loginsPerSecond, double rejectedPerSecond,
+                       double fileP50Ms, double fileP99Ms, long logins) {
+            this.name = name;
+            this.loginsPerSecond = loginsPerSecond;
+            this.rejectedPerSecond = rejectedPerSecond;
+            this.fileP50Ms = fileP50Ms;
+            this.fileP99Ms = fileP99Ms;
+            this.logins = logins;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s logins %.1f/s, rejected %.1f/s, file read p50 %.2f ms, p99 %.2f ms",
+                    name, loginsPerSecond, rejectedPerSecond, fileP50Ms, fileP99Ms);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package netology.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cluster.ClusterDataSource;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.cluster.ClusterLockService;
+import ru.netology.dto.FileListQuery;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.service.FileLockManager;
+import ru.netology.service.FileStorageService;
+import ru.netology.service.MetadataWriteBehindService;
+import ru.netology.storage.InMemoryStorageBackend;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetadataWriteBehindServiceTest {
+
+    private final InMemoryFileRepository repository = new InMemoryFileRepository();
+    private final InMemoryStorageBackend storageBackend = new InMemoryStorageBackend();
+    private final User user = new User();
+    private MetadataWriteBehindService writer;
+
+    @BeforeEach
+    void setUp() {
+        user.setId(1);
+        user.setLogin("testuser");
+        writer = writer(false);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        repository.gate.countDown();
+        writer.stop();
+    }
+
+    @Test
+    void flush_ShouldSaveFilesInSubmissionOrder() throws Exception {
+        repository.gate = new CountDownLatch(1);
+        List<String> submitted = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            submitted.add("file-" + i + ".txt");
+            writer.save(file("file-" + i + ".txt"));
+        }
+
+        repository.gate.countDown();
+        for (String filename : submitted) {
+            writer.awaitPersisted(user, filename);
+        }
+
+        List<String> flushed = repository.batches().stream().flatMap(List::stream).collect(Collectors.toList());
+        assertEquals(submitted, flushed);
+        assertTrue(writer.pendingFor(user).isEmpty());
+    }
+
+    @Test
+    void failedBatch_ShouldRetryOneByOne_AndDeleteContentOfRejectedFile() throws Exception {
+        repository.rejects = file -> file.getFilename().equals("bad.txt");
+        repository.gate = new CountDownLatch(1);
+        writer.save(storedFile("good.txt"));
+        writer.save(storedFile("bad.txt"));
+
+        repository.gate.countDown();
+        writer.awaitPersisted(user, "good.txt");
+        // Запись уже ушла из оверлея (её поштучная попытка идёт после good.txt), но ошибка не потеряна
+        waitUntil(() -> writer.findPending(user, "bad.txt").isEmpty());
+        assertThrows(RuntimeException.class, () -> writer.awaitPersisted(user, "bad.txt"));
+        // Ошибка сообщается один раз
+        writer.awaitPersisted(user, "bad.txt");
+
+        assertEquals(List.of("good.txt"), repository.all().stream().map(FileEntity::getFilename).collect(Collectors.toList()));
+        assertTrue(storageBackend.stat(key("good.txt")).isPresent());
+        assertTrue(storageBackend.stat(key("bad.txt")).isEmpty());
+    }
+
+    @Test
+    void reupload_ShouldClearUnreportedFailure() throws Exception {
+        repository.rejects = file -> file.getFilename().equals("bad.txt");
+        writer.save(storedFile("bad.txt"));
+        waitUntil(() -> writer.findPending(user, "bad.txt").isEmpty());
+
+        repository.rejects = file -> false;
+        writer.save(storedFile("bad.txt"));
+
+        writer.awaitPersisted(user, "bad.txt");
+        assertEquals(1, repository.all().size());
+    }
+
+    @Test
+    void pendingFile_ShouldBeVisibleToListAndDownloadBeforeFlush() throws Exception {
+        repository.gate = new CountDownLatch(1);
+        FileStorageService storageService = new FileStorageService(repository.proxy(), writer,
+                new FileLockManager(64, new ClusterLockService(new ClusterDataSource(null, false, 0, 0))),
+                new ClusterEventBus(new ClusterDataSource(null, false, 1, 1000), "node"), storageBackend);
+
+        storageService.store(TestUploads.file("new.txt", "new content"), "new.txt", user);
+
+        assertTrue(repository.all().isEmpty());
+        assertEquals(List.of("new.txt"), storageService.find(user, new FileListQuery(), 10).stream()
+                .map(FileEntity::getFilename).collect(Collectors.toList()));
+        FileEntity pending = storageService.load("new.txt", user).orElseThrow();
+        assertEquals("new content", new String(storageBackend.read(pending.getFilePath(), 0, 100).readAllBytes()));
+        // Повторная загрузка с тем же именем видит оверлей
+        assertThrows(FileAlreadyExistsException.class,
+                () -> storageService.store(TestUploads.file("new.txt", "other"), "new.txt", user));
+
+        repository.gate.countDown();
+        writer.awaitPersisted(user, "new.txt");
+        assertEquals(1, repository.all().size());
+        assertEquals(1, storageService.find(user, new FileListQuery(), 10).size());
+    }
+
+    @Test
+    void clusterMode_ShouldSaveSynchronously() throws InterruptedException {
+        writer.stop();
+        writer = writer(true);
+
+        writer.save(file("sync.txt"));
+
+        assertFalse(writer.isEnabled());
+        assertEquals(1, repository.all().size());
+        assertTrue(writer.findPending(user, "sync.txt").isEmpty());
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Condition not reached in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private MetadataWriteBehindService writer(boolean clusterEnabled) {
+        MetadataWriteBehindService service = new MetadataWriteBehindService(repository.proxy(), storageBackend,
+                true, clusterEnabled, 500, 20, 100, 100, 5000);
+        service.start();
+        return service;
+    }
+
+    private FileEntity file(String filename) {
+        return new FileEntity(filename, 1L, key(filename), user);
+    }
+
+    private FileEntity storedFile(String filename) throws Exception {
+        storageBackend.write(key(filename), new ByteArrayInputStream(new byte[]{1}));
+        return file(filename);
+    }
+
+    private String key(String filename) {
+        return InMemoryStorageBackend.VOLUME + "/" + user.getId() + "/" + filename;
+    }
+}
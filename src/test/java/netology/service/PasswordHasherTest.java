@@ -0,0 +1,88 @@
+package netology.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.netology.service.PasswordHasher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PasswordHasherTest {
+
+    private PasswordHasher passwordHasher;
+
+    @AfterEach
+    void tearDown() {
+        if (passwordHasher != null) {
+            passwordHasher.shutdown();
+        }
+    }
+
+    @Test
+    void verify_ShouldReturnUpgradedHash_WhenCostIsBelowConfigured() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(5);
+        passwordHasher = new PasswordHasher(encoder, 1, 4);
+        String weakHash = new BCryptPasswordEncoder(4).encode("secret");
+
+        PasswordHasher.Verification verification = passwordHasher.verify("secret", weakHash);
+
+        assertTrue(verification.isMatched());
+        assertNotNull(verification.getUpgradedHash());
+        assertTrue(verification.getUpgradedHash().startsWith("$2a$05$"));
+        assertTrue(encoder.matches("secret", verification.getUpgradedHash()));
+    }
+
+    @Test
+    void verify_ShouldNotUpgrade_WhenPasswordIsWrongOrHashIsCurrent() {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(4);
+        passwordHasher = new PasswordHasher(encoder, 1, 4);
+        String hash = encoder.encode("secret");
+
+        assertFalse(passwordHasher.verify("wrong", hash).isMatched());
+        PasswordHasher.Verification verification = passwordHasher.verify("secret", hash);
+        assertTrue(verification.isMatched());
+        assertNull(verification.getUpgradedHash());
+    }
+
+    @Test
+    void verify_ShouldRejectImmediately_WhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blockingEncoder = new BCryptPasswordEncoder(4) {
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return false;
+            }
+        };
+        passwordHasher = new PasswordHasher(blockingEncoder, 1, 1);
+
+        List<CompletableFuture<Boolean>> waiting = new ArrayList<>();
+        waiting.add(CompletableFuture.supplyAsync(() -> passwordHasher.verify("a", "hash").isMatched()));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        waiting.add(CompletableFuture.supplyAsync(() -> passwordHasher.verify("b", "hash").isMatched()));
+        while (passwordHasher.getQueueDepth() == 0) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(RejectedExecutionException.class, () -> passwordHasher.verify("c", "hash"));
+
+        release.countDown();
+        for (CompletableFuture<Boolean> future : waiting) {
+            assertFalse(future.get(5, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package netology.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.netology.cluster.ClusterDataSource;
+import ru.netology.cluster.ClusterEventBus;
+import ru.netology.cluster.ClusterLockService;
+import ru.netology.dto.ReconcileStatusDto;
+import ru.netology.repository.FileRepository;
+import ru.netology.service.FileLockManager;
+import ru.netology.service.StorageReconciler;
+import ru.netology.service.StorageReconciler.StoredFile;
+import ru.netology.storage.LocalFileSystemStorageBackend;
+import ru.netology.storage.VolumeManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StorageReconcilerTest {
+
+    @Mock
+    private FileRepository fileRepository;
+
+    @Mock
+    private ClusterEventBus clusterEventBus;
+
+    private Path root;
+    private StorageReconciler reconciler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        root = Files.createTempDirectory("reconcile-test");
+        VolumeManager volumeManager = new VolumeManager(root.toString(), 0);
+        FileLockManager lockManager = new FileLockManager(64,
+                new ClusterLockService(new ClusterDataSource(null, false, 0, 0)));
+        reconciler = new StorageReconciler(null, fileRepository, lockManager,
+                new LocalFileSystemStorageBackend(volumeManager), volumeManager, clusterEventBus, 2, 60_000, 100, 2);
+    }
+
+    @Test
+    void reconcile_ShouldReportDifferencesInMergeOrder() throws IOException {
+        String a = createFile("1/a.txt", true);
+        createFile("1/b.txt", true);
+        String c = createFile("2/c.txt", true);
+        createFile("2/nested/d.txt", true);
+        createFile("2/fresh.txt", false);
+
+        reconciler.reconcile(List.of(
+                new StoredFile(10, 1, "a.txt", a),
+                new StoredFile(11, 1, "missing.txt", root.resolve("1/missing.txt").toString()),
+                new StoredFile(12, 2, "c.txt", c),
+                new StoredFile(13, 3, "gone.txt", root.resolve("3/gone.txt").toString())).iterator(), false);
+
+        ReconcileStatusDto status = reconciler.getStatus();
+        assertEquals(5, status.getDiskFiles());
+        assertEquals(4, status.getRows());
+        assertEquals(2, status.getMatched());
+        assertEquals(2, status.getOrphanFiles());
+        assertEquals(2, status.getMissingFiles());
+        assertEquals(1, status.getSkippedRecent());
+        assertEquals(0, status.getRepaired());
+        assertTrue(Files.exists(root.resolve("1/b.txt")));
+        verify(fileRepository, never()).deleteByIdAndFilePath(anyInt(), anyInt(), anyString());
+    }
+
+    @Test
+    void reconcile_ShouldRepairOrphansAndMissingRows() throws IOException {
+        String a = createFile("1/a.txt", true);
+        String orphan = createFile("1/b.txt", true);
+        createFile("1/fresh.txt", false);
+        String missing = root.resolve("1/missing.txt").toString();
+        when(fileRepository.existsByUserIdAndPath(1, orphan)).thenReturn(false);
+        when(fileRepository.deleteByIdAndFilePath(1, 11, missing)).thenReturn(1);
+
+        reconciler.reconcile(List.of(
+                new StoredFile(10, 1, "a.txt", a),
+                new StoredFile(11, 1, "missing.txt", missing)).iterator(), true);
+
+        assertEquals(2, reconciler.getStatus().getRepaired());
+        assertFalse(Files.exists(Path.of(orphan)));
+        assertTrue(Files.exists(root.resolve("1/fresh.txt")));
+        assertTrue(Files.exists(Path.of(a)));
+        verify(clusterEventBus).publish("files", "1/missing.txt");
+    }
+
+    @Test
+    void reconcile_ShouldKeepFile_WhenRowAppearedDuringScan() throws IOException {
+        String late = createFile("1/late.txt", true);
+        when(fileRepository.existsByUserIdAndPath(1, late)).thenReturn(true);
+
+        reconciler.reconcile(List.<StoredFile>of().iterator(), true);
+
+        assertTrue(Files.exists(Path.of(late)));
+        assertEquals(0, reconciler.getStatus().getRepaired());
+    }
+
+    @Test
+    void reconcile_ShouldMergeSpilledRunsInKeyOrder() throws IOException {
+        // Буфер сортировки на две записи: каталог уходит во временные серии, порядок должен совпасть с БД
+        List<String> keys = new ArrayList<>();
+        for (String name : List.of("e.txt", "a.txt", "Ａ.txt", "c.txt", "😀.txt", "b.txt", "nested/d.txt")) {
+            keys.add(createFile("1/" + name, true));
+        }
+        keys.sort(Comparator.comparing(key -> key.codePoints().toArray(), Arrays::compare));
+        List<StoredFile> rows = new ArrayList<>();
+        for (String key : keys) {
+            rows.add(new StoredFile(rows.size() + 1, 1, Path.of(key).getFileName().toString(), key));
+        }
+
+        reconciler.reconcile(rows.iterator(), false);
+
+        ReconcileStatusDto status = reconciler.getStatus();
+        assertEquals(keys.size(), status.getMatched());
+        assertEquals(0, status.getOrphanFiles());
+        assertEquals(0, status.getMissingFiles());
+    }
+
+    @Test
+    void deltaTempOrphan_ShouldBeLockedUnderOwnerName() throws IOException {
+        String owner = root.resolve("1/doc.txt").toString();
+        String temp = createFile("1/doc.txt.delta-" + UUID.randomUUID(), true);
+        when(fileRepository.findFilenameByUserIdAndPath(1, owner)).thenReturn(Optional.of("renamed.txt"));
+        when(fileRepository.existsByUserIdAndPath(1, temp)).thenReturn(false);
+
+        reconciler.reconcile(List.<StoredFile>of().iterator(), true);
+
+        verify(fileRepository).findFilenameByUserIdAndPath(1, owner);
+        assertFalse(Files.exists(Path.of(temp)));
+        assertEquals(1, reconciler.getStatus().getRepaired());
+    }
+
+    private String createFile(String relative, boolean old) throws IOException {
+        Path path = root.resolve(relative);
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, relative);
+        if (old) {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() - 3_600_000));
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package netology.service;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+
+// MultipartFile без контекста Spring: только то, что читают сервисы при загрузке
+final class TestUploads {
+
+    private TestUploads() {}
+
+    static MultipartFile file(String filename, String content) {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        return (MultipartFile) Proxy.newProxyInstance(MultipartFile.class.getClassLoader(),
+                new Class<?>[]{MultipartFile.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getOriginalFilename", "getName" -> filename;
+                    case "getSize" -> (long) bytes.length;
+                    case "isEmpty" -> bytes.length == 0;
+                    case "getBytes" -> bytes.clone();
+                    case "getInputStream" -> new ByteArrayInputStream(bytes);
+                    case "getContentType" -> "application/octet-stream";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
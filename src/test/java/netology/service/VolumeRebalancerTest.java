@@ -0,0 +1,125 @@
+package netology.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.cluster.ClusterDataSource;
+import ru.netology.cluster.ClusterLockService;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.service.FileLockManager;
+import ru.netology.service.VolumeRebalancer;
+import ru.netology.storage.StorageVolume;
+import ru.netology.storage.VolumeManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VolumeRebalancerTest {
+
+    private final InMemoryFileRepository repository = new InMemoryFileRepository();
+    private final User user = new User();
+    private Path root;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        user.setId(1);
+        user.setLogin("testuser");
+        root = Files.createTempDirectory("rebalancer-test");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (var paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    @Test
+    void overfilledVolume_ShouldBeDrainedToTargetShare() throws Exception {
+        VolumeManager volumeManager = new VolumeManager(root.resolve("a") + "," + root.resolve("b"), 0);
+        StorageVolume full = volumeManager.getVolumes().get(0);
+        StorageVolume empty = volumeManager.getVolumes().get(1);
+        for (int i = 0; i < 4; i++) {
+            store(full, "file-" + i + ".bin", full.getId());
+        }
+
+        rebalancer(volumeManager, localLocks()).rebalance();
+
+        Map<String, List<FileEntity>> byVolume = repository.all().stream()
+                .collect(Collectors.groupingBy(FileEntity::getVolume));
+        assertEquals(2, byVolume.get(full.getId()).size());
+        assertEquals(2, byVolume.get(empty.getId()).size());
+        for (FileEntity file : repository.all()) {
+            StorageVolume volume = volumeManager.find(file.getVolume()).orElseThrow();
+            Path path = Paths.get(file.getFilePath());
+            assertTrue(volume.contains(path), file.getFilename() + " is not on its volume");
+            assertEquals(100, Files.size(path));
+        }
+        try (var files = Files.list(full.getRoot().resolve("1"))) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    void legacyFiles_ShouldBeAssignedByLiteralPathPrefix() throws Exception {
+        // "_" в LIKE — любой символ: без экранирования том vol_1 забрал бы файлы тома volX1
+        VolumeManager volumeManager = new VolumeManager(root.resolve("vol_1") + "," + root.resolve("volX1"), 0);
+        StorageVolume underscored = volumeManager.getVolumes().get(0);
+        StorageVolume plain = volumeManager.getVolumes().get(1);
+        store(plain, "legacy.bin", null);
+
+        rebalancer(volumeManager, localLocks()).rebalance();
+
+        FileEntity legacy = repository.all().get(0);
+        assertNotEquals(underscored.getId(), legacy.getVolume());
+        assertTrue(legacy.getVolume() != null && volumeManager.find(legacy.getVolume()).orElseThrow().contains(
+                Paths.get(legacy.getFilePath())));
+    }
+
+    @Test
+    void rebalancingOnAnotherNode_ShouldLeaveFilesInPlace() throws Exception {
+        VolumeManager volumeManager = new VolumeManager(root.resolve("a") + "," + root.resolve("b"), 0);
+        StorageVolume full = volumeManager.getVolumes().get(0);
+        for (int i = 0; i < 4; i++) {
+            store(full, "file-" + i + ".bin", full.getId());
+        }
+        ClusterLockService busy = new ClusterLockService(new ClusterDataSource(null, false, 0, 0)) {
+            @Override
+            public Optional<Lease> tryAcquire(String task) {
+                return Optional.empty();
+            }
+        };
+
+        rebalancer(volumeManager, busy).rebalance();
+
+        assertTrue(repository.all().stream().allMatch(file -> full.getId().equals(file.getVolume())));
+    }
+
+    private VolumeRebalancer rebalancer(VolumeManager volumeManager, ClusterLockService clusterLockService) {
+        return new VolumeRebalancer(repository.proxy(), new FileLockManager(64, localLocks()), volumeManager,
+                clusterLockService, true, 0.1, 0);
+    }
+
+    private ClusterLockService localLocks() {
+        return new ClusterLockService(new ClusterDataSource(null, false, 0, 0));
+    }
+
+    private void store(StorageVolume volume, String filename, String volumeId) throws Exception {
+        Path path = Files.createDirectories(volume.getRoot().resolve("1")).resolve(filename);
+        Files.write(path, new byte[100]);
+        FileEntity file = new FileEntity(filename, 100L, path.toString(), user);
+        file.setVolume(volumeId);
+        repository.save(file);
+    }
+}
@@ -0,0 +1,129 @@
+package netology.sql;
+
+import netology.load.EmbeddedApplication;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import ru.netology.entity.FileEntity;
+import ru.netology.entity.User;
+import ru.netology.repository.FileRepository;
+import ru.netology.repository.UserRepository;
+import ru.netology.sql.SqlStatistics;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Число SQL-запросов на эндпоинт не должно зависеть от числа файлов пользователя.
+ * У пользователя FILES файлов: запрос на каждую строку (N+1, например через FileEntity.user)
+ * сразу выходит за бюджет. Бюджет включает поиск пользователя в фильтре и в контроллере.
+ */
+class EndpointStatementBudgetTest {
+    private static final int FILES = 20;
+    private static final String LOGIN = "budget-user";
+    private static final String PASSWORD = "budget-password";
+    private static final Pattern TOKEN = Pattern.compile("\"auth-token\"\\s*:\\s*\"([^\"]+)\"");
+    private static final String BOUNDARY = "budget-boundary";
+
+    private static Path storage;
+    private static ConfigurableApplicationContext context;
+    private static StatementBudget budget;
+    private static HttpClient client;
+    private static String baseUrl;
+    private static String token;
+
+    @BeforeAll
+    static void startApplication() throws Exception {
+        storage = Files.createTempDirectory("budget-storage");
+        context = EmbeddedApplication.start("budget", storage, "--cloud.auth.bcrypt-cost=4");
+        budget = new StatementBudget(context.getBean(SqlStatistics.class));
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        baseUrl = "http://localhost:" + EmbeddedApplication.port(context);
+
+        User user = context.getBean(UserRepository.class)
+                .save(new User(LOGIN, context.getBean(PasswordEncoder.class).encode(PASSWORD)));
+        List<FileEntity> files = new ArrayList<>();
+        for (int i = 0; i < FILES; i++) {
+            files.add(new FileEntity("seed-" + i + ".txt", 1L, "seed/" + i, user));
+        }
+        context.getBean(FileRepository.class).saveAll(files);
+
+        HttpResponse<String> login = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"login\":\"" + LOGIN + "\",\"password\":\"" + PASSWORD + "\"}"))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = TOKEN.matcher(login.body());
+        assertTrue(matcher.find(), login.body());
+        token = matcher.group(1);
+    }
+
+    @AfterAll
+    static void stopApplication() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        EmbeddedApplication.deleteRecursively(storage);
+    }
+
+    @Test
+    void list_ShouldNotQueryPerFile() throws Throwable {
+        budget.assertAtMost("GET /list", 5, () -> assertOk(send(get("/list?limit=" + FILES))));
+    }
+
+    @Test
+    void folder_ShouldNotQueryPerFile() throws Throwable {
+        budget.assertAtMost("GET /folder", 6, () -> assertOk(send(get("/folder"))));
+    }
+
+    @Test
+    void fileLifecycle_ShouldStayWithinBudget() throws Throwable {
+        budget.assertAtMost("POST /file", 8, () -> assertOk(send(authorized("/file?filename=budget.txt")
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofString(multipart("budget.txt", "budget content")))
+                .build())));
+        budget.assertAtMost("GET /file", 5, () -> assertOk(send(get("/file?filename=budget.txt"))));
+        budget.assertAtMost("PUT /file", 8, () -> assertOk(send(authorized("/file?filename=budget.txt")
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"filename\":\"budget-renamed.txt\"}"))
+                .build())));
+        budget.assertAtMost("DELETE /file", 6, () ->
+                assertOk(send(authorized("/file?filename=budget-renamed.txt").DELETE().build())));
+    }
+
+    private static HttpRequest get(String path) {
+        return authorized(path).GET().build();
+    }
+
+    private static HttpRequest.Builder authorized(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).header("auth-token", "Bearer " + token);
+    }
+
+    private static HttpResponse<String> send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void assertOk(HttpResponse<String> response) {
+        assertEquals(200, response.statusCode(), response.body());
+    }
+
+    private static String multipart(String filename, String content) {
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: text/plain\r\n\r\n"
+                + content
+                + "\r\n--" + BOUNDARY + "--\r\n";
+    }
+}
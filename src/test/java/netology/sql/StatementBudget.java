@@ -0,0 +1,48 @@
+package netology.sql;
+
+import org.junit.jupiter.api.function.Executable;
+import ru.netology.dto.EndpointSqlStatsDto;
+import ru.netology.sql.SqlStatistics;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/*
+ * Проверка числа SQL-запросов на эндпоинт: budget.assertAtMost("GET /list", 4, () -> ...).
+ * Счётчики сбрасываются перед вызовом; эндпоинт — метод и шаблон маршрута, как в /admin/sql.
+ */
+public class StatementBudget {
+    private static final long WAIT_MS = 5000;
+
+    private final SqlStatistics statistics;
+
+    public StatementBudget(SqlStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public void assertAtMost(String endpoint, int maxStatements, Executable call) throws Throwable {
+        statistics.reset();
+        call.execute();
+        EndpointSqlStatsDto stats = await(endpoint);
+        assertTrue(stats.getMaxStatements() <= maxStatements, () -> String.format(
+                "%s executed %d SQL statements, budget is %d", endpoint, stats.getMaxStatements(), maxStatements));
+    }
+
+    // Фильтр закрывает счётчик после отправки ответа: клиент может получить его раньше
+    private EndpointSqlStatsDto await(String endpoint) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (true) {
+            Optional<EndpointSqlStatsDto> stats = statistics.getStats().getEndpoints().stream()
+                    .filter(candidate -> candidate.getEndpoint().equals(endpoint))
+                    .findFirst();
+            if (stats.isPresent()) {
+                return stats.get();
+            }
+            if (System.currentTimeMillis() > deadline) {
+                fail("No requests recorded for " + endpoint);
+            }
+            Thread.sleep(10);
+        }
+    }
+}
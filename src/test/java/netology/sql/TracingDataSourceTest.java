@@ -0,0 +1,92 @@
+package netology.sql;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.dto.EndpointSqlStatsDto;
+import ru.netology.dto.SqlStatsDto;
+import ru.netology.sql.SqlStatistics;
+import ru.netology.sql.TracingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TracingDataSourceTest {
+
+    private SqlStatistics statistics;
+    private DataSource dataSource;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:tracing-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        statistics = new SqlStatistics(200, 50);
+        dataSource = TracingDataSource.wrap(h2, statistics);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table items (id int primary key, name varchar(100))");
+        }
+        statistics.reset();
+    }
+
+    @Test
+    void statementsInsideRequest_ShouldBeCountedPerEndpoint() throws Exception {
+        for (int request = 0; request < 2; request++) {
+            statistics.beginRequest();
+            try (Connection connection = dataSource.getConnection()) {
+                for (int i = 0; i <= request; i++) {
+                    try (PreparedStatement select = connection.prepareStatement("select name from items where id = ?")) {
+                        select.setInt(1, i);
+                        try (ResultSet ignored = select.executeQuery()) {
+                            assertEquals(i + 1, statistics.getCurrentStatements());
+                        }
+                    }
+                }
+            }
+            statistics.endRequest("GET /items");
+        }
+
+        SqlStatsDto stats = statistics.getStats();
+        assertEquals(3, stats.getStatements());
+        assertEquals(1, stats.getEndpoints().size());
+        EndpointSqlStatsDto endpoint = stats.getEndpoints().get(0);
+        assertEquals("GET /items", endpoint.getEndpoint());
+        assertEquals(2, endpoint.getRequests());
+        assertEquals(2, endpoint.getMaxStatements());
+        assertEquals(1.5, endpoint.getAvgStatements(), 0.001);
+    }
+
+    @Test
+    void batch_ShouldBeCountedAsOneStatement() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement("insert into items (id, name) values (?, ?)")) {
+            for (int i = 0; i < 10; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, "item-" + i);
+                insert.addBatch();
+            }
+            assertEquals(10, insert.executeBatch().length);
+        }
+
+        assertEquals(1, statistics.getStats().getStatements());
+        assertEquals(-1, statistics.getCurrentStatements());
+        assertTrue(statistics.getStats().getEndpoints().isEmpty());
+    }
+
+    @Test
+    void statementOverThreshold_ShouldBeCountedAsSlow() throws Exception {
+        SqlStatistics strict = new SqlStatistics(0, 50);
+        DataSource traced = TracingDataSource.wrap(dataSource.unwrap(JdbcDataSource.class), strict);
+        try (Connection connection = traced.getConnection(); Statement statement = connection.createStatement()) {
+            statement.executeQuery("select count(*) from items").close();
+            statement.executeUpdate("delete from items");
+        }
+
+        assertEquals(2, strict.getStats().getStatements());
+        assertEquals(2, strict.getStats().getSlowStatements());
+    }
+}
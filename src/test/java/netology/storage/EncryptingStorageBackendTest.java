@@ -0,0 +1,135 @@
+package netology.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.netology.storage.EncryptingStorageBackend;
+import ru.netology.storage.InMemoryStorageBackend;
+import ru.netology.storage.StorageBackend;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EncryptingStorageBackendTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+    private static final String MASTER_KEY = Base64.getEncoder().encodeToString(new byte[32]);
+
+    private final InMemoryStorageBackend raw = new InMemoryStorageBackend();
+    private final StorageBackend backend = new EncryptingStorageBackend(raw, MASTER_KEY, SEGMENT_SIZE, false);
+
+    @Test
+    void write_ShouldRoundTripAllSizes() throws IOException {
+        for (int size : new int[]{0, 1, SEGMENT_SIZE - 1, SEGMENT_SIZE, SEGMENT_SIZE + 1, 3 * SEGMENT_SIZE + 5}) {
+            byte[] content = randomBytes(size);
+            String key = "memory/1/file-" + size;
+
+            assertEquals(size, backend.write(key, new ByteArrayInputStream(content)));
+            assertEquals(size, backend.stat(key).orElseThrow().getSize());
+            assertArrayEquals(content, readRange(backend, key, 0, Long.MAX_VALUE));
+            assertArrayEquals(content, backend.openResource(key).getContentAsByteArray());
+            assertFalse(Arrays.equals(content, readRange(raw, key, 0, Long.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void read_ShouldServeRangesAcrossSegments() throws IOException {
+        byte[] content = randomBytes(5 * SEGMENT_SIZE + 100);
+        backend.write("memory/1/ranges", new ByteArrayInputStream(content));
+
+        long[][] ranges = {{0, 10}, {SEGMENT_SIZE - 3, 6}, {2 * SEGMENT_SIZE, SEGMENT_SIZE}, {4 * SEGMENT_SIZE + 50, 1000}, {content.length - 1, 1}};
+        for (long[] range : ranges) {
+            int from = (int) range[0];
+            int to = (int) Math.min(content.length, range[0] + range[1]);
+            assertArrayEquals(Arrays.copyOfRange(content, from, to), readRange(backend, "memory/1/ranges", range[0], range[1]));
+        }
+    }
+
+    @Test
+    void tamperedSegment_ShouldFailAuthentication() throws IOException {
+        byte[] content = randomBytes(3 * SEGMENT_SIZE);
+        backend.write("memory/1/tampered", new ByteArrayInputStream(content));
+
+        byte[] stored = readRange(raw, "memory/1/tampered", 0, Long.MAX_VALUE);
+        stored[stored.length - SEGMENT_SIZE] ^= 1;
+        raw.delete("memory/1/tampered");
+        raw.write("memory/1/tampered", new ByteArrayInputStream(stored));
+
+        assertArrayEquals(Arrays.copyOf(content, SEGMENT_SIZE), readRange(backend, "memory/1/tampered", 0, SEGMENT_SIZE));
+        assertThrows(IOException.class, () -> readRange(backend, "memory/1/tampered", 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void truncatedFile_ShouldBeDetected() throws IOException {
+        backend.write("memory/1/truncated", new ByteArrayInputStream(randomBytes(3 * SEGMENT_SIZE)));
+
+        byte[] stored = readRange(raw, "memory/1/truncated", 0, Long.MAX_VALUE);
+        raw.delete("memory/1/truncated");
+        raw.write("memory/1/truncated", new ByteArrayInputStream(Arrays.copyOf(stored, stored.length - SEGMENT_SIZE - 16)));
+
+        assertThrows(IOException.class, () -> readRange(backend, "memory/1/truncated", 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void wrongMasterKey_ShouldNotDecrypt() throws IOException {
+        backend.write("memory/1/secret", new ByteArrayInputStream(randomBytes(100)));
+        byte[] otherKey = new byte[32];
+        otherKey[0] = 1;
+        StorageBackend other = new EncryptingStorageBackend(raw, Base64.getEncoder().encodeToString(otherKey), SEGMENT_SIZE, false);
+
+        assertThrows(IOException.class, () -> readRange(other, "memory/1/secret", 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void resourceSkip_ShouldJumpToSegmentWithoutDecryptingSkippedOnes() throws IOException {
+        byte[] content = randomBytes(6 * SEGMENT_SIZE + 10);
+        backend.write("memory/1/skip", new ByteArrayInputStream(content));
+        // Повреждённый первый сегмент: чтение после skip его не касается
+        byte[] stored = readRange(raw, "memory/1/skip", 0, Long.MAX_VALUE);
+        int header = stored.length - 6 * (SEGMENT_SIZE + 16) - (10 + 16);
+        stored[header] ^= 1;
+        raw.delete("memory/1/skip");
+        raw.write("memory/1/skip", new ByteArrayInputStream(stored));
+
+        try (InputStream in = backend.openResource("memory/1/skip").getInputStream()) {
+            assertEquals(3L * SEGMENT_SIZE + 7, in.skip(3L * SEGMENT_SIZE + 7));
+            assertArrayEquals(Arrays.copyOfRange(content, 3 * SEGMENT_SIZE + 7, 3 * SEGMENT_SIZE + 17), in.readNBytes(10));
+            // Внутри уже расшифрованного сегмента и через границу сегментов
+            assertEquals(100, in.skip(100));
+            assertArrayEquals(Arrays.copyOfRange(content, 3 * SEGMENT_SIZE + 117, 3 * SEGMENT_SIZE + 127), in.readNBytes(10));
+            assertEquals(2L * SEGMENT_SIZE, in.skip(2L * SEGMENT_SIZE));
+            assertArrayEquals(Arrays.copyOfRange(content, 5 * SEGMENT_SIZE + 127, content.length), in.readAllBytes());
+            assertEquals(0, in.skip(10));
+        }
+        assertThrows(IOException.class, () -> readRange(backend, "memory/1/skip", 0, 10));
+    }
+
+    @Test
+    void plaintextObjects_ShouldBeRejectedUnlessMigrating() throws IOException {
+        byte[] content = randomBytes(500);
+        raw.write("memory/1/legacy", new ByteArrayInputStream(content));
+
+        assertThrows(IOException.class, () -> readRange(backend, "memory/1/legacy", 0, Long.MAX_VALUE));
+        assertThrows(IOException.class, () -> backend.openResource("memory/1/legacy").getContentAsByteArray());
+
+        StorageBackend migrating = new EncryptingStorageBackend(raw, MASTER_KEY, SEGMENT_SIZE, true);
+        assertEquals(content.length, migrating.stat("memory/1/legacy").orElseThrow().getSize());
+        assertArrayEquals(content, readRange(migrating, "memory/1/legacy", 0, Long.MAX_VALUE));
+    }
+
+    static byte[] readRange(StorageBackend backend, String key, long offset, long length) throws IOException {
+        try (InputStream in = backend.read(key, offset, length)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
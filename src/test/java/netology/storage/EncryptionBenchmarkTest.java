@@ -0,0 +1,127 @@
+package netology.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.netology.storage.EncryptingStorageBackend;
+import ru.netology.storage.LocalFileSystemStorageBackend;
+import ru.netology.storage.StorageBackend;
+import ru.netology.storage.VolumeManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Запуск: mvn test -Dbenchmarks=true -Dtest=EncryptionBenchmarkTest
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class EncryptionBenchmarkTest {
+
+    private static final long FILE_SIZE = Long.getLong("benchmarks.encryption.file-size", 256L * 1024 * 1024);
+    private static final int SEGMENT_SIZE = Integer.getInteger("benchmarks.encryption.segment-size", 65536);
+    private static final int ROUNDS = 5;
+
+    @Test
+    void encryptedThroughput_ShouldStayCloseToPlainIo() throws IOException {
+        Path root = Files.createTempDirectory("encryption-benchmark");
+        try {
+            StorageBackend plain = new LocalFileSystemStorageBackend(new VolumeManager(root.toString(), 0));
+            StorageBackend encrypted = new EncryptingStorageBackend(plain,
+                    Base64.getEncoder().encodeToString(new byte[32]), SEGMENT_SIZE, false);
+
+            // Прогрев JIT, чтобы сравнивать интринсики AES-GCM, а не интерпретатор
+            measure(plain, root, "warmup-plain");
+            measure(encrypted, root, "warmup-encrypted");
+
+            double[] plainMbps = measure(plain, root, "plain");
+            double[] encryptedMbps = measure(encrypted, root, "encrypted");
+
+            System.out.printf("Write: plain %.0f MB/s, encrypted %.0f MB/s (overhead %.1f%%)%n",
+                    plainMbps[0], encryptedMbps[0], overhead(plainMbps[0], encryptedMbps[0]));
+            System.out.printf("Read:  plain %.0f MB/s, encrypted %.0f MB/s (overhead %.1f%%)%n",
+                    plainMbps[1], encryptedMbps[1], overhead(plainMbps[1], encryptedMbps[1]));
+
+            // Порог задаётся для конкретного железа: на кэше страниц шифрование заметнее, чем на реальном диске
+            String maxOverhead = System.getProperty("benchmarks.encryption.max-overhead");
+            if (maxOverhead != null) {
+                double limit = Double.parseDouble(maxOverhead);
+                assertTrue(overhead(plainMbps[0], encryptedMbps[0]) <= limit, "Write overhead is above " + limit + "%");
+                assertTrue(overhead(plainMbps[1], encryptedMbps[1]) <= limit, "Read overhead is above " + limit + "%");
+            }
+        } finally {
+            try (var paths = Files.walk(root)) {
+                for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    // Лучший результат из нескольких прогонов: [запись, чтение] в МБ/с
+    private double[] measure(StorageBackend backend, Path root, String name) throws IOException {
+        double bestWrite = 0;
+        double bestRead = 0;
+        byte[] buffer = new byte[64 * 1024];
+        for (int round = 0; round < ROUNDS; round++) {
+            String key = root.resolve("1").resolve(name + "-" + round).toString();
+
+            long started = System.nanoTime();
+            assertEquals(FILE_SIZE, backend.write(key, new PatternInputStream(FILE_SIZE)));
+            bestWrite = Math.max(bestWrite, megabytesPerSecond(System.nanoTime() - started));
+
+            started = System.nanoTime();
+            long total = 0;
+            try (InputStream in = backend.read(key, 0, FILE_SIZE)) {
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    total += read;
+                }
+            }
+            bestRead = Math.max(bestRead, megabytesPerSecond(System.nanoTime() - started));
+            assertEquals(FILE_SIZE, total);
+
+            backend.delete(key);
+        }
+        return new double[]{bestWrite, bestRead};
+    }
+
+    private double megabytesPerSecond(long nanos) {
+        return FILE_SIZE / 1024.0 / 1024.0 / (nanos / 1_000_000_000.0);
+    }
+
+    private double overhead(double plain, double encrypted) {
+        return (plain / encrypted - 1) * 100;
+    }
+
+    private static final class PatternInputStream extends InputStream {
+        private final byte[] pattern = new byte[1024 * 1024];
+        private long remaining;
+
+        private PatternInputStream(long size) {
+            new Random(42).nextBytes(pattern);
+            this.remaining = size;
+        }
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int position = (int) ((FILE_SIZE - remaining) % pattern.length);
+            int count = (int) Math.min(Math.min(length, remaining), pattern.length - position);
+            System.arraycopy(pattern, position, buffer, offset, count);
+            remaining -= count;
+            return count;
+        }
+    }
+}
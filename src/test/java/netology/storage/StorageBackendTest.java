@@ -0,0 +1,113 @@
+package netology.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.netology.storage.InMemoryStorageBackend;
+import ru.netology.storage.LocalFileSystemStorageBackend;
+import ru.netology.storage.StorageBackend;
+import ru.netology.storage.StoragePlacement;
+import ru.netology.storage.VolumeManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StorageBackendTest {
+
+    @Test
+    void inMemoryBackend_ShouldSupportAllOperations() throws IOException {
+        verifyBackend(new InMemoryStorageBackend());
+    }
+
+    @Test
+    void localBackend_ShouldSupportAllOperations() throws IOException {
+        Path root = Files.createTempDirectory("storage-backend-test");
+        try {
+            verifyBackend(new LocalFileSystemStorageBackend(new VolumeManager(root.toString(), 0)));
+        } finally {
+            deleteRecursively(root);
+        }
+    }
+
+    @Test
+    void localBackend_ShouldRejectPathTraversal() throws IOException {
+        Path root = Files.createTempDirectory("storage-backend-test");
+        StorageBackend backend = new LocalFileSystemStorageBackend(new VolumeManager(root.toString(), 0));
+
+        assertThrows(RuntimeException.class, () -> backend.allocate(1, "../2/secret.txt", 0));
+
+        deleteRecursively(root);
+    }
+
+    @Test
+    void localBackend_ReplaceShouldNotChangeHardLinkedCopies() throws IOException {
+        Path root = Files.createTempDirectory("storage-backend-test");
+        StorageBackend backend = new LocalFileSystemStorageBackend(new VolumeManager(root.toString(), 0));
+        try {
+            String key = backend.allocate(1, "original.txt", 4).getKey();
+            backend.write(key, new ByteArrayInputStream("data".getBytes(StandardCharsets.UTF_8)));
+            String copied = backend.siblingKey(key, "copy.txt");
+            backend.copy(key, copied);
+
+            String next = backend.siblingKey(key, "next.txt");
+            backend.write(next, new ByteArrayInputStream("new data".getBytes(StandardCharsets.UTF_8)));
+            backend.replace(next, key);
+
+            assertTrue(backend.stat(next).isEmpty());
+            assertEquals("new data", new String(backend.openResource(key).getContentAsByteArray(), StandardCharsets.UTF_8));
+            assertEquals("data", new String(backend.openResource(copied).getContentAsByteArray(), StandardCharsets.UTF_8));
+        } finally {
+            deleteRecursively(root);
+        }
+    }
+
+    static void deleteRecursively(Path root) throws IOException {
+        try (var paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private void verifyBackend(StorageBackend backend) throws IOException {
+        byte[] content = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        StoragePlacement placement = backend.allocate(1, "test.txt", content.length);
+        String key = placement.getKey();
+
+        assertEquals(content.length, backend.write(key, new ByteArrayInputStream(content)));
+        assertThrows(FileAlreadyExistsException.class, () -> backend.write(key, new ByteArrayInputStream(content)));
+        assertEquals(content.length, backend.stat(key).orElseThrow().getSize());
+
+        try (InputStream range = backend.read(key, 4, 6)) {
+            assertEquals("456789", new String(range.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        String copied = backend.siblingKey(key, "copy.txt");
+        backend.copy(key, copied);
+        assertThrows(FileAlreadyExistsException.class, () -> backend.copy(key, copied));
+        assertArrayEquals(content, backend.openResource(copied).getContentAsByteArray());
+
+        String renamed = backend.siblingKey(key, "renamed.txt");
+        backend.move(key, renamed);
+        assertTrue(backend.stat(key).isEmpty());
+        assertArrayEquals(content, backend.openResource(renamed).getContentAsByteArray());
+
+        String replacement = backend.siblingKey(key, "replacement.txt");
+        backend.write(replacement, new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        backend.replace(replacement, copied);
+        assertTrue(backend.stat(replacement).isEmpty());
+        assertArrayEquals(new byte[]{1, 2, 3}, backend.openResource(copied).getContentAsByteArray());
+        backend.replace(renamed, copied);
+
+        assertFalse(backend.delete(renamed));
+        assertTrue(backend.stat(renamed).isEmpty());
+        assertArrayEquals(content, backend.openResource(copied).getContentAsByteArray());
+        assertTrue(backend.delete(copied));
+    }
+}
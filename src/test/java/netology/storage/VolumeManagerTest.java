@@ -0,0 +1,107 @@
+package netology.storage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.netology.storage.LocalFileSystemStorageBackend;
+import ru.netology.storage.StoragePlacement;
+import ru.netology.storage.StorageVolume;
+import ru.netology.storage.VolumeManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VolumeManagerTest {
+
+    private Path root;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        root = Files.createTempDirectory("volume-manager-test");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        StorageBackendTest.deleteRecursively(root);
+    }
+
+    @Test
+    void concurrentPlacements_ShouldSpreadAcrossEqualVolumes() throws Exception {
+        VolumeManager volumeManager = new VolumeManager(root.resolve("a") + "," + root.resolve("b"), 0);
+        int uploads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(uploads);
+
+        Map<String, Integer> placed = new HashMap<>();
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<StorageVolume>> futures = new ArrayList<>();
+            for (int i = 0; i < uploads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return volumeManager.place(1);
+                }));
+            }
+            start.countDown();
+            for (Future<StorageVolume> future : futures) {
+                placed.merge(future.get(10, TimeUnit.SECONDS).getId(), 1, Integer::sum);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Запись ещё не началась, но каждый выбор уже учтён в очереди тома
+        assertEquals(2, placed.size());
+        for (StorageVolume volume : volumeManager.getVolumes()) {
+            assertEquals(uploads / 2, (int) placed.get(volume.getId()));
+            assertEquals(uploads / 2, volume.getQueueDepth());
+        }
+    }
+
+    @Test
+    void write_ShouldTurnReservationIntoFinishedIo() throws Exception {
+        VolumeManager volumeManager = new VolumeManager(root.toString(), 0);
+        LocalFileSystemStorageBackend backend = new LocalFileSystemStorageBackend(volumeManager);
+        StorageVolume volume = volumeManager.getVolumes().get(0);
+
+        StoragePlacement placement = backend.allocate(1, "file.txt", 4);
+        assertEquals(1, volume.getQueueDepth());
+
+        backend.write(placement.getKey(), new ByteArrayInputStream(new byte[]{1, 2, 3, 4}));
+        assertEquals(0, volume.getQueueDepth());
+        assertEquals(volume.getId(), placement.getVolume());
+    }
+
+    @Test
+    void volumeId_ShouldSurviveRemountToAnotherPath() throws Exception {
+        Path mounted = root.resolve("disk1");
+        String id = new VolumeManager(mounted.toString(), 0).getVolumes().get(0).getId();
+        assertNotEquals(mounted.toString(), id);
+
+        Path remounted = Files.move(mounted, root.resolve("mnt-disk1"));
+        assertEquals(id, new VolumeManager(remounted.toString(), 0).getVolumes().get(0).getId());
+    }
+
+    @Test
+    void existingVolumeWithoutId_ShouldKeepPathAsId() throws Exception {
+        // Файлы этого тома уже записаны в files.volume под путём каталога
+        Path legacy = Files.createDirectories(root.resolve("legacy").resolve("1"));
+        Files.writeString(legacy.resolve("old.txt"), "old");
+
+        String id = new VolumeManager(root.resolve("legacy").toString(), 0).getVolumes().get(0).getId();
+
+        assertEquals(root.resolve("legacy").toString(), id);
+        assertEquals(id, new VolumeManager(root.resolve("legacy").toString(), 0).getVolumes().get(0).getId());
+    }
+}
@@ -0,0 +1,46 @@
+package netology.trace;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.netology.trace.RequestTrace;
+import ru.netology.trace.RequestTracer;
+import ru.netology.trace.TraceStage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Запуск: mvn test -Dbenchmarks=true -Dtest=RequestTraceBenchmarkTest
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class RequestTraceBenchmarkTest {
+
+    // Примерно столько замеров на запрос /file: JWT, пользователь дважды, блокировка, SQL, диск
+    private static final int SPANS_PER_REQUEST = 8;
+    private static final int REQUESTS = 100_000;
+    private static final int ROUNDS = 50;
+
+    @Test
+    void tracing_ShouldCostNanosecondsPerRequest() {
+        RequestTracer tracer = new RequestTracer(60_000, 128);
+
+        long bestNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long started = System.nanoTime();
+            for (int i = 0; i < REQUESTS; i++) {
+                RequestTrace trace = tracer.begin();
+                for (int span = 0; span < SPANS_PER_REQUEST; span++) {
+                    long spanStarted = RequestTrace.start();
+                    RequestTrace.stop(TraceStage.DATABASE, spanStarted);
+                }
+                tracer.end(trace, "GET /file", 200);
+            }
+            bestNanos = Math.min(bestNanos, System.nanoTime() - started);
+        }
+
+        double nanosPerRequest = (double) bestNanos / REQUESTS;
+        System.out.printf("tracing: %.1f ns per request with %d spans%n", nanosPerRequest, SPANS_PER_REQUEST);
+        assertTrue(tracer.getSlowRequests().isEmpty());
+        String maxNanos = System.getProperty("benchmarks.trace.max-ns");
+        if (maxNanos != null) {
+            assertTrue(nanosPerRequest <= Double.parseDouble(maxNanos), "Tracing is slower than " + maxNanos + " ns");
+        }
+    }
+}
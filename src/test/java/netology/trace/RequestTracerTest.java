@@ -0,0 +1,69 @@
+package netology.trace;
+
+import org.junit.jupiter.api.Test;
+import ru.netology.dto.SlowRequestDto;
+import ru.netology.trace.RequestTrace;
+import ru.netology.trace.RequestTracer;
+import ru.netology.trace.TraceStage;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestTracerTest {
+
+    @Test
+    void slowRequest_ShouldBeCapturedWithStageTimings() {
+        RequestTracer tracer = new RequestTracer(0, 4);
+
+        RequestTrace trace = tracer.begin();
+        RequestTrace.add(TraceStage.DATABASE, 2_000_000);
+        RequestTrace.add(TraceStage.DATABASE, 1_000_000);
+        long started = RequestTrace.start();
+        assertTrue(started != 0);
+        RequestTrace.stop(TraceStage.STORAGE, started);
+        tracer.end(trace, "GET /file", 200);
+
+        List<SlowRequestDto> requests = tracer.getSlowRequests();
+        assertEquals(1, requests.size());
+        SlowRequestDto request = requests.get(0);
+        assertEquals("GET /file", request.getEndpoint());
+        assertEquals(200, request.getStatus());
+        assertEquals(2, request.getSqlStatements());
+        assertEquals(3.0, request.getStagesMs().get("database"), 0.001);
+        assertTrue(request.getStagesMs().containsKey("storage"));
+        assertFalse(request.getStagesMs().containsKey("jwt"));
+    }
+
+    @Test
+    void fastRequestsAndWorkOutsideRequests_ShouldNotBeRecorded() {
+        RequestTracer tracer = new RequestTracer(60_000, 4);
+
+        assertEquals(0, RequestTrace.start());
+        RequestTrace.add(TraceStage.DATABASE, 5_000_000);
+
+        RequestTrace trace = tracer.begin();
+        tracer.end(trace, "GET /list", 200);
+
+        assertTrue(tracer.getSlowRequests().isEmpty());
+        assertEquals(0, RequestTrace.start());
+    }
+
+    @Test
+    void fullBuffer_ShouldKeepLatestRequestsSlowestFirst() throws InterruptedException {
+        RequestTracer tracer = new RequestTracer(0, 2);
+
+        for (String endpoint : List.of("GET /a", "GET /b", "GET /c")) {
+            RequestTrace trace = tracer.begin();
+            if (endpoint.equals("GET /c")) {
+                Thread.sleep(20);
+            }
+            tracer.end(trace, endpoint, 200);
+        }
+
+        List<SlowRequestDto> requests = tracer.getSlowRequests();
+        assertEquals(2, requests.size());
+        assertEquals("GET /c", requests.get(0).getEndpoint());
+        assertEquals("GET /b", requests.get(1).getEndpoint());
+    }
+}